@@ -55,6 +55,9 @@ public class ApiApplication implements SmartInitializingSingleton {
 
             checkLicenseUsersCount();
 
+            log.info("Planning preventive maintenance schedules...");
+            scheduleService.planUnplanned();
+
             log.info("Application initialization completed successfully");
         } catch (Exception e) {
             log.error("Application initialization failed", e);
@@ -0,0 +1,96 @@
+package com.grash.advancedsearch;
+
+import com.grash.exception.CustomException;
+import org.springframework.http.HttpStatus;
+
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dotted attribute path of a search filter or sort field, parsed once and validated once per entity against the JPA
+ * metamodel.
+ */
+public final class FieldPath {
+    private static final int MAX_CACHED_PATHS = 2000;
+    private static final Map<String, FieldPath> PATHS = new ConcurrentHashMap<>();
+
+    private final String field;
+    private final String[] attributeNames;
+    private final Map<Class<?>, Boolean> validatedTypes = new ConcurrentHashMap<>();
+
+    private FieldPath(String field) {
+        this.field = field;
+        this.attributeNames = field.split("\\.");
+    }
+
+    public static FieldPath of(String field) {
+        if (field == null || field.isEmpty())
+            throw new CustomException("Missing search field", HttpStatus.BAD_REQUEST);
+        FieldPath cached = PATHS.get(field);
+        if (cached != null) return cached;
+        // the fields come from the clients, stop caching when they send too many distinct ones
+        return PATHS.size() < MAX_CACHED_PATHS ? PATHS.computeIfAbsent(field, FieldPath::new) : new FieldPath(field);
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * @return the path of the field from the root, after validating it
+     */
+    @SuppressWarnings("unchecked")
+    public <X> Path<X> resolve(Root<?> root) {
+        validate(root);
+        Path<?> path = root;
+        for (String attributeName : attributeNames) {
+            path = path.get(attributeName);
+        }
+        return (Path<X>) path;
+    }
+
+    /**
+     * Same as {@link #resolve(Root)} but the associations are left joined, so that the rows without them are kept. Used
+     * to sort, where an inner join would drop them from the results.
+     */
+    @SuppressWarnings("unchecked")
+    public <X> Path<X> resolveLeftJoined(Root<?> root) {
+        validate(root);
+        From<?, ?> from = root;
+        for (int i = 0; i < attributeNames.length - 1; i++) {
+            from = from.join(attributeNames[i], JoinType.LEFT);
+        }
+        return from.get(attributeNames[attributeNames.length - 1]);
+    }
+
+    /**
+     * @throws CustomException if one of the attributes does not exist on the root entity
+     */
+    public void validate(Root<?> root) {
+        if (validatedTypes.containsKey(root.getJavaType())) return;
+        ManagedType<?> type = root.getModel();
+        for (int i = 0; i < attributeNames.length; i++) {
+            Attribute<?, ?> attribute;
+            try {
+                attribute = type.getAttribute(attributeNames[i]);
+            } catch (IllegalArgumentException e) {
+                throw new CustomException("Unknown search field: " + field, HttpStatus.BAD_REQUEST);
+            }
+            if (i < attributeNames.length - 1) {
+                // only single valued associations and embeddables can be navigated with a path
+                if (!(attribute instanceof SingularAttribute)
+                        || !(((SingularAttribute<?, ?>) attribute).getType() instanceof ManagedType))
+                    throw new CustomException("Unknown search field: " + field, HttpStatus.BAD_REQUEST);
+                type = (ManagedType<?>) ((SingularAttribute<?, ?>) attribute).getType();
+            }
+        }
+        validatedTypes.put(root.getJavaType(), Boolean.TRUE);
+    }
+}
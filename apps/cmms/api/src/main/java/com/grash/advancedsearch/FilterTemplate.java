@@ -0,0 +1,88 @@
+package com.grash.advancedsearch;
+
+import com.grash.exception.CustomException;
+import lombok.Value;
+import org.springframework.http.HttpStatus;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * What a {@link FilterField} resolves to apart from its values: the operation, the field paths and the templates of
+ * the alternatives. Templates are cached by the shape of the filter (field, operation and alternatives), so the
+ * requests sending the same filters with other values reuse them. The field paths are validated once per entity by
+ * {@link FieldPath}.
+ */
+final class FilterTemplate {
+    private static final int MAX_CACHED_TEMPLATES = 2000;
+    private static final Map<Shape, FilterTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final SearchOperation operation;
+    private final List<FieldPath> fieldPaths;
+    private final List<FilterTemplate> alternatives;
+
+    private FilterTemplate(FilterField filterField, Function<FilterField, FilterTemplate> alternativeTemplate) {
+        this.operation = filterField.getOperation() == null ? null :
+                SearchOperation.getSimpleOperation(filterField.getOperation());
+        if (operation == null)
+            throw new CustomException("Unknown search operation: " + filterField.getOperation(),
+                    HttpStatus.BAD_REQUEST);
+        this.fieldPaths = operation == SearchOperation.SEARCH ?
+                Arrays.stream(filterField.getField().split(","))
+                        .map(String::trim)
+                        .filter(field -> !field.isEmpty())
+                        .map(FieldPath::of)
+                        .collect(Collectors.toList()) :
+                Collections.singletonList(FieldPath.of(filterField.getField()));
+        if (fieldPaths.isEmpty()) throw new CustomException("Missing search field", HttpStatus.BAD_REQUEST);
+        this.alternatives = filterField.getAlternatives() == null ? Collections.emptyList() :
+                filterField.getAlternatives().stream().map(alternativeTemplate).collect(Collectors.toList());
+    }
+
+    static FilterTemplate of(FilterField filterField) {
+        Shape shape = Shape.of(filterField);
+        FilterTemplate cached = TEMPLATES.get(shape);
+        if (cached != null) return cached;
+        FilterTemplate template = new FilterTemplate(filterField, FilterTemplate::of);
+        // the filters come from the clients, stop caching when they send too many distinct ones
+        if (TEMPLATES.size() < MAX_CACHED_TEMPLATES) TEMPLATES.putIfAbsent(shape, template);
+        return template;
+    }
+
+    /**
+     * @return a new template, the templates of the alternatives are not cached either
+     */
+    static FilterTemplate compile(FilterField filterField) {
+        return new FilterTemplate(filterField, FilterTemplate::compile);
+    }
+
+    SearchOperation getOperation() {
+        return operation;
+    }
+
+    List<FieldPath> getFieldPaths() {
+        return fieldPaths;
+    }
+
+    List<FilterTemplate> getAlternatives() {
+        return alternatives;
+    }
+
+    @Value
+    private static class Shape {
+        String field;
+        String operation;
+        List<Shape> alternatives;
+
+        private static Shape of(FilterField filterField) {
+            return new Shape(filterField.getField(), filterField.getOperation(),
+                    filterField.getAlternatives() == null ? Collections.emptyList() :
+                            filterField.getAlternatives().stream().map(Shape::of).collect(Collectors.toList()));
+        }
+    }
+}
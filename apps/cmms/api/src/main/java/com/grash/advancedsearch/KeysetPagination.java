@@ -0,0 +1,156 @@
+package com.grash.advancedsearch;
+
+import com.grash.advancedsearch.pagination.KeysetPage;
+import com.grash.exception.CustomException;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.http.HttpStatus;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Runs the searches of a {@link SearchCriteria}. In keyset mode the rows are sought after the (sort field, id) of the
+ * last row of the previous page, so deep pages cost the same as the first one, and the total is only counted when
+ * requested. The null sort values come last in ascending order and first in descending order, as in PostgreSQL.
+ */
+public final class KeysetPagination {
+    private static final String ID = "id";
+
+    private KeysetPagination() {
+    }
+
+    public static <T> Page<T> findAll(EntityManager em, Class<T> type, JpaSpecificationExecutor<T> repository,
+                                      Specification<T> specification, SearchCriteria searchCriteria) {
+        boolean byRelevance = SearchCriteria.RELEVANCE.equals(searchCriteria.getSortField());
+        if (!searchCriteria.isKeyset()) {
+            Pageable page = byRelevance ? PageRequest.of(searchCriteria.getPageNum(), searchCriteria.getPageSize())
+                    : PageRequest.of(searchCriteria.getPageNum(), searchCriteria.getPageSize(),
+                    searchCriteria.getDirection(), searchCriteria.getSortField());
+            return repository.findAll(specification, page);
+        }
+        if (byRelevance) throw new CustomException("Keyset pagination can not sort by relevance",
+                HttpStatus.BAD_REQUEST);
+        int pageSize = Math.max(1, searchCriteria.getPageSize());
+        String sortField = searchCriteria.getSortField() == null ? ID : searchCriteria.getSortField();
+        Direction direction = searchCriteria.getDirection() == null ? Direction.ASC : searchCriteria.getDirection();
+
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<T> query = cb.createQuery(type);
+        Root<T> root = query.from(type);
+        List<Predicate> predicates = new ArrayList<>();
+        if (specification != null) {
+            Predicate predicate = specification.toPredicate(root, query, cb);
+            if (predicate != null) predicates.add(predicate);
+        }
+        Path<Object> sortPath = FieldPath.of(sortField).resolveLeftJoined(root);
+        if (searchCriteria.getCursor() != null) {
+            predicates.add(afterCursor(cb, root, sortPath, sortField, direction, searchCriteria.getCursor()));
+        }
+        query.select(root).where(predicates.toArray(new Predicate[0]));
+        List<Order> orders = new ArrayList<>();
+        orders.add(direction.isAscending() ? cb.asc(sortPath) : cb.desc(sortPath));
+        if (!sortField.equals(ID)) {
+            orders.add(direction.isAscending() ? cb.asc(root.get(ID)) : cb.desc(root.get(ID)));
+        }
+        query.orderBy(orders);
+        List<T> rows = em.createQuery(query).setMaxResults(pageSize + 1).getResultList();
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+            T last = rows.get(pageSize - 1);
+            nextCursor = encodeCursor(getPropertyValue(last, sortField), (Long) getPropertyValue(last, ID));
+        }
+        Long total = searchCriteria.isCountTotal() ? repository.count(specification) : null;
+        Sort sort = Sort.by(direction, sortField);
+        if (!sortField.equals(ID)) sort = sort.and(Sort.by(direction, ID));
+        return new KeysetPage<>(rows, pageSize, sort, nextCursor, total);
+    }
+
+    private static <T> Predicate afterCursor(CriteriaBuilder cb, Root<T> root, Path<Object> sortPath,
+                                             String sortField, Direction direction, String cursor) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new CustomException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+        int separator = decoded.indexOf(':');
+        if (separator < 0) throw new CustomException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        Long lastId;
+        try {
+            lastId = Long.valueOf(decoded.substring(0, separator));
+        } catch (NumberFormatException e) {
+            throw new CustomException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+        boolean ascending = direction.isAscending();
+        Path<Long> idPath = root.get(ID);
+        Predicate idAfter = ascending ? cb.greaterThan(idPath, lastId) : cb.lessThan(idPath, lastId);
+        if (sortField.equals(ID)) return idAfter;
+
+        String rawValue = decoded.substring(separator + 1);
+        if (rawValue.isEmpty()) {
+            // the last row had a null sort value
+            Predicate afterNulls = cb.and(cb.isNull(sortPath), idAfter);
+            return ascending ? afterNulls : cb.or(cb.isNotNull(sortPath), afterNulls);
+        }
+        if (rawValue.charAt(0) != 'v') throw new CustomException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Expression<Comparable> comparablePath = (Expression) sortPath;
+        Comparable lastValue = decodeValue(rawValue.substring(1), sortPath.getJavaType());
+        Predicate sortAfter = ascending ? cb.greaterThan(comparablePath, lastValue) : cb.lessThan(comparablePath,
+                lastValue);
+        Predicate result = cb.or(sortAfter, cb.and(cb.equal(sortPath, lastValue), idAfter));
+        return ascending ? cb.or(result, cb.isNull(sortPath)) : result;
+    }
+
+    private static String encodeCursor(Object sortValue, Long id) {
+        String value;
+        if (sortValue == null) value = "";
+        else if (sortValue instanceof Date) value = "v" + ((Date) sortValue).getTime();
+        else if (sortValue instanceof Enum) value = "v" + ((Enum<?>) sortValue).name();
+        else value = "v" + sortValue;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id + ":" + value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the value of the dotted property, null when one of the intermediate values is null
+     */
+    private static Object getPropertyValue(Object row, String field) {
+        Object value = row;
+        for (String property : field.split("\\.")) {
+            if (value == null) return null;
+            value = new BeanWrapperImpl(value).getPropertyValue(property);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Comparable decodeValue(String value, Class<?> type) {
+        Object result;
+        try {
+            if (Date.class.isAssignableFrom(type)) return new Date(Long.parseLong(value));
+            result = DefaultConversionService.getSharedInstance().convert(value, type);
+        } catch (NumberFormatException | ConversionException e) {
+            throw new CustomException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+        if (!(result instanceof Comparable)) throw new CustomException("Cannot sort on this field",
+                HttpStatus.BAD_REQUEST);
+        return (Comparable) result;
+    }
+}
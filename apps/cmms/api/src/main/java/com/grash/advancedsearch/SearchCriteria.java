@@ -17,11 +17,28 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 public class SearchCriteria implements Cloneable {
+    /**
+     * Sort field keeping the ranking of a full text ("fts") filter
+     */
+    public static final String RELEVANCE = "relevance";
+
     private List<FilterField> filterFields = new ArrayList<>();
     private Direction direction = Direction.ASC;
     private int pageNum = 0;
     private int pageSize = 10;
     private String sortField = "id";
+    /**
+     * Seeks after the cursor of the previous page instead of skipping pageNum * pageSize rows, pageNum is then ignored
+     */
+    private boolean keyset;
+    /**
+     * The nextCursor of the previous page, null for the first page
+     */
+    private String cursor;
+    /**
+     * Only used with keyset, the total is not counted unless requested
+     */
+    private boolean countTotal;
 
     public void filterCompany(OwnUser user) {
         this.filterFields.add(FilterField.builder()
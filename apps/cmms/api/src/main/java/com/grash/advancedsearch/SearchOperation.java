@@ -3,10 +3,10 @@ package com.grash.advancedsearch;
 public enum SearchOperation {
     CONTAINS, DOES_NOT_CONTAIN, EQUAL, NOT_EQUAL, BEGINS_WITH, DOES_NOT_BEGIN_WITH, ENDS_WITH,
     DOES_NOT_END_WITH, NUL, NOT_NULL, GREATER_THAN, GREATER_THAN_EQUAL, LESS_THAN, LESS_THAN_EQUAL, IN, IN_MANY_TO_MANY,
-    ANY, ALL;
+    SUBTREE, SEARCH, ANY, ALL;
 
     public static final String[] SIMPLE_OPERATION_SET = {"cn", "nc", "eq", "ne", "bw", "bn", "ew",
-            "en", "nu", "nn", "gt", "ge", "lt", "le", "in", "inm"};
+            "en", "nu", "nn", "gt", "ge", "lt", "le", "in", "inm", "sub", "fts"};
 
     public static SearchOperation getDataOption(final String dataOption) {
         switch (dataOption) {
@@ -53,6 +53,10 @@ public enum SearchOperation {
                 return IN;
             case "inm":
                 return IN_MANY_TO_MANY;
+            case "sub":
+                return SUBTREE;
+            case "fts":
+                return SEARCH;
             default:
                 return null;
         }
@@ -1,112 +1,218 @@
 package com.grash.advancedsearch;
 
+import com.grash.exception.CustomException;
+import com.grash.model.Asset;
+import com.grash.model.AssetClosure;
+import com.grash.model.Location;
+import com.grash.model.LocationClosure;
 import com.grash.model.enums.EnumName;
 import com.grash.model.enums.Priority;
 import com.grash.model.enums.Status;
 import com.grash.utils.Helper;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 
 import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 import java.util.stream.Collectors;
 
+/**
+ * Specification of one {@link FilterField}. The operation and field paths come from the cached {@link FilterTemplate}
+ * of the filter, the search string, enum values and alternatives are resolved once when it is built, so that the count
+ * and the page queries only assemble the predicates.
+ */
 public class WrapperSpecification<T> implements Specification<T> {
 
     private final FilterField filterField;
+    private final SearchOperation operation;
+    private final List<FieldPath> fieldPaths;
+    private final String strToSearch;
+    private final Object value;
+    private final List<Object> values;
+    //the id of the asset or location of a SUBTREE filter
+    private final Long subtreeRootId;
+    private final List<WrapperSpecification<T>> alternatives;
 
     public WrapperSpecification(final FilterField filterField) {
+        this(FilterTemplate.of(filterField), filterField);
+    }
+
+    WrapperSpecification(final FilterTemplate template, final FilterField filterField) {
         super();
         this.filterField = filterField;
+        this.operation = template.getOperation();
+        this.fieldPaths = template.getFieldPaths();
+        this.strToSearch = filterField.getValue() == null ? null : filterField.getValue().toString().toLowerCase();
+        this.value = isJsDate() && (operation == SearchOperation.GREATER_THAN_EQUAL
+                || operation == SearchOperation.LESS_THAN_EQUAL) ?
+                Helper.getDateFromJsString(filterField.getValue().toString()) : filterField.getValue();
+        this.values = filterField.getValues() == null ? Collections.emptyList() :
+                filterField.getValues().stream().map(value -> getRealValue(filterField.getEnumName(), value))
+                        .collect(Collectors.toList());
+        this.subtreeRootId = operation == SearchOperation.SUBTREE ? getSubtreeRootId(filterField.getValue()) : null;
+        List<WrapperSpecification<T>> alternatives = new ArrayList<>(template.getAlternatives().size());
+        for (int i = 0; i < template.getAlternatives().size(); i++) {
+            alternatives.add(new WrapperSpecification<>(template.getAlternatives().get(i),
+                    filterField.getAlternatives().get(i)));
+        }
+        this.alternatives = alternatives;
     }
 
     @Override
     public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
 
-        String strToSearch = filterField.getValue().toString().toLowerCase();
         Predicate result = null;
-        switch (Objects.requireNonNull(SearchOperation.getSimpleOperation(filterField.getOperation()))) {
+        switch (operation) {
             case CONTAINS:
-                result = cb.like(cb.lower(root.get(filterField.getField())), "%" + strToSearch + "%");
+                result = cb.like(cb.lower(getFieldPath(root)), "%" + strToSearch + "%");
                 break;
             case DOES_NOT_CONTAIN:
-                result = cb.notLike(cb.lower(root.get(filterField.getField())), "%" + strToSearch + "%");
+                result = cb.notLike(cb.lower(getFieldPath(root)), "%" + strToSearch + "%");
                 break;
             case BEGINS_WITH:
-                result = cb.like(cb.lower(root.get(filterField.getField())), strToSearch + "%");
+                result = cb.like(cb.lower(getFieldPath(root)), strToSearch + "%");
                 break;
             case DOES_NOT_BEGIN_WITH:
-                result = cb.notLike(cb.lower(root.get(filterField.getField())), strToSearch + "%");
+                result = cb.notLike(cb.lower(getFieldPath(root)), strToSearch + "%");
                 break;
             case ENDS_WITH:
-                result = cb.like(cb.lower(root.get(filterField.getField())), "%" + strToSearch);
+                result = cb.like(cb.lower(getFieldPath(root)), "%" + strToSearch);
                 break;
             case DOES_NOT_END_WITH:
-                result = cb.notLike(cb.lower(root.get(filterField.getField())), "%" + strToSearch);
+                result = cb.notLike(cb.lower(getFieldPath(root)), "%" + strToSearch);
                 break;
             case EQUAL:
-                result = cb.equal(getFieldPath(root, filterField.getField()), filterField.getValue());
+                result = cb.equal(getFieldPath(root), value);
                 break;
             case NOT_EQUAL:
-                result = cb.notEqual(root.get(filterField.getField()), filterField.getValue());
+                result = cb.notEqual(getFieldPath(root), value);
                 break;
             case NUL:
-                result = cb.isNull(root.get(filterField.getField()));
+                result = cb.isNull(getFieldPath(root));
                 break;
             case NOT_NULL:
-                result = cb.isNotNull(root.get(filterField.getField()));
+                result = cb.isNotNull(getFieldPath(root));
                 break;
             case GREATER_THAN:
-                result = cb.greaterThan(root.get(filterField.getField()), (Comparable) filterField.getValue());
+                result = cb.greaterThan(getFieldPath(root), (Comparable) value);
                 break;
             case GREATER_THAN_EQUAL:
-                if (filterField.getEnumName() != null && filterField.getEnumName().equals(EnumName.JS_DATE)) {
-                    result = cb.greaterThanOrEqualTo(root.get(filterField.getField()), Helper.getDateFromJsString(filterField.getValue().toString()));
-                } else {
-                    result = cb.greaterThanOrEqualTo(root.get(filterField.getField()), (Comparable) filterField.getValue());
-                }
+                result = cb.greaterThanOrEqualTo(getFieldPath(root), (Comparable) value);
                 break;
             case LESS_THAN:
-                result = cb.lessThan(root.get(filterField.getField()), (Comparable) filterField.getValue());
+                result = cb.lessThan(getFieldPath(root), (Comparable) value);
                 break;
             case LESS_THAN_EQUAL:
-                if (filterField.getEnumName() != null && filterField.getEnumName().equals(EnumName.JS_DATE)) {
-                    result = cb.lessThanOrEqualTo(root.get(filterField.getField()), Helper.getDateFromJsString(filterField.getValue().toString()));
-                } else {
-                    result = cb.lessThanOrEqualTo(root.get(filterField.getField()), (Comparable) filterField.getValue());
-                }
+                result = cb.lessThanOrEqualTo(getFieldPath(root), (Comparable) value);
                 break;
             case IN:
-                CriteriaBuilder.In<Object> inClause = cb.in(root.get(filterField.getField()));
-                filterField.getValues().forEach(value -> inClause.value(getRealValue(filterField.getEnumName(), value)));
+                CriteriaBuilder.In<Object> inClause = cb.in(getFieldPath(root));
+                values.forEach(inClause::value);
                 result = inClause;
                 break;
             case IN_MANY_TO_MANY:
+                fieldPaths.get(0).validate(root);
                 Join<Object, Object> join = root.join(filterField.getField(), filterField.getJoinType());
                 CriteriaBuilder.In<Object> inClause1 = cb.in(join.get("id"));
                 filterField.getValues().forEach(inClause1::value);
                 result = inClause1;
                 break;
+            case SUBTREE:
+                result = subtreePredicate(root, query, cb);
+                break;
+            case SEARCH:
+                result = searchPredicate(root, query, cb);
+                break;
         }
         return wrapAlternatives(result, root, query, cb);
     }
 
     private Predicate wrapAlternatives(Predicate result, Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
-        if (filterField.getAlternatives() == null || filterField.getAlternatives().size() == 0) {
+        if (alternatives.isEmpty()) {
             return result;
         } else {
-            List<SpecificationBuilder<T>> specificationBuilders = filterField.getAlternatives().stream().map(alternative -> {
-                SpecificationBuilder<T> builder = new SpecificationBuilder<>();
-                builder.with(alternative);
-                return builder;
-            }).collect(Collectors.toList());
-            List<Predicate> predicates = specificationBuilders.stream().map(specificationBuilder -> specificationBuilder.build().toPredicate(root, query, cb)).collect(Collectors.toList());
+            List<Predicate> predicates = alternatives.stream()
+                    .map(alternative -> alternative.toPredicate(root, query, cb)).collect(Collectors.toList());
             predicates.add(result);
             Predicate[] predicatesArray = predicates.toArray(new Predicate[0]);
             return cb.or(predicatesArray);
         }
     }
 
+    /**
+     * Keeps the rows whose asset or location (or the row itself when the field is id) is the given one or one of its
+     * descendants, using the closure tables
+     */
+    private Predicate subtreePredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        Path<?> path = getFieldPath(root);
+        Class<?> hierarchyType = path.getJavaType();
+        Path<?> idPath;
+        if (isInHierarchy(hierarchyType)) {
+            idPath = path.get("id");
+        } else if (isInHierarchy(root.getJavaType()) && fieldPaths.get(0).getField().equals("id")) {
+            hierarchyType = root.getJavaType();
+            idPath = path;
+        } else {
+            throw new CustomException("Subtree filters apply to an asset or a location: " + filterField.getField(),
+                    HttpStatus.BAD_REQUEST);
+        }
+        Subquery<Long> subtree = query.subquery(Long.class);
+        Root<?> closure;
+        if (Location.class.isAssignableFrom(hierarchyType)) {
+            closure = subtree.from(LocationClosure.class);
+        } else {
+            closure = subtree.from(AssetClosure.class);
+        }
+        subtree.select(closure.get("id").get("descendantId"))
+                .where(cb.equal(closure.get("id").get("ancestorId"), subtreeRootId));
+        return idPath.in(subtree);
+    }
+
+    private static boolean isInHierarchy(Class<?> type) {
+        return Location.class.isAssignableFrom(type) || Asset.class.isAssignableFrom(type);
+    }
+
+    private static Long getSubtreeRootId(Object value) {
+        try {
+            return Long.valueOf(String.valueOf(value));
+        } catch (NumberFormatException e) {
+            throw new CustomException("Invalid subtree root: " + value, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Full text search over the comma separated fields: every word must be contained in one of the fields. The LIKE
+     * predicates use the trigram indexes. Unless the page is sorted, the rows are ranked by their word similarity to
+     * the search.
+     */
+    private Predicate searchPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        List<Expression<String>> columns = fieldPaths.stream()
+                .map(fieldPath -> cb.lower(fieldPath.<String>resolve(root)))
+                .collect(Collectors.toList());
+        List<Predicate> wordPredicates = Arrays.stream(strToSearch.trim().split("\\s+"))
+                .filter(word -> !word.isEmpty())
+                .map(word -> cb.or(columns.stream().map(column -> cb.like(column, "%" + word + "%"))
+                        .toArray(Predicate[]::new)))
+                .collect(Collectors.toList());
+        if (!Long.class.equals(query.getResultType()) && !query.isDistinct()) {
+            Expression<Double> rank = null;
+            for (Expression<String> column : columns) {
+                Expression<Double> similarity = cb.function("word_similarity", Double.class,
+                        cb.literal(strToSearch), cb.coalesce(column, ""));
+                rank = rank == null ? similarity : cb.sum(rank, similarity);
+            }
+            query.orderBy(cb.desc(rank), cb.desc(root.get("id")));
+        }
+        return cb.and(wordPredicates.toArray(new Predicate[0]));
+    }
+
+    private boolean isJsDate() {
+        return EnumName.JS_DATE.equals(filterField.getEnumName());
+    }
+
     private Object getRealValue(EnumName enumName, Object value) {
         if (enumName == null) {
             return value;
@@ -126,15 +232,7 @@ public class WrapperSpecification<T> implements Specification<T> {
         return value;
     }
 
-    private Path<T> getFieldPath(Root<T> root, String field) {
-        // Split the field path using dot notation
-        String[] fieldNames = field.split("\\.");
-
-        // Traverse the field path to get the Path object
-        Path<T> path = root;
-        for (String fieldName : fieldNames) {
-            path = path.get(fieldName);
-        }
-        return path;
+    private <Y> Path<Y> getFieldPath(Root<T> root) {
+        return fieldPaths.get(0).resolve(root);
     }
 }
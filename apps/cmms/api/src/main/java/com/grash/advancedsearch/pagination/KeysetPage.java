@@ -0,0 +1,54 @@
+package com.grash.advancedsearch.pagination;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A page read with keyset pagination. The next page is requested with nextCursor, the total elements and pages are -1
+ * unless the total was counted.
+ */
+public class KeysetPage<T> extends PageImpl<T> {
+    private final String nextCursor;
+    private final Long total;
+
+    public KeysetPage(List<T> content, int pageSize, Sort sort, String nextCursor, Long total) {
+        super(content, PageRequest.of(0, pageSize, sort), total == null ? content.size() : total);
+        this.nextCursor = nextCursor;
+        this.total = total;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    @Override
+    public boolean isLast() {
+        return !hasNext();
+    }
+
+    @Override
+    public long getTotalElements() {
+        return total == null ? -1 : total;
+    }
+
+    @Override
+    public int getTotalPages() {
+        return total == null ? -1 : super.getTotalPages();
+    }
+
+    @Override
+    public <U> KeysetPage<U> map(Function<? super T, ? extends U> converter) {
+        return new KeysetPage<>(getContent().stream().map(converter).collect(Collectors.toList()), getSize(),
+                getSort(), nextCursor, total);
+    }
+}
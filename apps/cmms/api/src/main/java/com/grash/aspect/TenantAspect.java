@@ -21,11 +21,14 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.RequestBody;
 
 import javax.persistence.EntityManager;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.commons.lang3.reflect.FieldUtils.getAllFields;
 
@@ -34,7 +37,10 @@ import static org.apache.commons.lang3.reflect.FieldUtils.getAllFields;
 @RequiredArgsConstructor
 public class TenantAspect {
 
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
     private final EntityManager entityManager;
+    private final Map<Class<?>, List<MethodHandle>> referenceGetters = new ConcurrentHashMap<>();
     private static final ThreadLocal<Boolean> ignoreCompanyCheck = ThreadLocal.withInitial(() -> false);
 
     public static void disableCompanyCheck() {
@@ -51,43 +57,103 @@ public class TenantAspect {
         MethodSignature methodSignature = (MethodSignature) joinPoint.getSignature();
         Method method = methodSignature.getMethod();
         Parameter[] parameters = method.getParameters();
+        Map<Class<?>, Set<Long>> referencedIds = new HashMap<>();
         for (int i = 0; i < parameters.length; i++) {
             Parameter parameter = parameters[i];
             if (parameter.isAnnotationPresent(RequestBody.class)) {
                 Object arg = joinPoint.getArgs()[i]; // Get the requestBody
                 if (arg instanceof List) {
                     List<?> list = (List<?>) arg;
-                    list.forEach(this::validateObject);
+                    list.forEach(element -> collectReferences(element, referencedIds));
                 } else {
-                    validateObject(arg);
+                    collectReferences(arg, referencedIds);
                 }
             }
         }
+        if (referencedIds.isEmpty()) return;
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof CustomUserDetail)) return;
+        OwnUser user = ((CustomUserDetail) authentication.getPrincipal()).getUser();
+        if (user.getRole().getRoleType().equals(RoleType.ROLE_SUPER_ADMIN)) return;
+        referencedIds.forEach((entityClass, ids) -> validateCompany(entityClass, ids, user));
     }
 
-    private void validateObject(Object obj) {
-        Field[] fields = getAllFields(obj.getClass());
-        for (Field field : fields) {
-            field.setAccessible(true);
-            Object fieldValue = null;
+    private void collectReferences(Object obj, Map<Class<?>, Set<Long>> referencedIds) {
+        if (obj == null) return;
+        for (MethodHandle getter : getReferenceGetters(obj.getClass())) {
+            Object fieldValue;
             try {
-                fieldValue = field.get(obj); // Get the value of the field inside request body
-            } catch (IllegalAccessException e) {
+                fieldValue = getter.invoke(obj); // Get the value of the field inside request body
+            } catch (Throwable e) {
                 throw new RuntimeException(e);
             }
-            if (fieldValue instanceof List) {
-                List<?> list = (List<?>) fieldValue;
-                list.forEach(this::validateFieldElement);
+            if (fieldValue instanceof Collection) {
+                ((Collection<?>) fieldValue).forEach(element -> collectReference(element, referencedIds));
             } else {
-                validateFieldElement(fieldValue);
+                collectReference(fieldValue, referencedIds);
             }
         }
     }
 
-    private void validateFieldElement(Object object) {
-        if (object instanceof CompanyAudit) {
-            CompanyAudit companyAudit = (CompanyAudit) object;
-            entityManager.find(object.getClass(), companyAudit.getId()); // should fail here if from other company because of @PostLoad
+    /**
+     * The getters of the fields which can hold entity references, computed once per class
+     */
+    private List<MethodHandle> getReferenceGetters(Class<?> type) {
+        return referenceGetters.computeIfAbsent(type, key -> {
+            List<MethodHandle> getters = new ArrayList<>();
+            for (Field field : getAllFields(key)) {
+                Class<?> fieldType = field.getType();
+                if (Modifier.isStatic(field.getModifiers())
+                        || !(CompanyAudit.class.isAssignableFrom(fieldType)
+                        || fieldType.isAssignableFrom(CompanyAudit.class)
+                        || Collection.class.isAssignableFrom(fieldType))) continue;
+                field.setAccessible(true);
+                try {
+                    getters.add(MethodHandles.lookup().unreflectGetter(field));
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return getters;
+        });
+    }
+
+    private void collectReference(Object object, Map<Class<?>, Set<Long>> referencedIds) {
+        if (object instanceof CompanyAudit && ((CompanyAudit) object).getId() != null) {
+            referencedIds.computeIfAbsent(object.getClass(), key -> new HashSet<>())
+                    .add(((CompanyAudit) object).getId());
+        }
+    }
+
+    /**
+     * Checks the referenced entities of a type with one query, the files of the companies of the super account are
+     * also allowed like in {@link CompanyAudit#afterLoad()}
+     */
+    private void validateCompany(Class<?> entityClass, Set<Long> ids, OwnUser user) {
+        String entityName;
+        try {
+            entityName = entityManager.getMetamodel().entity(entityClass).getName();
+        } catch (IllegalArgumentException e) {
+            return; // a dto extending an entity, not a reference
+        }
+        Set<Long> companyIds = new HashSet<>();
+        companyIds.add(user.getCompany().getId());
+        if (File.class.isAssignableFrom(entityClass)) {
+            user.getSuperAccountRelations().forEach(relation ->
+                    companyIds.add(relation.getChildUser().getCompany().getId()));
+        }
+        List<Long> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += MAX_IDS_PER_QUERY) {
+            List<Long> forbiddenIds = entityManager.createQuery("SELECT e.id FROM " + entityName + " e WHERE e.id IN " +
+                            ":ids AND e.company.id NOT IN :companyIds", Long.class)
+                    .setParameter("ids", idList.subList(from, Math.min(from + MAX_IDS_PER_QUERY, idList.size())))
+                    .setParameter("companyIds", companyIds)
+                    .setMaxResults(1)
+                    .getResultList();
+            if (!forbiddenIds.isEmpty()) {
+                throw new CustomException("the user (id=" + user.getId() + ") is not authorized to use this object (" +
+                        entityClass + ") with id " + forbiddenIds.get(0), HttpStatus.FORBIDDEN);
+            }
         }
     }
 }
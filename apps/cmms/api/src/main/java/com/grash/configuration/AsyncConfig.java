@@ -1,24 +1,141 @@
 package com.grash.configuration;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * One bounded executor per workload so that a burst of one cannot starve the others, sized by {@link AsyncProperties}.
+ * Each executor publishes the async.executor.* metrics tagged with its name: queued and active tasks, rejected tasks,
+ * time spent in the queue and execution time.
+ */
 @Configuration
 @EnableAsync
+@RequiredArgsConstructor
 public class AsyncConfig implements AsyncConfigurer {
+    //resolved lazily since the async configurer is created with the bean post processors
+    private final ObjectProvider<AsyncProperties> asyncPropertiesProvider;
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
 
     @Override
     public Executor getAsyncExecutor() {
+        return generalExecutor();
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor generalExecutor() {
+        return executor("general", properties().getGeneral(), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Saves the notifications and sends them to the websocket subscribers, a full queue makes the caller send them
+     */
+    @Bean
+    public ThreadPoolTaskExecutor notificationExecutor() {
+        return executor("notification", properties().getNotification(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor emailExecutor() {
+        return executor("email", properties().getEmail(), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Sends the mobile push notifications, apart from the websocket fan-out since it waits on the push service
+     */
+    @Bean
+    public ThreadPoolTaskExecutor pushExecutor() {
+        return executor("push", properties().getPush(), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Runs the export jobs, bounded so that exports cannot starve the other async tasks. The rejected jobs stay
+     * pending and are queued again by {@link com.grash.job.ExportDispatchJob}
+     */
+    @Bean
+    public ThreadPoolTaskExecutor exportExecutor() {
+        return executor("export", properties().getExport(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Renders the work order reports of a batch, a full queue makes the requesting thread render the report itself
+     */
+    @Bean
+    public ThreadPoolTaskExecutor reportExecutor() {
+        return executor("report", properties().getReport(), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Runs the import jobs, a single thread per instance so that large imports do not compete for the connections. The
+     * rejected jobs stay pending and are queued again by {@link com.grash.job.ImportDispatchJob}
+     */
+    @Bean
+    public ThreadPoolTaskExecutor importExecutor() {
+        return executor("import", properties().getImports(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Reads the streamed uploads to the storage while the caller writes them. Without a queue capacity the tasks are
+     * handed off to a thread directly: a queued reader would leave the caller blocked on the pipe, so the upload is
+     * rejected when all the threads are busy.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor uploadExecutor() {
+        return executor("upload", properties().getUpload(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private AsyncProperties properties() {
+        return asyncPropertiesProvider.getObject();
+    }
+
+    private ThreadPoolTaskExecutor executor(String name, AsyncProperties.Pool pool,
+                                            RejectedExecutionHandler overflowPolicy) {
+        MeterRegistry meterRegistry = meterRegistryProvider.getObject();
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(3);
-        executor.setMaxPoolSize(3);
-        executor.setQueueCapacity(11);
-        executor.setThreadNamePrefix("MyExecutor-");
-        executor.initialize();
+        executor.setCorePoolSize(pool.getCoreSize());
+        executor.setMaxPoolSize(Math.max(pool.getCoreSize(), pool.getMaxSize()));
+        executor.setQueueCapacity(pool.getQueueCapacity());
+        executor.setThreadNamePrefix(Character.toUpperCase(name.charAt(0)) + name.substring(1) + "-");
+
+        Counter rejected = meterRegistry.counter("async.executor.rejected", "name", name);
+        executor.setRejectedExecutionHandler((task, threadPoolExecutor) -> {
+            rejected.increment();
+            overflowPolicy.rejectedExecution(task, threadPoolExecutor);
+        });
+        Timer queueTime = meterRegistry.timer("async.executor.queue.time", "name", name);
+        Timer executionTime = meterRegistry.timer("async.executor.execution.time", "name", name);
+        executor.setTaskDecorator(task -> {
+            long submittedAt = System.nanoTime();
+            return () -> {
+                long startedAt = System.nanoTime();
+                queueTime.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                try {
+                    task.run();
+                } finally {
+                    executionTime.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            };
+        });
+        Gauge.builder("async.executor.queued", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("async.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .tag("name", name)
+                .register(meterRegistry);
         return executor;
     }
-}
\ No newline at end of file
+}
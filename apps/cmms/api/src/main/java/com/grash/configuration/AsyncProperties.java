@@ -0,0 +1,36 @@
+package com.grash.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sizes of the executors of {@link AsyncConfig}, one per workload
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "async")
+public class AsyncProperties {
+    //the @Async methods without a named executor
+    private Pool general = new Pool(3, 3, 100);
+    //websocket fan-out of the notifications
+    private Pool notification = new Pool(4, 8, 1000);
+    private Pool email = new Pool(2, 4, 500);
+    private Pool push = new Pool(2, 4, 500);
+    private Pool export = new Pool(2, 2, 50);
+    private Pool report = new Pool(4, 4, 100);
+    private Pool imports = new Pool(1, 1, 50);
+    //reading side of the streamed storage uploads, no queue so the reader starts at once
+    private Pool upload = new Pool(4, 16, 0);
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Pool {
+        private int coreSize;
+        private int maxSize;
+        private int queueCapacity;
+    }
+}
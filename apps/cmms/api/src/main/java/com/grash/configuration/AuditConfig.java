@@ -1,6 +1,7 @@
 package com.grash.configuration;
 
 import com.grash.model.OwnUser;
+import com.grash.security.CustomUserDetail;
 import com.grash.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
@@ -34,6 +35,9 @@ public class AuditConfig {
                     || authentication instanceof AnonymousAuthenticationToken) {
                 return Optional.empty();
             }
+            if (authentication.getPrincipal() instanceof CustomUserDetail) {
+                return Optional.of(((CustomUserDetail) authentication.getPrincipal()).getUser().getId());
+            }
             String username = authentication.getName();
             return userService.findByEmail(username).map(OwnUser::getId);
         }
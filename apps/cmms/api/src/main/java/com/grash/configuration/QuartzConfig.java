@@ -1,6 +1,12 @@
 package com.grash.configuration;
 
+import com.grash.job.AnalyticsRollupJob;
 import com.grash.job.DeleteDemoCompaniesJob;
+import com.grash.job.ExportDispatchJob;
+import com.grash.job.ImportDispatchJob;
+import com.grash.job.ReadingMaintenanceJob;
+import com.grash.job.ReadingRollupJob;
+import com.grash.job.ScheduleSweepJob;
 import org.quartz.*;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,4 +31,112 @@ public class QuartzConfig {
                         .repeatForever())
                 .build();
     }
+
+    @Bean
+    public JobDetail analyticsRollupJobDetail() {
+        return JobBuilder.newJob(AnalyticsRollupJob.class)
+                .withIdentity("analyticsRollupJob")
+                .storeDurably()
+                .build();
+    }
+    @Bean
+    public Trigger analyticsRollupTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(analyticsRollupJobDetail())
+                .withIdentity("analyticsRollupTrigger")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInMinutes(1)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail scheduleSweepJobDetail() {
+        return JobBuilder.newJob(ScheduleSweepJob.class)
+                .withIdentity("scheduleSweepJob")
+                .storeDurably()
+                .build();
+    }
+    @Bean
+    public Trigger scheduleSweepTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(scheduleSweepJobDetail())
+                .withIdentity("scheduleSweepTrigger")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInMinutes(1)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail readingRollupJobDetail() {
+        return JobBuilder.newJob(ReadingRollupJob.class)
+                .withIdentity("readingRollupJob")
+                .storeDurably()
+                .build();
+    }
+    @Bean
+    public Trigger readingRollupTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(readingRollupJobDetail())
+                .withIdentity("readingRollupTrigger")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInMinutes(1)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail readingMaintenanceJobDetail() {
+        return JobBuilder.newJob(ReadingMaintenanceJob.class)
+                .withIdentity("readingMaintenanceJob")
+                .storeDurably()
+                .build();
+    }
+    @Bean
+    public Trigger readingMaintenanceTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(readingMaintenanceJobDetail())
+                .withIdentity("readingMaintenanceTrigger")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInHours(1)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail exportDispatchJobDetail() {
+        return JobBuilder.newJob(ExportDispatchJob.class)
+                .withIdentity("exportDispatchJob")
+                .storeDurably()
+                .build();
+    }
+    @Bean
+    public Trigger exportDispatchTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(exportDispatchJobDetail())
+                .withIdentity("exportDispatchTrigger")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInMinutes(1)
+                        .repeatForever())
+                .build();
+    }
+
+    @Bean
+    public JobDetail importDispatchJobDetail() {
+        return JobBuilder.newJob(ImportDispatchJob.class)
+                .withIdentity("importDispatchJob")
+                .storeDurably()
+                .build();
+    }
+    @Bean
+    public Trigger importDispatchTrigger() {
+        return TriggerBuilder.newTrigger()
+                .forJob(importDispatchJobDetail())
+                .withIdentity("importDispatchTrigger")
+                .withSchedule(SimpleScheduleBuilder.simpleSchedule()
+                        .withIntervalInMinutes(1)
+                        .repeatForever())
+                .build();
+    }
 }
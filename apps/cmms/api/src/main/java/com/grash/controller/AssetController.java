@@ -4,6 +4,7 @@ import com.grash.advancedsearch.SearchCriteria;
 import com.grash.dto.AssetMiniDTO;
 import com.grash.dto.AssetPatchDTO;
 import com.grash.dto.AssetShowDTO;
+import com.grash.dto.ChildCounts;
 import com.grash.dto.SuccessResponse;
 import com.grash.dto.license.LicenseEntitlement;
 import com.grash.exception.CustomException;
@@ -135,7 +136,7 @@ public class AssetController {
         OwnUser user = userService.whoami(req);
         Optional<Location> optionalLocation = locationService.findById(id);
         if (optionalLocation.isPresent()) {
-            return assetService.findByLocation(id).stream().map(asset -> assetMapper.toShowDto(asset, assetService)).collect(Collectors.toList());
+            return toShowDtos(assetService.findByLocation(id));
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
 
@@ -150,7 +151,7 @@ public class AssetController {
         OwnUser user = userService.whoami(req);
         Optional<Part> optionalPart = partService.findById(id);
         if (optionalPart.isPresent()) {
-            return optionalPart.get().getAssets().stream().map(asset -> assetMapper.toShowDto(asset, assetService)).collect(Collectors.toList());
+            return toShowDtos(optionalPart.get().getAssets());
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
 
@@ -165,14 +166,13 @@ public class AssetController {
                                               HttpServletRequest req) {
         OwnUser user = userService.whoami(req);
         if (id.equals(0L) && user.getRole().getRoleType().equals(RoleType.ROLE_CLIENT)) {
-            return assetService.findByCompanyAndParentAssetNull(user.getCompany().getId(), pageable).stream().map(asset -> assetMapper.toShowDto(asset, assetService)).collect(Collectors.toList());
+            return toShowDtos(assetService.findByCompanyAndParentAssetNull(user.getCompany().getId(), pageable));
         }
         Optional<Asset> optionalAsset = assetService.findById(id);
         if (optionalAsset.isPresent()) {
             Asset savedAsset = optionalAsset.get();
             if (user.getRole().getViewPermissions().contains(PermissionEntity.ASSETS)) {
-                return assetService.findAssetChildren(id, pageable.getSort()).stream().map(asset -> assetMapper.toShowDto(asset,
-                        assetService)).collect(Collectors.toList());
+                return toShowDtos(assetService.findAssetChildren(id, pageable.getSort()));
             } else throw new CustomException("Access denied", HttpStatus.FORBIDDEN);
 
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
@@ -292,4 +292,8 @@ public class AssetController {
         } else throw new CustomException("Asset not found", HttpStatus.NOT_FOUND);
     }
 
+    private List<AssetShowDTO> toShowDtos(Collection<Asset> assets) {
+        ChildCounts childCounts = assetService.getChildCounts(assets);
+        return assets.stream().map(asset -> assetMapper.toShowDto(asset, childCounts)).collect(Collectors.toList());
+    }
 }
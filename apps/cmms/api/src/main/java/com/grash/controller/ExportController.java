@@ -4,11 +4,11 @@ import com.grash.dto.SuccessResponse;
 import com.grash.exception.CustomException;
 import com.grash.factory.StorageServiceFactory;
 import com.grash.model.OwnUser;
+import com.grash.model.enums.ExportJobType;
 import com.grash.model.enums.PermissionEntity;
-import com.grash.service.*;
-import com.grash.utils.CsvFileGenerator;
+import com.grash.service.ExportService;
+import com.grash.service.UserService;
 import com.grash.utils.Helper;
-import com.grash.utils.MultipartFileImpl;
 import io.swagger.annotations.Api;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -18,27 +18,18 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
-import java.io.ByteArrayOutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
 
 @RestController
 @RequestMapping("/export")
 @Api(tags = "export")
 @RequiredArgsConstructor
-@Transactional
+@Transactional(readOnly = true)
 public class ExportController {
 
-    private final AssetService assetService;
-    private final MeterService meterService;
     private final UserService userService;
-    private final LocationService locationService;
-    private final PartService partService;
-    private final WorkOrderService workOrderService;
-    private final CsvFileGenerator csvFileGenerator;
+    private final ExportService exportService;
     private final StorageServiceFactory storageServiceFactory;
 
     @GetMapping("/work-orders")
@@ -47,16 +38,7 @@ public class ExportController {
         OwnUser user = userService.whoami(req);
 
         if (user.getRole().getViewOtherPermissions().contains(PermissionEntity.WORK_ORDERS)) {
-            ByteArrayOutputStream target = new ByteArrayOutputStream();
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(target, StandardCharsets.UTF_8);
-            csvFileGenerator.writeWorkOrdersToCsv(workOrderService.findByCompany(user.getCompany().getId()),
-                    outputStreamWriter, Helper.getLocale(user));
-            byte[] bytes = target.toByteArray();
-            MultipartFile file = new MultipartFileImpl(bytes, "Work Orders.csv");
-            return ResponseEntity.ok()
-                    .body(new SuccessResponse(true, storageServiceFactory.getStorageService().uploadAndSign(file,
-                            user.getCompany().getId() + "/exports" +
-                                    "/work-orders")));
+            return ResponseEntity.ok().body(new SuccessResponse(true, export(ExportJobType.WORK_ORDERS, user)));
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
     }
 
@@ -66,16 +48,7 @@ public class ExportController {
         OwnUser user = userService.whoami(req);
 
         if (user.getRole().getViewOtherPermissions().contains(PermissionEntity.ASSETS)) {
-            ByteArrayOutputStream target = new ByteArrayOutputStream();
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(target, StandardCharsets.UTF_8);
-            csvFileGenerator.writeAssetsToCsv(assetService.findByCompany(user.getCompany().getId()),
-                    outputStreamWriter, Helper.getLocale(user));
-            byte[] bytes = target.toByteArray();
-            MultipartFile file = new MultipartFileImpl(bytes, "Assets.csv");
-            return ResponseEntity.ok()
-                    .body(new SuccessResponse(true, storageServiceFactory.getStorageService().uploadAndSign(file,
-                            user.getCompany().getId() + "/exports" +
-                                    "/assets")));
+            return ResponseEntity.ok().body(new SuccessResponse(true, export(ExportJobType.ASSETS, user)));
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
     }
 
@@ -85,16 +58,7 @@ public class ExportController {
         OwnUser user = userService.whoami(req);
 
         if (user.getRole().getViewOtherPermissions().contains(PermissionEntity.LOCATIONS)) {
-            ByteArrayOutputStream target = new ByteArrayOutputStream();
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(target, StandardCharsets.UTF_8);
-            csvFileGenerator.writeLocationsToCsv(locationService.findByCompany(user.getCompany().getId()),
-                    outputStreamWriter, Helper.getLocale(user));
-            byte[] bytes = target.toByteArray();
-            MultipartFile file = new MultipartFileImpl(bytes, "Locations.csv");
-            return ResponseEntity.ok()
-                    .body(new SuccessResponse(true, storageServiceFactory.getStorageService().uploadAndSign(file,
-                            user.getCompany().getId() + "/exports" +
-                                    "/locations")));
+            return ResponseEntity.ok().body(new SuccessResponse(true, export(ExportJobType.LOCATIONS, user)));
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
     }
 
@@ -104,16 +68,7 @@ public class ExportController {
         OwnUser user = userService.whoami(req);
 
         if (user.getRole().getViewOtherPermissions().contains(PermissionEntity.PARTS_AND_MULTIPARTS)) {
-            ByteArrayOutputStream target = new ByteArrayOutputStream();
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(target, StandardCharsets.UTF_8);
-            csvFileGenerator.writePartsToCsv(partService.findByCompany(user.getCompany().getId()), outputStreamWriter
-                    , Helper.getLocale(user));
-            byte[] bytes = target.toByteArray();
-            MultipartFile file = new MultipartFileImpl(bytes, "Parts.csv");
-            return ResponseEntity.ok()
-                    .body(new SuccessResponse(true, storageServiceFactory.getStorageService().uploadAndSign(file,
-                            user.getCompany().getId() + "/exports" +
-                                    "/parts")));
+            return ResponseEntity.ok().body(new SuccessResponse(true, export(ExportJobType.PARTS, user)));
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
     }
 
@@ -123,16 +78,14 @@ public class ExportController {
         OwnUser user = userService.whoami(req);
 
         if (user.getRole().getViewOtherPermissions().contains(PermissionEntity.METERS)) {
-            ByteArrayOutputStream target = new ByteArrayOutputStream();
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(target, StandardCharsets.UTF_8);
-            csvFileGenerator.writeMetersToCsv(meterService.findByCompany(user.getCompany().getId()),
-                    outputStreamWriter, Helper.getLocale(user));
-            byte[] bytes = target.toByteArray();
-            MultipartFile file = new MultipartFileImpl(bytes, "Meters.csv");
-            return ResponseEntity.ok()
-                    .body(new SuccessResponse(true, storageServiceFactory.getStorageService().uploadAndSign(file,
-                            user.getCompany().getId() + "/exports" +
-                                    "/meters")));
+            return ResponseEntity.ok().body(new SuccessResponse(true, export(ExportJobType.METERS, user)));
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
     }
+
+    private String export(ExportJobType type, OwnUser user) {
+        String filePath = exportService.exportCsv(type, user.getCompany().getId(), Helper.getLocale(user),
+                progress -> {
+                });
+        return storageServiceFactory.getStorageService().generateSignedUrl(filePath, 10);
+    }
 }
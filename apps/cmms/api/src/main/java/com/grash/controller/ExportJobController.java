@@ -0,0 +1,81 @@
+package com.grash.controller;
+
+import com.grash.dto.ExportJobShowDTO;
+import com.grash.exception.CustomException;
+import com.grash.mapper.ExportJobMapper;
+import com.grash.model.ExportJob;
+import com.grash.model.OwnUser;
+import com.grash.model.WorkOrder;
+import com.grash.model.enums.ExportJobType;
+import com.grash.model.enums.PermissionEntity;
+import com.grash.service.ExportJobService;
+import com.grash.service.UserService;
+import com.grash.service.WorkOrderService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiParam;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.transaction.Transactional;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/export-jobs")
+@Api(tags = "exportJob")
+@RequiredArgsConstructor
+@Transactional
+public class ExportJobController {
+
+    private final ExportJobService exportJobService;
+    private final ExportJobMapper exportJobMapper;
+    private final UserService userService;
+    private final WorkOrderService workOrderService;
+
+    @PostMapping("/{type}")
+    @PreAuthorize("hasRole('ROLE_CLIENT')")
+    public ResponseEntity<ExportJobShowDTO> submit(@ApiParam("type") @PathVariable("type") ExportJobType type,
+                                                   @RequestParam(value = "resourceId", required = false) Long resourceId,
+                                                   HttpServletRequest req) {
+        OwnUser user = userService.whoami(req);
+        if (canExport(user, type, resourceId)) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(exportJobMapper.toShowDto(exportJobService.submit(type, resourceId)));
+        } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('ROLE_CLIENT')")
+    public ExportJobShowDTO getById(@ApiParam("id") @PathVariable("id") Long id, HttpServletRequest req) {
+        OwnUser user = userService.whoami(req);
+        Optional<ExportJob> optionalExportJob = exportJobService.findByIdAndCompany(id, user.getCompany().getId());
+        if (optionalExportJob.isPresent() && user.getId().equals(optionalExportJob.get().getCreatedBy())) {
+            return exportJobMapper.toShowDto(optionalExportJob.get());
+        } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
+    }
+
+    private boolean canExport(OwnUser user, ExportJobType type, Long resourceId) {
+        switch (type) {
+            case WORK_ORDERS:
+                return user.getRole().getViewOtherPermissions().contains(PermissionEntity.WORK_ORDERS);
+            case ASSETS:
+                return user.getRole().getViewOtherPermissions().contains(PermissionEntity.ASSETS);
+            case LOCATIONS:
+                return user.getRole().getViewOtherPermissions().contains(PermissionEntity.LOCATIONS);
+            case PARTS:
+                return user.getRole().getViewOtherPermissions().contains(PermissionEntity.PARTS_AND_MULTIPARTS);
+            case METERS:
+                return user.getRole().getViewOtherPermissions().contains(PermissionEntity.METERS);
+            case WORK_ORDER_REPORT:
+                if (resourceId == null) throw new CustomException("resourceId is required", HttpStatus.BAD_REQUEST);
+                WorkOrder workOrder = workOrderService.findByIdAndCompany(resourceId, user.getCompany().getId())
+                        .orElseThrow(() -> new CustomException("Not found", HttpStatus.NOT_FOUND));
+                return workOrderService.canSeeReport(workOrder, user);
+            default:
+                return false;
+        }
+    }
+}
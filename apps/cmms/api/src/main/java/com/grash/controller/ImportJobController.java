@@ -0,0 +1,102 @@
+package com.grash.controller;
+
+import com.grash.dto.ImportJobShowDTO;
+import com.grash.exception.CustomException;
+import com.grash.mapper.ImportJobMapper;
+import com.grash.model.ImportJob;
+import com.grash.model.OwnUser;
+import com.grash.model.enums.ImportEntity;
+import com.grash.model.enums.ImportJobStatus;
+import com.grash.model.enums.PermissionEntity;
+import com.grash.model.enums.PlanFeatures;
+import com.grash.service.ImportJobService;
+import com.grash.service.UserService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiParam;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.transaction.Transactional;
+import java.util.Locale;
+
+@RestController
+@RequestMapping("/import-jobs")
+@Api(tags = "importJob")
+@RequiredArgsConstructor
+@Transactional
+public class ImportJobController {
+
+    private final ImportJobService importJobService;
+    private final ImportJobMapper importJobMapper;
+    private final UserService userService;
+
+    @PostMapping(value = "/{importEntity}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ROLE_CLIENT')")
+    public ResponseEntity<ImportJobShowDTO> submit(@ApiParam("importEntity") @PathVariable("importEntity") ImportEntity importEntity,
+                                                   @RequestPart("file") MultipartFile file,
+                                                   @RequestParam(value = "headerMapping", required = false) String headerMapping,
+                                                   HttpServletRequest req) {
+        OwnUser user = userService.whoami(req);
+        if (canImport(user, importEntity)) {
+            if (file.getOriginalFilename() == null || !file.getOriginalFilename().toLowerCase(Locale.ROOT).endsWith(
+                    ".csv"))
+                throw new CustomException("Only csv files can be imported", HttpStatus.BAD_REQUEST);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(importJobMapper.toShowDto(
+                    importJobService.submit(importEntity, file, headerMapping, user.getCompany())));
+        } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole('ROLE_CLIENT')")
+    public ImportJobShowDTO getById(@ApiParam("id") @PathVariable("id") Long id, HttpServletRequest req) {
+        OwnUser user = userService.whoami(req);
+        return importJobMapper.toShowDto(getOwnJob(id, user));
+    }
+
+    @PostMapping("/{id}/resume")
+    @PreAuthorize("hasRole('ROLE_CLIENT')")
+    public ResponseEntity<ImportJobShowDTO> resume(@ApiParam("id") @PathVariable("id") Long id,
+                                                   HttpServletRequest req) {
+        OwnUser user = userService.whoami(req);
+        ImportJob importJob = getOwnJob(id, user);
+        if (importJob.getStatus() == ImportJobStatus.COMPLETE)
+            throw new CustomException("The import is already complete", HttpStatus.NOT_ACCEPTABLE);
+        if (canImport(user, importJob.getImportEntity())) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(importJobMapper.toShowDto(importJobService.resume(importJob)));
+        } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
+    }
+
+    private ImportJob getOwnJob(Long id, OwnUser user) {
+        return importJobService.findByIdAndCompany(id, user.getCompany().getId())
+                .filter(importJob -> user.getId().equals(importJob.getCreatedBy()))
+                .orElseThrow(() -> new CustomException("Not found", HttpStatus.NOT_FOUND));
+    }
+
+    private boolean canImport(OwnUser user, ImportEntity importEntity) {
+        if (!user.getCompany().getSubscription().getSubscriptionPlan().getFeatures().contains(PlanFeatures.IMPORT_CSV))
+            return false;
+        switch (importEntity) {
+            case WORK_ORDER:
+                return user.getRole().getCreatePermissions().contains(PermissionEntity.WORK_ORDERS);
+            case ASSET:
+                return user.getRole().getCreatePermissions().contains(PermissionEntity.ASSETS);
+            case LOCATION:
+                return user.getRole().getCreatePermissions().contains(PermissionEntity.LOCATIONS);
+            case PART:
+                return user.getRole().getCreatePermissions().contains(PermissionEntity.PARTS_AND_MULTIPARTS);
+            case METER:
+                return user.getRole().getCreatePermissions().contains(PermissionEntity.METERS);
+            case PREVENTIVE_MAINTENANCE:
+                return user.getRole().getCreatePermissions().contains(PermissionEntity.PREVENTIVE_MAINTENANCES);
+            default:
+                return false;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.grash.controller;
 
 import com.grash.advancedsearch.SearchCriteria;
+import com.grash.dto.ChildCounts;
 import com.grash.dto.LocationMiniDTO;
 import com.grash.dto.LocationPatchDTO;
 import com.grash.dto.LocationShowDTO;
@@ -56,11 +57,11 @@ public class LocationController {
         OwnUser user = userService.whoami(req);
         if (user.getRole().getRoleType().equals(RoleType.ROLE_CLIENT)) {
             if (user.getRole().getViewPermissions().contains(PermissionEntity.LOCATIONS)) {
-                return locationService.findByCompany(user.getCompany().getId()).stream().filter(location -> {
+                return toShowDtos(locationService.findByCompany(user.getCompany().getId()).stream().filter(location -> {
                     boolean canViewOthers =
                             user.getRole().getViewOtherPermissions().contains(PermissionEntity.LOCATIONS);
                     return canViewOthers || location.getCreatedBy().equals(user.getId());
-                }).map(location -> locationMapper.toShowDto(location, locationService)).collect(Collectors.toList());
+                }).collect(Collectors.toList()));
             } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
         } else
             return locationService.getAll().stream().map(location -> locationMapper.toShowDto(location,
@@ -96,13 +97,13 @@ public class LocationController {
         //only sort is used
         OwnUser user = userService.whoami(req);
         if (id.equals(0L) && user.getRole().getRoleType().equals(RoleType.ROLE_CLIENT)) {
-            return locationService.findByCompany(user.getCompany().getId(), pageable.getSort()).stream().filter(location -> location.getParentLocation() == null).map(location -> locationMapper.toShowDto(location, locationService)).collect(Collectors.toList());
+            return toShowDtos(locationService.findByCompany(user.getCompany().getId(), pageable.getSort()).stream().filter(location -> location.getParentLocation() == null).collect(Collectors.toList()));
         }
         Optional<Location> optionalLocation = locationService.findById(id);
         if (optionalLocation.isPresent()) {
             Location savedLocation = optionalLocation.get();
             if (user.getRole().getViewPermissions().contains(PermissionEntity.LOCATIONS)) {
-                return locationService.findLocationChildren(id, pageable.getSort()).stream().map(location -> locationMapper.toShowDto(location, locationService)).collect(Collectors.toList());
+                return toShowDtos(locationService.findLocationChildren(id, pageable.getSort()));
             } else throw new CustomException("Access denied", HttpStatus.FORBIDDEN);
 
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
@@ -198,4 +199,9 @@ public class LocationController {
         } else throw new CustomException("Location not found", HttpStatus.NOT_FOUND);
     }
 
+    private List<LocationShowDTO> toShowDtos(Collection<Location> locations) {
+        ChildCounts childCounts = locationService.getChildCounts(locations);
+        return locations.stream().map(location -> locationMapper.toShowDto(location, childCounts))
+                .collect(Collectors.toList());
+    }
 }
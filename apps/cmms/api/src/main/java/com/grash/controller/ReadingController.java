@@ -1,29 +1,30 @@
 package com.grash.controller;
 
+import com.grash.dto.DateRange;
+import com.grash.dto.ReadingIngestDTO;
+import com.grash.dto.ReadingIngestResponse;
 import com.grash.dto.ReadingPatchDTO;
+import com.grash.dto.ReadingSeriesDTO;
 import com.grash.dto.SuccessResponse;
 import com.grash.exception.CustomException;
 import com.grash.model.*;
-import com.grash.model.enums.NotificationType;
-import com.grash.model.enums.WorkOrderMeterTriggerCondition;
 import com.grash.service.*;
-import com.grash.utils.AuditComparator;
 import com.grash.utils.Helper;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.RequiredArgsConstructor;
-import org.springframework.context.MessageSource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/readings")
@@ -34,10 +35,9 @@ public class ReadingController {
     private final MeterService meterService;
     private final ReadingService readingService;
     private final UserService userService;
-    private final WorkOrderMeterTriggerService workOrderMeterTriggerService;
-    private final NotificationService notificationService;
-    private final WorkOrderService workOrderService;
-    private final MessageSource messageSource;
+    private final ReadingIngestionService readingIngestionService;
+    private final ReadingSeriesService readingSeriesService;
+    private final MeterTriggerEngine meterTriggerEngine;
 
 
     @GetMapping("/meter/{id}")
@@ -54,6 +54,24 @@ public class ReadingController {
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
 
+    @PostMapping("/meter/{id}/series")
+    @PreAuthorize("permitAll()")
+    @ApiResponses(value = {//
+            @ApiResponse(code = 500, message = "Something went wrong"),
+            @ApiResponse(code = 403, message = "Access denied"),
+            @ApiResponse(code = 404, message = "Meter not found")})
+    public ReadingSeriesDTO getSeriesByMeter(@ApiParam("id") @PathVariable("id") Long id,
+                                             @Valid @RequestBody DateRange dateRange,
+                                             @RequestParam(value = "maxPoints", defaultValue = "1000") int maxPoints,
+                                             HttpServletRequest req) {
+        OwnUser user = userService.whoami(req);
+        Optional<Meter> optionalMeter = meterService.findByIdAndCompany(id, user.getCompany().getId());
+        if (optionalMeter.isPresent()) {
+            return readingSeriesService.getSeries(optionalMeter.get(), dateRange.getStart(), dateRange.getEnd(),
+                    maxPoints);
+        } else throw new CustomException("Meter not found", HttpStatus.NOT_FOUND);
+    }
+
     @PostMapping("")
     @PreAuthorize("hasRole('ROLE_CLIENT')")
     @ApiResponses(value = {//
@@ -64,44 +82,41 @@ public class ReadingController {
         Optional<Meter> optionalMeter = meterService.findById(readingReq.getMeter().getId());
         if (optionalMeter.isPresent()) {
             Meter meter = optionalMeter.get();
-            Collection<Reading> readings = readingService.findByMeter(readingReq.getMeter().getId());
-            if (!readings.isEmpty()) {
-                Reading lastReading = Collections.max(readings, new AuditComparator());
-                Date nextReading = Helper.incrementDays(lastReading.getCreatedAt(), meter.getUpdateFrequency());
+            if (meter.getLastReadingAt() != null) {
+                Date nextReading = Helper.incrementDays(meter.getLastReadingAt(), meter.getUpdateFrequency());
                 if (new Date().before(nextReading)) {
                     throw new CustomException("The update frequency has not been respected", HttpStatus.NOT_ACCEPTABLE);
                 }
             }
-            Collection<WorkOrderMeterTrigger> meterTriggers = workOrderMeterTriggerService.findByMeter(meter.getId());
-            Locale locale = Helper.getLocale(user);
-            meterTriggers.forEach(meterTrigger -> {
-                boolean error = false;
-                StringBuilder message = new StringBuilder();
-                String title = messageSource.getMessage("new_wo", null, locale);
-                Object[] notificationArgs = new Object[]{meter.getName(), meterTrigger.getValue(), meter.getUnit()};
-                if (meterTrigger.getTriggerCondition().equals(WorkOrderMeterTriggerCondition.LESS_THAN)) {
-                    if (readingReq.getValue() < meterTrigger.getValue()) {
-                        error = true;
-                        message.append(messageSource.getMessage("notification_reading_less_than", notificationArgs,
-                                locale));
-                    }
-                } else if (readingReq.getValue() > meterTrigger.getValue()) {
-                    error = true;
-                    message.append(messageSource.getMessage("notification_reading_more_than", notificationArgs,
-                            locale));
-                }
-                if (error) {
-                    notificationService.createMultiple(meter.getUsers().stream().map(user1 ->
-                            new Notification(message.toString(), user1, NotificationType.METER, meter.getId())
-                    ).collect(Collectors.toList()), true, title);
-                    WorkOrder workOrder = workOrderService.getWorkOrderFromWorkOrderBase(meterTrigger);
-                    workOrderService.create(workOrder, user.getCompany());
-                }
-            });
+            meterTriggerEngine.evaluate(meter, Collections.singletonList(readingReq.getValue()), user.getCompany(),
+                    Helper.getLocale(user));
             return readingService.create(readingReq);
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
 
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ROLE_CLIENT')")
+    @ApiResponses(value = {//
+            @ApiResponse(code = 500, message = "Something went wrong"), //
+            @ApiResponse(code = 403, message = "Access denied"), //
+            @ApiResponse(code = 413, message = "Too many readings")})
+    public ReadingIngestResponse createBatch(@ApiParam("Readings") @RequestBody List<ReadingIngestDTO> readings,
+                                             HttpServletRequest req) {
+        OwnUser user = userService.whoami(req);
+        return readingIngestionService.ingest(readings, user);
+    }
+
+    @PostMapping(value = "/batch", consumes = ReadingIngestionService.NDJSON)
+    @PreAuthorize("hasRole('ROLE_CLIENT')")
+    @ApiResponses(value = {//
+            @ApiResponse(code = 500, message = "Something went wrong"), //
+            @ApiResponse(code = 403, message = "Access denied"), //
+            @ApiResponse(code = 413, message = "Too many readings")})
+    public ReadingIngestResponse createBatchNdjson(HttpServletRequest req) throws IOException {
+        OwnUser user = userService.whoami(req);
+        return readingIngestionService.ingest(readingIngestionService.parseNdjson(req.getInputStream()), user);
+    }
+
     @PatchMapping("/{id}")
     @PreAuthorize("hasRole('ROLE_CLIENT')")
     @ApiResponses(value = {//
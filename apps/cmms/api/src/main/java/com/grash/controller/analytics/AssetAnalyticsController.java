@@ -2,17 +2,19 @@ package com.grash.controller.analytics;
 
 import com.grash.dto.DateRange;
 import com.grash.dto.analytics.assets.*;
+import com.grash.dto.analytics.workOrders.WOCosts;
 import com.grash.exception.CustomException;
 import com.grash.model.Asset;
 import com.grash.model.AssetDowntime;
 import com.grash.model.OwnUser;
 import com.grash.model.WorkOrder;
 import com.grash.model.enums.PermissionEntity;
-import com.grash.model.enums.Status;
 import com.grash.security.CurrentUser;
+import com.grash.service.AssetAnalyticsService;
 import com.grash.service.AssetDowntimeService;
 import com.grash.service.AssetService;
 import com.grash.service.UserService;
+import com.grash.service.WorkOrderCostService;
 import com.grash.service.WorkOrderService;
 import com.grash.utils.AuditComparator;
 import com.grash.utils.Helper;
@@ -43,6 +45,8 @@ public class AssetAnalyticsController {
     private final UserService userService;
     private final AssetService assetService;
     private final AssetDowntimeService assetDowntimeService;
+    private final AssetAnalyticsService assetAnalyticsService;
+    private final WorkOrderCostService workOrderCostService;
 
     @PostMapping("/time-cost")
     @PreAuthorize("hasRole('ROLE_CLIENT')")
@@ -55,17 +59,16 @@ public class AssetAnalyticsController {
         if (user.canSeeAnalytics()) {
             Collection<Asset> assets = assetService.findByCompanyAndBefore(user.getCompany().getId(),
                     dateRange.getEnd());
+            Map<Long, AssetCostSummary> costs =
+                    assetAnalyticsService.getCompleteWorkOrderCosts(user.getCompany().getId(), dateRange);
+            boolean includeLaborCost =
+                    user.getCompany().getCompanySettings().getGeneralPreferences().isLaborCostInTotalCost();
             Collection<TimeCostByAsset> result = new ArrayList<>();
             assets.forEach(asset -> {
-                Collection<WorkOrder> completeWO = workOrderService.findByAssetAndCreatedAtBetween(asset.getId(),
-                                dateRange.getStart(), dateRange.getEnd())
-                        .stream().filter(workOrder -> workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList());
-                long time = workOrderService.getLaborCostAndTime(completeWO).getSecond();
-                double cost = workOrderService.getAllCost(completeWO,
-                        user.getCompany().getCompanySettings().getGeneralPreferences().isLaborCostInTotalCost());
+                AssetCostSummary cost = costs.getOrDefault(asset.getId(), new AssetCostSummary());
                 result.add(TimeCostByAsset.builder()
-                        .time(time)
-                        .cost(cost)
+                        .time(cost.getLaborTime())
+                        .cost(cost.getTotalCost(includeLaborCost))
                         .name(asset.getName())
                         .id(asset.getId())
                         .build());
@@ -111,15 +114,13 @@ public class AssetAnalyticsController {
         if (user.canSeeAnalytics()) {
             Collection<Asset> assets = assetService.findByCompanyAndBefore(user.getCompany().getId(),
                     dateRange.getEnd());
+            Map<Long, AssetDowntimeSummary> downtimes =
+                    assetAnalyticsService.getDowntimes(user.getCompany().getId(), dateRange);
             return ResponseEntity.ok(assets.stream().map(asset -> {
-                Collection<AssetDowntime> downtimes =
-                        assetDowntimeService.findByAssetAndStartsOnBetween(asset.getId(), dateRange.getStart(),
-                                dateRange.getEnd());
-                long downtimesDuration =
-                        downtimes.stream().mapToLong(assetDowntime -> assetDowntime.getDateRangeDuration(dateRange)).sum();
-                long percent = downtimesDuration * 100 / getLivingTime(asset, dateRange);
+                AssetDowntimeSummary downtime = downtimes.getOrDefault(asset.getId(), new AssetDowntimeSummary());
+                long percent = downtime.getDuration() * 100 / getLivingTime(asset, dateRange);
                 return DowntimesByAsset.builder()
-                        .count(downtimes.size())
+                        .count(downtime.getCount())
                         .percent(percent)
                         .id(asset.getId())
                         .name(asset.getName())
@@ -139,8 +140,10 @@ public class AssetAnalyticsController {
         if (user.canSeeAnalytics()) {
             Collection<Asset> assets = assetService.findByCompanyAndBefore(user.getCompany().getId(),
                     dateRange.getEnd());
+            Map<Long, AssetDowntimeSummary> downtimes =
+                    assetAnalyticsService.getDowntimes(user.getCompany().getId(), dateRange);
             return ResponseEntity.ok(assets.stream().map(asset -> MTBFByAsset.builder()
-                    .mtbf(assetService.getMTBF(asset.getId(), dateRange.getStart(), dateRange.getEnd()))
+                    .mtbf(downtimes.getOrDefault(asset.getId(), new AssetDowntimeSummary()).getMtbf())
                     .id(asset.getId())
                     .name(asset.getName())
                     .build()).collect(Collectors.toList()));
@@ -188,15 +191,12 @@ public class AssetAnalyticsController {
         if (user.canSeeAnalytics()) {
             Collection<Asset> assets = assetService.findByCompanyAndBefore(user.getCompany().getId(),
                     dateRange.getEnd());
-            return ResponseEntity.ok(assets.stream().map(asset -> {
-                Collection<WorkOrder> completeWO = workOrderService.findByAssetAndCreatedAtBetween(asset.getId(),
-                        dateRange.getStart(), dateRange.getEnd()).stream().filter(workOrder -> workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList());
-                return RepairTimeByAsset.builder()
-                        .id(asset.getId())
-                        .name(asset.getName())
-                        .duration(WorkOrder.getAverageAge(completeWO))
-                        .build();
-            }).collect(Collectors.toList()));
+            Map<Long, Long> repairTimes = assetAnalyticsService.getRepairTimes(user.getCompany().getId(), dateRange);
+            return ResponseEntity.ok(assets.stream().map(asset -> RepairTimeByAsset.builder()
+                    .id(asset.getId())
+                    .name(asset.getName())
+                    .duration(repairTimes.getOrDefault(asset.getId(), 0L))
+                    .build()).collect(Collectors.toList()));
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
     }
 
@@ -251,9 +251,13 @@ public class AssetAnalyticsController {
                     assets.stream().filter(asset -> asset.getAcquisitionCost() != null).collect(Collectors.toList());
             double totalAcquisitionCost =
                     assetsWithAcquisitionCost.stream().mapToDouble(Asset::getAcquisitionCost).sum();
-            double totalWOCosts = getCompleteWOCosts(assets, includeLaborCost, dateRange);
-            double rav = assetsWithAcquisitionCost.isEmpty() ? 0 : getCompleteWOCosts(assetsWithAcquisitionCost,
-                    includeLaborCost, dateRange) * 100 / totalAcquisitionCost;
+            Map<Long, AssetCostSummary> costs =
+                    assetAnalyticsService.getCompleteWorkOrderCosts(user.getCompany().getId(), dateRange);
+            double totalWOCosts = assetAnalyticsService.getTotalCost(costs,
+                    assets.stream().map(Asset::getId).collect(Collectors.toList()), includeLaborCost);
+            double rav = assetsWithAcquisitionCost.isEmpty() ? 0 : assetAnalyticsService.getTotalCost(costs,
+                    assetsWithAcquisitionCost.stream().map(Asset::getId).collect(Collectors.toList()),
+                    includeLaborCost) * 100 / totalAcquisitionCost;
             return ResponseEntity.ok(AssetsCosts.builder()
                     .totalWOCosts(totalWOCosts)
                     .totalAcquisitionCost(totalAcquisitionCost)
@@ -272,19 +276,19 @@ public class AssetAnalyticsController {
         if (user.canSeeAnalytics()) {
             Collection<Asset> assets = assetService.findByCompanyAndBefore(user.getCompany().getId(),
                     dateRange.getEnd());
+            boolean includeLaborCost =
+                    user.getCompany().getCompanySettings().getGeneralPreferences().isLaborCostInTotalCost();
+            Map<Long, AssetDowntimeSummary> downtimes = assetAnalyticsService.getDowntimes(
+                    assetDowntimeService.findByCompany(user.getCompany().getId()), dateRange);
+            Map<Long, AssetCostSummary> costs =
+                    assetAnalyticsService.getCompleteWorkOrderCosts(user.getCompany().getId(), dateRange);
             return ResponseEntity.ok(assets.stream().map(asset -> {
-                Collection<AssetDowntime> downtimes = assetDowntimeService.findByAsset(asset.getId()).stream()
-                        .filter(assetDowntime -> assetDowntime.getDuration() != 0).collect(Collectors.toList());
-                long downtimesDuration =
-                        downtimes.stream().mapToLong(assetDowntime -> assetDowntime.getDateRangeDuration(dateRange)).sum();
-                double totalWOCosts = getCompleteWOCosts(Collections.singleton(asset),
-                        user.getCompany().getCompanySettings().getGeneralPreferences().isLaborCostInTotalCost(),
-                        dateRange);
+                AssetCostSummary cost = costs.getOrDefault(asset.getId(), new AssetCostSummary());
                 return DowntimesAndCostsByAsset.builder()
                         .id(asset.getId())
                         .name(asset.getName())
-                        .duration(downtimesDuration)
-                        .workOrdersCosts(totalWOCosts)
+                        .duration(downtimes.getOrDefault(asset.getId(), new AssetDowntimeSummary()).getDuration())
+                        .workOrdersCosts(cost.getTotalCost(includeLaborCost))
                         .build();
             }).collect(Collectors.toList()));
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
@@ -312,17 +316,13 @@ public class AssetAnalyticsController {
                 LocalDate nextDate = currentDate.plusDays(totalDaysInRange / points); // Distribute evenly over the
                 // range
                 nextDate = nextDate.isAfter(endDateLocale) ? endDateLocale : nextDate; // Adjust for the end date
-                Collection<WorkOrder> completeWorkOrders =
-                        workOrderService.findByCompletedOnBetweenAndCompany(Helper.localDateToDate(currentDate),
-                                        Helper.localDateToDate(nextDate), user.getCompany().getId())
-                                .stream().filter(workOrder -> workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList());
-                Collection<AssetDowntime> downtimes =
-                        assetDowntimeService.findByStartsOnBetweenAndCompany(Helper.localDateToDate(currentDate),
-                                Helper.localDateToDate(nextDate), user.getCompany().getId());
+                WOCosts costs = workOrderCostService.getCompleteCosts(user.getCompany().getId(),
+                        Helper.localDateToDate(currentDate), Helper.localDateToDate(nextDate));
                 result.add(DowntimesByDate.builder()
-                        .workOrdersCosts(workOrderService.getAllCost(completeWorkOrders,
+                        .workOrdersCosts(costs.getTotalCost(
                                 user.getCompany().getCompanySettings().getGeneralPreferences().isLaborCostInTotalCost()))
-                        .duration(downtimes.stream().mapToLong(AssetDowntime::getDuration).sum())
+                        .duration(assetAnalyticsService.getDowntimeDuration(user.getCompany().getId(), currentDate,
+                                nextDate))
                         .date(Helper.localDateToDate(currentDate)).build());
                 currentDate = nextDate;
             }
@@ -355,11 +355,6 @@ public class AssetAnalyticsController {
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
     }
 
-    private double getCompleteWOCosts(Collection<Asset> assets, boolean includeLaborCost, DateRange dateRange) {
-        return assets.stream().map(asset -> workOrderService.findByAssetAndCreatedAtBetween(asset.getId(),
-                dateRange.getStart(), dateRange.getEnd()).stream().filter(workOrder -> workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList())).mapToDouble(workOrder -> workOrderService.getAllCost(workOrder, includeLaborCost)).sum();
-    }
-
     private long getLivingTime(Asset asset, DateRange dateRange) {
         return Helper.getDateDiff(asset.getRealCreatedAt()
                 .before(dateRange.getStart()) ? dateRange.getStart()
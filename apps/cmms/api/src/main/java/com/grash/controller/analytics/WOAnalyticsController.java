@@ -4,19 +4,14 @@ import com.grash.dto.DateRange;
 import com.grash.dto.analytics.workOrders.*;
 import com.grash.exception.CustomException;
 import com.grash.model.*;
-import com.grash.model.abstracts.Time;
-import com.grash.model.abstracts.WorkOrderBase;
 import com.grash.model.enums.Priority;
 import com.grash.model.enums.Status;
-import com.grash.model.envers.WorkOrderAud;
-import com.grash.repository.WorkOrderAudRepository;
 import com.grash.security.CurrentUser;
 import com.grash.service.*;
 import com.grash.utils.Helper;
 import io.swagger.annotations.Api;
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.util.Pair;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -41,11 +36,12 @@ import java.util.stream.Collectors;
 public class WOAnalyticsController {
 
     private final WorkOrderService workOrderService;
-    private final WorkOrderAudRepository workOrderAudRepository;
+    private final WorkOrderStatusTimelineService workOrderStatusTimelineService;
     private final UserService userService;
-    private final LaborService laborService;
     private final WorkOrderCategoryService workOrderCategoryService;
     private final AssetService assetService;
+    private final WorkOrderAnalyticsService workOrderAnalyticsService;
+    private final WorkOrderCostService workOrderCostService;
 
     @PostMapping("/complete/overview")
     @PreAuthorize("hasRole('ROLE_CLIENT')")
@@ -56,24 +52,16 @@ public class WOAnalyticsController {
     public ResponseEntity<WOStats> getCompleteStats(@ApiIgnore @CurrentUser OwnUser user,
                                                     @RequestBody DateRange dateRange) {
         if (user.canSeeAnalytics()) {
-            Collection<WorkOrder> workOrders =
-                    workOrderService.findByCompanyAndCreatedAtBetween(user.getCompany().getId(), dateRange.getStart()
-                            , dateRange.getEnd());
-            Collection<WorkOrder> completedWO =
-                    workOrders.stream().filter(workOrder -> workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList());
-            Collection<WorkOrder> withFirstTimeToReactWO =
-                    workOrders.stream().filter(workOrder -> workOrder.getFirstTimeToReact() != null).collect(Collectors.toList());
-            int total = workOrders.size();
-            int complete = completedWO.size();
-            int compliant = (int) completedWO.stream().filter(WorkOrder::isCompliant).count();
-            long mtta = withFirstTimeToReactWO.isEmpty() ? 0 : withFirstTimeToReactWO.stream().mapToLong(workOrder ->
-                    Helper.getDateDiff(workOrder.getCreatedAt(), workOrder.getFirstTimeToReact(), TimeUnit.HOURS)).sum() / withFirstTimeToReactWO.size();
+            WOOverviewAggregate overview = workOrderAnalyticsService.getOverview(user.getCompany().getId(),
+                    dateRange.getStart(), dateRange.getEnd());
+            long mtta = overview.getReacted() == 0 ? 0 : overview.getReactionTime() / overview.getReacted();
+            long avgCycleTime = overview.getCycled() == 0 ? 0 : overview.getCycleTime() / overview.getCycled();
             return ResponseEntity.ok(WOStats.builder()
-                    .total(total)
-                    .complete(complete)
-                    .compliant(compliant)
+                    .total(overview.getTotal().intValue())
+                    .complete(overview.getComplete().intValue())
+                    .compliant(overview.getCompliant().intValue())
                     .mtta(mtta)
-                    .avgCycleTime(WorkOrder.getAverageAge(completedWO)).build());
+                    .avgCycleTime(avgCycleTime).build());
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
     }
 
@@ -151,15 +139,10 @@ public class WOAnalyticsController {
     public ResponseEntity<WOIncompleteStats> getIncompleteStats(@ApiIgnore @CurrentUser OwnUser user,
                                                                 @RequestBody DateRange dateRange) {
         if (user.canSeeAnalytics()) {
-            Collection<WorkOrder> workOrders =
-                    workOrderService.findByCompanyAndCreatedAtBetween(user.getCompany().getId(), dateRange.getStart()
-                            , dateRange.getEnd());
-            Collection<WorkOrder> incompleteWO =
-                    workOrders.stream().filter(workOrder -> !workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList());
-            int total = incompleteWO.size();
-            List<Long> ages = incompleteWO.stream().map(workOrder -> Helper.getDateDiff(workOrder.getRealCreatedAt(),
-                    new Date(), TimeUnit.DAYS)).collect(Collectors.toList());
-            int averageAge = ages.size() == 0 ? 0 : ages.stream().mapToInt(Long::intValue).sum() / ages.size();
+            WOOverviewAggregate overview = workOrderAnalyticsService.getOverview(user.getCompany().getId(),
+                    dateRange.getStart(), dateRange.getEnd());
+            int total = overview.getIncomplete().intValue();
+            int averageAge = total == 0 ? 0 : (int) (overview.getIncompleteAge() / total);
             return ResponseEntity.ok(WOIncompleteStats.builder()
                     .total(total)
                     .averageAge(averageAge)
@@ -176,11 +159,7 @@ public class WOAnalyticsController {
     public ResponseEntity<WOStatsByPriority> getIncompleteByPriority(@ApiIgnore @CurrentUser OwnUser user,
                                                                      @RequestBody DateRange dateRange) {
         if (user.canSeeAnalytics()) {
-            Collection<WorkOrder> workOrders =
-                    workOrderService.findByCompanyAndCreatedAtBetween(user.getCompany().getId(), dateRange.getStart()
-                            , dateRange.getEnd());
-            Collection<WorkOrder> incompleteWO =
-                    workOrders.stream().filter(workOrder -> !workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList());
+            Collection<WOStatusPriorityCount> incompleteWO = getIncompleteCounts(user, dateRange);
 
             Pair<Integer, Double> highValues = getCountsAndEstimatedDurationByPriority(Priority.HIGH, incompleteWO);
             Pair<Integer, Double> noneValues = getCountsAndEstimatedDurationByPriority(Priority.NONE, incompleteWO);
@@ -227,11 +206,7 @@ public class WOAnalyticsController {
     public ResponseEntity<WOStatuses> getWOStatuses(@ApiIgnore @CurrentUser OwnUser user,
                                                     @RequestBody DateRange dateRange) {
         if (user.canSeeAnalytics()) {
-            Collection<WorkOrder> workOrders =
-                    workOrderService.findByCompanyAndCreatedAtBetween(user.getCompany().getId(), dateRange.getStart()
-                            , dateRange.getEnd());
-            Collection<WorkOrder> incompleteWO =
-                    workOrders.stream().filter(workOrder -> !workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList());
+            Collection<WOStatusPriorityCount> incompleteWO = getIncompleteCounts(user, dateRange);
 
             return ResponseEntity.ok(WOStatuses.builder()
                     .open(getWOCountsByStatus(Status.OPEN, incompleteWO))
@@ -253,17 +228,16 @@ public class WOAnalyticsController {
         if (user.canSeeAnalytics()) {
             Collection<Asset> assets = assetService.findByCompanyAndBefore(user.getCompany().getId(),
                     dateRange.getEnd());
+            Map<Long, WOGroupAge> agesByAsset =
+                    workOrderAnalyticsService.getIncompleteAgeByAsset(user.getCompany().getId(),
+                            dateRange.getStart(), dateRange.getEnd());
             Collection<IncompleteWOByAsset> result = new ArrayList<>();
             assets.forEach(asset -> {
-                Collection<WorkOrder> incompleteWO = workOrderService.findByAssetAndCreatedAtBetween(asset.getId(),
-                                dateRange.getStart(), dateRange.getEnd())
-                        .stream().filter(workOrder -> !workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList());
-                List<Long> ages = incompleteWO.stream().map(workOrder -> Helper.getDateDiff(workOrder.getCreatedAt(),
-                        new Date(), TimeUnit.DAYS)).collect(Collectors.toList());
-                int count = incompleteWO.size();
+                WOGroupAge groupAge = agesByAsset.get(asset.getId());
+                int count = groupAge == null ? 0 : groupAge.getCount().intValue();
                 result.add(IncompleteWOByAsset.builder()
                         .count(count)
-                        .averageAge(count == 0 ? 0 : ages.stream().mapToLong(value -> value).sum() / count)
+                        .averageAge(count == 0 ? 0 : groupAge.getAge() / count)
                         .name(asset.getName())
                         .id(asset.getId())
                         .build());
@@ -311,14 +285,11 @@ public class WOAnalyticsController {
     )
     public ResponseEntity<WOHours> getHours(@ApiIgnore @CurrentUser OwnUser user, @RequestBody DateRange dateRange) {
         if (user.canSeeAnalytics()) {
-            Collection<WorkOrder> workOrders =
-                    workOrderService.findByCompanyAndCreatedAtBetween(user.getCompany().getId(), dateRange.getStart()
-                            , dateRange.getEnd());
-            double estimated =
-                    workOrders.stream().map(WorkOrderBase::getEstimatedDuration).mapToDouble(value -> value).sum();
-            Collection<Labor> labors = new ArrayList<>();
-            workOrders.forEach(workOrder -> labors.addAll(laborService.findByWorkOrder(workOrder.getId())));
-            int actual = labors.stream().map(Labor::getDuration).mapToInt(Math::toIntExact).sum() / 3600;
+            double estimated = workOrderAnalyticsService.countByStatusAndPriority(user.getCompany().getId(),
+                            dateRange.getStart(), dateRange.getEnd()).stream()
+                    .mapToDouble(WOStatusPriorityCount::getEstimatedDuration).sum();
+            int actual = (int) (workOrderCostService.getCreatedLaborTime(user.getCompany().getId(),
+                    dateRange.getStart(), dateRange.getEnd()) / 3600);
             return ResponseEntity.ok(WOHours.builder()
                     .estimated(estimated)
                     .actual(actual)
@@ -362,11 +333,11 @@ public class WOAnalyticsController {
                                                                             @RequestBody DateRange dateRange) {
         if (user.canSeeAnalytics()) {
             Collection<OwnUser> users = userService.findWorkersByCompany(user.getCompany().getId());
+            Map<Long, Long> countsByUser = workOrderAnalyticsService.countCompleteByCompletedBy(
+                    user.getCompany().getId(), dateRange.getStart(), dateRange.getEnd());
             Collection<WOCountByUser> results = new ArrayList<>();
             users.forEach(user1 -> {
-                int count = (int) workOrderService.findByCompletedByAndCreatedAtBetween(user1.getId(),
-                                dateRange.getStart(), dateRange.getEnd()).stream()
-                        .filter(workOrder -> workOrder.getStatus().equals(Status.COMPLETE)).count();
+                int count = countsByUser.getOrDefault(user1.getId(), 0L).intValue();
                 results.add(WOCountByUser.builder()
                         .firstName(user1.getFirstName())
                         .lastName(user1.getLastName())
@@ -389,12 +360,12 @@ public class WOAnalyticsController {
         if (user.canSeeAnalytics()) {
             Priority[] priorities = Priority.values();
             Map<Priority, Integer> results = new HashMap<>();
-            Arrays.asList(priorities).forEach(priority -> {
-                int count = (int) workOrderService.findByPriorityAndCompanyAndCreatedAtBetween(priority,
-                                user.getCompany().getId(), dateRange.getStart(), dateRange.getEnd()).stream()
-                        .filter(workOrder -> workOrder.getStatus().equals(Status.COMPLETE)).count();
-                results.put(priority, count);
-            });
+            Arrays.asList(priorities).forEach(priority -> results.put(priority, 0));
+            workOrderAnalyticsService.countByStatusAndPriority(user.getCompany().getId(), dateRange.getStart(),
+                            dateRange.getEnd()).stream()
+                    .filter(statusPriorityCount -> Status.COMPLETE.equals(statusPriorityCount.getStatus()))
+                    .forEach(statusPriorityCount -> results.merge(statusPriorityCount.getPriority(),
+                            statusPriorityCount.getCount().intValue(), Integer::sum));
             return ResponseEntity.ok(results);
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
     }
@@ -410,11 +381,11 @@ public class WOAnalyticsController {
         if (user.canSeeAnalytics()) {
             Collection<WorkOrderCategory> categories =
                     workOrderCategoryService.findByCompanySettings(user.getCompany().getCompanySettings().getId());
+            Map<Long, Long> countsByCategory = workOrderAnalyticsService.countCompleteByCategory(
+                    user.getCompany().getId(), dateRange.getStart(), dateRange.getEnd());
             Collection<WOCountByCategory> results = new ArrayList<>();
             categories.forEach(category -> {
-                int count = (int) workOrderService.findByCategoryAndCreatedAtBetween(category.getId(),
-                                dateRange.getStart(), dateRange.getEnd()).stream()
-                        .filter(workOrder -> workOrder.getStatus().equals(Status.COMPLETE)).count();
+                int count = countsByCategory.getOrDefault(category.getId(), 0L).intValue();
                 results.add(WOCountByCategory.builder()
                         .name(category.getName())
                         .id(category.getId())
@@ -438,15 +409,14 @@ public class WOAnalyticsController {
                     LocalDate.now(ZoneId.of("UTC"));
             // .with(TemporalAdjusters.previous(DayOfWeek.MONDAY));
             for (int i = 0; i < 5; i++) {
-                Collection<WorkOrder> completeWorkOrders =
-                        workOrderService.findByCompletedOnBetweenAndCompany(Helper.localDateToDate(previousMonday.minusDays(7)), Helper.localDateToDate(previousMonday), user.getCompany().getId())
-                                .stream().filter(workOrder -> workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList());
-                int compliant = (int) completeWorkOrders.stream().filter(WorkOrder::isCompliant).count();
-                int reactive = (int) completeWorkOrders.stream().filter(WorkOrder::isReactive).count();
+                WOCompletionAggregate completion =
+                        workOrderAnalyticsService.getCompletion(user.getCompany().getId(),
+                                Helper.localDateToDate(previousMonday.minusDays(7)),
+                                Helper.localDateToDate(previousMonday));
                 result.add(WOCountByWeek.builder()
-                        .count(completeWorkOrders.size())
-                        .compliant(compliant)
-                        .reactive(reactive)
+                        .count(completion.getCount().intValue())
+                        .compliant(completion.getCompliant().intValue())
+                        .reactive(completion.getReactive().intValue())
                         .date(Helper.localDateToDate(previousMonday)).build());
                 previousMonday = previousMonday.minusDays(7);
             }
@@ -496,21 +466,17 @@ public class WOAnalyticsController {
     public ResponseEntity<WOCostsAndTime> getCompleteCostsAndTime(@ApiIgnore @CurrentUser OwnUser user,
                                                                   @RequestBody DateRange dateRange) {
         if (user.canSeeAnalytics()) {
-            Collection<WorkOrder> completeWorkOrders = workOrderService.findByCompanyAndCreatedAtBetween(
-                    user.getCompany().getId(), dateRange.getStart(), dateRange.getEnd()).stream().filter(workOrder -> workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList());
-            double additionalCost = workOrderService.getAdditionalCost(completeWorkOrders);
-            long laborCost = workOrderService.getLaborCostAndTime(completeWorkOrders).getFirst();
-            long laborTime = workOrderService.getLaborCostAndTime(completeWorkOrders).getSecond();
-            double partCost = workOrderService.getPartCost(completeWorkOrders);
-            double total = laborCost + partCost + additionalCost;
+            WOCostsAggregate costs = workOrderAnalyticsService.getCompleteCosts(user.getCompany().getId(),
+                    dateRange.getStart(), dateRange.getEnd());
+            double total = costs.getLaborCost() + costs.getPartCost() + costs.getAdditionalCost();
 
             return ResponseEntity.ok(WOCostsAndTime.builder()
                     .total(total)
-                    .average(completeWorkOrders.size() == 0 ? 0 : total / completeWorkOrders.size())
-                    .additionalCost(additionalCost)
-                    .laborCost(laborCost)
-                    .partCost(partCost)
-                    .laborTime(laborTime)
+                    .average(costs.getCount() == 0 ? 0 : total / costs.getCount())
+                    .additionalCost(costs.getAdditionalCost())
+                    .laborCost(costs.getLaborCost())
+                    .partCost(costs.getPartCost())
+                    .laborTime(costs.getLaborTime())
                     .build());
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
     }
@@ -537,14 +503,12 @@ public class WOAnalyticsController {
                 LocalDate nextDate = currentDate.plusDays(totalDaysInRange / points); // Distribute evenly over the
                 // range
                 nextDate = nextDate.isAfter(endDateLocale) ? endDateLocale : nextDate; // Adjust for the end date
-                Collection<WorkOrder> completeWorkOrders =
-                        workOrderService.findByCompletedOnBetweenAndCompany(Helper.localDateToDate(currentDate),
-                                        Helper.localDateToDate(nextDate), user.getCompany().getId())
-                                .stream().filter(workOrder -> workOrder.getStatus().equals(Status.COMPLETE)).collect(Collectors.toList());
+                WOCosts costs = workOrderCostService.getCompleteCosts(user.getCompany().getId(),
+                        Helper.localDateToDate(currentDate), Helper.localDateToDate(nextDate));
                 result.add(WOCostsByDate.builder()
-                        .additionalCost(workOrderService.getAdditionalCost(completeWorkOrders))
-                        .laborCost(workOrderService.getLaborCostAndTime(completeWorkOrders).getFirst())
-                        .partCost(workOrderService.getPartCost(completeWorkOrders))
+                        .additionalCost(costs.getAdditionalCost())
+                        .laborCost(costs.getLaborCost())
+                        .partCost(costs.getPartCost())
                         .date(Helper.localDateToDate(currentDate)).build());
                 currentDate = nextDate;
             }
@@ -570,55 +534,55 @@ public class WOAnalyticsController {
                     endDateExclusive);
             int points = Math.toIntExact(Math.min(15, totalDaysInRange));
 
+            List<Pair<Date, Date>> segments = new ArrayList<>();
             for (int i = 0; i < points; i++) {
                 LocalDate nextDate = currentDate.plusDays(totalDaysInRange / points); // Distribute evenly over the
                 // range
                 nextDate = nextDate.isAfter(endDateLocale) ? endDateLocale : nextDate; // Adjust for the end date
-                Collection<WorkOrder> workOrders =
-                        workOrderService.findByCompanyAndCreatedAtBetween(user.getCompany().getId(),
-                                dateRange.getStart(), Helper.localDateToDate(nextDate));
-                LocalDate finalNextDate = nextDate;
-                Collection<Status> statuses = workOrders.stream().map(workOrder -> {
-                    List<WorkOrderAud> workOrderAuds = workOrderAudRepository.findLastByIdAndDate(workOrder.getId(),
-                            Helper.localDateToDate(finalNextDate).getTime(), PageRequest.of(0, 1));
-                    if (workOrderAuds.isEmpty()) return workOrder.getStatus();
-                    else return workOrderAuds.get(0).getStatus();
-                }).filter(Objects::nonNull).collect(Collectors.toList());
-
-                result.add(WOStatusesByDate.builder()
-                        .open((int) statuses.stream().filter(status -> status.equals(Status.OPEN)).count())
-                        .onHold((int) statuses.stream().filter(status -> status.equals(Status.ON_HOLD)).count())
-                        .inProgress((int) statuses.stream().filter(status -> status.equals(Status.IN_PROGRESS)).count())
-                        .complete((int) statuses.stream().filter(status -> status.equals(Status.COMPLETE)).count())
-                        .date(Helper.localDateToDate(currentDate))
-                        .build());
+                segments.add(Pair.of(Helper.localDateToDate(currentDate), Helper.localDateToDate(nextDate)));
                 currentDate = nextDate; // Move to the next segment
             }
+            Map<Date, Map<Status, Long>> countsByInstant =
+                    workOrderStatusTimelineService.countByStatusAt(user.getCompany().getId(), dateRange.getStart(),
+                            segments.stream().map(Pair::getSecond).collect(Collectors.toList()));
+            segments.forEach(segment -> {
+                Map<Status, Long> counts = countsByInstant.get(segment.getSecond());
+                result.add(WOStatusesByDate.builder()
+                        .open(counts.getOrDefault(Status.OPEN, 0L).intValue())
+                        .onHold(counts.getOrDefault(Status.ON_HOLD, 0L).intValue())
+                        .inProgress(counts.getOrDefault(Status.IN_PROGRESS, 0L).intValue())
+                        .complete(counts.getOrDefault(Status.COMPLETE, 0L).intValue())
+                        .date(segment.getFirst())
+                        .build());
+            });
             return ResponseEntity.ok(result);
         } else throw new CustomException("Access Denied", HttpStatus.FORBIDDEN);
     }
 
+    private Collection<WOStatusPriorityCount> getIncompleteCounts(OwnUser user, DateRange dateRange) {
+        return workOrderAnalyticsService.countByStatusAndPriority(user.getCompany().getId(), dateRange.getStart(),
+                        dateRange.getEnd()).stream()
+                .filter(statusPriorityCount -> !Status.COMPLETE.equals(statusPriorityCount.getStatus()))
+                .collect(Collectors.toList());
+    }
+
     private Pair<Integer, Double> getCountsAndEstimatedDurationByPriority(Priority priority,
-                                                                          Collection<WorkOrder> workOrders) {
-        Collection<WorkOrder> priorityWO =
-                workOrders.stream().filter(workOrder -> workOrder.getPriority().equals(priority)).collect(Collectors.toList());
-        int priorityCounts = priorityWO.size();
+                                                                          Collection<WOStatusPriorityCount> counts) {
+        Collection<WOStatusPriorityCount> priorityCounts =
+                counts.stream().filter(statusPriorityCount -> priority.equals(statusPriorityCount.getPriority())).collect(Collectors.toList());
+        int count = priorityCounts.stream().mapToInt(statusPriorityCount -> statusPriorityCount.getCount().intValue()).sum();
         double priorityEstimatedDurations =
-                priorityWO.stream().map(WorkOrderBase::getEstimatedDuration).mapToDouble(value -> value).sum();
-        return Pair.of(priorityCounts, priorityEstimatedDurations);
+                priorityCounts.stream().mapToDouble(WOStatusPriorityCount::getEstimatedDuration).sum();
+        return Pair.of(count, priorityEstimatedDurations);
     }
 
-    private int getWOCountsByStatus(Status status, Collection<WorkOrder> workOrders) {
-        Collection<WorkOrder> statusWO =
-                workOrders.stream().filter(workOrder -> workOrder.getStatus().equals(status)).collect(Collectors.toList());
-        return statusWO.size();
+    private int getWOCountsByStatus(Status status, Collection<WOStatusPriorityCount> counts) {
+        return counts.stream().filter(statusPriorityCount -> status.equals(statusPriorityCount.getStatus()))
+                .mapToInt(statusPriorityCount -> statusPriorityCount.getCount().intValue()).sum();
     }
 
     private long getTime(Collection<WorkOrder> workOrders) {
-        Collection<Labor> labors = new ArrayList<>();
-        workOrders.forEach(workOrder -> {
-            labors.addAll(laborService.findByWorkOrder(workOrder.getId()));
-        });
-        return labors.stream().mapToLong(Time::getDuration).sum();
+        return workOrderCostService.getLaborTime(workOrders.stream().map(WorkOrder::getId)
+                .collect(Collectors.toList()));
     }
 }
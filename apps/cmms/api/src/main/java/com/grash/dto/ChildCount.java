@@ -0,0 +1,10 @@
+package com.grash.dto;
+
+/**
+ * Number of direct children of an asset or a location
+ */
+public interface ChildCount {
+    Long getId();
+
+    Long getCount();
+}
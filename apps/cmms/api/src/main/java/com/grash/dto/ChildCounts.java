@@ -0,0 +1,21 @@
+package com.grash.dto;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Direct children counts of a page of assets or locations, loaded with one grouped query and passed to the mappers
+ * instead of counting the children of each row
+ */
+public class ChildCounts {
+    private final Map<Long, Long> counts = new HashMap<>();
+
+    public ChildCounts(Collection<ChildCount> childCounts) {
+        childCounts.forEach(childCount -> counts.put(childCount.getId(), childCount.getCount()));
+    }
+
+    public boolean hasChildren(Long id) {
+        return counts.getOrDefault(id, 0L) > 0;
+    }
+}
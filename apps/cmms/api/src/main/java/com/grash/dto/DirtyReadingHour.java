@@ -0,0 +1,11 @@
+package com.grash.dto;
+
+import java.util.Date;
+
+public interface DirtyReadingHour {
+    Long getMeterId();
+
+    Date getHour();
+
+    long getVersion();
+}
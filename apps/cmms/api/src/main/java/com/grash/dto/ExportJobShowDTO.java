@@ -0,0 +1,27 @@
+package com.grash.dto;
+
+import com.grash.model.enums.ExportJobStatus;
+import com.grash.model.enums.ExportJobType;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.Date;
+
+@Data
+@EqualsAndHashCode(callSuper = false)
+public class ExportJobShowDTO extends AuditShowDTO {
+    private ExportJobType type;
+
+    private ExportJobStatus status;
+
+    private Long resourceId;
+
+    private int progress;
+
+    private String error;
+
+    private Date completedOn;
+
+    //signed url of the file once complete
+    private String url;
+}
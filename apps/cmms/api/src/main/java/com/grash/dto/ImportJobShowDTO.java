@@ -0,0 +1,29 @@
+package com.grash.dto;
+
+import com.grash.model.enums.ImportEntity;
+import com.grash.model.enums.ImportJobStatus;
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+public class ImportJobShowDTO extends AuditShowDTO {
+    private ImportEntity importEntity;
+
+    private ImportJobStatus status;
+
+    private int processedRows;
+
+    private int created;
+
+    private int updated;
+
+    private int failed;
+
+    private String error;
+
+    private Date completedOn;
+
+    //signed url of the failed rows once complete
+    private String errorFileUrl;
+}
@@ -26,4 +26,6 @@ public class MeterPatchDTO {
 
     private Collection<OwnUser> users;
 
+    private Integer readingRetentionDays;
+
 }
@@ -31,5 +31,9 @@ public class MeterShowDTO extends AuditShowDTO {
 
     private Date lastReading;
 
+    private Double lastReadingValue;
+
     private Date nextReading;
+
+    private Integer readingRetentionDays;
 }
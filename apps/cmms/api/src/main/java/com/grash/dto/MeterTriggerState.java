@@ -0,0 +1,13 @@
+package com.grash.dto;
+
+import java.util.Date;
+
+public interface MeterTriggerState {
+    Long getId();
+
+    Boolean getTriggered();
+
+    Date getLastTriggeredAt();
+
+    Integer getConsecutiveBreaches();
+}
@@ -0,0 +1,22 @@
+package com.grash.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadingIngestDTO {
+
+    private Long meterId;
+
+    private Double value;
+
+    /**
+     * When the value was sampled, the reception date if missing
+     */
+    private Date timestamp;
+}
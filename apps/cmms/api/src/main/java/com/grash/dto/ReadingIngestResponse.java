@@ -0,0 +1,16 @@
+package com.grash.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@Builder
+@AllArgsConstructor
+public class ReadingIngestResponse {
+    private int accepted;
+    private int duplicates;
+    private int rejected;
+}
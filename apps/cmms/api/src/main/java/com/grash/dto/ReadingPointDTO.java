@@ -0,0 +1,18 @@
+package com.grash.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadingPointDTO {
+    private Date date;
+    private double min;
+    private double max;
+    private double avg;
+    private long count;
+}
@@ -0,0 +1,16 @@
+package com.grash.dto;
+
+import com.grash.model.enums.ReadingResolution;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadingSeriesDTO {
+    private ReadingResolution resolution;
+    private List<ReadingPointDTO> points;
+}
@@ -17,4 +17,10 @@ public class WorkOrderMeterTriggerPatchDTO extends WorkOrderBasePatchDTO {
 
     private int waitBefore;
 
+    private Double hysteresis;
+
+    private Integer debounceCount;
+
+    private Integer cooldownMinutes;
+
 }
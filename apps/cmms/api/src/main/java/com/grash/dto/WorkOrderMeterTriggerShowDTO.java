@@ -4,6 +4,8 @@ import com.grash.model.enums.WorkOrderMeterTriggerCondition;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Date;
+
 @Data
 @NoArgsConstructor
 public class WorkOrderMeterTriggerShowDTO extends WorkOrderBaseShowDTO {
@@ -17,4 +19,14 @@ public class WorkOrderMeterTriggerShowDTO extends WorkOrderBaseShowDTO {
 
     private int waitBefore;
 
+    private double hysteresis;
+
+    private int debounceCount;
+
+    private int cooldownMinutes;
+
+    private boolean triggered;
+
+    private Date lastTriggeredAt;
+
 }
@@ -0,0 +1,22 @@
+package com.grash.dto;
+
+import com.grash.model.enums.ReportFormat;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Selects the work orders of a batch report, either by their ids or by their completion date
+ */
+@Data
+@NoArgsConstructor
+public class WorkOrderReportRequest {
+    private List<Long> ids;
+    private Date completedStart;
+    private Date completedEnd;
+    @NotNull
+    private ReportFormat format = ReportFormat.PDF;
+}
@@ -0,0 +1,13 @@
+package com.grash.dto.analytics;
+
+import java.util.Date;
+
+public interface DirtyRollupDay {
+    Long getId();
+
+    Long getCompanyId();
+
+    Date getDay();
+
+    String getType();
+}
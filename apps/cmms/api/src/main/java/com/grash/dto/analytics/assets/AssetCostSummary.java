@@ -0,0 +1,20 @@
+package com.grash.dto.analytics.assets;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Costs and labor time of the complete work orders of one asset
+ */
+@Data
+@NoArgsConstructor
+public class AssetCostSummary {
+    private long laborTime;
+    private double laborCost;
+    private double partCost;
+    private double additionalCost;
+
+    public double getTotalCost(boolean includeLaborCost) {
+        return partCost + additionalCost + (includeLaborCost ? laborCost : 0);
+    }
+}
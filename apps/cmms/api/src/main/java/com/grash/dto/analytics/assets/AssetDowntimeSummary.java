@@ -0,0 +1,17 @@
+package com.grash.dto.analytics.assets;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Downtimes of one asset, clipped to the requested date range
+ */
+@Data
+@NoArgsConstructor
+public class AssetDowntimeSummary {
+    private int count;
+    //seconds
+    private long duration;
+    //days
+    private long mtbf;
+}
@@ -0,0 +1,7 @@
+package com.grash.dto.analytics.assets;
+
+import com.grash.dto.analytics.workOrders.WOCostsAggregate;
+
+public interface CostsByAsset extends WOCostsAggregate {
+    Long getId();
+}
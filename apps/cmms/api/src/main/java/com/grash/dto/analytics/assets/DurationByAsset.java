@@ -0,0 +1,8 @@
+package com.grash.dto.analytics.assets;
+
+public interface DurationByAsset {
+    Long getId();
+
+    //seconds
+    Long getDuration();
+}
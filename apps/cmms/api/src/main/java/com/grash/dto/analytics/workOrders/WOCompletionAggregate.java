@@ -0,0 +1,9 @@
+package com.grash.dto.analytics.workOrders;
+
+public interface WOCompletionAggregate {
+    Long getCount();
+
+    Long getCompliant();
+
+    Long getReactive();
+}
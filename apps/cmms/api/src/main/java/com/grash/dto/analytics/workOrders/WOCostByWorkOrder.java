@@ -0,0 +1,13 @@
+package com.grash.dto.analytics.workOrders;
+
+/**
+ * One kind of cost of a work order, the time is only set for the labor costs
+ */
+public interface WOCostByWorkOrder {
+    Long getId();
+
+    Double getCost();
+
+    //seconds
+    Long getTime();
+}
@@ -0,0 +1,11 @@
+package com.grash.dto.analytics.workOrders;
+
+/**
+ * One kind of cost summed over several work orders, null when there is none. The time is only set for the labor costs
+ */
+public interface WOCostTotal {
+    Double getCost();
+
+    //seconds
+    Long getTime();
+}
@@ -0,0 +1,29 @@
+package com.grash.dto.analytics.workOrders;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Labor time and costs of one or several work orders
+ */
+@Data
+@NoArgsConstructor
+public class WOCosts {
+    //seconds
+    private long laborTime;
+    private double laborCost;
+    private double partCost;
+    private double additionalCost;
+
+    public double getTotalCost(boolean includeLaborCost) {
+        return partCost + additionalCost + (includeLaborCost ? laborCost : 0);
+    }
+
+    public WOCosts add(WOCosts costs) {
+        laborTime += costs.getLaborTime();
+        laborCost += costs.getLaborCost();
+        partCost += costs.getPartCost();
+        additionalCost += costs.getAdditionalCost();
+        return this;
+    }
+}
@@ -0,0 +1,14 @@
+package com.grash.dto.analytics.workOrders;
+
+public interface WOCostsAggregate {
+    Long getCount();
+
+    //seconds
+    Long getLaborTime();
+
+    Double getLaborCost();
+
+    Double getPartCost();
+
+    Double getAdditionalCost();
+}
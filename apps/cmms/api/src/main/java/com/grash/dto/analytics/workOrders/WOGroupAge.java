@@ -0,0 +1,6 @@
+package com.grash.dto.analytics.workOrders;
+
+public interface WOGroupAge extends WOGroupCount {
+    //sum of the ages in days
+    Long getAge();
+}
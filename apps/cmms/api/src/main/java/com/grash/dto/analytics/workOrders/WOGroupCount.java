@@ -0,0 +1,10 @@
+package com.grash.dto.analytics.workOrders;
+
+/**
+ * Work order count grouped by a referenced entity id (asset, category, user...)
+ */
+public interface WOGroupCount {
+    Long getId();
+
+    Long getCount();
+}
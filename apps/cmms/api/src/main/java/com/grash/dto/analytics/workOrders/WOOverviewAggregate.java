@@ -0,0 +1,28 @@
+package com.grash.dto.analytics.workOrders;
+
+/**
+ * Company wide work order totals over a creation date range. Durations are summed per work order (truncated to
+ * the unit) so that averages match the ones computed on entities.
+ */
+public interface WOOverviewAggregate {
+    Long getTotal();
+
+    Long getComplete();
+
+    Long getCompliant();
+
+    Long getReacted();
+
+    //hours
+    Long getReactionTime();
+
+    Long getCycled();
+
+    //days
+    Long getCycleTime();
+
+    Long getIncomplete();
+
+    //days
+    Long getIncompleteAge();
+}
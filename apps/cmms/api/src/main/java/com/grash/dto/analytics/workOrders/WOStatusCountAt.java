@@ -0,0 +1,14 @@
+package com.grash.dto.analytics.workOrders;
+
+import java.util.Date;
+
+/**
+ * Number of work orders having a status at an instant. The status is the ordinal returned by the native query.
+ */
+public interface WOStatusCountAt {
+    Date getInstant();
+
+    Integer getStatus();
+
+    Long getCount();
+}
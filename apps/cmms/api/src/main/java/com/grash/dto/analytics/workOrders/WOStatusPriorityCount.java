@@ -0,0 +1,17 @@
+package com.grash.dto.analytics.workOrders;
+
+import com.grash.model.enums.Priority;
+import com.grash.model.enums.Status;
+
+/**
+ * Work order count and estimated duration for one (status, priority) pair
+ */
+public interface WOStatusPriorityCount {
+    Status getStatus();
+
+    Priority getPriority();
+
+    Long getCount();
+
+    Double getEstimatedDuration();
+}
@@ -0,0 +1,29 @@
+package com.grash.job;
+
+import com.grash.service.AnalyticsRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class AnalyticsRollupJob implements Job {
+
+    private final AnalyticsRollupService analyticsRollupService;
+
+    @Override
+    public void execute(JobExecutionContext context) {
+        int refreshed = 0;
+        int batch;
+        do {
+            batch = analyticsRollupService.refreshDirtyDays();
+            refreshed += batch;
+        } while (batch > 0);
+        if (refreshed > 0) log.info("Refreshed {} analytics rollup days", refreshed);
+    }
+}
@@ -0,0 +1,24 @@
+package com.grash.job;
+
+import com.grash.service.ExportJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class ExportDispatchJob implements Job {
+
+    private final ExportJobService exportJobService;
+
+    @Override
+    public void execute(JobExecutionContext context) {
+        int queued = exportJobService.requeuePending();
+        if (queued > 0) log.info("Queued {} pending export jobs", queued);
+    }
+}
@@ -0,0 +1,24 @@
+package com.grash.job;
+
+import com.grash.service.ImportJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class ImportDispatchJob implements Job {
+
+    private final ImportJobService importJobService;
+
+    @Override
+    public void execute(JobExecutionContext context) {
+        int queued = importJobService.requeuePending();
+        if (queued > 0) log.info("Queued {} pending import jobs", queued);
+    }
+}
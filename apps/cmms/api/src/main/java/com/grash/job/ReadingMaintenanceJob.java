@@ -0,0 +1,28 @@
+package com.grash.job;
+
+import com.grash.service.ReadingSeriesService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the upcoming partitions of the readings and applies the retention of the meters
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class ReadingMaintenanceJob implements Job {
+
+    private final ReadingSeriesService readingSeriesService;
+
+    @Override
+    public void execute(JobExecutionContext context) {
+        readingSeriesService.createPartitions();
+        int deleted = readingSeriesService.applyRetention();
+        if (deleted > 0) log.info("Deleted {} readings past their retention", deleted);
+    }
+}
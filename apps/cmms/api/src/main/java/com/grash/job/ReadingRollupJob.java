@@ -0,0 +1,29 @@
+package com.grash.job;
+
+import com.grash.service.ReadingSeriesService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class ReadingRollupJob implements Job {
+
+    private final ReadingSeriesService readingSeriesService;
+
+    @Override
+    public void execute(JobExecutionContext context) {
+        int refreshed = 0;
+        int batch;
+        do {
+            batch = readingSeriesService.refreshDirtyHours();
+            refreshed += batch;
+        } while (batch > 0);
+        if (refreshed > 0) log.info("Refreshed {} reading rollup hours", refreshed);
+    }
+}
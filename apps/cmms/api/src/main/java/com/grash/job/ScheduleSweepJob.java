@@ -0,0 +1,38 @@
+package com.grash.job;
+
+import com.grash.service.ScheduleSweepService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single periodic job generating the work orders and notifications of all the due preventive maintenance schedules
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@DisallowConcurrentExecution
+public class ScheduleSweepJob implements Job {
+
+    private final ScheduleSweepService scheduleSweepService;
+
+    @Override
+    public void execute(JobExecutionContext context) {
+        int generated = 0;
+        int batch;
+        do {
+            batch = scheduleSweepService.generateDueWorkOrders();
+            generated += batch;
+        } while (batch > 0);
+        int notified = 0;
+        do {
+            batch = scheduleSweepService.sendDueNotifications();
+            notified += batch;
+        } while (batch > 0);
+        if (generated > 0 || notified > 0)
+            log.info("Processed {} due preventive maintenance schedules and {} notifications", generated, notified);
+    }
+}
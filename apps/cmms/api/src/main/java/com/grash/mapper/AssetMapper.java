@@ -3,6 +3,7 @@ package com.grash.mapper;
 import com.grash.dto.AssetMiniDTO;
 import com.grash.dto.AssetPatchDTO;
 import com.grash.dto.AssetShowDTO;
+import com.grash.dto.ChildCounts;
 import com.grash.dto.MeterShowDTO;
 import com.grash.model.Asset;
 import com.grash.model.Meter;
@@ -27,6 +28,8 @@ public interface AssetMapper {
 
     AssetShowDTO toShowDto(Asset model, @Context AssetService assetService);
 
+    AssetShowDTO toShowDto(Asset model, @Context ChildCounts childCounts);
+
     @Mapping(target = "parentId", source = "parentAsset.id")
     @Mapping(target = "locationId", source = "location.id")
     AssetMiniDTO toMiniDto(Asset model);
@@ -37,4 +40,11 @@ public interface AssetMapper {
         target.setHasChildren(assetService.hasChildren(model.getId()));
         return target;
     }
+
+    @AfterMapping
+    default AssetShowDTO toShowDto(Asset model, @MappingTarget AssetShowDTO target,
+                                   @Context ChildCounts childCounts) {
+        target.setHasChildren(childCounts.hasChildren(model.getId()));
+        return target;
+    }
 }
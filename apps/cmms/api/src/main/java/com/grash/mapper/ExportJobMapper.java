@@ -0,0 +1,28 @@
+package com.grash.mapper;
+
+import com.grash.dto.ExportJobShowDTO;
+import com.grash.factory.StorageServiceFactory;
+import com.grash.model.ExportJob;
+import com.grash.model.enums.ExportJobStatus;
+import org.mapstruct.AfterMapping;
+import org.mapstruct.Mapper;
+import org.mapstruct.MappingTarget;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+@Mapper(componentModel = "spring")
+public abstract class ExportJobMapper {
+
+    @Lazy
+    @Autowired
+    private StorageServiceFactory storageServiceFactory;
+
+    public abstract ExportJobShowDTO toShowDto(ExportJob model);
+
+    @AfterMapping
+    protected ExportJobShowDTO toShowDto(ExportJob model, @MappingTarget ExportJobShowDTO target) {
+        if (model.getStatus() == ExportJobStatus.COMPLETE && model.getFilePath() != null)
+            target.setUrl(storageServiceFactory.getStorageService().generateSignedUrl(model.getFilePath(), 10));
+        return target;
+    }
+}
@@ -0,0 +1,28 @@
+package com.grash.mapper;
+
+import com.grash.dto.ImportJobShowDTO;
+import com.grash.factory.StorageServiceFactory;
+import com.grash.model.ImportJob;
+import org.mapstruct.AfterMapping;
+import org.mapstruct.Mapper;
+import org.mapstruct.MappingTarget;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+@Mapper(componentModel = "spring")
+public abstract class ImportJobMapper {
+
+    @Lazy
+    @Autowired
+    private StorageServiceFactory storageServiceFactory;
+
+    public abstract ImportJobShowDTO toShowDto(ImportJob model);
+
+    @AfterMapping
+    protected ImportJobShowDTO toShowDto(ImportJob model, @MappingTarget ImportJobShowDTO target) {
+        if (model.getErrorFilePath() != null)
+            target.setErrorFileUrl(storageServiceFactory.getStorageService().generateSignedUrl(model.getErrorFilePath(),
+                    10));
+        return target;
+    }
+}
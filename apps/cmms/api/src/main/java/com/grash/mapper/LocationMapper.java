@@ -1,6 +1,7 @@
 package com.grash.mapper;
 
 import com.grash.dto.AssetShowDTO;
+import com.grash.dto.ChildCounts;
 import com.grash.dto.FileShowDTO;
 import com.grash.dto.LocationMiniDTO;
 import com.grash.dto.LocationPatchDTO;
@@ -21,6 +22,8 @@ public interface LocationMapper {
 
     LocationShowDTO toShowDto(Location model, @Context LocationService locationService);
 
+    LocationShowDTO toShowDto(Location model, @Context ChildCounts childCounts);
+
     @Mapping(source = "parentLocation.id", target = "parentId")
     LocationMiniDTO toMiniDto(Location model);
 
@@ -30,4 +33,11 @@ public interface LocationMapper {
         target.setHasChildren(locationService.hasChildren(model.getId()));
         return target;
     }
+
+    @AfterMapping
+    default LocationShowDTO toShowDto(Location model, @MappingTarget LocationShowDTO target,
+                                      @Context ChildCounts childCounts) {
+        target.setHasChildren(childCounts.hasChildren(model.getId()));
+        return target;
+    }
 }
@@ -0,0 +1,32 @@
+package com.grash.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Downtimes of a company starting on one day, grouped by asset. Rows are only written by
+ * {@link com.grash.service.AnalyticsRollupService}.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+public class AssetDowntimeDailyRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long companyId;
+
+    @Temporal(TemporalType.DATE)
+    private Date day;
+
+    private Long assetId;
+
+    private long downtimeCount;
+
+    //seconds
+    private long duration;
+}
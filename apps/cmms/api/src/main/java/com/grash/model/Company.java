@@ -1,6 +1,7 @@
 package com.grash.model;
 
 import com.grash.model.abstracts.Audit;
+import com.grash.security.PrincipalEvictionListener;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
@@ -11,6 +12,7 @@ import javax.persistence.*;
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode(exclude = "companySettings", callSuper = false)
+@EntityListeners(PrincipalEvictionListener.class)
 public class Company extends Audit {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -17,7 +17,7 @@ public class CustomSequence {
     @ManyToOne(fetch = FetchType.LAZY)
     private Company company;
 
-    // Sequence counters for each entity type
+    // Sequence counters for each entity type, allocated in blocks by CustomSequenceService
     private Long workOrderSequence = 1L;
     private Long assetSequence = 1L;
     private Long preventiveMaintenanceSequence = 1L;
@@ -28,25 +28,4 @@ public class CustomSequence {
     public CustomSequence(Company company) {
         this.company = company;
     }
-
-    // Methods to get and increment counters
-    public Long getAndIncrementWorkOrderSequence() {
-        return workOrderSequence++;
-    }
-
-    public Long getAndIncrementAssetSequence() {
-        return assetSequence++;
-    }
-
-    public Long getAndIncrementPreventiveMaintenanceSequence() {
-        return preventiveMaintenanceSequence++;
-    }
-
-    public Long getAndIncrementLocationSequence() {
-        return locationSequence++;
-    }
-
-    public Long getAndIncrementRequestSequence() {
-        return requestSequence++;
-    }
 }
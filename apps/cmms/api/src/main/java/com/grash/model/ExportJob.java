@@ -0,0 +1,54 @@
+package com.grash.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.grash.model.abstracts.CompanyAudit;
+import com.grash.model.enums.ExportJobStatus;
+import com.grash.model.enums.ExportJobType;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.validation.constraints.NotNull;
+import java.util.Date;
+
+/**
+ * An export or report generated in the background, the user who requested it is {@link #getCreatedBy()}
+ */
+@Entity
+@Data
+@EqualsAndHashCode(callSuper = false)
+@NoArgsConstructor
+public class ExportJob extends CompanyAudit {
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private ExportJobType type;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private ExportJobStatus status = ExportJobStatus.PENDING;
+
+    //the work order of a report
+    private Long resourceId;
+
+    //the JSON WorkOrderReportRequest of a batch report
+    @JsonIgnore
+    private String parameters;
+
+    //percentage
+    private int progress;
+
+    @JsonIgnore
+    private String filePath;
+
+    private String error;
+
+    private Date completedOn;
+
+    public ExportJob(ExportJobType type, Long resourceId) {
+        this.type = type;
+        this.resourceId = resourceId;
+    }
+}
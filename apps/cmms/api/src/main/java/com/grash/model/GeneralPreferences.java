@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.grash.model.enums.BusinessType;
 import com.grash.model.enums.DateFormat;
 import com.grash.model.enums.Language;
+import com.grash.security.PrincipalEvictionListener;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
@@ -14,6 +15,7 @@ import javax.persistence.*;
 @Data
 @NoArgsConstructor
 @EqualsAndHashCode(exclude = "companySettings")
+@EntityListeners(PrincipalEvictionListener.class)
 public class GeneralPreferences {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -0,0 +1,64 @@
+package com.grash.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.grash.model.abstracts.CompanyAudit;
+import com.grash.model.enums.ImportEntity;
+import com.grash.model.enums.ImportJobStatus;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.validation.constraints.NotNull;
+import java.util.Date;
+
+/**
+ * A csv file imported in the background, the user who uploaded it is {@link #getCreatedBy()}. The rows before
+ * {@link #getProcessedRows()} are committed, a resumed job starts after them.
+ */
+@Entity
+@Data
+@EqualsAndHashCode(callSuper = false)
+@NoArgsConstructor
+public class ImportJob extends CompanyAudit {
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private ImportEntity importEntity;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private ImportJobStatus status = ImportJobStatus.PENDING;
+
+    @JsonIgnore
+    private String filePath;
+
+    //json of the csv headers to the import fields
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String headerMapping;
+
+    private int processedRows;
+
+    private int created;
+
+    private int updated;
+
+    private int failed;
+
+    //csv of the failed rows
+    @JsonIgnore
+    private String errorFilePath;
+
+    private String error;
+
+    private Date completedOn;
+
+    public ImportJob(ImportEntity importEntity, String filePath, String headerMapping) {
+        this.importEntity = importEntity;
+        this.filePath = filePath;
+        this.headerMapping = headerMapping;
+    }
+}
@@ -0,0 +1,37 @@
+package com.grash.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+
+/**
+ * A row of an {@link ImportJob} which could not be imported, kept with its values so that the error file can be
+ * fixed and imported again.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+public class ImportRowError {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long importJobId;
+
+    private long rowNumber;
+
+    //the csv line of the row
+    @Column(columnDefinition = "TEXT")
+    private String rowValues;
+
+    @Column(columnDefinition = "TEXT")
+    private String message;
+
+    public ImportRowError(Long importJobId, long rowNumber, String rowValues, String message) {
+        this.importJobId = importJobId;
+        this.rowNumber = rowNumber;
+        this.rowValues = rowValues;
+        this.message = message;
+    }
+}
@@ -0,0 +1,23 @@
+package com.grash.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+
+/**
+ * Links every location to itself (depth 0) and to each of its descendants. Rows are written by the database trigger
+ * location_closure_sync when a location is inserted or its parent changes, and deleted with the location.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@Immutable
+public class LocationClosure {
+    @EmbeddedId
+    private HierarchyClosureId id;
+
+    private int depth;
+}
@@ -12,6 +12,7 @@ import org.springframework.http.HttpStatus;
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 @Entity
@@ -55,9 +56,22 @@ public class Meter extends CompanyAudit {
     @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private Asset asset;
 
+    private Date lastReadingAt;
+
+    private Double lastReadingValue;
+
+    //null to keep the readings forever, their rollups are kept anyway
+    private Integer readingRetentionDays;
+
     public void setUpdateFrequency(int updateFrequency) {
         if (updateFrequency < 1)
             throw new CustomException("Frequency should not be less than 1", HttpStatus.NOT_ACCEPTABLE);
         this.updateFrequency = updateFrequency;
     }
+
+    public void setReadingRetentionDays(Integer readingRetentionDays) {
+        if (readingRetentionDays != null && readingRetentionDays < 1)
+            throw new CustomException("Retention should not be less than 1 day", HttpStatus.NOT_ACCEPTABLE);
+        this.readingRetentionDays = readingRetentionDays;
+    }
 }
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.grash.model.abstracts.Audit;
 import com.grash.model.enums.PermissionEntity;
 import com.grash.model.enums.PlanFeatures;
+import com.grash.security.PrincipalEvictionListener;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -17,6 +18,7 @@ import java.util.List;
 @Entity
 @Data
 @NoArgsConstructor
+@EntityListeners(PrincipalEvictionListener.class)
 public class OwnUser extends Audit {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -0,0 +1,38 @@
+package com.grash.model;
+
+import com.grash.model.enums.ReadingResolution;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import java.util.Date;
+
+/**
+ * Minimum, maximum and sum of the readings of a meter during one minute, hour or day. Rows are only written by
+ * {@link com.grash.service.ReadingSeriesService}.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+public class ReadingRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long meterId;
+
+    private ReadingResolution resolution;
+
+    private Date bucket;
+
+    private double minValue;
+
+    private double maxValue;
+
+    private double sumValue;
+
+    private long valueCount;
+}
@@ -37,6 +37,21 @@ public class Schedule extends Audit {
 
     private Integer dueDateDelay;
 
+    /**
+     * Next occurrence, its work order is generated by {@link com.grash.job.ScheduleSweepJob} once it is due. Null
+     * when there is no upcoming occurrence, or until the last work order is completed for completion based schedules.
+     */
+    private Date nextDueOn;
+
+    private Date nextNotificationOn;
+
+    /**
+     * A completion based schedule without next due date, planned again when its last work order is completed, so it
+     * is not planned at startup
+     */
+    @JsonIgnore
+    private boolean awaitingCompletion;
+
     private boolean isDemo;
 
     @Enumerated(EnumType.STRING)
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.grash.exception.CustomException;
 import com.grash.model.abstracts.Audit;
 import com.grash.model.enums.SubscriptionScheduledChangeType;
+import com.grash.security.PrincipalEvictionListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,6 +18,7 @@ import java.util.Date;
 @Entity
 @Data
 @Builder
+@EntityListeners(PrincipalEvictionListener.class)
 @AllArgsConstructor
 @NoArgsConstructor
 public class Subscription extends Audit {
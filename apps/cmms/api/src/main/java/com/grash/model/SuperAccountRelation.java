@@ -1,5 +1,6 @@
 package com.grash.model;
 
+import com.grash.security.PrincipalEvictionListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -12,6 +13,7 @@ import javax.validation.constraints.NotNull;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@EntityListeners(PrincipalEvictionListener.class)
 public class SuperAccountRelation {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
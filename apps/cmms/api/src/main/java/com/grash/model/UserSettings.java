@@ -1,10 +1,12 @@
 package com.grash.model;
 
+import com.grash.security.PrincipalEvictionListener;
 import lombok.Data;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
@@ -12,6 +14,7 @@ import javax.persistence.Id;
 @Entity
 @NoArgsConstructor
 @Data
+@EntityListeners(PrincipalEvictionListener.class)
 public class UserSettings {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
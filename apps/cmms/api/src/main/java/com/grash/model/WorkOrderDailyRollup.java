@@ -0,0 +1,54 @@
+package com.grash.model;
+
+import com.grash.model.enums.Priority;
+import com.grash.model.enums.Status;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Work orders of a company created on one day, grouped by status, priority, category, asset and completer. Rows are
+ * only written by {@link com.grash.service.AnalyticsRollupService}.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+public class WorkOrderDailyRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long companyId;
+
+    @Temporal(TemporalType.DATE)
+    private Date day;
+
+    private Status status;
+
+    private Priority priority;
+
+    private Long categoryId;
+
+    private Long assetId;
+
+    private Long completedById;
+
+    private long workOrderCount;
+
+    private long compliantCount;
+
+    private long reactiveCount;
+
+    private double estimatedDuration;
+
+    //seconds
+    private long laborTime;
+
+    private double laborCost;
+
+    private double partCost;
+
+    private double additionalCost;
+}
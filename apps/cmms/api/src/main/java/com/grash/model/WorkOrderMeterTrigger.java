@@ -12,6 +12,7 @@ import org.springframework.http.HttpStatus;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
+import java.util.Date;
 
 @Entity
 @Data
@@ -35,10 +36,46 @@ public class WorkOrderMeterTrigger extends WorkOrderBase {
     @NotNull
     private int waitBefore;
 
+    //the value must come back past the threshold by this much to clear the trigger
+    private double hysteresis;
+
+    //consecutive readings past the threshold needed to fire
+    private int debounceCount = 1;
+
+    private int cooldownMinutes;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private boolean triggered;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Date lastTriggeredAt;
+
+    //written by the MeterTriggerEngine only
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(insertable = false, updatable = false)
+    private int consecutiveBreaches;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @NotNull
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private Meter meter;
-}
 
+    public void setHysteresis(double hysteresis) {
+        if (hysteresis < 0)
+            throw new CustomException("Hysteresis should not be negative", HttpStatus.NOT_ACCEPTABLE);
+        this.hysteresis = hysteresis;
+    }
+
+    public void setDebounceCount(int debounceCount) {
+        if (debounceCount < 1)
+            throw new CustomException("Debounce count should not be less than 1", HttpStatus.NOT_ACCEPTABLE);
+        this.debounceCount = debounceCount;
+    }
+
+    public void setCooldownMinutes(int cooldownMinutes) {
+        if (cooldownMinutes < 0)
+            throw new CustomException("Cooldown should not be negative", HttpStatus.NOT_ACCEPTABLE);
+        this.cooldownMinutes = cooldownMinutes;
+    }
+}
@@ -0,0 +1,29 @@
+package com.grash.model;
+
+import com.grash.model.enums.Status;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A status a work order had between validFrom (inclusive) and validTo (exclusive), validTo is null for the current
+ * status. Rows are only written by {@link com.grash.service.WorkOrderStatusTimelineService}.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+public class WorkOrderStatusPeriod {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long workOrderId;
+
+    private Status status;
+
+    private Date validFrom;
+
+    private Date validTo;
+}
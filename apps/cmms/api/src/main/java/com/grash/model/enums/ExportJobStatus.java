@@ -0,0 +1,8 @@
+package com.grash.model.enums;
+
+public enum ExportJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETE,
+    FAILED
+}
@@ -0,0 +1,11 @@
+package com.grash.model.enums;
+
+public enum ExportJobType {
+    WORK_ORDERS,
+    ASSETS,
+    LOCATIONS,
+    PARTS,
+    METERS,
+    WORK_ORDER_REPORT,
+    WORK_ORDER_REPORTS
+}
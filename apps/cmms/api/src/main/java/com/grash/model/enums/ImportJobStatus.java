@@ -0,0 +1,8 @@
+package com.grash.model.enums;
+
+public enum ImportJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETE,
+    FAILED
+}
@@ -0,0 +1,30 @@
+package com.grash.model.enums;
+
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+
+public enum ReadingResolution {
+    RAW(null),
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    ReadingResolution(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public long getMillis() {
+        return unit == null ? 0 : unit.getDuration().toMillis();
+    }
+
+    /**
+     * @return the start of the bucket containing the date, the same as date_trunc on the timestamp columns
+     */
+    public Date truncate(Date date) {
+        if (unit == null) return date;
+        return Date.from(date.toInstant().atZone(ZoneId.systemDefault()).truncatedTo(unit).toInstant());
+    }
+}
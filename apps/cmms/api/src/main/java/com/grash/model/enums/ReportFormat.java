@@ -0,0 +1,6 @@
+package com.grash.model.enums;
+
+public enum ReportFormat {
+    PDF,
+    ZIP
+}
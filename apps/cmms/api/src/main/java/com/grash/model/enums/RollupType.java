@@ -0,0 +1,6 @@
+package com.grash.model.enums;
+
+public enum RollupType {
+    WORK_ORDER,
+    ASSET_DOWNTIME
+}
@@ -1,13 +1,34 @@
 package com.grash.repository;
 
+import com.grash.dto.analytics.workOrders.WOCostByWorkOrder;
+import com.grash.dto.analytics.workOrders.WOCostTotal;
 import com.grash.model.AdditionalCost;
+import com.grash.model.enums.Status;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
+import java.util.Date;
 
 public interface AdditionalCostRepository extends JpaRepository<AdditionalCost, Long> {
     Collection<AdditionalCost> findByWorkOrder_Id(Long id);
 
+    @Query("SELECT a.workOrder.id AS id, SUM(a.cost) AS cost FROM AdditionalCost a WHERE a.workOrder.id IN :ids " +
+            "GROUP BY a.workOrder.id")
+    Collection<WOCostByWorkOrder> getCostByWorkOrder(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT SUM(a.cost) AS cost FROM AdditionalCost a JOIN a.workOrder wo WHERE wo.company.id = :companyId " +
+            "AND wo.status = :status AND wo.completedOn BETWEEN :start AND :end")
+    WOCostTotal getCostByCompanyAndStatusAndCompletedOnBetween(@Param("companyId") Long companyId,
+                                                               @Param("status") Status status,
+                                                               @Param("start") Date start, @Param("end") Date end);
+
+    @Query("SELECT SUM(a.cost) AS cost FROM AdditionalCost a JOIN a.workOrder wo WHERE wo.asset.id = :assetId " +
+            "AND wo.createdAt BETWEEN :start AND :end")
+    WOCostTotal getCostByAssetAndCreatedAtBetween(@Param("assetId") Long assetId, @Param("start") Date start,
+                                                  @Param("end") Date end);
+
     void deleteByWorkOrder_Company_IdAndIsDemoTrue(Long companyId);
 
 }
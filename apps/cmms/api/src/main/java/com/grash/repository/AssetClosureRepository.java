@@ -0,0 +1,31 @@
+package com.grash.repository;
+
+import com.grash.dto.ChildCount;
+import com.grash.model.AssetClosure;
+import com.grash.model.HierarchyClosureId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AssetClosureRepository extends JpaRepository<AssetClosure, HierarchyClosureId> {
+
+    /**
+     * @return the ids of the asset and of all its descendants
+     */
+    @Query("SELECT c.id.descendantId FROM AssetClosure c WHERE c.id.ancestorId = :id")
+    List<Long> findSubtreeIds(@Param("id") Long id);
+
+    /**
+     * @return the ids of the ancestors of the asset, from its parent to the root
+     */
+    @Query("SELECT c.id.ancestorId FROM AssetClosure c WHERE c.id.descendantId = :id AND c.depth > 0 " +
+            "ORDER BY c.depth")
+    List<Long> findAncestorIds(@Param("id") Long id);
+
+    @Query("SELECT c.id.ancestorId AS id, COUNT(c) AS count FROM AssetClosure c WHERE c.id.ancestorId IN :ids " +
+            "AND c.depth = 1 GROUP BY c.id.ancestorId")
+    List<ChildCount> countChildren(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,41 @@
+package com.grash.repository;
+
+import com.grash.model.AssetDowntimeDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+public interface AssetDowntimeDailyRollupRepository extends JpaRepository<AssetDowntimeDailyRollup, Long> {
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO analytics_rollup_dirty (company_id, day, type) " +
+            "SELECT DISTINCT company_id, CAST(starts_on AS DATE), 'ASSET_DOWNTIME' FROM asset_downtime " +
+            "WHERE company_id = :companyId AND starts_on IS NOT NULL", nativeQuery = true)
+    void markCompanyDirty(@Param("companyId") Long companyId);
+
+    @Modifying
+    @Query(value = "DELETE FROM asset_downtime_daily_rollup WHERE company_id = :companyId AND day = :day",
+            nativeQuery = true)
+    void deleteDay(@Param("companyId") Long companyId, @Param("day") LocalDate day);
+
+    /**
+     * Rebuilds the rows of the downtimes starting between start (inclusive) and end (exclusive)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO asset_downtime_daily_rollup (company_id, day, asset_id, downtime_count, duration) " +
+            "SELECT d.company_id, CAST(:day AS DATE), d.asset_id, COUNT(*), SUM(d.duration) FROM asset_downtime d " +
+            "WHERE d.company_id = :companyId AND d.starts_on >= :start AND d.starts_on < :end AND d.duration <> 0 " +
+            "GROUP BY d.company_id, d.asset_id", nativeQuery = true)
+    void insertDay(@Param("companyId") Long companyId, @Param("day") LocalDate day, @Param("start") Date start,
+                   @Param("end") Date end);
+
+    @Query("SELECT COALESCE(SUM(r.duration), 0) FROM AssetDowntimeDailyRollup r " +
+            "WHERE r.companyId = :companyId AND r.day BETWEEN :start AND :end")
+    long getDuration(@Param("companyId") Long companyId, @Param("start") Date start, @Param("end") Date end);
+}
@@ -1,10 +1,12 @@
 package com.grash.repository;
 
+import com.grash.dto.analytics.assets.DurationByAsset;
 import com.grash.model.AssetDowntime;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Date;
 
@@ -12,6 +14,10 @@ public interface AssetDowntimeRepository extends JpaRepository<AssetDowntime, Lo
 
     List<AssetDowntime> findByAsset_Id(Long id);
 
+    @Query("SELECT ad.asset.id AS id, SUM(ad.duration) AS duration FROM AssetDowntime ad " +
+            "WHERE ad.company.id = :companyId GROUP BY ad.asset.id")
+    Collection<DurationByAsset> getDurationByAsset(@Param("companyId") Long companyId);
+
     @Query("SELECT ad FROM AssetDowntime ad WHERE ad.company.id = :id AND ad.duration != 0")
     List<AssetDowntime> findByCompany_Id(@Param("id") Long id);
 
@@ -7,19 +7,28 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.security.core.parameters.P;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface AssetRepository extends JpaRepository<Asset, Long>, JpaSpecificationExecutor<Asset> {
     List<Asset> findByCompany_Id(Long id);
 
     List<Asset> findByCompany_Id(Long id, Sort sort);
 
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "100"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<Asset> streamByCompany_Id(Long id);
+
+    long countByCompany_Id(Long id);
+
     List<Asset> findByCompany_IdAndParentAssetIsNull(Long id, Pageable pageable);
 
     List<Asset> findByParentAsset_Id(Long id, Sort sort);
@@ -32,6 +41,8 @@ public interface AssetRepository extends JpaRepository<Asset, Long>, JpaSpecific
 
     Optional<Asset> findByIdAndCompany_Id(Long id, Long companyId);
 
+    List<Asset> findByIdInAndCompany_Id(Collection<Long> ids, Long companyId);
+
     Optional<Asset> findByNfcIdAndCompany_Id(String nfcId, Long companyId);
 
     Optional<Asset> findByBarCodeAndCompany_Id(String data, Long id);
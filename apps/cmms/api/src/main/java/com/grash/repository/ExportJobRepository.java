@@ -0,0 +1,46 @@
+package com.grash.repository;
+
+import com.grash.model.ExportJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface ExportJobRepository extends JpaRepository<ExportJob, Long> {
+    Optional<ExportJob> findByIdAndCompany_Id(Long id, Long companyId);
+
+    //committed on its own so that the progress is visible while the export runs
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query("UPDATE ExportJob j SET j.progress = :progress, j.updatedAt = :now WHERE j.id = :id")
+    void updateProgress(@Param("id") Long id, @Param("progress") int progress, @Param("now") Date now);
+
+    /**
+     * Marks the job as running unless another thread or instance runs it, a running job is taken over when it has not
+     * progressed since staleBefore.
+     *
+     * @return 1 if the job was claimed
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ExportJob j SET j.status = com.grash.model.enums.ExportJobStatus.RUNNING, j.updatedAt = :now " +
+            "WHERE j.id = :id AND (j.status = com.grash.model.enums.ExportJobStatus.PENDING " +
+            "OR (j.status = com.grash.model.enums.ExportJobStatus.RUNNING AND j.updatedAt < :staleBefore))")
+    int claim(@Param("id") Long id, @Param("now") Date now, @Param("staleBefore") Date staleBefore);
+
+    /**
+     * @return the jobs pending since before, and the running jobs which have not progressed since staleBefore
+     */
+    @Query("SELECT j.id FROM ExportJob j WHERE (j.status = com.grash.model.enums.ExportJobStatus.PENDING " +
+            "AND j.createdAt < :before) OR (j.status = com.grash.model.enums.ExportJobStatus.RUNNING " +
+            "AND j.updatedAt < :staleBefore) ORDER BY j.id")
+    List<Long> findIdsToQueue(@Param("before") Date before, @Param("staleBefore") Date staleBefore,
+                              Pageable pageable);
+}
@@ -0,0 +1,51 @@
+package com.grash.repository;
+
+import com.grash.model.ImportJob;
+import com.grash.model.enums.ImportJobStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface ImportJobRepository extends JpaRepository<ImportJob, Long> {
+    Optional<ImportJob> findByIdAndCompany_Id(Long id, Long companyId);
+
+    List<ImportJob> findByStatusIn(Collection<ImportJobStatus> statuses);
+
+    /**
+     * Marks the job as running unless another thread or instance runs it, a running job is taken over when it has not
+     * progressed since staleBefore.
+     *
+     * @return 1 if the job was claimed
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query("UPDATE ImportJob j SET j.status = com.grash.model.enums.ImportJobStatus.RUNNING, j.updatedAt = :now " +
+            "WHERE j.id = :id AND (j.status = com.grash.model.enums.ImportJobStatus.PENDING " +
+            "OR (j.status = com.grash.model.enums.ImportJobStatus.RUNNING AND j.updatedAt < :staleBefore))")
+    int claim(@Param("id") Long id, @Param("now") Date now, @Param("staleBefore") Date staleBefore);
+
+    /**
+     * @return the jobs pending since before, and the running jobs which have not progressed since staleBefore
+     */
+    @Query("SELECT j.id FROM ImportJob j WHERE (j.status = com.grash.model.enums.ImportJobStatus.PENDING " +
+            "AND j.updatedAt < :before) OR (j.status = com.grash.model.enums.ImportJobStatus.RUNNING " +
+            "AND j.updatedAt < :staleBefore) ORDER BY j.id")
+    List<Long> findIdsToQueue(@Param("before") Date before, @Param("staleBefore") Date staleBefore,
+                              Pageable pageable);
+
+    //runs in the transaction of the imported rows, so the progress is committed with them
+    @Modifying
+    @Query("UPDATE ImportJob j SET j.processedRows = j.processedRows + :processed, j.created = j.created + :created, " +
+            "j.updated = j.updated + :updated, j.failed = j.failed + :failed, j.updatedAt = :now WHERE j.id = :id")
+    void addProgress(@Param("id") Long id, @Param("processed") int processed, @Param("created") int created,
+                     @Param("updated") int updated, @Param("failed") int failed, @Param("now") Date now);
+}
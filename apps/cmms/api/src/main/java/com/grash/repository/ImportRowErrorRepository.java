@@ -0,0 +1,14 @@
+package com.grash.repository;
+
+import com.grash.model.ImportRowError;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.stream.Stream;
+
+public interface ImportRowErrorRepository extends JpaRepository<ImportRowError, Long> {
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "100"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<ImportRowError> streamByImportJobIdOrderByRowNumber(Long importJobId);
+}
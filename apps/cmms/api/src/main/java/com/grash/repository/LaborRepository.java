@@ -1,12 +1,39 @@
 package com.grash.repository;
 
+import com.grash.dto.analytics.workOrders.WOCostByWorkOrder;
+import com.grash.dto.analytics.workOrders.WOCostTotal;
 import com.grash.model.Labor;
+import com.grash.model.enums.Status;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
+import java.util.Date;
 
 public interface LaborRepository extends JpaRepository<Labor, Long> {
     Collection<Labor> findByWorkOrder_Id(Long id);
 
+    @Query("SELECT l.workOrder.id AS id, SUM(l.hourlyRate * l.duration / 3600) AS cost, SUM(l.duration) AS time " +
+            "FROM Labor l WHERE l.workOrder.id IN :ids GROUP BY l.workOrder.id")
+    Collection<WOCostByWorkOrder> getCostByWorkOrder(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT SUM(l.hourlyRate * l.duration / 3600) AS cost, SUM(l.duration) AS time FROM Labor l " +
+            "JOIN l.workOrder wo WHERE wo.company.id = :companyId AND wo.createdAt BETWEEN :start AND :end")
+    WOCostTotal getCostByCompanyAndCreatedAtBetween(@Param("companyId") Long companyId, @Param("start") Date start,
+                                                    @Param("end") Date end);
+
+    @Query("SELECT SUM(l.hourlyRate * l.duration / 3600) AS cost, SUM(l.duration) AS time FROM Labor l " +
+            "JOIN l.workOrder wo WHERE wo.company.id = :companyId AND wo.status = :status " +
+            "AND wo.completedOn BETWEEN :start AND :end")
+    WOCostTotal getCostByCompanyAndStatusAndCompletedOnBetween(@Param("companyId") Long companyId,
+                                                               @Param("status") Status status,
+                                                               @Param("start") Date start, @Param("end") Date end);
+
+    @Query("SELECT SUM(l.hourlyRate * l.duration / 3600) AS cost, SUM(l.duration) AS time FROM Labor l " +
+            "JOIN l.workOrder wo WHERE wo.asset.id = :assetId AND wo.createdAt BETWEEN :start AND :end")
+    WOCostTotal getCostByAssetAndCreatedAtBetween(@Param("assetId") Long assetId, @Param("start") Date start,
+                                                  @Param("end") Date end);
+
     void deleteByCompany_IdAndIsDemoTrue(Long companyId);
 }
@@ -7,23 +7,34 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface LocationRepository extends JpaRepository<Location, Long>, JpaSpecificationExecutor<Location> {
     Collection<Location> findByCompany_Id(Long id);
 
     List<Location> findByCompany_Id(Long id, Sort sort);
 
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "100"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<Location> streamByCompany_Id(Long id);
+
+    long countByCompany_Id(Long id);
+
     List<Location> findByParentLocation_Id(Long id, Sort sort);
 
     List<Location> findByNameIgnoreCaseAndCompany_Id(String locationName, Long companyId);
 
     Optional<Location> findByIdAndCompany_Id(Long id, Long companyId);
 
+    List<Location> findByIdInAndCompany_Id(Collection<Long> ids, Long companyId);
+
     int countByParentLocation_Id(Long locationId);
 
     void deleteByCompany_IdAndIsDemoTrue(Long companyId);
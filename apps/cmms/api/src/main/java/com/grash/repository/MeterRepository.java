@@ -3,16 +3,48 @@ package com.grash.repository;
 import com.grash.model.Meter;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface MeterRepository extends JpaRepository<Meter, Long>, JpaSpecificationExecutor<Meter> {
     Collection<Meter> findByCompany_Id(Long id);
 
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "100"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<Meter> streamByCompany_Id(Long id);
+
+    long countByCompany_Id(Long id);
+
     Collection<Meter> findByAsset_Id(Long id);
 
     Optional<Meter> findByIdAndCompany_Id(Long id, Long companyId);
 
+    List<Meter> findByIdInAndCompany_Id(Collection<Long> ids, Long companyId);
+
+    /**
+     * Locks the meters in id order, so that concurrent ingestions of the same meters wait for each other
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT m FROM Meter m WHERE m.id IN :ids AND m.company.id = :companyId ORDER BY m.id")
+    List<Meter> findByIdInAndCompanyForUpdate(@Param("ids") Collection<Long> ids, @Param("companyId") Long companyId);
+
     void deleteByCompany_IdAndIsDemoTrue(Long companyId);
+
+    List<Meter> findByReadingRetentionDaysNotNull();
+
+    @Modifying
+    @Query(value = "UPDATE meter SET (last_reading_at, last_reading_value) = (SELECT r.created_at, r.value FROM " +
+            "reading r WHERE r.meter_id = meter.id ORDER BY r.created_at DESC, r.id DESC LIMIT 1) WHERE id = :id",
+            nativeQuery = true)
+    void refreshLastReading(@Param("id") Long id);
 }
@@ -1,9 +1,15 @@
 package com.grash.repository;
 
+import com.grash.dto.analytics.workOrders.WOCostByWorkOrder;
+import com.grash.dto.analytics.workOrders.WOCostTotal;
 import com.grash.model.PartQuantity;
+import com.grash.model.enums.Status;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.Optional;
 
 public interface PartQuantityRepository extends JpaRepository<PartQuantity, Long> {
@@ -11,6 +17,21 @@ public interface PartQuantityRepository extends JpaRepository<PartQuantity, Long
 
     Collection<PartQuantity> findByWorkOrder_Id(Long id);
 
+    @Query("SELECT q.workOrder.id AS id, SUM(q.quantity * q.part.cost) AS cost FROM PartQuantity q " +
+            "WHERE q.workOrder.id IN :ids GROUP BY q.workOrder.id")
+    Collection<WOCostByWorkOrder> getCostByWorkOrder(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT SUM(q.quantity * q.part.cost) AS cost FROM PartQuantity q JOIN q.workOrder wo " +
+            "WHERE wo.company.id = :companyId AND wo.status = :status AND wo.completedOn BETWEEN :start AND :end")
+    WOCostTotal getCostByCompanyAndStatusAndCompletedOnBetween(@Param("companyId") Long companyId,
+                                                               @Param("status") Status status,
+                                                               @Param("start") Date start, @Param("end") Date end);
+
+    @Query("SELECT SUM(q.quantity * q.part.cost) AS cost FROM PartQuantity q JOIN q.workOrder wo " +
+            "WHERE wo.asset.id = :assetId AND wo.createdAt BETWEEN :start AND :end")
+    WOCostTotal getCostByAssetAndCreatedAtBetween(@Param("assetId") Long assetId, @Param("start") Date start,
+                                                  @Param("end") Date end);
+
     Collection<PartQuantity> findByPart_Id(Long id);
 
     Collection<PartQuantity> findByPurchaseOrder_Id(Long id);
@@ -4,16 +4,28 @@ import com.grash.model.Part;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface PartRepository extends JpaRepository<Part, Long>, JpaSpecificationExecutor<Part> {
     Collection<Part> findByCompany_Id(@Param("x") Long id);
 
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "100"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<Part> streamByCompany_Id(Long id);
+
+    long countByCompany_Id(Long id);
+
     Optional<Part> findByIdAndCompany_Id(Long id, Long companyId);
 
+    List<Part> findByIdInAndCompany_Id(Collection<Long> ids, Long companyId);
+
     Optional<Part> findByNameIgnoreCaseAndCompany_Id(String name, Long companyId);
 
     Optional<Part> findByBarcodeAndCompany_Id(String barcode, Long companyId);
@@ -15,12 +15,17 @@ public interface PreventiveMaintenanceRepository extends JpaRepository<Preventiv
         JpaSpecificationExecutor<PreventiveMaintenance> {
     Collection<PreventiveMaintenance> findByCompany_Id(@Param("x") Long id);
 
-    List<PreventiveMaintenance> findByCreatedAtBeforeAndCompany_Id(Date start, Long companyId);
+    @Query("SELECT pm FROM PreventiveMaintenance pm LEFT JOIN FETCH pm.schedule " +
+            "WHERE pm.createdAt < :end AND pm.company.id = :companyId")
+    List<PreventiveMaintenance> findWithScheduleByCreatedAtBeforeAndCompany(@Param("end") Date end,
+                                                                             @Param("companyId") Long companyId);
 
     void deleteByCompany_IdAndIsDemoTrue(Long companyId);
 
     Optional<PreventiveMaintenance> findByIdAndCompany_Id(Long id, Long companyId);
 
+    List<PreventiveMaintenance> findByIdInAndCompany_Id(Collection<Long> ids, Long companyId);
+
     @Query("SELECT CASE WHEN COUNT(p) > :threshold THEN true ELSE false END " +
             "FROM PreventiveMaintenance p WHERE p.company.id = :companyId")
     boolean hasMoreThan(@Param("companyId") Long companyId, @Param("threshold") Long threshold);
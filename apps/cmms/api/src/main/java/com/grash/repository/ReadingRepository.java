@@ -2,14 +2,33 @@ package com.grash.repository;
 
 import com.grash.model.Reading;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
 public interface ReadingRepository extends JpaRepository<Reading, Long> {
     @Query("SELECT r from Reading r where r.meter.company.id = :x ")
     Collection<Reading> findByCompany_Id(@Param("x") Long id);
 
     Collection<Reading> findByMeter_Id(Long id);
+
+    List<Reading> findByMeter_IdAndCreatedAtGreaterThanEqualAndCreatedAtLessThanOrderByCreatedAt(Long id, Date start,
+                                                                                                 Date end);
+
+    /**
+     * @return the number of readings of the meter between start and end, counting at most limit of them
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT 1 FROM reading WHERE meter_id = :meterId AND created_at >= :start " +
+            "AND created_at < :end LIMIT :limit) r", nativeQuery = true)
+    long countBetween(@Param("meterId") Long meterId, @Param("start") Date start, @Param("end") Date end,
+                      @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "DELETE FROM reading WHERE (id, created_at) IN (SELECT id, created_at FROM reading " +
+            "WHERE meter_id = :meterId AND created_at < :before LIMIT :limit)", nativeQuery = true)
+    int deleteBefore(@Param("meterId") Long meterId, @Param("before") Date before, @Param("limit") int limit);
 }
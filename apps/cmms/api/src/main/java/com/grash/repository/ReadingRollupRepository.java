@@ -0,0 +1,76 @@
+package com.grash.repository;
+
+import com.grash.dto.DirtyReadingHour;
+import com.grash.model.ReadingRollup;
+import com.grash.model.enums.ReadingResolution;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+public interface ReadingRollupRepository extends JpaRepository<ReadingRollup, Long> {
+
+    /**
+     * Marks the hour, or bumps the version of its marker so that a rebuild running concurrently keeps it. Updating
+     * the marker waits for the rebuild which claimed it.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO reading_rollup_dirty (meter_id, hour) " +
+            "VALUES (:meterId, date_trunc('hour', CAST(:date AS TIMESTAMP))) ON CONFLICT (meter_id, hour) " +
+            "DO UPDATE SET version = reading_rollup_dirty.version + 1", nativeQuery = true)
+    void markDirty(@Param("meterId") Long meterId, @Param("date") Date date);
+
+    @Query(value = "SELECT meter_id AS \"meterId\", hour, version FROM reading_rollup_dirty " +
+            "LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<DirtyReadingHour> claimDirty(@Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "DELETE FROM reading_rollup_dirty WHERE meter_id = :meterId AND hour = :hour " +
+            "AND version = :version", nativeQuery = true)
+    void deleteDirty(@Param("meterId") Long meterId, @Param("hour") Date hour, @Param("version") long version);
+
+    @Modifying
+    @Query(value = "DELETE FROM reading_rollup WHERE meter_id = :meterId AND resolution = :resolution " +
+            "AND bucket >= :start AND bucket < :end", nativeQuery = true)
+    void deleteBuckets(@Param("meterId") Long meterId, @Param("resolution") int resolution,
+                       @Param("start") Date start, @Param("end") Date end);
+
+    /**
+     * Rebuilds the buckets of the readings sampled between start (inclusive) and end (exclusive)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO reading_rollup (meter_id, resolution, bucket, min_value, max_value, sum_value, " +
+            "value_count) " +
+            "SELECT meter_id, :resolution, date_trunc(CAST(:unit AS TEXT), created_at), MIN(value), MAX(value), " +
+            "SUM(value), COUNT(*) FROM reading " +
+            "WHERE meter_id = :meterId AND created_at >= :start AND created_at < :end GROUP BY 1, 3",
+            nativeQuery = true)
+    void insertFromReadings(@Param("meterId") Long meterId, @Param("resolution") int resolution,
+                            @Param("unit") String unit, @Param("start") Date start, @Param("end") Date end);
+
+    /**
+     * Rebuilds the day bucket starting at start from its hour buckets, which outlive the readings
+     */
+    @Modifying
+    @Query(value = "INSERT INTO reading_rollup (meter_id, resolution, bucket, min_value, max_value, sum_value, " +
+            "value_count) " +
+            "SELECT meter_id, :day, CAST(:start AS TIMESTAMP), MIN(min_value), MAX(max_value), SUM(sum_value), " +
+            "SUM(value_count) FROM reading_rollup " +
+            "WHERE meter_id = :meterId AND resolution = :hour AND bucket >= :start AND bucket < :end " +
+            "GROUP BY meter_id", nativeQuery = true)
+    void insertDayFromHours(@Param("meterId") Long meterId, @Param("day") int day, @Param("hour") int hour,
+                            @Param("start") Date start, @Param("end") Date end);
+
+    @Modifying
+    @Query(value = "DELETE FROM reading_rollup WHERE resolution = :resolution AND bucket < :before",
+            nativeQuery = true)
+    int deleteBefore(@Param("resolution") int resolution, @Param("before") Date before);
+
+    List<ReadingRollup> findByMeterIdAndResolutionAndBucketGreaterThanEqualAndBucketLessThanOrderByBucket(
+            Long meterId, ReadingResolution resolution, Date start, Date end);
+}
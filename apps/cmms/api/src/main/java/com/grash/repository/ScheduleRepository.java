@@ -6,6 +6,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
 public interface ScheduleRepository extends JpaRepository<Schedule, Long> {
     @Query("SELECT s from Schedule s where s.preventiveMaintenance.company.id = :x ")
@@ -33,4 +35,16 @@ public interface ScheduleRepository extends JpaRepository<Schedule, Long> {
             true)
     Collection<Schedule> findByActive();
 
+    @Query(value = "SELECT * FROM schedule WHERE disabled = false AND next_due_on <= :now ORDER BY next_due_on " +
+            "LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Schedule> claimDue(@Param("now") Date now, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM schedule WHERE disabled = false AND next_notification_on <= :now " +
+            "ORDER BY next_notification_on LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Schedule> claimDueNotifications(@Param("now") Date now, @Param("limit") int limit);
+
+    @Query("SELECT s FROM Schedule s WHERE s.disabled = false AND s.nextDueOn IS NULL " +
+            "AND s.awaitingCompletion = false AND (s.endsOn IS NULL OR s.endsOn > :now)")
+    List<Schedule> findUnplanned(@Param("now") Date now);
+
 }
@@ -0,0 +1,136 @@
+package com.grash.repository;
+
+import com.grash.dto.analytics.DirtyRollupDay;
+import com.grash.dto.analytics.assets.CostsByAsset;
+import com.grash.dto.analytics.workOrders.WOCostsAggregate;
+import com.grash.dto.analytics.workOrders.WOGroupCount;
+import com.grash.dto.analytics.workOrders.WOStatusPriorityCount;
+import com.grash.model.WorkOrderDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public interface WorkOrderDailyRollupRepository extends JpaRepository<WorkOrderDailyRollup, Long> {
+
+    /**
+     * Appends a marker of the day, the writes of the same day do not wait for each other
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO analytics_rollup_dirty (company_id, day, type) VALUES (:companyId, :day, :type)",
+            nativeQuery = true)
+    void markDirty(@Param("companyId") Long companyId, @Param("day") LocalDate day, @Param("type") String type);
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO analytics_rollup_dirty (company_id, day, type) " +
+            "SELECT DISTINCT company_id, CAST(created_at AS DATE), 'WORK_ORDER' FROM work_order " +
+            "WHERE company_id = :companyId", nativeQuery = true)
+    void markCompanyDirty(@Param("companyId") Long companyId);
+
+    /**
+     * Marks the days of the work orders using the part, whose part cost depends on the cost of the part
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO analytics_rollup_dirty (company_id, day, type) " +
+            "SELECT DISTINCT wo.company_id, CAST(wo.created_at AS DATE), 'WORK_ORDER' FROM part_quantity q " +
+            "JOIN work_order wo ON wo.id = q.work_order_id WHERE q.part_id = :partId", nativeQuery = true)
+    void markPartDirty(@Param("partId") Long partId);
+
+    @Query(value = "SELECT id, company_id AS \"companyId\", day, type FROM analytics_rollup_dirty ORDER BY id " +
+            "LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<DirtyRollupDay> claimDirty(@Param("limit") int limit);
+
+    /**
+     * Serializes the rebuilds of a day until the end of the transaction, several instances can claim markers of the
+     * same day
+     */
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(hashtext('analytics_rollup:' || CAST(:companyId AS TEXT) " +
+            "|| ':' || :type || ':' || CAST(:day AS TEXT)))", nativeQuery = true)
+    Integer lockDay(@Param("companyId") Long companyId, @Param("day") LocalDate day, @Param("type") String type);
+
+    @Modifying
+    @Query(value = "DELETE FROM analytics_rollup_dirty WHERE id IN :ids", nativeQuery = true)
+    void deleteDirty(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM work_order_daily_rollup WHERE company_id = :companyId AND day = :day",
+            nativeQuery = true)
+    void deleteDay(@Param("companyId") Long companyId, @Param("day") LocalDate day);
+
+    /**
+     * Rebuilds the rows of the work orders created between start (inclusive) and end (exclusive)
+     */
+    @Modifying
+    @Query(value = "INSERT INTO work_order_daily_rollup (company_id, day, status, priority, category_id, asset_id, " +
+            "completed_by_id, work_order_count, compliant_count, reactive_count, estimated_duration, labor_time, " +
+            "labor_cost, part_cost, additional_cost) " +
+            "SELECT wo.company_id, CAST(:day AS DATE), wo.status, wo.priority, wo.category_id, wo.asset_id, " +
+            "wo.completed_by_id, COUNT(*), " +
+            "COUNT(*) FILTER (WHERE wo.due_date IS NULL OR wo.completed_on < wo.due_date), " +
+            "COUNT(*) FILTER (WHERE wo.parent_preventive_maintenance_id IS NULL), " +
+            "COALESCE(SUM(wo.estimated_duration), 0), COALESCE(SUM(lab.time), 0), COALESCE(SUM(lab.cost), 0), " +
+            "COALESCE(SUM(pq.cost), 0), COALESCE(SUM(ac.cost), 0) " +
+            "FROM work_order wo " +
+            "LEFT JOIN (SELECT l.work_order_id, SUM(l.duration) AS time, SUM(l.hourly_rate * l.duration / 3600) AS " +
+            "cost FROM labor l JOIN work_order w ON w.id = l.work_order_id WHERE w.company_id = :companyId " +
+            "AND w.created_at >= :start AND w.created_at < :end GROUP BY l.work_order_id) lab " +
+            "ON lab.work_order_id = wo.id " +
+            "LEFT JOIN (SELECT q.work_order_id, SUM(q.quantity * p.cost) AS cost FROM part_quantity q " +
+            "JOIN part p ON p.id = q.part_id JOIN work_order w ON w.id = q.work_order_id " +
+            "WHERE w.company_id = :companyId AND w.created_at >= :start AND w.created_at < :end " +
+            "GROUP BY q.work_order_id) pq ON pq.work_order_id = wo.id " +
+            "LEFT JOIN (SELECT a.work_order_id, SUM(a.cost) AS cost FROM additional_cost a " +
+            "JOIN work_order w ON w.id = a.work_order_id WHERE w.company_id = :companyId " +
+            "AND w.created_at >= :start AND w.created_at < :end GROUP BY a.work_order_id) ac " +
+            "ON ac.work_order_id = wo.id " +
+            "WHERE wo.company_id = :companyId AND wo.created_at >= :start AND wo.created_at < :end " +
+            "GROUP BY wo.company_id, wo.status, wo.priority, wo.category_id, wo.asset_id, wo.completed_by_id",
+            nativeQuery = true)
+    void insertDay(@Param("companyId") Long companyId, @Param("day") LocalDate day, @Param("start") Date start,
+                   @Param("end") Date end);
+
+    @Query("SELECT r.status AS status, r.priority AS priority, SUM(r.workOrderCount) AS count, " +
+            "SUM(r.estimatedDuration) AS estimatedDuration FROM WorkOrderDailyRollup r " +
+            "WHERE r.companyId = :companyId AND r.day BETWEEN :start AND :end GROUP BY r.status, r.priority")
+    Collection<WOStatusPriorityCount> countByStatusAndPriority(@Param("companyId") Long companyId,
+                                                               @Param("start") Date start, @Param("end") Date end);
+
+    @Query("SELECT r.categoryId AS id, SUM(r.workOrderCount) AS count FROM WorkOrderDailyRollup r " +
+            "WHERE r.companyId = :companyId AND r.day BETWEEN :start AND :end " +
+            "AND r.status = com.grash.model.enums.Status.COMPLETE AND r.categoryId IS NOT NULL " +
+            "GROUP BY r.categoryId")
+    Collection<WOGroupCount> countCompleteByCategory(@Param("companyId") Long companyId, @Param("start") Date start,
+                                                     @Param("end") Date end);
+
+    @Query("SELECT r.completedById AS id, SUM(r.workOrderCount) AS count FROM WorkOrderDailyRollup r " +
+            "WHERE r.companyId = :companyId AND r.day BETWEEN :start AND :end " +
+            "AND r.status = com.grash.model.enums.Status.COMPLETE AND r.completedById IS NOT NULL " +
+            "GROUP BY r.completedById")
+    Collection<WOGroupCount> countCompleteByCompletedBy(@Param("companyId") Long companyId,
+                                                        @Param("start") Date start, @Param("end") Date end);
+
+    @Query("SELECT r.assetId AS id, SUM(r.workOrderCount) AS count, SUM(r.laborTime) AS laborTime, " +
+            "SUM(r.laborCost) AS laborCost, SUM(r.partCost) AS partCost, SUM(r.additionalCost) AS additionalCost " +
+            "FROM WorkOrderDailyRollup r " +
+            "WHERE r.companyId = :companyId AND r.day BETWEEN :start AND :end " +
+            "AND r.status = com.grash.model.enums.Status.COMPLETE AND r.assetId IS NOT NULL GROUP BY r.assetId")
+    Collection<CostsByAsset> getCompleteCostsByAsset(@Param("companyId") Long companyId, @Param("start") Date start,
+                                                     @Param("end") Date end);
+
+    @Query("SELECT COALESCE(SUM(r.workOrderCount), 0) AS count, COALESCE(SUM(r.laborTime), 0) AS laborTime, " +
+            "COALESCE(SUM(r.laborCost), 0) AS laborCost, COALESCE(SUM(r.partCost), 0) AS partCost, " +
+            "COALESCE(SUM(r.additionalCost), 0) AS additionalCost FROM WorkOrderDailyRollup r " +
+            "WHERE r.companyId = :companyId AND r.day BETWEEN :start AND :end " +
+            "AND r.status = com.grash.model.enums.Status.COMPLETE")
+    WOCostsAggregate getCompleteCosts(@Param("companyId") Long companyId, @Param("start") Date start,
+                                      @Param("end") Date end);
+}
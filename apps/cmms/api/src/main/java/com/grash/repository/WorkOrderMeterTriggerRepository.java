@@ -1,10 +1,47 @@
 package com.grash.repository;
 
+import com.grash.dto.MeterTriggerState;
 import com.grash.model.WorkOrderMeterTrigger;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
 public interface WorkOrderMeterTriggerRepository extends JpaRepository<WorkOrderMeterTrigger, Long> {
     Collection<WorkOrderMeterTrigger> findByMeter_Id(Long id);
+
+    Collection<WorkOrderMeterTrigger> findByMeter_IdIn(Collection<Long> ids);
+
+    /**
+     * Locks the triggers in id order, so that the evaluations of the same triggers wait for each other
+     */
+    @Query(value = "SELECT id, triggered, last_triggered_at AS \"lastTriggeredAt\", " +
+            "consecutive_breaches AS \"consecutiveBreaches\" FROM work_order_meter_trigger WHERE id IN :ids " +
+            "ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<MeterTriggerState> findStatesForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE work_order_meter_trigger SET triggered = true, last_triggered_at = :now, " +
+            "consecutive_breaches = 0 " +
+            "WHERE id = :id AND triggered = false " +
+            "AND (last_triggered_at IS NULL OR last_triggered_at <= :cooldownStart)", nativeQuery = true)
+    int markTriggered(@Param("id") Long id, @Param("now") Date now, @Param("cooldownStart") Date cooldownStart);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE work_order_meter_trigger SET triggered = false, consecutive_breaches = 0 " +
+            "WHERE id = :id AND triggered = true", nativeQuery = true)
+    int clearTriggered(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE work_order_meter_trigger SET consecutive_breaches = :consecutiveBreaches WHERE id = :id",
+            nativeQuery = true)
+    void updateConsecutiveBreaches(@Param("id") Long id, @Param("consecutiveBreaches") int consecutiveBreaches);
 }
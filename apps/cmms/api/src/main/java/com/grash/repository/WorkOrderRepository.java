@@ -1,5 +1,6 @@
 package com.grash.repository;
 
+import com.grash.dto.analytics.workOrders.*;
 import com.grash.model.WorkOrder;
 import com.grash.model.enums.Priority;
 import org.springframework.data.domain.Page;
@@ -7,15 +8,28 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface WorkOrderRepository extends JpaRepository<WorkOrder, Long>, JpaSpecificationExecutor<WorkOrder> {
     Collection<WorkOrder> findByCompany_Id(Long id);
 
+    /**
+     * Reads the rows lazily with a server side cursor, must be consumed inside a transaction.
+     */
+    @QueryHints({@QueryHint(name = "org.hibernate.fetchSize", value = "100"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")})
+    Stream<WorkOrder> streamByCompany_Id(Long id);
+
+    long countByCompany_Id(Long id);
+
     Collection<WorkOrder> findByAsset_Id(Long id);
 
     Collection<WorkOrder> findByLocation_Id(Long id);
@@ -38,6 +52,10 @@ public interface WorkOrderRepository extends JpaRepository<WorkOrder, Long>, Jpa
 
     Optional<WorkOrder> findByIdAndCompany_Id(Long id, Long companyId);
 
+    List<WorkOrder> findByIdInAndCompany_Id(Collection<Long> ids, Long companyId);
+
+    List<WorkOrder> findByCompletedOnBetweenAndCompany_IdOrderByCompletedOn(Date date1, Date date2, Long id);
+
     Collection<WorkOrder> findByCreatedByAndCreatedAtBetween(Long id, Date date1, Date date2);
 
     Collection<WorkOrder> findByCompletedBy_IdAndCreatedAtBetween(Long id, Date date1, Date date2);
@@ -74,4 +92,73 @@ public interface WorkOrderRepository extends JpaRepository<WorkOrder, Long>, Jpa
             "FROM WorkOrder wo WHERE wo.company.id = :companyId AND wo.status!=com.grash.model.enums.Status" +
             ".COMPLETE")
     boolean hasMoreActiveThan(@Param("companyId") Long companyId, @Param("threshold") Long threshold);
+
+    @Query("SELECT wo.status AS status, wo.priority AS priority, COUNT(wo) AS count, " +
+            "COALESCE(SUM(wo.estimatedDuration), 0) AS estimatedDuration " +
+            "FROM WorkOrder wo WHERE wo.company.id = :companyId AND wo.createdAt BETWEEN :start AND :end " +
+            "GROUP BY wo.status, wo.priority")
+    Collection<WOStatusPriorityCount> countByStatusAndPriority(@Param("companyId") Long companyId,
+                                                               @Param("start") Date start, @Param("end") Date end);
+
+    @Query(value = "SELECT COUNT(*) AS total, " +
+            "COUNT(*) FILTER (WHERE wo.status = :complete) AS complete, " +
+            "COUNT(*) FILTER (WHERE wo.status = :complete AND (wo.due_date IS NULL OR wo.completed_on < wo" +
+            ".due_date)) AS compliant, " +
+            "COUNT(wo.first_time_to_react) AS reacted, " +
+            "CAST(COALESCE(SUM(TRUNC(EXTRACT(EPOCH FROM (wo.first_time_to_react - wo.created_at)) / 3600)), 0) AS " +
+            "BIGINT) AS \"reactionTime\", " +
+            "COUNT(*) FILTER (WHERE wo.status = :complete AND wo.completed_on IS NOT NULL) AS cycled, " +
+            "CAST(COALESCE(SUM(TRUNC(EXTRACT(EPOCH FROM (wo.completed_on - COALESCE(r.created_at, wo.created_at)))" +
+            " / 86400)) FILTER (WHERE wo.status = :complete), 0) AS BIGINT) AS \"cycleTime\", " +
+            "COUNT(*) FILTER (WHERE wo.status <> :complete) AS incomplete, " +
+            "CAST(COALESCE(SUM(TRUNC(EXTRACT(EPOCH FROM (CAST(:now AS TIMESTAMP) - COALESCE(r.created_at, wo" +
+            ".created_at))) / 86400)) " +
+            "FILTER (WHERE wo.status <> :complete), 0) AS BIGINT) AS \"incompleteAge\" " +
+            "FROM work_order wo LEFT JOIN request r ON r.id = wo.parent_request_id " +
+            "WHERE wo.company_id = :companyId AND wo.created_at BETWEEN :start AND :end", nativeQuery = true)
+    WOOverviewAggregate getOverview(@Param("companyId") Long companyId, @Param("start") Date start,
+                                    @Param("end") Date end, @Param("now") Date now,
+                                    @Param("complete") int completeStatus);
+
+    @Query("SELECT COUNT(wo) AS count, " +
+            "COALESCE(SUM(CASE WHEN wo.dueDate IS NULL OR wo.completedOn < wo.dueDate THEN 1 ELSE 0 END), 0) AS " +
+            "compliant, " +
+            "COALESCE(SUM(CASE WHEN wo.parentPreventiveMaintenance IS NULL THEN 1 ELSE 0 END), 0) AS reactive " +
+            "FROM WorkOrder wo WHERE wo.company.id = :companyId AND wo.completedOn BETWEEN :start AND :end " +
+            "AND wo.status = com.grash.model.enums.Status.COMPLETE")
+    WOCompletionAggregate getCompletion(@Param("companyId") Long companyId, @Param("start") Date start,
+                                        @Param("end") Date end);
+
+    @Query("SELECT wo.category.id AS id, COUNT(wo) AS count FROM WorkOrder wo " +
+            "WHERE wo.company.id = :companyId AND wo.createdAt BETWEEN :start AND :end " +
+            "AND wo.status = com.grash.model.enums.Status.COMPLETE AND wo.category IS NOT NULL " +
+            "GROUP BY wo.category.id")
+    Collection<WOGroupCount> countCompleteByCategory(@Param("companyId") Long companyId, @Param("start") Date start,
+                                                     @Param("end") Date end);
+
+    @Query("SELECT wo.completedBy.id AS id, COUNT(wo) AS count FROM WorkOrder wo " +
+            "WHERE wo.company.id = :companyId AND wo.createdAt BETWEEN :start AND :end " +
+            "AND wo.status = com.grash.model.enums.Status.COMPLETE AND wo.completedBy IS NOT NULL " +
+            "GROUP BY wo.completedBy.id")
+    Collection<WOGroupCount> countCompleteByCompletedBy(@Param("companyId") Long companyId,
+                                                        @Param("start") Date start, @Param("end") Date end);
+
+    @Query(value = "SELECT wo.asset_id AS id, COUNT(*) AS count, " +
+            "CAST(COALESCE(SUM(TRUNC(EXTRACT(EPOCH FROM (CAST(:now AS TIMESTAMP) - wo.created_at)) / 86400)), 0) AS " +
+            "BIGINT) AS age " +
+            "FROM work_order wo WHERE wo.company_id = :companyId AND wo.created_at BETWEEN :start AND :end " +
+            "AND wo.status <> :complete AND wo.asset_id IS NOT NULL GROUP BY wo.asset_id", nativeQuery = true)
+    Collection<WOGroupAge> getIncompleteAgeByAsset(@Param("companyId") Long companyId, @Param("start") Date start,
+                                                   @Param("end") Date end, @Param("now") Date now,
+                                                   @Param("complete") int completeStatus);
+
+    @Query(value = "SELECT wo.asset_id AS id, COUNT(*) AS count, " +
+            "CAST(COALESCE(SUM(TRUNC(EXTRACT(EPOCH FROM (wo.completed_on - COALESCE(r.created_at, wo.created_at)))" +
+            " / 86400)), 0) AS BIGINT) AS age " +
+            "FROM work_order wo LEFT JOIN request r ON r.id = wo.parent_request_id " +
+            "WHERE wo.company_id = :companyId AND wo.created_at BETWEEN :start AND :end " +
+            "AND wo.status = :complete AND wo.completed_on IS NOT NULL AND wo.asset_id IS NOT NULL " +
+            "GROUP BY wo.asset_id", nativeQuery = true)
+    Collection<WOGroupAge> getCycleTimeByAsset(@Param("companyId") Long companyId, @Param("start") Date start,
+                                               @Param("end") Date end, @Param("complete") int completeStatus);
 }
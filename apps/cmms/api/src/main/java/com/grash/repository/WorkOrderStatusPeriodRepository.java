@@ -0,0 +1,78 @@
+package com.grash.repository;
+
+import com.grash.dto.analytics.workOrders.WOStatusCountAt;
+import com.grash.model.WorkOrderStatusPeriod;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public interface WorkOrderStatusPeriodRepository extends JpaRepository<WorkOrderStatusPeriod, Long> {
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE work_order_status_period SET valid_to = :now WHERE work_order_id = :workOrderId " +
+            "AND valid_to IS NULL AND status <> :status", nativeQuery = true)
+    void closeCurrent(@Param("workOrderId") Long workOrderId, @Param("status") int status, @Param("now") Date now);
+
+    /**
+     * Opens a period unless the work order already has a current one. The first period of a work order starts at its
+     * creation.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO work_order_status_period (work_order_id, status, valid_from) " +
+            "SELECT :workOrderId, :status, CASE WHEN EXISTS (SELECT 1 FROM work_order_status_period " +
+            "WHERE work_order_id = :workOrderId) THEN CAST(:now AS TIMESTAMP) ELSE CAST(:createdAt AS TIMESTAMP) END " +
+            "WHERE NOT EXISTS (SELECT 1 FROM work_order_status_period WHERE work_order_id = :workOrderId " +
+            "AND valid_to IS NULL) ON CONFLICT DO NOTHING", nativeQuery = true)
+    void openCurrent(@Param("workOrderId") Long workOrderId, @Param("status") int status,
+                     @Param("createdAt") Date createdAt, @Param("now") Date now);
+
+    /**
+     * {@link #closeCurrent} of several work orders in one statement, the lists are parallel
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE work_order_status_period p SET valid_to = :now " +
+            "FROM unnest(CAST(ARRAY[:workOrderIds] AS BIGINT[]), CAST(ARRAY[:statuses] AS INT[])) " +
+            "AS c(work_order_id, status) " +
+            "WHERE p.work_order_id = c.work_order_id AND p.valid_to IS NULL AND p.status <> c.status",
+            nativeQuery = true)
+    void closeCurrentAll(@Param("workOrderIds") List<Long> workOrderIds, @Param("statuses") List<Integer> statuses,
+                         @Param("now") Date now);
+
+    /**
+     * {@link #openCurrent} of several work orders in one statement, the lists are parallel
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO work_order_status_period (work_order_id, status, valid_from) " +
+            "SELECT c.work_order_id, c.status, CASE WHEN EXISTS (SELECT 1 FROM work_order_status_period " +
+            "WHERE work_order_id = c.work_order_id) THEN CAST(:now AS TIMESTAMP) ELSE c.created_at END " +
+            "FROM unnest(CAST(ARRAY[:workOrderIds] AS BIGINT[]), CAST(ARRAY[:statuses] AS INT[]), " +
+            "CAST(ARRAY[:createdAts] AS TIMESTAMP[])) AS c(work_order_id, status, created_at) " +
+            "WHERE NOT EXISTS (SELECT 1 FROM work_order_status_period WHERE work_order_id = c.work_order_id " +
+            "AND valid_to IS NULL) ON CONFLICT DO NOTHING", nativeQuery = true)
+    void openCurrentAll(@Param("workOrderIds") List<Long> workOrderIds, @Param("statuses") List<Integer> statuses,
+                        @Param("createdAts") List<Date> createdAts, @Param("now") Date now);
+
+    /**
+     * For each instant, counts the work orders created between start and the instant by the status they had at the
+     * instant
+     */
+    @Query(value = "SELECT i.instant AS instant, p.status AS status, COUNT(*) AS count " +
+            "FROM unnest(CAST(ARRAY[:instants] AS TIMESTAMP[])) AS i(instant) " +
+            "JOIN work_order wo ON wo.company_id = :companyId AND wo.created_at >= :start " +
+            "AND wo.created_at <= i.instant " +
+            "JOIN work_order_status_period p ON p.work_order_id = wo.id AND p.valid_from <= i.instant " +
+            "AND (p.valid_to IS NULL OR p.valid_to > i.instant) " +
+            "GROUP BY i.instant, p.status", nativeQuery = true)
+    List<WOStatusCountAt> countByStatusAt(@Param("companyId") Long companyId, @Param("start") Date start,
+                                          @Param("instants") Collection<Date> instants);
+}
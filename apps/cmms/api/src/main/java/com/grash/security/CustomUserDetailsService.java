@@ -1,18 +1,46 @@
 package com.grash.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.grash.model.Company;
+import com.grash.model.CompanySettings;
 import com.grash.model.OwnUser;
+import com.grash.model.Role;
+import com.grash.model.Subscription;
 import com.grash.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 @Service
 @RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Detached users of the authenticated tokens by lowercase email. They are shared by the concurrent requests and
+     * must be treated as read-only: every association read through the security context is initialized when loading so
+     * that no request lazy loads on a shared instance. The entries are evicted when the user, its settings, its role,
+     * its company, the company preferences or its subscription change, the expiration only bounds the staleness of the
+     * changes made by bulk updates or another instance.
+     */
+    private final Cache<String, OwnUser> principals = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
 
     @Override
     @Transactional(readOnly = true)
@@ -27,4 +55,96 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .build();
     }
 
+    /**
+     * Same as {@link #loadUserByUsername(String)} but the user is cached, used to authenticate the requests
+     */
+    public CustomUserDetail loadPrincipal(String username) throws UsernameNotFoundException {
+        OwnUser user = principals.get(username.toLowerCase(Locale.ROOT), this::loadDetachedUser);
+        if (user == null) {
+            throw new UsernameNotFoundException("User '" + username + "' not found");
+        }
+        return CustomUserDetail.builder()
+                .user(user)
+                .build();
+    }
+
+    public void evictUser(Long userId) {
+        evict(user -> user.getId().equals(userId));
+    }
+
+    public void evictRole(Long roleId) {
+        evict(user -> user.getRole().getId().equals(roleId));
+    }
+
+    public void evictCompany(Long companyId) {
+        evict(user -> user.getCompany().getId().equals(companyId));
+    }
+
+    public void evictUserSettings(Long userSettingsId) {
+        evict(user -> user.getUserSettings() != null && user.getUserSettings().getId().equals(userSettingsId));
+    }
+
+    public void evictGeneralPreferences(Long generalPreferencesId) {
+        evict(user -> {
+            CompanySettings companySettings = user.getCompany().getCompanySettings();
+            return companySettings != null && companySettings.getGeneralPreferences() != null
+                    && companySettings.getGeneralPreferences().getId().equals(generalPreferencesId);
+        });
+    }
+
+    public void evictSubscription(Long subscriptionId) {
+        evict(user -> user.getCompany().getSubscription() != null
+                && user.getCompany().getSubscription().getId().equals(subscriptionId));
+    }
+
+    //evicted again after the commit, a request could have cached the previous state in between
+    private void evict(Predicate<OwnUser> predicate) {
+        principals.asMap().values().removeIf(predicate);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    principals.asMap().values().removeIf(predicate);
+                }
+            });
+        }
+    }
+
+    private OwnUser loadDetachedUser(String email) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate.execute(status -> userRepository.findByEmailIgnoreCase(email).map(user -> {
+            Hibernate.initialize(user.getUserSettings());
+            initializeRole(user.getRole());
+            initializeCompany(user.getCompany());
+            user.getSuperAccountRelations().forEach(relation ->
+                    Hibernate.initialize(relation.getChildUser().getCompany()));
+            return user;
+        }).orElse(null));
+    }
+
+    private void initializeRole(Role role) {
+        Hibernate.initialize(role);
+        Hibernate.initialize(role.getCreatePermissions());
+        Hibernate.initialize(role.getViewPermissions());
+        Hibernate.initialize(role.getViewOtherPermissions());
+        Hibernate.initialize(role.getEditOtherPermissions());
+        Hibernate.initialize(role.getDeleteOtherPermissions());
+    }
+
+    private void initializeCompany(Company company) {
+        Hibernate.initialize(company);
+        CompanySettings companySettings = company.getCompanySettings();
+        Hibernate.initialize(companySettings);
+        if (companySettings != null && companySettings.getGeneralPreferences() != null) {
+            Hibernate.initialize(companySettings.getGeneralPreferences());
+            Hibernate.initialize(companySettings.getGeneralPreferences().getCurrency());
+        }
+        Subscription subscription = company.getSubscription();
+        if (subscription != null) {
+            Hibernate.initialize(subscription);
+            Hibernate.initialize(subscription.getSubscriptionPlan());
+            Hibernate.initialize(subscription.getSubscriptionPlan().getFeatures());
+        }
+    }
 }
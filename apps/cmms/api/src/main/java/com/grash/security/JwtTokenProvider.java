@@ -59,7 +59,7 @@ public class JwtTokenProvider {
     }
 
     public Authentication getAuthentication(String token) {
-        UserDetails userDetails = customUserDetailsService.loadUserByUsername(getUsername(token));
+        UserDetails userDetails = customUserDetailsService.loadPrincipal(getUsername(token));
         if (!userDetails.isEnabled()) {
             throw new CustomException("User account is disabled", HttpStatus.UNAUTHORIZED);
         }
@@ -0,0 +1,48 @@
+package com.grash.security;
+
+import com.grash.model.Company;
+import com.grash.model.GeneralPreferences;
+import com.grash.model.OwnUser;
+import com.grash.model.Role;
+import com.grash.model.Subscription;
+import com.grash.model.SuperAccountRelation;
+import com.grash.model.UserSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Evicts the principals cached by {@link CustomUserDetailsService} when the entities they are loaded from change.
+ * Instantiated by Hibernate through the Spring bean container. The changes made only to the element collections of a
+ * role do not always fire its update callbacks, {@link com.grash.service.RoleService} evicts them explicitly.
+ */
+public class PrincipalEvictionListener {
+
+    @Lazy
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void afterChange(Object entity) {
+        if (entity instanceof OwnUser) {
+            customUserDetailsService.evictUser(((OwnUser) entity).getId());
+        } else if (entity instanceof Role) {
+            customUserDetailsService.evictRole(((Role) entity).getId());
+        } else if (entity instanceof Company) {
+            customUserDetailsService.evictCompany(((Company) entity).getId());
+        } else if (entity instanceof UserSettings) {
+            customUserDetailsService.evictUserSettings(((UserSettings) entity).getId());
+        } else if (entity instanceof GeneralPreferences) {
+            customUserDetailsService.evictGeneralPreferences(((GeneralPreferences) entity).getId());
+        } else if (entity instanceof Subscription) {
+            customUserDetailsService.evictSubscription(((Subscription) entity).getId());
+        } else if (entity instanceof SuperAccountRelation) {
+            customUserDetailsService.evictUser(((SuperAccountRelation) entity).getSuperUser().getId());
+        }
+    }
+}
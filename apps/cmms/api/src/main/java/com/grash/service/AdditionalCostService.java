@@ -27,6 +27,7 @@ public class AdditionalCostService {
 
     private final AdditionalCostMapper additionalCostMapper;
     private final LicenseService licenseService;
+    private final AnalyticsRollupService analyticsRollupService;
 
     @Transactional
     public AdditionalCost create(AdditionalCost additionalCost) {
@@ -34,6 +35,7 @@ public class AdditionalCostService {
             throw new CustomException("You need a license to create a additional cost", HttpStatus.FORBIDDEN);
         AdditionalCost savedAdditionalCost = additionalCostRepository.saveAndFlush(additionalCost);
         em.refresh(savedAdditionalCost);
+        analyticsRollupService.markWorkOrder(savedAdditionalCost.getWorkOrder());
         return savedAdditionalCost;
     }
 
@@ -44,6 +46,7 @@ public class AdditionalCostService {
             AdditionalCost updatedAdditionalCost =
                     additionalCostRepository.saveAndFlush(additionalCostMapper.updateAdditionalCost(savedAdditionalCost, additionalCost));
             em.refresh(updatedAdditionalCost);
+            analyticsRollupService.markWorkOrder(updatedAdditionalCost.getWorkOrder());
             return updatedAdditionalCost;
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
@@ -53,6 +56,8 @@ public class AdditionalCostService {
     }
 
     public void delete(Long id) {
+        additionalCostRepository.findById(id)
+                .ifPresent(additionalCost -> analyticsRollupService.markWorkOrder(additionalCost.getWorkOrder()));
         additionalCostRepository.deleteById(id);
     }
 
@@ -0,0 +1,132 @@
+package com.grash.service;
+
+import com.grash.dto.analytics.DirtyRollupDay;
+import com.grash.model.AssetDowntime;
+import com.grash.model.WorkOrder;
+import com.grash.model.enums.RollupType;
+import com.grash.repository.AssetDowntimeDailyRollupRepository;
+import com.grash.repository.WorkOrderDailyRollupRepository;
+import com.grash.utils.Helper;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the daily analytics rollups up to date. Writes only append a marker of the impacted day inside their own
+ * transaction, {@link com.grash.job.AnalyticsRollupJob} then recomputes the dirty days from the source tables, so a
+ * rollup is always rebuilt and never incremented. Days are the dates in the JVM time zone, in which the timestamps
+ * without time zone are stored, and are passed to the queries as dates.
+ */
+@Service
+@RequiredArgsConstructor
+public class AnalyticsRollupService {
+    private static final int BATCH_SIZE = 100;
+
+    private final WorkOrderDailyRollupRepository workOrderDailyRollupRepository;
+    private final AssetDowntimeDailyRollupRepository assetDowntimeDailyRollupRepository;
+
+    public void markWorkOrder(WorkOrder workOrder) {
+        if (workOrder == null || workOrder.getCompany() == null || workOrder.getCreatedAt() == null) return;
+        workOrderDailyRollupRepository.markDirty(workOrder.getCompany().getId(),
+                Helper.dateToLocalDate(workOrder.getCreatedAt()), RollupType.WORK_ORDER.name());
+    }
+
+    /**
+     * Marks each impacted day once, used by the bulk writes
+     */
+    public void markWorkOrders(Collection<WorkOrder> workOrders) {
+        workOrders.stream()
+                .filter(workOrder -> workOrder.getCompany() != null && workOrder.getCreatedAt() != null)
+                .map(workOrder -> Pair.of(workOrder.getCompany().getId(),
+                        Helper.dateToLocalDate(workOrder.getCreatedAt())))
+                .distinct()
+                .sorted(Comparator.comparing((Pair<Long, LocalDate> day) -> day.getFirst())
+                        .thenComparing(Pair::getSecond))
+                .forEach(day -> workOrderDailyRollupRepository.markDirty(day.getFirst(), day.getSecond(),
+                        RollupType.WORK_ORDER.name()));
+    }
+
+    public void markDowntime(AssetDowntime assetDowntime) {
+        if (assetDowntime == null || assetDowntime.getCompany() == null || assetDowntime.getStartsOn() == null)
+            return;
+        workOrderDailyRollupRepository.markDirty(assetDowntime.getCompany().getId(),
+                Helper.dateToLocalDate(assetDowntime.getStartsOn()), RollupType.ASSET_DOWNTIME.name());
+    }
+
+    /**
+     * Marks the days using the part after a change of its cost
+     */
+    public void markPart(Long partId) {
+        workOrderDailyRollupRepository.markPartDirty(partId);
+    }
+
+    public void markCompany(Long companyId) {
+        workOrderDailyRollupRepository.markCompanyDirty(companyId);
+        assetDowntimeDailyRollupRepository.markCompanyDirty(companyId);
+    }
+
+    /**
+     * Recomputes the days of a batch of markers, each day once. The markers are claimed with SKIP LOCKED so several
+     * instances can share the work, and deleted by id: a write committed after the rebuild read its day appended
+     * another marker, left for the next run.
+     *
+     * @return the number of claimed markers
+     */
+    @Transactional
+    public int refreshDirtyDays() {
+        List<DirtyRollupDay> markers = workOrderDailyRollupRepository.claimDirty(BATCH_SIZE);
+        if (markers.isEmpty()) return 0;
+        markers.stream()
+                //native queries return a java.sql.Date which does not support toInstant
+                .map(marker -> new RollupDay(marker.getCompanyId(),
+                        Helper.dateToLocalDate(new Date(marker.getDay().getTime())),
+                        RollupType.valueOf(marker.getType())))
+                .distinct()
+                .forEach(this::rebuild);
+        workOrderDailyRollupRepository.deleteDirty(markers.stream().map(DirtyRollupDay::getId)
+                .collect(Collectors.toList()));
+        return markers.size();
+    }
+
+    private void rebuild(RollupDay rollupDay) {
+        Long companyId = rollupDay.getCompanyId();
+        LocalDate day = rollupDay.getDay();
+        Date start = Helper.localDateToDate(day);
+        Date end = Helper.localDateToDate(day.plusDays(1));
+        //another instance may have claimed other markers of the day
+        workOrderDailyRollupRepository.lockDay(companyId, day, rollupDay.getType().name());
+        switch (rollupDay.getType()) {
+            case WORK_ORDER:
+                workOrderDailyRollupRepository.deleteDay(companyId, day);
+                workOrderDailyRollupRepository.insertDay(companyId, day, start, end);
+                break;
+            case ASSET_DOWNTIME:
+                assetDowntimeDailyRollupRepository.deleteDay(companyId, day);
+                assetDowntimeDailyRollupRepository.insertDay(companyId, day, start, end);
+                break;
+        }
+    }
+
+    /**
+     * @return the date truncated to its day, rollups only have a day granularity
+     */
+    public static Date toDay(Date date) {
+        return Helper.localDateToDate(Helper.dateToLocalDate(date));
+    }
+
+    @Value
+    private static class RollupDay {
+        Long companyId;
+        LocalDate day;
+        RollupType type;
+    }
+}
@@ -0,0 +1,111 @@
+package com.grash.service;
+
+import com.grash.dto.DateRange;
+import com.grash.dto.analytics.assets.AssetCostSummary;
+import com.grash.dto.analytics.assets.AssetDowntimeSummary;
+import com.grash.dto.analytics.workOrders.WOGroupAge;
+import com.grash.model.AssetDowntime;
+import com.grash.model.enums.Status;
+import com.grash.repository.AssetDowntimeDailyRollupRepository;
+import com.grash.repository.AssetDowntimeRepository;
+import com.grash.repository.WorkOrderDailyRollupRepository;
+import com.grash.repository.WorkOrderRepository;
+import com.grash.utils.Helper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the per asset analytics of a whole company with a few grouped queries instead of querying each asset.
+ */
+@Service
+@RequiredArgsConstructor
+public class AssetAnalyticsService {
+    private final WorkOrderDailyRollupRepository workOrderDailyRollupRepository;
+    private final AssetDowntimeDailyRollupRepository assetDowntimeDailyRollupRepository;
+    private final AssetDowntimeRepository assetDowntimeRepository;
+    private final WorkOrderRepository workOrderRepository;
+
+    /**
+     * @return labor time and costs of the complete work orders created in the date range, by asset id
+     */
+    public Map<Long, AssetCostSummary> getCompleteWorkOrderCosts(Long companyId, DateRange dateRange) {
+        Map<Long, AssetCostSummary> result = new HashMap<>();
+        workOrderDailyRollupRepository.getCompleteCostsByAsset(companyId,
+                        AnalyticsRollupService.toDay(dateRange.getStart()), AnalyticsRollupService.toDay(dateRange.getEnd()))
+                .forEach(costs -> {
+                    AssetCostSummary summary = new AssetCostSummary();
+                    summary.setLaborTime(costs.getLaborTime());
+                    summary.setLaborCost(costs.getLaborCost());
+                    summary.setPartCost(costs.getPartCost());
+                    summary.setAdditionalCost(costs.getAdditionalCost());
+                    result.put(costs.getId(), summary);
+                });
+        return result;
+    }
+
+    public double getTotalCost(Map<Long, AssetCostSummary> costs, Collection<Long> assetIds,
+                               boolean includeLaborCost) {
+        return assetIds.stream().map(costs::get).filter(Objects::nonNull)
+                .mapToDouble(summary -> summary.getTotalCost(includeLaborCost)).sum();
+    }
+
+    /**
+     * @return downtimes starting in the date range, by asset id
+     */
+    public Map<Long, AssetDowntimeSummary> getDowntimes(Long companyId, DateRange dateRange) {
+        return getDowntimes(assetDowntimeRepository.findByStartsOnBetweenAndCompany_Id(dateRange.getStart(),
+                dateRange.getEnd(), companyId), dateRange);
+    }
+
+    public Map<Long, AssetDowntimeSummary> getDowntimes(Collection<AssetDowntime> downtimes, DateRange dateRange) {
+        Map<Long, List<AssetDowntime>> downtimesByAsset = downtimes.stream()
+                .collect(Collectors.groupingBy(assetDowntime -> assetDowntime.getAsset().getId()));
+        Map<Long, AssetDowntimeSummary> result = new HashMap<>();
+        downtimesByAsset.forEach((assetId, assetDowntimes) -> {
+            AssetDowntimeSummary summary = new AssetDowntimeSummary();
+            summary.setCount(assetDowntimes.size());
+            summary.setDuration(assetDowntimes.stream()
+                    .mapToLong(assetDowntime -> assetDowntime.getDateRangeDuration(dateRange)).sum());
+            summary.setMtbf(getMTBF(assetDowntimes));
+            result.put(assetId, summary);
+        });
+        return result;
+    }
+
+    /**
+     * @return summed duration of the downtimes starting from the start day (inclusive) to the end day (exclusive)
+     */
+    public long getDowntimeDuration(Long companyId, LocalDate start, LocalDate end) {
+        return assetDowntimeDailyRollupRepository.getDuration(companyId, Helper.localDateToDate(start),
+                Helper.localDateToDate(end.minusDays(1)));
+    }
+
+    /**
+     * @return average cycle time in days of the complete work orders created in the date range, by asset id
+     */
+    public Map<Long, Long> getRepairTimes(Long companyId, DateRange dateRange) {
+        return workOrderRepository.getCycleTimeByAsset(companyId, dateRange.getStart(), dateRange.getEnd(),
+                        Status.COMPLETE.ordinal()).stream()
+                .collect(Collectors.toMap(WOGroupAge::getId, groupAge -> groupAge.getAge() / groupAge.getCount()));
+    }
+
+    //same computation as AssetService.getMTBF
+    private long getMTBF(List<AssetDowntime> downtimes) {
+        if (downtimes.size() < 2) {
+            return 0L;
+        }
+        List<AssetDowntime> sortedDowntimes = new ArrayList<>(downtimes);
+        sortedDowntimes.sort(Comparator.comparing(AssetDowntime::getStartsOn));
+        long intervalsSum = 0;
+        for (int i = 0; i < sortedDowntimes.size() - 1; i++) {
+            intervalsSum += Helper.getDateDiff(sortedDowntimes.get(i).getEndsOn(),
+                    sortedDowntimes.get(i + 1).getStartsOn(), TimeUnit.DAYS);
+        }
+        return intervalsSum / (sortedDowntimes.size() - 1);
+    }
+}
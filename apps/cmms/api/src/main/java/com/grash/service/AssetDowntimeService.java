@@ -1,6 +1,7 @@
 package com.grash.service;
 
 import com.grash.dto.AssetDowntimePatchDTO;
+import com.grash.dto.analytics.assets.DurationByAsset;
 import com.grash.dto.license.LicenseEntitlement;
 import com.grash.exception.CustomException;
 import com.grash.mapper.AssetDowntimeMapper;
@@ -14,6 +15,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -22,25 +24,30 @@ public class AssetDowntimeService {
     private final CompanyService companyService;
     private final AssetDowntimeMapper assetDowntimeMapper;
     private final LicenseService licenseService;
+    private final AnalyticsRollupService analyticsRollupService;
 
     public AssetDowntime create(AssetDowntime assetDowntime, boolean manual) {
         if (manual && !licenseService.hasEntitlement(LicenseEntitlement.ASSET_DOWNTIME))
             throw new CustomException("You need a license to create asset downtime", HttpStatus.FORBIDDEN);
         checkOverlapping(assetDowntime);
-        return assetDowntimeRepository.save(assetDowntime);
+        return save(assetDowntime);
     }
 
     public AssetDowntime save(AssetDowntime assetDowntime) {
-        return assetDowntimeRepository.save(assetDowntime);
+        AssetDowntime savedAssetDowntime = assetDowntimeRepository.save(assetDowntime);
+        analyticsRollupService.markDowntime(savedAssetDowntime);
+        return savedAssetDowntime;
     }
 
     public AssetDowntime update(Long id, AssetDowntimePatchDTO assetDowntime) {
         if (assetDowntimeRepository.existsById(id)) {
             AssetDowntime savedAssetDowntime = assetDowntimeRepository.findById(id).get();
+            //the downtime may move to another day
+            analyticsRollupService.markDowntime(savedAssetDowntime);
             AssetDowntime updatedAssetDowntime = assetDowntimeMapper.updateAssetDowntime(savedAssetDowntime,
                     assetDowntime);
             checkOverlapping(updatedAssetDowntime);
-            return assetDowntimeRepository.save(updatedAssetDowntime);
+            return save(updatedAssetDowntime);
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
 
@@ -49,6 +56,7 @@ public class AssetDowntimeService {
     }
 
     public void delete(Long id) {
+        assetDowntimeRepository.findById(id).ifPresent(analyticsRollupService::markDowntime);
         assetDowntimeRepository.deleteById(id);
     }
 
@@ -60,6 +68,14 @@ public class AssetDowntimeService {
         return assetDowntimeRepository.findByAsset_Id(id);
     }
 
+    /**
+     * @return summed duration of all the downtimes of the company, by asset id
+     */
+    public Map<Long, Long> getDurationByAsset(Long companyId) {
+        return assetDowntimeRepository.getDurationByAsset(companyId).stream()
+                .collect(Collectors.toMap(DurationByAsset::getId, DurationByAsset::getDuration));
+    }
+
     public List<AssetDowntime> findByAssetAndStartsOnBetween(Long id, Date start, Date end) {
         return assetDowntimeRepository.findByAsset_IdAndStartsOnBetween(id, start, end);
     }
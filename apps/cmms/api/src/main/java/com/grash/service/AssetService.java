@@ -1,9 +1,11 @@
 package com.grash.service;
 
+import com.grash.advancedsearch.KeysetPagination;
 import com.grash.advancedsearch.SearchCriteria;
 import com.grash.advancedsearch.SpecificationBuilder;
 import com.grash.dto.AssetPatchDTO;
 import com.grash.dto.AssetShowDTO;
+import com.grash.dto.ChildCounts;
 import com.grash.dto.imports.AssetImportDTO;
 import com.grash.dto.license.LicenseEntitlement;
 import com.grash.exception.CustomException;
@@ -11,6 +13,7 @@ import com.grash.mapper.AssetMapper;
 import com.grash.model.*;
 import com.grash.model.enums.AssetStatus;
 import com.grash.model.enums.NotificationType;
+import com.grash.repository.AssetClosureRepository;
 import com.grash.repository.AssetRepository;
 import com.grash.utils.Helper;
 import lombok.RequiredArgsConstructor;
@@ -18,7 +21,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
@@ -30,6 +32,7 @@ import javax.transaction.Transactional;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.grash.utils.Consts.usageBasedLicenseLimits;
 
@@ -37,17 +40,12 @@ import static com.grash.utils.Consts.usageBasedLicenseLimits;
 @RequiredArgsConstructor
 public class AssetService {
     private final AssetRepository assetRepository;
+    private final AssetClosureRepository assetClosureRepository;
     private LocationService locationService;
     private final FileService fileService;
-    private final AssetCategoryService assetCategoryService;
     private final DeprecationService deprecationService;
-    private final UserService userService;
-    private final CustomerService customerService;
-    private final VendorService vendorService;
     private LaborService laborService;
     private final NotificationService notificationService;
-    private final TeamService teamService;
-    private final PartService partService;
     private final AssetMapper assetMapper;
     private final EntityManager em;
     private final AssetDowntimeService assetDowntimeService;
@@ -55,6 +53,7 @@ public class AssetService {
     private final MessageSource messageSource;
     private final CustomSequenceService customSequenceService;
     private final LicenseService licenseService;
+    private final WorkOrderCostService workOrderCostService;
 
     @Autowired
     public void setDeps(@Lazy LocationService locationService, @Lazy LaborService laborService,
@@ -81,8 +80,11 @@ public class AssetService {
     }
 
     private String getAssetNumber(Company company) {
-        Long nextSequence = customSequenceService.getNextAssetSequence(company);
-        return "A" + String.format("%06d", nextSequence);
+        return getAssetNumber(customSequenceService.getNextAssetSequence(company));
+    }
+
+    private String getAssetNumber(Long sequence) {
+        return "A" + String.format("%06d", sequence);
     }
 
     @Transactional
@@ -99,9 +101,13 @@ public class AssetService {
     }
 
     private void checkUsageBasedLimit(Company company) {
+        checkUsageBasedLimit(company, 1);
+    }
+
+    public void checkUsageBasedLimit(Company company, int toCreate) {
         Integer threshold = usageBasedLicenseLimits.get(LicenseEntitlement.UNLIMITED_ASSETS);
-        if (!licenseService.hasEntitlement(LicenseEntitlement.UNLIMITED_ASSETS)
-                && assetRepository.hasMoreThan(company.getId(), threshold.longValue() - 1
+        if (toCreate > 0 && !licenseService.hasEntitlement(LicenseEntitlement.UNLIMITED_ASSETS)
+                && assetRepository.hasMoreThan(company.getId(), threshold.longValue() - toCreate
         ))
             throw new CustomException("You need a license to add a new asset. Free Limit reached: " + threshold,
                     HttpStatus.FORBIDDEN);
@@ -131,6 +137,14 @@ public class AssetService {
         return assetRepository.findByCompany_Id(id);
     }
 
+    public Stream<Asset> streamByCompany(Long id) {
+        return assetRepository.streamByCompany_Id(id);
+    }
+
+    public long countByCompany(Long id) {
+        return assetRepository.countByCompany_Id(id);
+    }
+
     public List<Asset> findByCompany(Long id, Sort sort) {
         return assetRepository.findByCompany_Id(id, sort);
     }
@@ -240,30 +254,29 @@ public class AssetService {
     public Page<AssetShowDTO> findBySearchCriteria(SearchCriteria searchCriteria) {
         SpecificationBuilder<Asset> builder = new SpecificationBuilder<>();
         searchCriteria.getFilterFields().forEach(builder::with);
-        Pageable page = PageRequest.of(searchCriteria.getPageNum(), searchCriteria.getPageSize(),
-                searchCriteria.getDirection(), searchCriteria.getSortField());
-        return assetRepository.findAll(builder.build(), page).map(asset -> assetMapper.toShowDto(asset, this));
+        Page<Asset> assets = KeysetPagination.findAll(em, Asset.class, assetRepository, builder.build(),
+                searchCriteria);
+        ChildCounts childCounts = getChildCounts(assets.getContent());
+        return assets.map(asset -> assetMapper.toShowDto(asset, childCounts));
     }
 
     public List<Asset> findByNameIgnoreCaseAndCompany(String assetName, Long companyId) {
         return assetRepository.findByNameIgnoreCaseAndCompany_Id(assetName, companyId);
     }
 
-    public void importAsset(Asset asset, AssetImportDTO dto, Company company) {
-        checkUsageBasedLimit(company);
+    public Asset importAsset(Asset asset, AssetImportDTO dto, Company company, ImportLookups lookups, Long sequence) {
         if (!licenseService.hasEntitlement(LicenseEntitlement.ASSET_HIERARCHY))
             throw new CustomException("You need a license to import assets with hierarchy", HttpStatus.FORBIDDEN);
-        Long companySettingsId = company.getCompanySettings().getId();
-        Long companyId = company.getId();
         asset.setArea(dto.getArea());
         if (dto.getBarCode() != null) {
-            Optional<Asset> optionalAssetWithSameBarCode = findByBarcodeAndCompany(dto.getBarCode(), company.getId());
+            Optional<Long> optionalAssetWithSameBarCode = lookups.findId(ImportLookups.Lookup.ASSET_BARCODE,
+                    dto.getBarCode());
             if (optionalAssetWithSameBarCode.isPresent()) {
                 boolean hasError = false;
                 if (dto.getId() == null) {//creation
                     hasError = true;
                 } else {//update
-                    if (!dto.getId().equals(optionalAssetWithSameBarCode.get().getId())) {
+                    if (!dto.getId().equals(optionalAssetWithSameBarCode.get())) {
                         hasError = true;
                     }
                 }
@@ -278,58 +291,33 @@ public class AssetService {
         asset.setDescription(dto.getDescription());
         asset.setModel(dto.getModel());
         asset.setPower(dto.getPower());
-        asset.setCustomId(getAssetNumber(company));
+        asset.setCustomId(getAssetNumber(sequence));
         asset.setManufacturer(dto.getManufacturer());
-        Optional<Location> optionalLocation = locationService.findByNameIgnoreCaseAndCompany(dto.getLocationName(),
-                companyId).stream().findFirst();
-        optionalLocation.ifPresent(asset::setLocation);
-        Optional<Asset> optionalAsset =
-                findByNameIgnoreCaseAndCompany(dto.getParentAssetName(), companyId).stream().findFirst();
-        optionalAsset.ifPresent(asset::setParentAsset);
-        Optional<AssetCategory> optionalAssetCategory =
-                assetCategoryService.findByNameIgnoreCaseAndCompanySettings(dto.getCategory(), companySettingsId);
-        optionalAssetCategory.ifPresent(asset::setCategory);
+        lookups.find(ImportLookups.Lookup.LOCATION, dto.getLocationName()).ifPresent(asset::setLocation);
+        lookups.find(ImportLookups.Lookup.ASSET, dto.getParentAssetName()).ifPresent(asset::setParentAsset);
+        lookups.find(ImportLookups.Lookup.ASSET_CATEGORY, dto.getCategory()).ifPresent(asset::setCategory);
         asset.setName(dto.getName());
-        Optional<OwnUser> optionalPrimaryUser = userService.findByEmailAndCompany(dto.getPrimaryUserEmail(), companyId);
-        optionalPrimaryUser.ifPresent(asset::setPrimaryUser);
+        lookups.find(ImportLookups.Lookup.USER, dto.getPrimaryUserEmail()).ifPresent(asset::setPrimaryUser);
         asset.setWarrantyExpirationDate(Helper.getDateFromExcelDate(dto.getWarrantyExpirationDate()));
         asset.setAdditionalInfos(dto.getAdditionalInfos());
         asset.setSerialNumber(dto.getSerialNumber());
-        List<OwnUser> assignedTo = new ArrayList<>();
-        dto.getAssignedToEmails().forEach(email -> {
-            Optional<OwnUser> optionalUser1 = userService.findByEmailAndCompany(email, companyId);
-            optionalUser1.ifPresent(assignedTo::add);
-        });
-        asset.setAssignedTo(assignedTo);
-        List<Team> teams = new ArrayList<>();
-        dto.getTeamsNames().forEach(teamName -> {
-            Optional<Team> optionalTeam = teamService.findByNameIgnoreCaseAndCompany(teamName, companyId);
-            optionalTeam.ifPresent(teams::add);
-        });
-        asset.setTeams(teams);
+        asset.setAssignedTo(lookups.findAll(ImportLookups.Lookup.USER, dto.getAssignedToEmails()));
+        asset.setTeams(lookups.findAll(ImportLookups.Lookup.TEAM, dto.getTeamsNames()));
         asset.setStatus(AssetStatus.getAssetStatusFromString(dto.getStatus(), Helper.getLocale(company),
                 messageSource));
         asset.setAcquisitionCost(dto.getAcquisitionCost());
-        List<Customer> customers = new ArrayList<>();
-        dto.getCustomersNames().forEach(name -> {
-            Optional<Customer> optionalCustomer = customerService.findByNameIgnoreCaseAndCompany(name, companyId);
-            optionalCustomer.ifPresent(customers::add);
-        });
-        asset.setCustomers(customers);
-        List<Vendor> vendors = new ArrayList<>();
-        dto.getVendorsNames().forEach(name -> {
-            Optional<Vendor> optionalVendor = vendorService.findByNameIgnoreCaseAndCompany(name, companyId);
-            optionalVendor.ifPresent(vendors::add);
-        });
-        asset.setVendors(vendors);
-        List<Part> parts = new ArrayList<>();
-        dto.getPartsNames().forEach(name -> {
-            Optional<Part> optionalPart = partService.findByNameIgnoreCaseAndCompany(name, companyId);
-            optionalPart.ifPresent(parts::add);
-        });
-        asset.setParts(parts);
-
-        assetRepository.save(asset);
+        asset.setCustomers(lookups.findAll(ImportLookups.Lookup.CUSTOMER, dto.getCustomersNames()));
+        asset.setVendors(lookups.findAll(ImportLookups.Lookup.VENDOR, dto.getVendorsNames()));
+        asset.setParts(lookups.findAll(ImportLookups.Lookup.PART, dto.getPartsNames()));
+
+        Asset savedAsset = assetRepository.save(asset);
+        lookups.register(ImportLookups.Lookup.ASSET, savedAsset.getName(), savedAsset.getId());
+        lookups.register(ImportLookups.Lookup.ASSET_BARCODE, savedAsset.getBarCode(), savedAsset.getId());
+        return savedAsset;
+    }
+
+    public List<Asset> findByIdInAndCompany(Collection<Long> ids, Long companyId) {
+        return assetRepository.findByIdInAndCompany_Id(ids, companyId);
     }
 
     public Optional<Asset> findByIdAndCompany(Long id, Long companyId) {
@@ -404,6 +392,26 @@ public class AssetService {
         return assetRepository.countByParentAsset_Id(assetId) > 0;
     }
 
+    public ChildCounts getChildCounts(Collection<Asset> assets) {
+        if (assets.isEmpty()) return new ChildCounts(Collections.emptyList());
+        return new ChildCounts(assetClosureRepository.countChildren(assets.stream().map(Asset::getId)
+                .collect(Collectors.toList())));
+    }
+
+    /**
+     * @return the ids of the asset and of all its descendants
+     */
+    public List<Long> findSubtreeIds(Long assetId) {
+        return assetClosureRepository.findSubtreeIds(assetId);
+    }
+
+    /**
+     * @return the ids of the ancestors of the asset, from its parent to the root
+     */
+    public List<Long> findAncestorIds(Long assetId) {
+        return assetClosureRepository.findAncestorIds(assetId);
+    }
+
     // Stats
     public long getMTBFLF(Long assetId, Date start, Date end) {
         Asset asset = findById(assetId).get();
@@ -454,7 +462,6 @@ public class AssetService {
     }
 
     public double getTotalCost(Long assetId, Date start, Date end, Boolean includeLaborCost) {
-        Collection<WorkOrder> workOrders = workOrderService.findByAssetAndCreatedAtBetween(assetId, start, end);
-        return workOrderService.getAllCost(workOrders, includeLaborCost);
+        return workOrderCostService.getAssetCosts(assetId, start, end).getTotalCost(includeLaborCost);
     }
 }
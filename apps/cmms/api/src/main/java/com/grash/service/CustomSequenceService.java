@@ -4,74 +4,133 @@ import com.grash.model.Company;
 import com.grash.model.CustomSequence;
 import com.grash.repository.CustomSequenceRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.util.Pair;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.transaction.Transactional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Numbers of the custom ids of a company. Each instance allocates blocks of numbers from the company row with an
+ * atomic UPDATE ... RETURNING in its own transaction and serves them from memory, so concurrent creates neither wait
+ * on the row nor get the same number. Numbers are unique but not gapless, and only increasing per instance.
+ */
 @Service
 @RequiredArgsConstructor
 public class CustomSequenceService {
+    private static final int BLOCK_SIZE = 50;
+
     private final CustomSequenceRepository customSequenceRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    private final Map<Pair<Long, SequenceType>, Block> blocks = new ConcurrentHashMap<>();
 
     public CustomSequence findByCompanyId(Long companyId) {
         return customSequenceRepository.findByCompanyId(companyId)
                 .orElse(null);
     }
 
-    @Transactional
-    public CustomSequence createCustomSequence(Company company) {
-        CustomSequence customSequence = new CustomSequence(company);
-        return customSequenceRepository.save(customSequence);
-    }
-
-    @Transactional
-    public CustomSequence getOrCreateCustomSequence(Company company) {
-        CustomSequence customSequence = findByCompanyId(company.getId());
-        if (customSequence == null) {
-            customSequence = createCustomSequence(company);
-        }
-        return customSequence;
-    }
-
-    @Transactional
     public Long getNextWorkOrderSequence(Company company) {
-        CustomSequence customSequence = getOrCreateCustomSequence(company);
-        Long nextSequence = customSequence.getAndIncrementWorkOrderSequence();
-        customSequenceRepository.save(customSequence);
-        return nextSequence;
+        return reserve(company, SequenceType.WORK_ORDER, 1);
     }
 
-
-    @Transactional
     public Long getNextAssetSequence(Company company) {
-        CustomSequence customSequence = getOrCreateCustomSequence(company);
-        Long nextSequence = customSequence.getAndIncrementAssetSequence();
-        customSequenceRepository.save(customSequence);
-        return nextSequence;
+        return reserve(company, SequenceType.ASSET, 1);
     }
 
-    @Transactional
     public Long getNextPreventiveMaintenanceSequence(Company company) {
-        CustomSequence customSequence = getOrCreateCustomSequence(company);
-        Long nextSequence = customSequence.getAndIncrementPreventiveMaintenanceSequence();
-        customSequenceRepository.save(customSequence);
-        return nextSequence;
+        return reserve(company, SequenceType.PREVENTIVE_MAINTENANCE, 1);
     }
 
-    @Transactional
     public Long getNextLocationSequence(Company company) {
-        CustomSequence customSequence = getOrCreateCustomSequence(company);
-        Long nextSequence = customSequence.getAndIncrementLocationSequence();
-        customSequenceRepository.save(customSequence);
-        return nextSequence;
+        return reserve(company, SequenceType.LOCATION, 1);
     }
 
-    @Transactional
     public Long getNextRequestSequence(Company company) {
-        CustomSequence customSequence = getOrCreateCustomSequence(company);
-        Long nextSequence = customSequence.getAndIncrementRequestSequence();
-        customSequenceRepository.save(customSequence);
-        return nextSequence;
+        return reserve(company, SequenceType.REQUEST, 1);
     }
 
+    /**
+     * Reserves count consecutive numbers at once, used by the imports
+     *
+     * @return the first reserved number
+     */
+    public Long reserveWorkOrderSequences(Company company, int count) {
+        return reserve(company, SequenceType.WORK_ORDER, count);
+    }
+
+    public Long reserveAssetSequences(Company company, int count) {
+        return reserve(company, SequenceType.ASSET, count);
+    }
+
+    public Long reservePreventiveMaintenanceSequences(Company company, int count) {
+        return reserve(company, SequenceType.PREVENTIVE_MAINTENANCE, count);
+    }
+
+    public Long reserveLocationSequences(Company company, int count) {
+        return reserve(company, SequenceType.LOCATION, count);
+    }
+
+    private long reserve(Company company, SequenceType type, int count) {
+        // large reservations are taken straight from the row to stay consecutive
+        if (count >= BLOCK_SIZE) return allocate(company.getId(), type, count);
+        Pair<Long, SequenceType> key = Pair.of(company.getId(), type);
+        while (true) {
+            Block block = blocks.get(key);
+            if (block != null) {
+                long first = block.next.getAndAdd(count);
+                if (first + count <= block.end) return first;
+            }
+            // the rest of an exhausted block is skipped. Allocated outside of the map so that the other keys of its
+            // bin do not wait on the transaction, a block installed by a concurrent reserve wins and this one is a gap
+            Block newBlock = new Block(allocate(company.getId(), type, BLOCK_SIZE), BLOCK_SIZE);
+            if (block == null) blocks.putIfAbsent(key, newBlock);
+            else blocks.replace(key, block, newBlock);
+        }
+    }
+
+    /**
+     * @return the first number of a block of count numbers taken from the company row, committed at once so that a
+     * rollback of the caller never hands the same numbers out twice
+     */
+    private long allocate(Long companyId, SequenceType type, int count) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.update("INSERT INTO custom_sequence (company_id) VALUES (?) ON CONFLICT (company_id) DO NOTHING",
+                    companyId);
+            return jdbcTemplate.queryForObject("UPDATE custom_sequence SET " + type.column + " = " + type.column +
+                    " + ? WHERE company_id = ? RETURNING " + type.column + " - ?", Long.class, count, companyId, count);
+        });
+    }
+
+    private enum SequenceType {
+        WORK_ORDER("work_order_sequence"),
+        ASSET("asset_sequence"),
+        PREVENTIVE_MAINTENANCE("preventive_maintenance_sequence"),
+        LOCATION("location_sequence"),
+        REQUEST("request_sequence");
+
+        private final String column;
+
+        SequenceType(String column) {
+            this.column = column;
+        }
+    }
+
+    private static class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long first, int size) {
+            this.next = new AtomicLong(first);
+            this.end = first + size;
+        }
+    }
 }
@@ -40,6 +40,8 @@ public class DemoDataService {
     private final LaborRepository laborRepository;
     private final PartQuantityRepository partQuantityRepository;
     private final AdditionalCostRepository additionalCostRepository;
+    private final AnalyticsRollupService analyticsRollupService;
+    private final WorkOrderStatusTimelineService workOrderStatusTimelineService;
     @Autowired
     @Lazy
     private ScheduleService scheduleService;
@@ -176,6 +178,7 @@ public class DemoDataService {
         createRequest("Office is too cold", "The temperature in the main office is too cold.", location1, user,
                 new Date(), company, user);
 
+        analyticsRollupService.markCompany(company.getId());
     }
 
     private WorkOrderCategory createWorkOrderCategory(String name, Company company, OwnUser user) {
@@ -377,7 +380,9 @@ public class DemoDataService {
         workOrder.setCreatedBy(user.getId());
         workOrder.setDemo(true);
         workOrder.setCustomId(workOrderService.getWorkOrderNumber(company));
-        return workOrderRepository.save(workOrder);
+        WorkOrder savedWorkOrder = workOrderRepository.save(workOrder);
+        workOrderStatusTimelineService.record(savedWorkOrder);
+        return savedWorkOrder;
     }
 
     private Request createRequest(String title, String description, Location location, OwnUser requester,
@@ -428,6 +433,7 @@ public class DemoDataService {
 
     @Transactional
     public void deleteDemoData(Long companyId) {
+        analyticsRollupService.markCompany(companyId);
         additionalCostRepository.deleteByWorkOrder_Company_IdAndIsDemoTrue(companyId);
         partQuantityRepository.deleteByCompany_IdAndIsDemoTrue(companyId);
         laborRepository.deleteByCompany_IdAndIsDemoTrue(companyId);
@@ -95,7 +95,7 @@ public class EmailService2 {
     }
 
 
-    @Async
+    @Async("emailExecutor")
     public void sendMessageUsingThymeleafTemplate(
             String[] to, String subject, Map<String, Object> templateModel, String template, Locale locale) {
         if (Boolean.FALSE.equals(enableEmails))
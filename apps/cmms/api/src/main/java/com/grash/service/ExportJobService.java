@@ -0,0 +1,185 @@
+package com.grash.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grash.dto.ExportJobShowDTO;
+import com.grash.dto.WorkOrderReportRequest;
+import com.grash.exception.CustomException;
+import com.grash.mapper.ExportJobMapper;
+import com.grash.model.ExportJob;
+import com.grash.model.OwnUser;
+import com.grash.model.WorkOrder;
+import com.grash.model.enums.ExportJobStatus;
+import com.grash.model.enums.ExportJobType;
+import com.grash.model.enums.ReportFormat;
+import com.grash.repository.ExportJobRepository;
+import com.grash.utils.Helper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the exports and reports in the background on the bounded export executor. The state of a job is persisted so
+ * that the client can poll it, the user is also notified on /notifications/{userId} once it is done. The jobs rejected
+ * by a full executor stay pending and are queued again by {@link com.grash.job.ExportDispatchJob}, which also takes
+ * over the running jobs of an instance which stopped.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExportJobService {
+    private static final int MAX_ERROR_LENGTH = 255;
+    //left to the instance which persisted the job before being queued again
+    private static final long REQUEUE_DELAY = TimeUnit.MINUTES.toMillis(1);
+    //a running job which has not progressed for this long is considered interrupted, the batch reports and the
+    //exports report their progress as they go and a single report takes seconds
+    private static final long STALE_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final ExportJobRepository exportJobRepository;
+    private final ExportJobMapper exportJobMapper;
+    private final ExportService exportService;
+    private final WorkOrderReportService workOrderReportService;
+    private final WorkOrderService workOrderService;
+    private final UserService userService;
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final ThreadPoolTaskExecutor exportExecutor;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    public ExportJob submit(ExportJobType type, Long resourceId) {
+        return submit(new ExportJob(type, resourceId));
+    }
+
+    /**
+     * Submits the batch report of the given work orders, already checked by the caller
+     */
+    public ExportJob submitReports(List<Long> workOrderIds, ReportFormat format) {
+        WorkOrderReportRequest request = new WorkOrderReportRequest();
+        request.setIds(workOrderIds);
+        request.setFormat(format);
+        ExportJob job = new ExportJob(ExportJobType.WORK_ORDER_REPORTS, null);
+        try {
+            job.setParameters(objectMapper.writeValueAsString(request));
+        } catch (JsonProcessingException e) {
+            throw new CustomException(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return submit(job);
+    }
+
+    /**
+     * Persists the job and queues it once the current transaction is committed
+     */
+    private ExportJob submit(ExportJob job) {
+        ExportJob savedJob = exportJobRepository.save(job);
+        Long jobId = savedJob.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    queue(jobId);
+                }
+            });
+        } else queue(jobId);
+        return savedJob;
+    }
+
+    public Optional<ExportJob> findByIdAndCompany(Long id, Long companyId) {
+        return exportJobRepository.findByIdAndCompany_Id(id, companyId);
+    }
+
+    /**
+     * Queues the pending jobs persisted more than a minute ago and the interrupted running jobs, as many as the
+     * executor queue can take
+     *
+     * @return the number of queued jobs
+     */
+    public int requeuePending() {
+        int capacity = exportExecutor.getThreadPoolExecutor().getQueue().remainingCapacity();
+        if (capacity == 0) return 0;
+        long now = System.currentTimeMillis();
+        List<Long> jobIds = exportJobRepository.findIdsToQueue(new Date(now - REQUEUE_DELAY),
+                new Date(now - STALE_AFTER_MILLIS), PageRequest.of(0, capacity));
+        jobIds.forEach(this::queue);
+        return jobIds.size();
+    }
+
+    private void queue(Long jobId) {
+        try {
+            exportExecutor.execute(() -> run(jobId));
+        } catch (TaskRejectedException e) {
+            log.warn("Export job {} left pending, the export executor is full", jobId);
+        }
+    }
+
+    private void run(Long jobId) {
+        //already started from another queueing or instance
+        Date now = new Date();
+        if (exportJobRepository.claim(jobId, now, new Date(now.getTime() - STALE_AFTER_MILLIS)) == 0) return;
+        ExportJob job = exportJobRepository.findById(jobId).get();
+        try {
+            String filePath = new TransactionTemplate(transactionManager).execute(status -> {
+                OwnUser user = userService.findById(job.getCreatedBy()).get();
+                if (job.getType() == ExportJobType.WORK_ORDER_REPORT) {
+                    WorkOrder workOrder = workOrderService.findById(job.getResourceId())
+                            .orElseThrow(() -> new CustomException("Not found", HttpStatus.NOT_FOUND));
+                    return workOrderReportService.generate(workOrder, user);
+                }
+                if (job.getType() == ExportJobType.WORK_ORDER_REPORTS) {
+                    WorkOrderReportRequest request = readReportRequest(job);
+                    return workOrderReportService.generateBatch(request.getIds(), request.getFormat(), user,
+                            progress -> exportJobRepository.updateProgress(jobId, progress, new Date()));
+                }
+                return exportService.exportCsv(job.getType(), user.getCompany().getId(), Helper.getLocale(user),
+                        progress -> exportJobRepository.updateProgress(jobId, progress, new Date()));
+            });
+            finish(jobId, filePath, null);
+        } catch (Exception e) {
+            log.error("Export job {} failed", jobId, e);
+            finish(jobId, null, e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage());
+        }
+    }
+
+    private WorkOrderReportRequest readReportRequest(ExportJob job) {
+        try {
+            return objectMapper.readValue(job.getParameters(), WorkOrderReportRequest.class);
+        } catch (JsonProcessingException e) {
+            throw new CustomException("Invalid report request", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private void finish(Long jobId, String filePath, String error) {
+        ExportJobShowDTO result = newTransaction().execute(status -> {
+            ExportJob exportJob = exportJobRepository.findById(jobId).get();
+            exportJob.setStatus(error == null ? ExportJobStatus.COMPLETE : ExportJobStatus.FAILED);
+            exportJob.setProgress(100);
+            exportJob.setFilePath(filePath);
+            exportJob.setError(error == null ? null : error.substring(0, Math.min(error.length(),
+                    MAX_ERROR_LENGTH)));
+            exportJob.setCompletedOn(new Date());
+            return exportJobMapper.toShowDto(exportJobRepository.save(exportJob));
+        });
+        messagingTemplate.convertAndSend("/notifications/" + result.getCreatedBy(), result);
+    }
+
+    //the job state is committed independently of the export
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+}
@@ -0,0 +1,114 @@
+package com.grash.service;
+
+import com.grash.exception.CustomException;
+import com.grash.factory.StorageServiceFactory;
+import com.grash.model.*;
+import com.grash.model.enums.ExportJobType;
+import com.grash.utils.CsvFileGenerator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Generates the csv exports of a company. The rows are streamed from the database to the storage, neither the
+ * entities nor the file are fully held in memory.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+    private static final int PROGRESS_INTERVAL = 500;
+
+    private final AssetService assetService;
+    private final AssetDowntimeService assetDowntimeService;
+    private final MeterService meterService;
+    private final LocationService locationService;
+    private final PartService partService;
+    private final WorkOrderService workOrderService;
+    private final CsvFileGenerator csvFileGenerator;
+    private final StorageServiceFactory storageServiceFactory;
+
+    /**
+     * @param onProgress receives the percentage of written rows
+     * @return the file path of the export
+     */
+    @Transactional(readOnly = true)
+    public String exportCsv(ExportJobType type, Long companyId, Locale locale, IntConsumer onProgress) {
+        switch (type) {
+            case WORK_ORDERS:
+                return upload(companyId, "Work Orders.csv", "work-orders", writer -> {
+                    try (Stream<WorkOrder> workOrders = workOrderService.streamByCompany(companyId)) {
+                        csvFileGenerator.writeWorkOrdersToCsv(withProgress(workOrders,
+                                workOrderService.countByCompany(companyId), onProgress), writer, locale);
+                    }
+                });
+            case ASSETS:
+                return upload(companyId, "Assets.csv", "assets", writer -> {
+                    try (Stream<Asset> assets = assetService.streamByCompany(companyId)) {
+                        csvFileGenerator.writeAssetsToCsv(withProgress(assets,
+                                        assetService.countByCompany(companyId), onProgress),
+                                assetDowntimeService.getDurationByAsset(companyId), writer, locale);
+                    }
+                });
+            case LOCATIONS:
+                return upload(companyId, "Locations.csv", "locations", writer -> {
+                    try (Stream<Location> locations = locationService.streamByCompany(companyId)) {
+                        csvFileGenerator.writeLocationsToCsv(withProgress(locations,
+                                locationService.countByCompany(companyId), onProgress), writer, locale);
+                    }
+                });
+            case PARTS:
+                return upload(companyId, "Parts.csv", "parts", writer -> {
+                    try (Stream<Part> parts = partService.streamByCompany(companyId)) {
+                        csvFileGenerator.writePartsToCsv(withProgress(parts,
+                                partService.countByCompany(companyId), onProgress), writer, locale);
+                    }
+                });
+            case METERS:
+                return upload(companyId, "Meters.csv", "meters", writer -> {
+                    try (Stream<Meter> meters = meterService.streamByCompany(companyId)) {
+                        csvFileGenerator.writeMetersToCsv(withProgress(meters,
+                                meterService.countByCompany(companyId), onProgress), writer, locale);
+                    }
+                });
+            default:
+                throw new CustomException("Not a csv export: " + type, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private interface CsvWriter {
+        void write(Writer writer) throws IOException;
+    }
+
+    private String upload(Long companyId, String fileName, String folder, CsvWriter csvWriter) {
+        return storageServiceFactory.getStorageService().upload(fileName, "text/csv",
+                companyId + "/exports/" + folder, outputStream -> {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                    csvWriter.write(writer);
+                    writer.flush();
+                });
+    }
+
+    private <T> Stream<T> withProgress(Stream<T> rows, long total, IntConsumer onProgress) {
+        if (total == 0) {
+            onProgress.accept(100);
+            return rows;
+        }
+        AtomicLong count = new AtomicLong();
+        return rows.peek(row -> {
+            long written = count.incrementAndGet();
+            //rows created during the export are written as well
+            if (written % PROGRESS_INTERVAL == 0) onProgress.accept((int) Math.min(99, written * 100 / total));
+        });
+    }
+}
@@ -1,5 +1,6 @@
 package com.grash.service;
 
+import com.grash.advancedsearch.KeysetPagination;
 import com.grash.advancedsearch.SearchCriteria;
 import com.grash.advancedsearch.SpecificationBuilder;
 import com.grash.model.File;
@@ -10,10 +11,10 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import javax.persistence.EntityManager;
+
 import java.util.Collection;
 import java.util.Optional;
 
@@ -21,6 +22,7 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class FileService {
     private final FileRepository fileRepository;
+    private final EntityManager em;
     private AssetService assetService;
     private PartService partService;
     private RequestService requestService;
@@ -66,8 +68,6 @@ public class FileService {
     public Page<File> findBySearchCriteria(SearchCriteria searchCriteria) {
         SpecificationBuilder<File> builder = new SpecificationBuilder<>();
         searchCriteria.getFilterFields().forEach(builder::with);
-        Pageable page = PageRequest.of(searchCriteria.getPageNum(), searchCriteria.getPageSize(),
-                searchCriteria.getDirection(), searchCriteria.getSortField());
-        return fileRepository.findAll(builder.build(), page);
+        return KeysetPagination.findAll(em, File.class, fileRepository, builder.build(), searchCriteria);
     }
 }
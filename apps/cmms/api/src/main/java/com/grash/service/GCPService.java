@@ -2,6 +2,7 @@ package com.grash.service;
 
 import com.google.auth.Credentials;
 import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.*;
 import com.grash.exception.CustomException;
 import com.grash.model.File;
@@ -16,8 +17,10 @@ import javax.annotation.PostConstruct;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -76,6 +79,25 @@ public class GCPService implements StorageService {
         }
     }
 
+    public String upload(String fileName, String contentType, String folder, ContentWriter writer) {
+        checkIfConfigured();
+        Helper helper = new Helper();
+        String filePath = folder + "/" + helper.generateString() + " " + fileName;
+        BlobInfo blobInfo = BlobInfo.newBuilder(gcpBucketName, filePath).setContentType(contentType).build();
+        //resumable upload, only one chunk is buffered at a time
+        WriteChannel channel = storage.writer(blobInfo,
+                Storage.BlobWriteOption.predefinedAcl(Storage.PredefinedAcl.PRIVATE));
+        OutputStream outputStream = Channels.newOutputStream(channel);
+        try {
+            writer.write(outputStream);
+            //closing commits the upload, a failed write is never committed
+            outputStream.close();
+            return filePath;
+        } catch (IllegalStateException | IOException | StorageException e) {
+            throw new CustomException(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+    }
+
     public byte[] download(String filePath) {
         checkIfConfigured();
         Blob blob = storage.get(BlobId.of(gcpBucketName, filePath));
@@ -90,6 +112,15 @@ public class GCPService implements StorageService {
         }
     }
 
+    public InputStream openStream(String filePath) {
+        checkIfConfigured();
+        try {
+            return Channels.newInputStream(getBlob(filePath).reader());
+        } catch (StorageException e) {
+            throw new CustomException("Error retrieving file", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     public byte[] download(File file) {
         checkIfConfigured();
         return download(file.getPath());
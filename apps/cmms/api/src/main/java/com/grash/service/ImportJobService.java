@@ -0,0 +1,490 @@
+package com.grash.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grash.dto.ImportJobShowDTO;
+import com.grash.dto.imports.AssetImportDTO;
+import com.grash.dto.imports.LocationImportDTO;
+import com.grash.exception.CustomException;
+import com.grash.factory.StorageServiceFactory;
+import com.grash.mapper.ImportJobMapper;
+import com.grash.model.Company;
+import com.grash.model.ImportJob;
+import com.grash.model.ImportRowError;
+import com.grash.model.OwnUser;
+import com.grash.model.enums.ImportEntity;
+import com.grash.model.enums.ImportJobStatus;
+import com.grash.repository.ImportJobRepository;
+import com.grash.repository.ImportRowErrorRepository;
+import com.grash.utils.Helper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Imports uploaded csv files in the background on the import executor. The file is streamed record by record and
+ * committed in chunks of import.chunk-size together with the progress of the job, so that an interrupted job resumes
+ * after its last committed chunk. When a chunk fails it is retried row by row, the failing rows are recorded and given
+ * back in an error file once the job is complete. The jobs rejected by a full executor stay pending and are queued
+ * again by {@link com.grash.job.ImportDispatchJob}, which also takes over the running jobs of an instance which stopped.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImportJobService {
+    private static final int MAX_ERROR_LENGTH = 255;
+    //a running job which has not committed anything for this long is considered interrupted
+    private static final long STALE_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    //left to the instance which persisted the job before being queued again
+    private static final long REQUEUE_DELAY = TimeUnit.MINUTES.toMillis(1);
+    private static final double EXCEL_EPOCH_DAYS = 25569;
+
+    private final ImportJobRepository importJobRepository;
+    private final ImportRowErrorRepository importRowErrorRepository;
+    private final ImportJobMapper importJobMapper;
+    private final ImportService importService;
+    private final UserService userService;
+    private final StorageServiceFactory storageServiceFactory;
+    private final SimpMessageSendingOperations messagingTemplate;
+    private final ThreadPoolTaskExecutor importExecutor;
+    private final PlatformTransactionManager transactionManager;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    //the jobs queued on this instance and not done yet, they stay pending until they run
+    private final Set<Long> queuedJobIds = ConcurrentHashMap.newKeySet();
+
+    @Value("${import.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Stores the file and queues the job once the current transaction is committed
+     *
+     * @param headerMapping json object of the csv headers to the import fields, the headers matching the name of a
+     *                      field do not need to be mapped
+     */
+    public ImportJob submit(ImportEntity importEntity, MultipartFile file, String headerMapping, Company company) {
+        if (headerMapping != null) readHeaderMapping(headerMapping);
+        String filePath = storageServiceFactory.getStorageService().upload(file, "imports/" + company.getId());
+        ImportJob savedJob = importJobRepository.save(new ImportJob(importEntity, filePath, headerMapping));
+        queueAfterCommit(savedJob.getId());
+        return savedJob;
+    }
+
+    /**
+     * Queues a failed or interrupted job again, it continues after its last committed chunk
+     */
+    public ImportJob resume(ImportJob importJob) {
+        if (importJob.getStatus() == ImportJobStatus.FAILED) {
+            importJob.setStatus(ImportJobStatus.PENDING);
+            importJob.setError(null);
+            importJob.setCompletedOn(null);
+        }
+        ImportJob savedJob = importJobRepository.save(importJob);
+        queueAfterCommit(savedJob.getId());
+        return savedJob;
+    }
+
+    public Optional<ImportJob> findByIdAndCompany(Long id, Long companyId) {
+        return importJobRepository.findByIdAndCompany_Id(id, companyId);
+    }
+
+    //the jobs still running on another instance are not claimed
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        importJobRepository.findByStatusIn(Arrays.asList(ImportJobStatus.PENDING, ImportJobStatus.RUNNING))
+                .forEach(importJob -> queue(importJob.getId()));
+    }
+
+    /**
+     * Queues the jobs pending for more than a minute and the interrupted running jobs, as many as the executor queue
+     * can take. The jobs already queued on this instance are skipped.
+     *
+     * @return the number of queued jobs
+     */
+    public int requeuePending() {
+        int capacity = importExecutor.getThreadPoolExecutor().getQueue().remainingCapacity();
+        if (capacity == 0) return 0;
+        long now = System.currentTimeMillis();
+        List<Long> jobIds = importJobRepository.findIdsToQueue(new Date(now - REQUEUE_DELAY),
+                new Date(now - STALE_AFTER_MILLIS), PageRequest.of(0, capacity + queuedJobIds.size())).stream()
+                .filter(jobId -> !queuedJobIds.contains(jobId))
+                .limit(capacity)
+                .collect(Collectors.toList());
+        jobIds.forEach(this::queue);
+        return jobIds.size();
+    }
+
+    private void queueAfterCommit(Long jobId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    queue(jobId);
+                }
+            });
+        } else queue(jobId);
+    }
+
+    private void queue(Long jobId) {
+        if (!queuedJobIds.add(jobId)) return;
+        try {
+            importExecutor.execute(() -> {
+                try {
+                    run(jobId);
+                } finally {
+                    queuedJobIds.remove(jobId);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            queuedJobIds.remove(jobId);
+            log.warn("Import job {} left pending, the import executor is full", jobId);
+        }
+    }
+
+    private void run(Long jobId) {
+        Date now = new Date();
+        if (importJobRepository.claim(jobId, now, new Date(now.getTime() - STALE_AFTER_MILLIS)) == 0) return;
+        try {
+            ImportJob importJob = importJobRepository.findById(jobId).get();
+            OwnUser user = userService.findById(importJob.getCreatedBy()).get();
+            //the imported entities get their company from the authenticated user
+            Helper.setCurrentUser(user);
+            List<String> headers = importRows(importJob, user.getCompany());
+            finish(jobId, writeErrorFile(jobId, headers, user.getCompany()), null);
+        } catch (Exception e) {
+            log.error("Import job {} failed", jobId, e);
+            finish(jobId, null, getMessage(e));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    /**
+     * Streams the file from the storage. The assets and locations are imported level by level, reading the file once
+     * per level, so that the parents are imported before their children wherever they are in the file.
+     *
+     * @return the headers of the file
+     */
+    private List<String> importRows(ImportJob importJob, Company company) throws IOException {
+        Map<String, String> headerMapping = importJob.getHeaderMapping() == null ? Collections.emptyMap() :
+                readHeaderMapping(importJob.getHeaderMapping());
+        Class<?> dtoClass = ImportService.getImportDTOClass(importJob.getImportEntity());
+        List<Integer> levels = null;
+        int levelCount = 1;
+        if (importJob.getImportEntity() == ImportEntity.ASSET || importJob.getImportEntity() == ImportEntity.LOCATION) {
+            levels = getLevels(importJob, dtoClass, headerMapping);
+            levelCount = levels.stream().max(Integer::compare).orElse(0) + 1;
+        }
+        //the processed rows are a prefix of the import order: by level, then by row
+        int toSkip = importJob.getProcessedRows();
+        ImportLookups lookups = new ImportLookups(entityManager, company);
+        List<CSVRecord> chunk = new ArrayList<>(chunkSize);
+        RowConverter converter = null;
+        List<String> headers = null;
+        for (int level = 0; level < levelCount; level++) {
+            try (CSVParser parser = openFile(importJob)) {
+                if (converter == null) {
+                    headers = parser.getHeaderNames();
+                    converter = new RowConverter(dtoClass, headers, headerMapping);
+                }
+                for (CSVRecord record : parser) {
+                    if (levels != null && levels.get((int) record.getRecordNumber() - 1) != level) continue;
+                    if (toSkip > 0) {
+                        toSkip--;
+                        continue;
+                    }
+                    chunk.add(record);
+                    if (chunk.size() == chunkSize) {
+                        lookups = importChunk(importJob, chunk, converter, company, lookups);
+                        chunk.clear();
+                    }
+                }
+            }
+        }
+        if (!chunk.isEmpty()) importChunk(importJob, chunk, converter, company, lookups);
+        return headers;
+    }
+
+    private CSVParser openFile(ImportJob importJob) throws IOException {
+        return CSVParser.parse(new InputStreamReader(storageServiceFactory.getStorageService()
+                        .openStream(importJob.getFilePath()), StandardCharsets.UTF_8),
+                CSVFormat.DEFAULT.withFirstRecordAsHeader().withTrim());
+    }
+
+    /**
+     * Reads the names and parent names of the file, only they are held in memory
+     *
+     * @return the level of each row: 0 when its parent is not in the file, else the level of its parent + 1
+     */
+    private List<Integer> getLevels(ImportJob importJob, Class<?> dtoClass, Map<String, String> headerMapping)
+            throws IOException {
+        List<String> names = new ArrayList<>();
+        Map<String, String> parentNames = new HashMap<>();
+        try (CSVParser parser = openFile(importJob)) {
+            RowConverter converter = new RowConverter(dtoClass, parser.getHeaderNames(), headerMapping);
+            for (CSVRecord record : parser) {
+                String name = null;
+                try {
+                    Object dto = converter.convert(record);
+                    String parentName;
+                    if (dto instanceof AssetImportDTO) {
+                        name = ((AssetImportDTO) dto).getName();
+                        parentName = ((AssetImportDTO) dto).getParentAssetName();
+                    } else {
+                        name = ((LocationImportDTO) dto).getName();
+                        parentName = ((LocationImportDTO) dto).getParentLocationName();
+                    }
+                    if (name != null && parentName != null) parentNames.putIfAbsent(name, parentName);
+                } catch (IllegalArgumentException e) {
+                    //the row fails when it is imported
+                }
+                names.add(name);
+            }
+        }
+        Set<String> fileNames = names.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<String, Integer> levelsByName = new HashMap<>();
+        return names.stream().map(name -> getLevel(name, parentNames, fileNames, levelsByName, new HashSet<>()))
+                .collect(Collectors.toList());
+    }
+
+    private int getLevel(String name, Map<String, String> parentNames, Set<String> fileNames,
+                         Map<String, Integer> levelsByName, Set<String> visiting) {
+        if (name == null) return 0;
+        Integer level = levelsByName.get(name);
+        if (level != null) return level;
+        String parentName = parentNames.get(name);
+        //a cycle cannot be resolved, it starts at the first level
+        if (parentName == null || !fileNames.contains(parentName) || !visiting.add(name)) level = 0;
+        else level = getLevel(parentName, parentNames, fileNames, levelsByName, visiting) + 1;
+        levelsByName.put(name, level);
+        return level;
+    }
+
+    /**
+     * @return the lookups to use for the next chunk
+     */
+    private ImportLookups importChunk(ImportJob importJob, List<CSVRecord> records, RowConverter converter,
+                                      Company company, ImportLookups lookups) {
+        List<Object> dtos = new ArrayList<>(records.size());
+        List<String> errors = new ArrayList<>(records.size());
+        for (CSVRecord record : records) {
+            try {
+                dtos.add(converter.convert(record));
+                errors.add(null);
+            } catch (IllegalArgumentException e) {
+                dtos.add(null);
+                errors.add(getMessage(e));
+            }
+        }
+        try {
+            newTransaction().executeWithoutResult(status -> {
+                List<Object> validDtos = dtos.stream().filter(Objects::nonNull).collect(Collectors.toList());
+                int updated = validDtos.isEmpty() ? 0 : importService.importChunk(importJob.getImportEntity(),
+                        validDtos, company, lookups);
+                for (int i = 0; i < records.size(); i++) {
+                    if (errors.get(i) != null) saveError(importJob, records.get(i), errors.get(i));
+                }
+                importJobRepository.addProgress(importJob.getId(), records.size(), validDtos.size() - updated,
+                        updated, records.size() - validDtos.size(), new Date());
+            });
+            return lookups;
+        } catch (RuntimeException e) {
+            log.info("Import job {}: retrying the rows of a failed chunk one by one", importJob.getId(), e);
+        }
+        //the lookups may hold entities of the rolled back transaction, the rows are committed in order so that the
+        //processed rows stay a prefix of the import order
+        ImportLookups rowLookups = new ImportLookups(entityManager, company);
+        for (int i = 0; i < records.size(); i++) {
+            Object dto = dtos.get(i);
+            String error = errors.get(i);
+            if (error == null) {
+                ImportLookups currentLookups = rowLookups;
+                try {
+                    newTransaction().executeWithoutResult(status -> {
+                        int updated = importService.importChunk(importJob.getImportEntity(),
+                                Collections.singletonList(dto), company, currentLookups);
+                        importJobRepository.addProgress(importJob.getId(), 1, 1 - updated, updated, 0, new Date());
+                    });
+                    continue;
+                } catch (RuntimeException e) {
+                    error = getMessage(e);
+                    rowLookups = new ImportLookups(entityManager, company);
+                }
+            }
+            CSVRecord record = records.get(i);
+            String rowError = error;
+            newTransaction().executeWithoutResult(status -> {
+                saveError(importJob, record, rowError);
+                importJobRepository.addProgress(importJob.getId(), 1, 0, 0, 1, new Date());
+            });
+        }
+        return rowLookups;
+    }
+
+    private void saveError(ImportJob importJob, CSVRecord record, String message) {
+        List<String> values = new ArrayList<>(record.size());
+        record.forEach(values::add);
+        importRowErrorRepository.save(new ImportRowError(importJob.getId(), record.getRecordNumber(),
+                CSVFormat.DEFAULT.format(values.toArray()), message));
+    }
+
+    /**
+     * Writes the failed rows with their row number and error after the original columns, which the import ignores,
+     * so that the file can be imported again once fixed.
+     *
+     * @return the file path or null when no row failed
+     */
+    private String writeErrorFile(Long jobId, List<String> headers, Company company) {
+        if (importJobRepository.findById(jobId).get().getFailed() == 0) return null;
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate.execute(status -> storageServiceFactory.getStorageService().upload(
+                "Import errors.csv", "text/csv", "imports/" + company.getId(), outputStream -> {
+                    Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+                    List<String> errorHeaders = new ArrayList<>(headers);
+                    errorHeaders.add("Row");
+                    errorHeaders.add("Error");
+                    writer.write(CSVFormat.DEFAULT.format(errorHeaders.toArray()));
+                    try (Stream<ImportRowError> rowErrors =
+                                 importRowErrorRepository.streamByImportJobIdOrderByRowNumber(jobId)) {
+                        for (ImportRowError rowError : (Iterable<ImportRowError>) rowErrors::iterator) {
+                            writer.write("\r\n" + rowError.getRowValues() + "," + CSVFormat.DEFAULT.format(
+                                    rowError.getRowNumber(), rowError.getMessage()));
+                            entityManager.detach(rowError);
+                        }
+                    }
+                    writer.flush();
+                }));
+    }
+
+    private void finish(Long jobId, String errorFilePath, String error) {
+        ImportJobShowDTO result = newTransaction().execute(status -> {
+            ImportJob importJob = importJobRepository.findById(jobId).get();
+            importJob.setStatus(error == null ? ImportJobStatus.COMPLETE : ImportJobStatus.FAILED);
+            importJob.setErrorFilePath(errorFilePath);
+            importJob.setError(error == null ? null : error.substring(0, Math.min(error.length(),
+                    MAX_ERROR_LENGTH)));
+            importJob.setCompletedOn(new Date());
+            return importJobMapper.toShowDto(importJobRepository.save(importJob));
+        });
+        messagingTemplate.convertAndSend("/notifications/" + result.getCreatedBy(), result);
+    }
+
+    private Map<String, String> readHeaderMapping(String headerMapping) {
+        try {
+            return objectMapper.readValue(headerMapping, new TypeReference<Map<String, String>>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new CustomException("Invalid header mapping", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private String getMessage(Exception e) {
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+    }
+
+    //each chunk and the job state are committed on their own
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    /**
+     * Converts the csv records to the import dtos the way the web client converts the spreadsheets: blank cells are
+     * ignored, lists are comma separated and the dates are given as spreadsheet serial numbers, ISO dates are also
+     * accepted.
+     */
+    private class RowConverter {
+        private final Class<?> dtoClass;
+        private final Map<Integer, Field> fieldsByColumn = new HashMap<>();
+        private final List<String> listFields = new ArrayList<>();
+
+        private RowConverter(Class<?> dtoClass, List<String> headers, Map<String, String> headerMapping) {
+            this.dtoClass = dtoClass;
+            Map<String, Field> fields = new HashMap<>();
+            for (Class<?> type = dtoClass; type != Object.class; type = type.getSuperclass()) {
+                for (Field field : type.getDeclaredFields()) {
+                    fields.putIfAbsent(normalize(field.getName()), field);
+                    if (Collection.class.isAssignableFrom(field.getType())) listFields.add(field.getName());
+                }
+            }
+            for (int i = 0; i < headers.size(); i++) {
+                String header = headers.get(i).replace("\uFEFF", "");
+                Field field = fields.get(normalize(headerMapping.getOrDefault(header, header)));
+                if (field != null) fieldsByColumn.put(i, field);
+            }
+        }
+
+        private String normalize(String name) {
+            return name.replaceAll("[^A-Za-z0-9]", "").toLowerCase(Locale.ROOT);
+        }
+
+        private Object convert(CSVRecord record) {
+            Map<String, Object> values = new HashMap<>();
+            listFields.forEach(listField -> values.put(listField, new ArrayList<>()));
+            fieldsByColumn.forEach((column, field) -> {
+                String value = column < record.size() ? record.get(column) : null;
+                if (value == null || value.isEmpty()) return;
+                if (Collection.class.isAssignableFrom(field.getType())) {
+                    values.put(field.getName(), Arrays.stream(value.split(",")).map(String::trim)
+                            .filter(item -> !item.isEmpty()).collect(Collectors.toList()));
+                } else if (field.getName().equals("id")) {
+                    //the custom ids cannot be matched, the row is then created
+                    if (value.matches("\\d+")) values.put(field.getName(), value);
+                } else if (field.getType() == Double.class && !value.matches("-?[\\d.]+")) {
+                    values.put(field.getName(), toExcelDate(field, value));
+                } else values.put(field.getName(), value);
+            });
+            return objectMapper.convertValue(values, dtoClass);
+        }
+
+        private double toExcelDate(Field field, String value) {
+            try {
+                long millis = value.length() <= 10 ? LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC)
+                        .toInstant().toEpochMilli() :
+                        LocalDateTime.parse(value.replace(' ', 'T')).toInstant(ZoneOffset.UTC).toEpochMilli();
+                return millis / (double) TimeUnit.DAYS.toMillis(1) + EXCEL_EPOCH_DAYS;
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid value for " + field.getName() + ": " + value);
+            }
+        }
+    }
+}
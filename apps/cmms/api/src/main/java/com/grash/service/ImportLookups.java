@@ -0,0 +1,100 @@
+package com.grash.service;
+
+import com.grash.model.*;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves the names, emails and barcodes of an import against the company in memory. Each dictionary is loaded
+ * with a single query the first time it is used and only holds ids, the entities are then given as references of the
+ * current persistence context so that no row is loaded to be referenced.
+ */
+public class ImportLookups {
+
+    public static final class Lookup<T> {
+        public static final Lookup<Location> LOCATION = new Lookup<>(Location.class, "name", "company", true);
+        public static final Lookup<Asset> ASSET = new Lookup<>(Asset.class, "name", "company", true);
+        public static final Lookup<Asset> ASSET_BARCODE = new Lookup<>(Asset.class, "barCode", "company", false);
+        public static final Lookup<Part> PART = new Lookup<>(Part.class, "name", "company", true);
+        public static final Lookup<Part> PART_BARCODE = new Lookup<>(Part.class, "barcode", "company", false);
+        public static final Lookup<OwnUser> USER = new Lookup<>(OwnUser.class, "email", "company", true);
+        public static final Lookup<Team> TEAM = new Lookup<>(Team.class, "name", "company", true);
+        public static final Lookup<Customer> CUSTOMER = new Lookup<>(Customer.class, "name", "company", true);
+        public static final Lookup<Vendor> VENDOR = new Lookup<>(Vendor.class, "name", "company", true);
+        public static final Lookup<AssetCategory> ASSET_CATEGORY = new Lookup<>(AssetCategory.class, "name",
+                "companySettings", true);
+        public static final Lookup<PartCategory> PART_CATEGORY = new Lookup<>(PartCategory.class, "name",
+                "companySettings", true);
+        public static final Lookup<MeterCategory> METER_CATEGORY = new Lookup<>(MeterCategory.class, "name",
+                "companySettings", true);
+        public static final Lookup<WorkOrderCategory> WORK_ORDER_CATEGORY = new Lookup<>(WorkOrderCategory.class,
+                "name", "companySettings", true);
+
+        private final Class<T> entityClass;
+        private final String attribute;
+        private final String owner;
+        private final boolean ignoreCase;
+
+        private Lookup(Class<T> entityClass, String attribute, String owner, boolean ignoreCase) {
+            this.entityClass = entityClass;
+            this.attribute = attribute;
+            this.owner = owner;
+            this.ignoreCase = ignoreCase;
+        }
+
+        private String normalize(String key) {
+            return ignoreCase ? key.toLowerCase(Locale.ROOT) : key;
+        }
+    }
+
+    private final EntityManager entityManager;
+    private final Long companyId;
+    private final Long companySettingsId;
+    private final Map<Lookup<?>, Map<String, Long>> dictionaries = new HashMap<>();
+
+    public ImportLookups(EntityManager entityManager, Company company) {
+        this.entityManager = entityManager;
+        this.companyId = company.getId();
+        this.companySettingsId = company.getCompanySettings().getId();
+    }
+
+    public Optional<Long> findId(Lookup<?> lookup, String key) {
+        if (key == null) return Optional.empty();
+        return Optional.ofNullable(getDictionary(lookup).get(lookup.normalize(key)));
+    }
+
+    public <T> Optional<T> find(Lookup<T> lookup, String key) {
+        return findId(lookup, key).map(id -> entityManager.getReference(lookup.entityClass, id));
+    }
+
+    public <T> List<T> findAll(Lookup<T> lookup, Collection<String> keys) {
+        return keys.stream().map(key -> find(lookup, key)).filter(Optional::isPresent).map(Optional::get)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Makes an imported entity resolvable by the next rows, the first entity of a key is kept like in the database
+     */
+    public void register(Lookup<?> lookup, String key, Long id) {
+        if (key == null) return;
+        getDictionary(lookup).putIfAbsent(lookup.normalize(key), id);
+    }
+
+    private Map<String, Long> getDictionary(Lookup<?> lookup) {
+        return dictionaries.computeIfAbsent(lookup, this::load);
+    }
+
+    private Map<String, Long> load(Lookup<?> lookup) {
+        String entityName = entityManager.getMetamodel().entity(lookup.entityClass).getName();
+        List<Object[]> rows = entityManager.createQuery("SELECT e." + lookup.attribute + ", e.id FROM " + entityName
+                        + " e WHERE e." + lookup.owner + ".id = :ownerId AND e." + lookup.attribute + " IS NOT NULL " +
+                        "ORDER BY e.id", Object[].class)
+                .setParameter("ownerId", lookup.owner.equals("company") ? companyId : companySettingsId)
+                .getResultList();
+        Map<String, Long> dictionary = new HashMap<>();
+        rows.forEach(row -> dictionary.putIfAbsent(lookup.normalize((String) row[0]), (Long) row[1]));
+        return dictionary;
+    }
+}
@@ -2,13 +2,27 @@ package com.grash.service;
 
 import com.grash.dto.imports.*;
 import com.grash.model.*;
+import com.grash.model.abstracts.CompanyAudit;
+import com.grash.model.enums.ImportEntity;
+import lombok.Builder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.validation.Valid;
-import java.util.List;
-import java.util.Optional;
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.Collectors;
 
+/**
+ * Imports the rows in chunks of import.chunk-size, each chunk is committed in its own transaction so the inserts are
+ * sent in JDBC batches and the persistence context does not grow with the file. The references are resolved with
+ * {@link ImportLookups} and the existing entities of a chunk are loaded with a single query. When a chunk fails, the
+ * previous chunks stay imported.
+ */
 @Service
 @RequiredArgsConstructor
 public class ImportService {
@@ -19,156 +33,220 @@ public class ImportService {
     private final MeterService meterService;
     private final WorkOrderService workOrderService;
     private final PreventiveMaintenanceService preventiveMaintenanceService;
+    private final CustomSequenceService customSequenceService;
+    private final AnalyticsRollupService analyticsRollupService;
+    private final WorkOrderStatusTimelineService workOrderStatusTimelineService;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${import.chunk-size:500}")
+    private int chunkSize;
+
+    private interface RowImporter<D, E> {
+        E importRow(E entity, D dto, Long sequence);
+    }
+
+    @Builder
+    private static class Importer<D, E extends CompanyAudit> {
+        private final Function<D, Long> id;
+        private final Supplier<E> newEntity;
+        private final Function<Collection<Long>, List<E>> findExisting;
+        @Builder.Default
+        private final IntConsumer checkUsageBasedLimit = toCreate -> {
+        };
+        @Builder.Default
+        private final IntFunction<Long> reserveSequences = count -> null;
+        private final RowImporter<D, E> importRow;
+        @Builder.Default
+        private final Consumer<List<E>> afterChunk = imported -> {
+        };
+    }
 
     public ImportResponse importWorkOrders(List<WorkOrderImportDTO> toImport, Company company) {
-        final int[] created = {0};
-        final int[] updated = {0};
-        toImport.forEach(workOrderImportDTO -> {
-            Long id = workOrderImportDTO.getId();
-            WorkOrder workOrder = new WorkOrder();
-            if (id == null) {
-                created[0]++;
-            } else {
-                Optional<WorkOrder> optionalWorkOrder = workOrderService.findByIdAndCompany(id, company.getId());
-                if (optionalWorkOrder.isPresent()) {
-                    workOrder = optionalWorkOrder.get();
-                    updated[0]++;
-                } else {
-                    created[0]++;
-                }
-            }
-            workOrderService.importWorkOrder(workOrder, workOrderImportDTO, company);
-        });
-        return ImportResponse.builder()
-                .created(created[0])
-                .updated(updated[0])
-                .build();
+        return importInChunks(toImport, workOrderImporter(company, new ImportLookups(entityManager, company)));
     }
 
     public ImportResponse importAssets(List<AssetImportDTO> toImport, Company company) {
-        final int[] created = {0};
-        final int[] updated = {0};
-        AssetService.orderAssets(toImport).forEach(assetImportDTO -> {
-            Long id = assetImportDTO.getId();
-            Asset asset = new Asset();
-            if (id == null) {
-                created[0]++;
-            } else {
-                Optional<Asset> optionalAsset = assetService.findByIdAndCompany(id, company.getId());
-                if (optionalAsset.isPresent()) {
-                    asset = optionalAsset.get();
-                    updated[0]++;
-                } else {
-                    created[0]++;
-                }
-            }
-            assetService.importAsset(asset, assetImportDTO, company);
-        });
-        return ImportResponse.builder()
-                .created(created[0])
-                .updated(updated[0])
-                .build();
+        return importInChunks(AssetService.orderAssets(toImport), assetImporter(company,
+                new ImportLookups(entityManager, company)));
     }
 
     public ImportResponse importLocations(List<LocationImportDTO> toImport, Company company) {
-        final int[] created = {0};
-        final int[] updated = {0};
-        LocationService.orderLocations(toImport).forEach(locationImportDTO -> {
-            Long id = locationImportDTO.getId();
-            Location location = new Location();
-            if (id == null) {
-                created[0]++;
-            } else {
-                Optional<Location> optionalLocation = locationService.findByIdAndCompany(id, company.getId());
-                if (optionalLocation.isPresent()) {
-                    location = optionalLocation.get();
-                    updated[0]++;
-                } else {
-                    created[0]++;
-                }
-            }
-            locationService.importLocation(location, locationImportDTO, company);
-        });
-        return ImportResponse.builder()
-                .created(created[0])
-                .updated(updated[0])
-                .build();
+        return importInChunks(LocationService.orderLocations(toImport), locationImporter(company,
+                new ImportLookups(entityManager, company)));
     }
 
     public ImportResponse importMeters(List<MeterImportDTO> toImport, Company company) {
-        final int[] created = {0};
-        final int[] updated = {0};
-        toImport.forEach(meterImportDTO -> {
-            Long id = meterImportDTO.getId();
-            Meter meter = new Meter();
-            if (id == null) {
-                created[0]++;
-            } else {
-                Optional<Meter> optionalMeter = meterService.findByIdAndCompany(id, company.getId());
-                if (optionalMeter.isPresent()) {
-                    meter = optionalMeter.get();
-                    updated[0]++;
-                } else {
-                    created[0]++;
-                }
-            }
-            meterService.importMeter(meter, meterImportDTO, company);
-        });
-        return ImportResponse.builder()
-                .created(created[0])
-                .updated(updated[0])
-                .build();
+        return importInChunks(toImport, meterImporter(company, new ImportLookups(entityManager, company)));
     }
 
     public ImportResponse importParts(List<PartImportDTO> toImport, Company company) {
-        final int[] created = {0};
-        final int[] updated = {0};
-        toImport.forEach(partImportDTO -> {
-            Long id = partImportDTO.getId();
-            Part part = new Part();
-            if (id == null) {
-                created[0]++;
-            } else {
-                Optional<Part> optionalPart = partService.findByIdAndCompany(id, company.getId());
-                if (optionalPart.isPresent()) {
-                    part = optionalPart.get();
-                    updated[0]++;
-                } else {
-                    created[0]++;
-                }
-            }
-            partService.importPart(part, partImportDTO, company);
-        });
-        return ImportResponse.builder()
-                .created(created[0])
-                .updated(updated[0])
-                .build();
+        return importInChunks(toImport, partImporter(company, new ImportLookups(entityManager, company)));
     }
 
     public ImportResponse importPreventiveMaintenances(List<PreventiveMaintenanceImportDTO> toImport, Company company) {
-        final int[] created = {0};
-        final int[] updated = {0};
-        toImport.forEach(pmImportDTO -> {
-            Long id = pmImportDTO.getId();
-            PreventiveMaintenance preventiveMaintenance = new PreventiveMaintenance();
-            if (id == null) {
-                created[0]++;
-            } else {
-                Optional<PreventiveMaintenance> optionalPM = preventiveMaintenanceService.findByIdAndCompany(id,
-                        company.getId());
-                if (optionalPM.isPresent()) {
-                    preventiveMaintenance = optionalPM.get();
-                    updated[0]++;
-                } else {
-                    created[0]++;
-                }
-            }
-            preventiveMaintenanceService.importPreventiveMaintenance(preventiveMaintenance, pmImportDTO, company);
-        });
+        return importInChunks(toImport, preventiveMaintenanceImporter(company,
+                new ImportLookups(entityManager, company)));
+    }
+
+    /**
+     * Imports the rows in the current transaction, for the callers which commit the chunks themselves
+     *
+     * @return the number of updated entities
+     */
+    @SuppressWarnings("unchecked")
+    public int importChunk(ImportEntity importEntity, List<?> chunk, Company company, ImportLookups lookups) {
+        switch (importEntity) {
+            case WORK_ORDER:
+                return importChunk((List<WorkOrderImportDTO>) chunk, workOrderImporter(company, lookups));
+            case ASSET:
+                return importChunk(AssetService.orderAssets((List<AssetImportDTO>) chunk), assetImporter(company,
+                        lookups));
+            case LOCATION:
+                return importChunk(LocationService.orderLocations((List<LocationImportDTO>) chunk),
+                        locationImporter(company, lookups));
+            case METER:
+                return importChunk((List<MeterImportDTO>) chunk, meterImporter(company, lookups));
+            case PART:
+                return importChunk((List<PartImportDTO>) chunk, partImporter(company, lookups));
+            case PREVENTIVE_MAINTENANCE:
+                return importChunk((List<PreventiveMaintenanceImportDTO>) chunk,
+                        preventiveMaintenanceImporter(company, lookups));
+            default:
+                throw new IllegalArgumentException("Unsupported import " + importEntity);
+        }
+    }
+
+    public static Class<?> getImportDTOClass(ImportEntity importEntity) {
+        switch (importEntity) {
+            case WORK_ORDER:
+                return WorkOrderImportDTO.class;
+            case ASSET:
+                return AssetImportDTO.class;
+            case LOCATION:
+                return LocationImportDTO.class;
+            case METER:
+                return MeterImportDTO.class;
+            case PART:
+                return PartImportDTO.class;
+            case PREVENTIVE_MAINTENANCE:
+                return PreventiveMaintenanceImportDTO.class;
+            default:
+                throw new IllegalArgumentException("Unsupported import " + importEntity);
+        }
+    }
+
+    private Importer<WorkOrderImportDTO, WorkOrder> workOrderImporter(Company company, ImportLookups lookups) {
+        return Importer.<WorkOrderImportDTO, WorkOrder>builder()
+                .id(WorkOrderImportDTO::getId)
+                .newEntity(WorkOrder::new)
+                .findExisting(ids -> workOrderService.findByIdInAndCompany(ids, company.getId()))
+                .checkUsageBasedLimit(toCreate -> workOrderService.checkUsageBasedLimit(company, toCreate))
+                .reserveSequences(count -> customSequenceService.reserveWorkOrderSequences(company, count))
+                .importRow((workOrder, dto, sequence) -> workOrderService.importWorkOrder(workOrder, dto, lookups,
+                        sequence))
+                .afterChunk(imported -> {
+                    analyticsRollupService.markWorkOrders(imported);
+                    workOrderStatusTimelineService.recordAll(imported);
+                })
+                .build();
+    }
+
+    private Importer<AssetImportDTO, Asset> assetImporter(Company company, ImportLookups lookups) {
+        return Importer.<AssetImportDTO, Asset>builder()
+                .id(AssetImportDTO::getId)
+                .newEntity(Asset::new)
+                .findExisting(ids -> assetService.findByIdInAndCompany(ids, company.getId()))
+                .checkUsageBasedLimit(toCreate -> assetService.checkUsageBasedLimit(company, toCreate))
+                .reserveSequences(count -> customSequenceService.reserveAssetSequences(company, count))
+                .importRow((asset, dto, sequence) -> assetService.importAsset(asset, dto, company, lookups, sequence))
+                .build();
+    }
+
+    private Importer<LocationImportDTO, Location> locationImporter(Company company, ImportLookups lookups) {
+        return Importer.<LocationImportDTO, Location>builder()
+                .id(LocationImportDTO::getId)
+                .newEntity(Location::new)
+                .findExisting(ids -> locationService.findByIdInAndCompany(ids, company.getId()))
+                .checkUsageBasedLimit(toCreate -> locationService.checkUsageBasedLimit(company, toCreate))
+                .reserveSequences(count -> customSequenceService.reserveLocationSequences(company, count))
+                .importRow((location, dto, sequence) -> locationService.importLocation(location, dto, lookups,
+                        sequence))
+                .build();
+    }
+
+    private Importer<MeterImportDTO, Meter> meterImporter(Company company, ImportLookups lookups) {
+        return Importer.<MeterImportDTO, Meter>builder()
+                .id(MeterImportDTO::getId)
+                .newEntity(Meter::new)
+                .findExisting(ids -> meterService.findByIdInAndCompany(ids, company.getId()))
+                .importRow((meter, dto, sequence) -> meterService.importMeter(meter, dto, lookups))
+                .build();
+    }
+
+    private Importer<PartImportDTO, Part> partImporter(Company company, ImportLookups lookups) {
+        return Importer.<PartImportDTO, Part>builder()
+                .id(PartImportDTO::getId)
+                .newEntity(Part::new)
+                .findExisting(ids -> partService.findByIdInAndCompany(ids, company.getId()))
+                .checkUsageBasedLimit(toCreate -> partService.checkUsageBasedLimit(company, toCreate))
+                .importRow((part, dto, sequence) -> partService.importPart(part, dto, lookups))
+                .build();
+    }
+
+    private Importer<PreventiveMaintenanceImportDTO, PreventiveMaintenance> preventiveMaintenanceImporter(
+            Company company, ImportLookups lookups) {
+        return Importer.<PreventiveMaintenanceImportDTO, PreventiveMaintenance>builder()
+                .id(PreventiveMaintenanceImportDTO::getId)
+                .newEntity(PreventiveMaintenance::new)
+                .findExisting(ids -> preventiveMaintenanceService.findByIdInAndCompany(ids, company.getId()))
+                .checkUsageBasedLimit(toCreate -> preventiveMaintenanceService.checkUsageBasedLimit(company,
+                        toCreate))
+                .reserveSequences(count -> customSequenceService.reservePreventiveMaintenanceSequences(company,
+                        count))
+                .importRow((preventiveMaintenance, dto, sequence) ->
+                        preventiveMaintenanceService.importPreventiveMaintenance(preventiveMaintenance, dto, lookups,
+                                sequence))
+                .build();
+    }
+
+    private <D, E extends CompanyAudit> ImportResponse importInChunks(List<D> toImport, Importer<D, E> importer) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        int created = 0;
+        int updated = 0;
+        for (int from = 0; from < toImport.size(); from += chunkSize) {
+            List<D> chunk = toImport.subList(from, Math.min(from + chunkSize, toImport.size()));
+            int chunkUpdated = transactionTemplate.execute(status -> importChunk(chunk, importer));
+            created += chunk.size() - chunkUpdated;
+            updated += chunkUpdated;
+        }
         return ImportResponse.builder()
-                .created(created[0])
-                .updated(updated[0])
+                .created(created)
+                .updated(updated)
                 .build();
     }
 
+    /**
+     * @return the number of updated entities
+     */
+    private <D, E extends CompanyAudit> int importChunk(List<D> chunk, Importer<D, E> importer) {
+        List<Long> ids = chunk.stream().map(importer.id).filter(Objects::nonNull).collect(Collectors.toList());
+        Map<Long, E> existingEntities = ids.isEmpty() ? Collections.emptyMap() :
+                importer.findExisting.apply(ids).stream().collect(Collectors.toMap(CompanyAudit::getId,
+                        entity -> entity));
+        int updated = (int) chunk.stream().map(importer.id).filter(existingEntities::containsKey).count();
+        importer.checkUsageBasedLimit.accept(chunk.size() - updated);
+        Long sequence = importer.reserveSequences.apply(chunk.size());
+        List<E> imported = new ArrayList<>();
+        for (D dto : chunk) {
+            Long id = importer.id.apply(dto);
+            E entity = id != null && existingEntities.containsKey(id) ? existingEntities.get(id) :
+                    importer.newEntity.get();
+            imported.add(importer.importRow.importRow(entity, dto, sequence));
+            if (sequence != null) sequence++;
+        }
+        importer.afterChunk.accept(imported);
+        return updated;
+    }
 }
@@ -33,6 +33,7 @@ public class LaborService {
     private final LaborMapper laborMapper;
     private final EntityManager em;
     private final LicenseService licenseService;
+    private final AnalyticsRollupService analyticsRollupService;
 
     @Transactional
     public Labor create(Labor labor) {
@@ -40,6 +41,7 @@ public class LaborService {
             throw new CustomException("You need a license to create a labor", HttpStatus.FORBIDDEN);
         Labor savedLabor = laborRepository.saveAndFlush(labor);
         em.refresh(savedLabor);
+        analyticsRollupService.markWorkOrder(savedLabor.getWorkOrder());
         return savedLabor;
     }
 
@@ -49,12 +51,15 @@ public class LaborService {
             Labor savedLabor = laborRepository.findById(id).get();
             Labor updatedLabor = laborRepository.saveAndFlush(laborMapper.updateLabor(savedLabor, labor));
             em.refresh(updatedLabor);
+            analyticsRollupService.markWorkOrder(updatedLabor.getWorkOrder());
             return updatedLabor;
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
 
     public Labor save(Labor labor) {
-        return laborRepository.save(labor);
+        Labor savedLabor = laborRepository.save(labor);
+        analyticsRollupService.markWorkOrder(savedLabor.getWorkOrder());
+        return savedLabor;
     }
 
     public Collection<Labor> getAll() {
@@ -62,6 +67,7 @@ public class LaborService {
     }
 
     public void delete(Long id) {
+        laborRepository.findById(id).ifPresent(labor -> analyticsRollupService.markWorkOrder(labor.getWorkOrder()));
         laborRepository.deleteById(id);
     }
 
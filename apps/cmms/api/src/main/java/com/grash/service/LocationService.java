@@ -2,6 +2,7 @@ package com.grash.service;
 
 import com.grash.advancedsearch.SearchCriteria;
 import com.grash.advancedsearch.SpecificationBuilder;
+import com.grash.dto.ChildCounts;
 import com.grash.dto.LocationPatchDTO;
 import com.grash.dto.LocationShowDTO;
 import com.grash.dto.imports.LocationImportDTO;
@@ -11,6 +12,7 @@ import com.grash.mapper.LocationMapper;
 import com.grash.model.*;
 import com.grash.model.enums.NotificationType;
 import com.grash.model.enums.RoleType;
+import com.grash.repository.LocationClosureRepository;
 import com.grash.repository.LocationRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.MessageSource;
@@ -25,6 +27,7 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.grash.utils.Consts.usageBasedLicenseLimits;
 
@@ -32,14 +35,11 @@ import static com.grash.utils.Consts.usageBasedLicenseLimits;
 @RequiredArgsConstructor
 public class LocationService {
     private final LocationRepository locationRepository;
-    private final UserService userService;
+    private final LocationClosureRepository locationClosureRepository;
     private final CompanyService companyService;
-    private final CustomerService customerService;
     private final MessageSource messageSource;
-    private final VendorService vendorService;
     private final LocationMapper locationMapper;
     private final NotificationService notificationService;
-    private final TeamService teamService;
     private final EntityManager em;
     private final FileService fileService;
     private final CustomSequenceService customSequenceService;
@@ -67,9 +67,13 @@ public class LocationService {
     }
 
     private void checkUsageBasedLimit(Company company) {
+        checkUsageBasedLimit(company, 1);
+    }
+
+    public void checkUsageBasedLimit(Company company, int toCreate) {
         Integer threshold = usageBasedLicenseLimits.get(LicenseEntitlement.UNLIMITED_LOCATIONS);
-        if (!licenseService.hasEntitlement(LicenseEntitlement.UNLIMITED_LOCATIONS)
-                && locationRepository.hasMoreThan(company.getId(), threshold.longValue() - 1
+        if (toCreate > 0 && !licenseService.hasEntitlement(LicenseEntitlement.UNLIMITED_LOCATIONS)
+                && locationRepository.hasMoreThan(company.getId(), threshold.longValue() - toCreate
         ))
             throw new CustomException("You need a license to add a new location. Free Limit reached: " + threshold,
                     HttpStatus.FORBIDDEN);
@@ -92,6 +96,14 @@ public class LocationService {
         return locationRepository.findByCompany_Id(id);
     }
 
+    public Stream<Location> streamByCompany(Long id) {
+        return locationRepository.streamByCompany_Id(id);
+    }
+
+    public long countByCompany(Long id) {
+        return locationRepository.countByCompany_Id(id);
+    }
+
     public List<Location> findByCompany(Long id, Sort sort) {
         return locationRepository.findByCompany_Id(id, sort);
     }
@@ -118,8 +130,11 @@ public class LocationService {
     }
 
     private String getLocationNumber(Company company) {
-        Long nextSequence = customSequenceService.getNextLocationSequence(company);
-        return "L" + String.format("%06d", nextSequence);
+        return getLocationNumber(customSequenceService.getNextLocationSequence(company));
+    }
+
+    private String getLocationNumber(Long sequence) {
+        return "L" + String.format("%06d", sequence);
     }
 
     public void save(Location location) {
@@ -140,42 +155,24 @@ public class LocationService {
         return locationRepository.findByNameIgnoreCaseAndCompany_Id(locationName, companyId);
     }
 
-    public void importLocation(Location location, LocationImportDTO dto, Company company) {
-        checkUsageBasedLimit(company);
-        Long companyId = company.getId();
+    public Location importLocation(Location location, LocationImportDTO dto, ImportLookups lookups, Long sequence) {
         location.setName(dto.getName());
         location.setAddress(dto.getAddress());
         location.setLongitude(dto.getLongitude());
         location.setLatitude(dto.getLatitude());
-        Optional<Location> optionalLocation =
-                findByNameIgnoreCaseAndCompany(dto.getParentLocationName(), companyId).stream().findFirst();
-        optionalLocation.ifPresent(location::setParentLocation);
-        List<OwnUser> workers = new ArrayList<>();
-        dto.getWorkersEmails().forEach(email -> {
-            Optional<OwnUser> optionalUser1 = userService.findByEmailAndCompany(email, companyId);
-            optionalUser1.ifPresent(workers::add);
-        });
-        location.setWorkers(workers);
-        List<Team> teams = new ArrayList<>();
-        dto.getTeamsNames().forEach(teamName -> {
-            Optional<Team> optionalTeam = teamService.findByNameIgnoreCaseAndCompany(teamName, companyId);
-            optionalTeam.ifPresent(teams::add);
-        });
-        location.setTeams(teams);
-        location.setCustomId(getLocationNumber(company));
-        List<Customer> customers = new ArrayList<>();
-        dto.getCustomersNames().forEach(name -> {
-            Optional<Customer> optionalCustomer = customerService.findByNameIgnoreCaseAndCompany(name, companyId);
-            optionalCustomer.ifPresent(customers::add);
-        });
-        location.setCustomers(customers);
-        List<Vendor> vendors = new ArrayList<>();
-        dto.getVendorsNames().forEach(name -> {
-            Optional<Vendor> optionalVendor = vendorService.findByNameIgnoreCaseAndCompany(name, companyId);
-            optionalVendor.ifPresent(vendors::add);
-        });
-        location.setVendors(vendors);
-        locationRepository.save(location);
+        lookups.find(ImportLookups.Lookup.LOCATION, dto.getParentLocationName()).ifPresent(location::setParentLocation);
+        location.setWorkers(lookups.findAll(ImportLookups.Lookup.USER, dto.getWorkersEmails()));
+        location.setTeams(lookups.findAll(ImportLookups.Lookup.TEAM, dto.getTeamsNames()));
+        location.setCustomId(getLocationNumber(sequence));
+        location.setCustomers(lookups.findAll(ImportLookups.Lookup.CUSTOMER, dto.getCustomersNames()));
+        location.setVendors(lookups.findAll(ImportLookups.Lookup.VENDOR, dto.getVendorsNames()));
+        Location savedLocation = locationRepository.save(location);
+        lookups.register(ImportLookups.Lookup.LOCATION, savedLocation.getName(), savedLocation.getId());
+        return savedLocation;
+    }
+
+    public List<Location> findByIdInAndCompany(Collection<Long> ids, Long companyId) {
+        return locationRepository.findByIdInAndCompany_Id(ids, companyId);
     }
 
     public Optional<Location> findByIdAndCompany(Long id, Long companyId) {
@@ -187,8 +184,9 @@ public class LocationService {
         searchCriteria.getFilterFields().forEach(builder::with);
         Pageable page = PageRequest.of(searchCriteria.getPageNum(), searchCriteria.getPageSize(),
                 searchCriteria.getDirection(), searchCriteria.getSortField());
-        return locationRepository.findAll(builder.build(), page).map(location -> locationMapper.toShowDto(location,
-                this));
+        Page<Location> locations = locationRepository.findAll(builder.build(), page);
+        ChildCounts childCounts = getChildCounts(locations.getContent());
+        return locations.map(location -> locationMapper.toShowDto(location, childCounts));
     }
 
     public static List<LocationImportDTO> orderLocations(List<LocationImportDTO> locations) {
@@ -253,4 +251,24 @@ public class LocationService {
     public boolean hasChildren(Long locationId) {
         return locationRepository.countByParentLocation_Id(locationId) > 0;
     }
+
+    public ChildCounts getChildCounts(Collection<Location> locations) {
+        if (locations.isEmpty()) return new ChildCounts(Collections.emptyList());
+        return new ChildCounts(locationClosureRepository.countChildren(locations.stream().map(Location::getId)
+                .collect(Collectors.toList())));
+    }
+
+    /**
+     * @return the ids of the location and of all its descendants
+     */
+    public List<Long> findSubtreeIds(Long locationId) {
+        return locationClosureRepository.findSubtreeIds(locationId);
+    }
+
+    /**
+     * @return the ids of the ancestors of the location, from its parent to the root
+     */
+    public List<Long> findAncestorIds(Long locationId) {
+        return locationClosureRepository.findAncestorIds(locationId);
+    }
 }
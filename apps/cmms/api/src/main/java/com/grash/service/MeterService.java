@@ -24,22 +24,18 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class MeterService {
     private final MeterRepository meterRepository;
-    private final MeterCategoryService meterCategoryService;
     private final FileService fileService;
-    private final AssetService assetService;
     private final CompanyService companyService;
     private final MessageSource messageSource;
-    private final LocationService locationService;
-    private final UserService userService;
     private final EntityManager em;
     private final MeterMapper meterMapper;
     private final NotificationService notificationService;
-    private final ReadingService readingService;
     private final LicenseService licenseService;
 
     @Transactional
@@ -77,6 +73,14 @@ public class MeterService {
         return meterRepository.findByCompany_Id(id);
     }
 
+    public Stream<Meter> streamByCompany(Long id) {
+        return meterRepository.streamByCompany_Id(id);
+    }
+
+    public long countByCompany(Long id) {
+        return meterRepository.countByCompany_Id(id);
+    }
+
     public void notify(Meter meter, Locale locale) {
         String title = messageSource.getMessage("new_assignment", null, locale);
         String message = messageSource.getMessage("notification_meter_assigned", new Object[]{meter.getName()}, locale);
@@ -117,37 +121,45 @@ public class MeterService {
         searchCriteria.getFilterFields().forEach(builder::with);
         Pageable page = PageRequest.of(searchCriteria.getPageNum(), searchCriteria.getPageSize(),
                 searchCriteria.getDirection(), searchCriteria.getSortField());
-        return meterRepository.findAll(builder.build(), page).map(meter -> meterMapper.toShowDto(meter,
-                readingService));
+        return meterRepository.findAll(builder.build(), page).map(meter -> meterMapper.toShowDto(meter));
     }
 
-    public void importMeter(Meter meter, MeterImportDTO dto, Company company) {
+    public Meter importMeter(Meter meter, MeterImportDTO dto, ImportLookups lookups) {
         if (!licenseService.hasEntitlement(LicenseEntitlement.METER))
             throw new CustomException("You need a license to create a meter", HttpStatus.FORBIDDEN);
-        Long companyId = company.getId();
-        Long companySettingsId = company.getCompanySettings().getId();
         meter.setName(dto.getName());
         meter.setUnit(dto.getUnit());
         meter.setUpdateFrequency(dto.getUpdateFrequency());
-        Optional<Location> optionalLocation = locationService.findByNameIgnoreCaseAndCompany(dto.getLocationName(),
-                companyId).stream().findFirst();
-        optionalLocation.ifPresent(meter::setLocation);
-        Optional<Asset> optionalAsset = assetService.findByNameIgnoreCaseAndCompany(dto.getAssetName(),
-                companyId).stream().findFirst();
-        optionalAsset.ifPresent(meter::setAsset);
-        Optional<MeterCategory> optionalMeterCategory =
-                meterCategoryService.findByNameIgnoreCaseAndCompanySettings(dto.getMeterCategory(), companySettingsId);
-        optionalMeterCategory.ifPresent(meter::setMeterCategory);
-        List<OwnUser> users = new ArrayList<>();
-        dto.getUsersEmails().forEach(email -> {
-            Optional<OwnUser> optionalUser1 = userService.findByEmailAndCompany(email, companyId);
-            optionalUser1.ifPresent(users::add);
-        });
-        meter.setUsers(users);
-        meterRepository.save(meter);
+        lookups.find(ImportLookups.Lookup.LOCATION, dto.getLocationName()).ifPresent(meter::setLocation);
+        lookups.find(ImportLookups.Lookup.ASSET, dto.getAssetName()).ifPresent(meter::setAsset);
+        lookups.find(ImportLookups.Lookup.METER_CATEGORY, dto.getMeterCategory()).ifPresent(meter::setMeterCategory);
+        meter.setUsers(lookups.findAll(ImportLookups.Lookup.USER, dto.getUsersEmails()));
+        return meterRepository.save(meter);
+    }
+
+    public List<Meter> findByIdInAndCompany(Collection<Long> ids, Long companyId) {
+        return meterRepository.findByIdInAndCompany_Id(ids, companyId);
+    }
+
+    /**
+     * Like {@link #findByIdInAndCompany} with the meter rows locked until the end of the transaction
+     */
+    public List<Meter> findByIdInAndCompanyForUpdate(Collection<Long> ids, Long companyId) {
+        return meterRepository.findByIdInAndCompanyForUpdate(ids, companyId);
+    }
+
+    public List<Meter> findWithReadingRetention() {
+        return meterRepository.findByReadingRetentionDaysNotNull();
     }
 
     public Optional<Meter> findByIdAndCompany(Long id, Long companyId) {
         return meterRepository.findByIdAndCompany_Id(id, companyId);
     }
+
+    /**
+     * Sets the last reading of the meter from its readings, after one of them was changed or deleted
+     */
+    public void refreshLastReading(Long id) {
+        meterRepository.refreshLastReading(id);
+    }
 }
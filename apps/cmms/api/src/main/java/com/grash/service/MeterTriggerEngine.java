@@ -0,0 +1,200 @@
+package com.grash.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.grash.dto.MeterTriggerState;
+import com.grash.model.*;
+import com.grash.model.enums.NotificationType;
+import com.grash.model.enums.WorkOrderMeterTriggerCondition;
+import com.grash.repository.WorkOrderMeterTriggerRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.MessageSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluates the readings of the meters against their triggers, compiled once and cached per meter. A trigger only
+ * fires on its transition to triggered: the value must be past the threshold on debounceCount consecutive readings and
+ * the cooldown since the last firing must be over. It is cleared once the value comes back past the threshold by the
+ * hysteresis. The state of the triggers (triggered, last firing and consecutive readings past the threshold) is not
+ * cached: it is read with the trigger rows locked and written in the transaction of the readings, so it is shared by
+ * the instances, survives the restarts and is rolled back with the readings. The work order of a fired trigger is
+ * created in the same transaction, its notifications are only sent once it is committed.
+ */
+@Service
+@RequiredArgsConstructor
+public class MeterTriggerEngine {
+    private final WorkOrderMeterTriggerRepository workOrderMeterTriggerRepository;
+    private final NotificationService notificationService;
+    private final WorkOrderService workOrderService;
+    private final MessageSource messageSource;
+    private final PlatformTransactionManager transactionManager;
+
+    private final Cache<Long, List<CompiledTrigger>> triggersByMeter = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Evaluates the readings of one meter, in the order they were sampled
+     */
+    @Transactional
+    public void evaluate(Meter meter, Collection<Double> values, Company company, Locale locale) {
+        evaluate(Collections.singletonMap(meter.getId(), meter), Collections.singletonMap(meter.getId(), values),
+                company, locale);
+    }
+
+    /**
+     * Evaluates the readings of several meters by id, loading the triggers of the meters missing from the cache at
+     * once
+     */
+    @Transactional
+    public void evaluate(Map<Long, Meter> meters, Map<Long, ? extends Collection<Double>> valuesByMeter,
+                         Company company, Locale locale) {
+        if (valuesByMeter.isEmpty()) return;
+        Map<Long, List<CompiledTrigger>> triggers = triggersByMeter.getAll(valuesByMeter.keySet(), this::compile);
+        Set<Long> triggerIds = valuesByMeter.keySet().stream()
+                .flatMap(meterId -> triggers.getOrDefault(meterId, Collections.emptyList()).stream())
+                .map(trigger -> trigger.id)
+                .collect(Collectors.toSet());
+        if (triggerIds.isEmpty()) return;
+        Map<Long, TriggerState> states = workOrderMeterTriggerRepository.findStatesForUpdate(triggerIds).stream()
+                .collect(Collectors.toMap(MeterTriggerState::getId, TriggerState::new));
+        Date now = new Date();
+        valuesByMeter.forEach((meterId, values) -> triggers.getOrDefault(meterId, Collections.emptyList())
+                .forEach(trigger -> {
+                    TriggerState state = states.get(trigger.id);
+                    //deleted since it was compiled
+                    if (state == null) return;
+                    values.forEach(value -> {
+                        if (trigger.evaluate(state, value, now)) fire(meters.get(meterId), trigger, company, locale);
+                    });
+                    if (state.consecutiveBreaches != state.persistedConsecutiveBreaches)
+                        workOrderMeterTriggerRepository.updateConsecutiveBreaches(trigger.id,
+                                state.consecutiveBreaches);
+                }));
+    }
+
+    public void evict(Long meterId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    triggersByMeter.invalidate(meterId);
+                }
+            });
+        } else triggersByMeter.invalidate(meterId);
+    }
+
+    private Map<Long, List<CompiledTrigger>> compile(Iterable<? extends Long> meterIds) {
+        Map<Long, List<CompiledTrigger>> triggers = new HashMap<>();
+        meterIds.forEach(meterId -> triggers.put(meterId, new ArrayList<>()));
+        workOrderMeterTriggerRepository.findByMeter_IdIn(triggers.keySet()).forEach(trigger ->
+                triggers.get(trigger.getMeter().getId()).add(new CompiledTrigger(trigger)));
+        return triggers;
+    }
+
+    private void fire(Meter meter, CompiledTrigger trigger, Company company, Locale locale) {
+        Optional<WorkOrderMeterTrigger> optionalTrigger = workOrderMeterTriggerRepository.findById(trigger.id);
+        if (!optionalTrigger.isPresent()) return;
+        WorkOrderMeterTrigger meterTrigger = optionalTrigger.get();
+        String title = messageSource.getMessage("new_wo", null, locale);
+        Object[] notificationArgs = new Object[]{meter.getName(), meterTrigger.getValue(), meter.getUnit()};
+        String message = messageSource.getMessage(trigger.lessThan ? "notification_reading_less_than" :
+                "notification_reading_more_than", notificationArgs, locale);
+        List<Notification> notifications = meter.getUsers().stream().map(user ->
+                new Notification(message, user, NotificationType.METER, meter.getId())
+        ).collect(Collectors.toList());
+        WorkOrder workOrder = workOrderService.getWorkOrderFromWorkOrderBase(meterTrigger);
+        List<WorkOrder> savedWorkOrders = workOrderService.createAll(Collections.singletonList(workOrder), company);
+        workOrderService.notifyAll(savedWorkOrders, locale);
+        Runnable send = () -> {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            transactionTemplate.executeWithoutResult(status ->
+                    notificationService.createMultiple(notifications, true, title));
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send.run();
+                }
+            });
+        } else send.run();
+    }
+
+    /**
+     * The settings of a trigger, its state is read for each evaluation
+     */
+    private class CompiledTrigger {
+        private final Long id;
+        private final boolean lessThan;
+        private final double threshold;
+        private final double clearThreshold;
+        private final int debounceCount;
+        private final long cooldown;
+
+        private CompiledTrigger(WorkOrderMeterTrigger trigger) {
+            this.id = trigger.getId();
+            this.lessThan = trigger.getTriggerCondition().equals(WorkOrderMeterTriggerCondition.LESS_THAN);
+            this.threshold = trigger.getValue();
+            this.clearThreshold = lessThan ? threshold + trigger.getHysteresis() :
+                    threshold - trigger.getHysteresis();
+            this.debounceCount = Math.max(1, trigger.getDebounceCount());
+            this.cooldown = TimeUnit.MINUTES.toMillis(trigger.getCooldownMinutes());
+        }
+
+        /**
+         * Applies the value to the state, persisting the transitions
+         *
+         * @return true if the trigger should fire
+         */
+        private boolean evaluate(TriggerState state, double value, Date now) {
+            if (state.triggered) {
+                if (lessThan ? value >= clearThreshold : value <= clearThreshold) {
+                    state.triggered = false;
+                    state.consecutiveBreaches = 0;
+                    state.persistedConsecutiveBreaches = 0;
+                    workOrderMeterTriggerRepository.clearTriggered(id);
+                }
+                return false;
+            }
+            boolean breached = lessThan ? value < threshold : value > threshold;
+            state.consecutiveBreaches = breached ? state.consecutiveBreaches + 1 : 0;
+            if (state.consecutiveBreaches < debounceCount) return false;
+            // during the cooldown the trigger stays armed and fires once it is over if the value is still past
+            if (now.getTime() - state.lastTriggeredAt < cooldown) return false;
+            if (workOrderMeterTriggerRepository.markTriggered(id, now, new Date(now.getTime() - cooldown)) == 0)
+                return false;
+            state.triggered = true;
+            state.lastTriggeredAt = now.getTime();
+            state.consecutiveBreaches = 0;
+            state.persistedConsecutiveBreaches = 0;
+            return true;
+        }
+    }
+
+    private static class TriggerState {
+        private boolean triggered;
+        private long lastTriggeredAt;
+        private int consecutiveBreaches;
+        private int persistedConsecutiveBreaches;
+
+        private TriggerState(MeterTriggerState state) {
+            this.triggered = state.getTriggered();
+            this.lastTriggeredAt = state.getLastTriggeredAt() == null ? 0 : state.getLastTriggeredAt().getTime();
+            this.consecutiveBreaches = state.getConsecutiveBreaches();
+            this.persistedConsecutiveBreaches = consecutiveBreaches;
+        }
+    }
+}
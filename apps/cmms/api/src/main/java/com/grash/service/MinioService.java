@@ -9,17 +9,19 @@ import io.minio.http.Method;
 import lombok.RequiredArgsConstructor;
 import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.PostConstruct;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.net.*;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -38,6 +40,9 @@ public class MinioService implements StorageService {
 
     private MinioClient minioClient;
     private static boolean configured = false;
+    private static final int PIPE_SIZE = 64 * 1024;
+    //reads the streamed uploads while the caller writes them
+    private final ThreadPoolTaskExecutor uploadExecutor;
 
     @PostConstruct
     private void init() {
@@ -87,6 +92,69 @@ public class MinioService implements StorageService {
         }
     }
 
+    /**
+     * The content is piped to a multipart upload running on another thread, only one part is buffered at a time.
+     */
+    public String upload(String fileName, String contentType, String folder, ContentWriter writer) {
+        checkIfConfigured();
+        Helper helper = new Helper();
+        String filePath = folder + "/" + helper.generateString() + " " + fileName;
+        PipedInputStream inputStream = new PipedInputStream(PIPE_SIZE);
+        PipedOutputStream outputStream;
+        try {
+            outputStream = new PipedOutputStream(inputStream);
+        } catch (IOException e) {
+            throw new CustomException(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        Future<ObjectWriteResponse> upload;
+        try {
+            upload = uploadExecutor.submit(() -> {
+                //closing the read end unblocks the writer if the upload fails
+                try (InputStream stream = inputStream) {
+                    return minioClient.putObject(
+                            PutObjectArgs.builder()
+                                    .bucket(minioBucket)
+                                    .object(filePath)
+                                    .stream(stream, -1, ObjectWriteArgs.MIN_MULTIPART_SIZE)
+                                    .contentType(contentType)
+                                    .build()
+                    );
+                }
+            });
+        } catch (TaskRejectedException e) {
+            closeQuietly(inputStream);
+            closeQuietly(outputStream);
+            throw new CustomException("Too many uploads in progress, please retry later",
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        try {
+            writer.write(outputStream);
+            outputStream.close();
+        } catch (IOException | RuntimeException e) {
+            //the upload fails instead of storing a truncated file
+            upload.cancel(true);
+            closeQuietly(inputStream);
+            if (e instanceof CustomException) throw (CustomException) e;
+            throw new CustomException(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        try {
+            upload.get();
+            return filePath;
+        } catch (ExecutionException e) {
+            throw new CustomException(e.getCause().getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomException(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
     public String generateSignedUrl(File file, long expirationMinutes) {
         return generateSignedUrl(file.getPath(), expirationMinutes);
     }
@@ -138,6 +206,20 @@ public class MinioService implements StorageService {
         }
     }
 
+    public InputStream openStream(String filePath) {
+        checkIfConfigured();
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(minioBucket)
+                            .object(filePath)
+                            .build()
+            );
+        } catch (MinioException | IOException | InvalidKeyException | NoSuchAlgorithmException e) {
+            throw new CustomException("Error retrieving file", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     public byte[] download(File file) {
         checkIfConfigured();
         URI uri;
@@ -1,5 +1,6 @@
 package com.grash.service;
 
+import com.grash.advancedsearch.KeysetPagination;
 import com.grash.advancedsearch.SearchCriteria;
 import com.grash.advancedsearch.SpecificationBuilder;
 import com.grash.dto.NotificationPatchDTO;
@@ -12,14 +13,14 @@ import com.grash.repository.NotificationRepository;
 import io.github.jav.exposerversdk.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -30,32 +31,60 @@ import java.util.stream.Collectors;
 @Transactional
 public class NotificationService {
     private final NotificationRepository notificationRepository;
+    private final EntityManager em;
     private final NotificationMapper notificationMapper;
     private final PushNotificationTokenService pushNotificationTokenService;
     private final SimpMessageSendingOperations messagingTemplate;
+    private final ThreadPoolTaskExecutor pushExecutor;
 
-    @Async
+    @Async("notificationExecutor")
     public Notification create(Notification notification) {
         Notification savedNotification = notificationRepository.save(notification);
         messagingTemplate.convertAndSend("/notifications/" + notification.getUser().getId(), savedNotification);
         return savedNotification;
     }
 
-    @Async
+    @Async("notificationExecutor")
     public void createMultiple(List<Notification> notifications, boolean mobile, String title) {
         List<Notification> savedNotifications = notificationRepository.saveAll(notifications);
         savedNotifications.forEach(notification ->
                 messagingTemplate.convertAndSend("/notifications/" + notification.getUser().getId(), notification));
         if (mobile && !notifications.isEmpty())
-            try {
-                sendPushNotifications(notifications.stream().map(Notification::getUser).collect(Collectors.toList()),
-                        title, notifications.get(0).getMessage(), new HashMap<String, Object>() {{
-                            put("type", notifications.get(0).getNotificationType());
-                            put("id", notifications.get(0).getResourceId());
-                        }});
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            push(notifications, title);
+    }
+
+    /**
+     * Like {@link #createMultiple} for notifications about several resources: they are saved at once and pushed once
+     * per resource
+     */
+    public void createMultipleByResource(List<Notification> notifications, boolean mobile, String title) {
+        List<Notification> savedNotifications = notificationRepository.saveAll(notifications);
+        savedNotifications.forEach(notification ->
+                messagingTemplate.convertAndSend("/notifications/" + notification.getUser().getId(), notification));
+        if (mobile)
+            notifications.stream()
+                    .collect(Collectors.groupingBy(Notification::getResourceId, LinkedHashMap::new,
+                            Collectors.toList()))
+                    .values().forEach(resourceNotifications -> push(resourceNotifications, title));
+    }
+
+    /**
+     * Sends the push notifications on the push executor, the websocket fan-out does not wait on the push service
+     */
+    private void push(List<Notification> notifications, String title) {
+        pushExecutor.execute(() -> sendPush(notifications, title));
+    }
+
+    private void sendPush(List<Notification> notifications, String title) {
+        try {
+            sendPushNotifications(notifications.stream().map(Notification::getUser).collect(Collectors.toList()),
+                    title, notifications.get(0).getMessage(), new HashMap<String, Object>() {{
+                        put("type", notifications.get(0).getNotificationType());
+                        put("id", notifications.get(0).getResourceId());
+                    }});
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 
     public Notification update(Long id, NotificationPatchDTO notificationsPatchDTO) {
@@ -85,9 +114,8 @@ public class NotificationService {
     public Page<Notification> findBySearchCriteria(SearchCriteria searchCriteria) {
         SpecificationBuilder<Notification> builder = new SpecificationBuilder<>();
         searchCriteria.getFilterFields().forEach(builder::with);
-        Pageable page = PageRequest.of(searchCriteria.getPageNum(), searchCriteria.getPageSize(),
-                searchCriteria.getDirection(), searchCriteria.getSortField());
-        return notificationRepository.findAll(builder.build(), page);
+        return KeysetPagination.findAll(em, Notification.class, notificationRepository, builder.build(),
+                searchCriteria);
     }
 
     public void sendPushNotifications(Collection<OwnUser> users, String title, String message,
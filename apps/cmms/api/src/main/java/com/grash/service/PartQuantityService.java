@@ -23,15 +23,22 @@ public class PartQuantityService {
     private final PurchaseOrderService purchaseOrderService;
     private final WorkOrderService workOrderService;
     private final PartQuantityMapper partQuantityMapper;
+    private final AnalyticsRollupService analyticsRollupService;
 
     public PartQuantity create(PartQuantity PartQuantity) {
-        return partQuantityRepository.save(PartQuantity);
+        PartQuantity savedPartQuantity = partQuantityRepository.save(PartQuantity);
+        analyticsRollupService.markWorkOrder(savedPartQuantity.getWorkOrder());
+        return savedPartQuantity;
     }
 
     public PartQuantity update(Long id, PartQuantityPatchDTO partQuantity) {
         if (partQuantityRepository.existsById(id)) {
             PartQuantity savedPartQuantity = partQuantityRepository.findById(id).get();
-            return partQuantityRepository.save(partQuantityMapper.updatePartQuantity(savedPartQuantity, partQuantity));
+            PartQuantity updatedPartQuantity =
+                    partQuantityRepository.save(partQuantityMapper.updatePartQuantity(savedPartQuantity,
+                            partQuantity));
+            analyticsRollupService.markWorkOrder(updatedPartQuantity.getWorkOrder());
+            return updatedPartQuantity;
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
 
@@ -40,6 +47,8 @@ public class PartQuantityService {
     }
 
     public void delete(Long id) {
+        partQuantityRepository.findById(id)
+                .ifPresent(partQuantity -> analyticsRollupService.markWorkOrder(partQuantity.getWorkOrder()));
         partQuantityRepository.deleteById(id);
     }
 
@@ -66,5 +75,6 @@ public class PartQuantityService {
 
     public void save(PartQuantity partQuantity) {
         partQuantityRepository.save(partQuantity);
+        analyticsRollupService.markWorkOrder(partQuantity.getWorkOrder());
     }
 }
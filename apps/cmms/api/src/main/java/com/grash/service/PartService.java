@@ -25,6 +25,7 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.grash.utils.Consts.usageBasedLicenseLimits;
 
@@ -32,19 +33,15 @@ import static com.grash.utils.Consts.usageBasedLicenseLimits;
 @RequiredArgsConstructor
 public class PartService {
     private final PartRepository partRepository;
-    private final PartCategoryService partCategoryService;
     private final PartConsumptionService partConsumptionService;
     private final CompanyService companyService;
-    private final CustomerService customerService;
-    private final VendorService vendorService;
     private final MessageSource messageSource;
     private final LocationService locationService;
     private final PartMapper partMapper;
     private final EntityManager em;
     private final NotificationService notificationService;
-    private final UserService userService;
-    private final TeamService teamService;
     private final LicenseService licenseService;
+    private final AnalyticsRollupService analyticsRollupService;
 
     @Transactional
     public Part create(Part Part, OwnUser user) {
@@ -58,17 +55,23 @@ public class PartService {
     public Part update(Long id, PartPatchDTO part) {
         if (partRepository.existsById(id)) {
             Part savedPart = partRepository.findById(id).get();
+            double previousCost = savedPart.getCost();
             Part patchedPart = partRepository.saveAndFlush(partMapper.updatePart(savedPart, part));
             em.refresh(patchedPart);
+            if (patchedPart.getCost() != previousCost) analyticsRollupService.markPart(id);
             return patchedPart;
 
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
 
     private void checkUsageBasedLimit(Company company) {
+        checkUsageBasedLimit(company, 1);
+    }
+
+    public void checkUsageBasedLimit(Company company, int toCreate) {
         Integer threshold = usageBasedLicenseLimits.get(LicenseEntitlement.UNLIMITED_PARTS);
-        if (!licenseService.hasEntitlement(LicenseEntitlement.UNLIMITED_PARTS)
-                && partRepository.hasMoreThan(company.getId(), threshold.longValue() - 1
+        if (toCreate > 0 && !licenseService.hasEntitlement(LicenseEntitlement.UNLIMITED_PARTS)
+                && partRepository.hasMoreThan(company.getId(), threshold.longValue() - toCreate
         ))
             throw new CustomException("You need a license to add a new part. Free Limit reached: " + threshold,
                     HttpStatus.FORBIDDEN);
@@ -114,6 +117,14 @@ public class PartService {
         return partRepository.findByCompany_Id(id);
     }
 
+    public Stream<Part> streamByCompany(Long id) {
+        return partRepository.streamByCompany_Id(id);
+    }
+
+    public long countByCompany(Long id) {
+        return partRepository.countByCompany_Id(id);
+    }
+
     public void notify(Part part, Locale locale) {
         String title = messageSource.getMessage("new_assignment", null, locale);
         String message = messageSource.getMessage("notification_part_assigned", new Object[]{part.getName()}, locale);
@@ -152,24 +163,21 @@ public class PartService {
         return partRepository.findAll(builder.build(), page).map(partMapper::toShowDto);
     }
 
-    public void importPart(Part part, PartImportDTO dto, Company company) {
-        checkUsageBasedLimit(company);
-        Long companyId = company.getId();
-        Long companySettingsId = company.getCompanySettings().getId();
+    public Part importPart(Part part, PartImportDTO dto, ImportLookups lookups) {
+        boolean costChanged = part.getId() != null && part.getCost() != dto.getCost();
         part.setName(dto.getName());
         part.setCost(dto.getCost());
-        Optional<PartCategory> optionalPartCategory =
-                partCategoryService.findByNameIgnoreCaseAndCompanySettings(dto.getCategory(), companySettingsId);
-        optionalPartCategory.ifPresent(part::setCategory);
+        lookups.find(ImportLookups.Lookup.PART_CATEGORY, dto.getCategory()).ifPresent(part::setCategory);
         part.setNonStock(Helper.getBooleanFromString(dto.getCategory()));
         if (dto.getBarcode() != null) {
-            Optional<Part> optionalPartWithSameBarCode = findByBarcodeAndCompany(dto.getBarcode(), company.getId());
+            Optional<Long> optionalPartWithSameBarCode = lookups.findId(ImportLookups.Lookup.PART_BARCODE,
+                    dto.getBarcode());
             if (optionalPartWithSameBarCode.isPresent()) {
                 boolean hasError = false;
                 if (dto.getId() == null) {//creation
                     hasError = true;
                 } else {//update
-                    if (!dto.getId().equals(optionalPartWithSameBarCode.get().getId())) {
+                    if (!dto.getId().equals(optionalPartWithSameBarCode.get())) {
                         hasError = true;
                     }
                 }
@@ -187,31 +195,19 @@ public class PartService {
 //        Optional<Location> optionalLocation = locationService.findByNameIgnoreCaseAndCompany(dto.getLocationName(),
 //        companyId);
 //        optionalLocation.ifPresent(part::setLocation);
-        List<OwnUser> users = new ArrayList<>();
-        dto.getAssignedToEmails().forEach(email -> {
-            Optional<OwnUser> optionalUser1 = userService.findByEmailAndCompany(email, companyId);
-            optionalUser1.ifPresent(users::add);
-        });
-        part.setAssignedTo(users);
-        List<Team> teams = new ArrayList<>();
-        dto.getTeamsNames().forEach(teamName -> {
-            Optional<Team> optionalTeam = teamService.findByNameIgnoreCaseAndCompany(teamName, companyId);
-            optionalTeam.ifPresent(teams::add);
-        });
-        part.setTeams(teams);
-        List<Customer> customers = new ArrayList<>();
-        dto.getCustomersNames().forEach(name -> {
-            Optional<Customer> optionalCustomer = customerService.findByNameIgnoreCaseAndCompany(name, companyId);
-            optionalCustomer.ifPresent(customers::add);
-        });
-        part.setCustomers(customers);
-        List<Vendor> vendors = new ArrayList<>();
-        dto.getVendorsNames().forEach(name -> {
-            Optional<Vendor> optionalVendor = vendorService.findByNameIgnoreCaseAndCompany(name, companyId);
-            optionalVendor.ifPresent(vendors::add);
-        });
-        part.setVendors(vendors);
-        partRepository.save(part);
+        part.setAssignedTo(lookups.findAll(ImportLookups.Lookup.USER, dto.getAssignedToEmails()));
+        part.setTeams(lookups.findAll(ImportLookups.Lookup.TEAM, dto.getTeamsNames()));
+        part.setCustomers(lookups.findAll(ImportLookups.Lookup.CUSTOMER, dto.getCustomersNames()));
+        part.setVendors(lookups.findAll(ImportLookups.Lookup.VENDOR, dto.getVendorsNames()));
+        Part savedPart = partRepository.save(part);
+        if (costChanged) analyticsRollupService.markPart(savedPart.getId());
+        lookups.register(ImportLookups.Lookup.PART, savedPart.getName(), savedPart.getId());
+        lookups.register(ImportLookups.Lookup.PART_BARCODE, savedPart.getBarcode(), savedPart.getId());
+        return savedPart;
+    }
+
+    public List<Part> findByIdInAndCompany(Collection<Long> ids, Long companyId) {
+        return partRepository.findByIdInAndCompany_Id(ids, companyId);
     }
 
     public Optional<Part> findByIdAndCompany(Long id, Long companyId) {
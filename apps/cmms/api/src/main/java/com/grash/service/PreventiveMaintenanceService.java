@@ -17,11 +17,6 @@ import com.grash.repository.PreventiveMaintenanceRepository;
 import com.grash.utils.Helper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.quartz.Scheduler;
-import org.quartz.SchedulerException;
-import org.quartz.Trigger;
-import org.quartz.TriggerKey;
-import org.quartz.spi.OperableTrigger;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -42,14 +37,9 @@ public class PreventiveMaintenanceService {
     private final PreventiveMaintenanceRepository preventiveMaintenanceRepository;
     private final EntityManager em;
     private final CustomSequenceService customSequenceService;
-    private final Scheduler scheduler;
     private final PreventiveMaintenanceMapper preventiveMaintenanceMapper;
-    private final LocationService locationService;
-    private final TeamService teamService;
-    private final UserService userService;
-    private final AssetService assetService;
-    private final WorkOrderCategoryService workOrderCategoryService;
     private final ScheduleService scheduleService;
+    private final ScheduleOccurrenceService scheduleOccurrenceService;
     private final LicenseService licenseService;
 
 
@@ -97,9 +87,13 @@ public class PreventiveMaintenanceService {
     }
 
     private void checkUsageBasedLimit(Company company) {
+        checkUsageBasedLimit(company, 1);
+    }
+
+    public void checkUsageBasedLimit(Company company, int toCreate) {
         Integer threshold = usageBasedLicenseLimits.get(LicenseEntitlement.UNLIMITED_PM_SCHEDULES);
-        if (!licenseService.hasEntitlement(LicenseEntitlement.UNLIMITED_PM_SCHEDULES)
-                && preventiveMaintenanceRepository.hasMoreThan(company.getId(), threshold.longValue() - 1
+        if (toCreate > 0 && !licenseService.hasEntitlement(LicenseEntitlement.UNLIMITED_PM_SCHEDULES)
+                && preventiveMaintenanceRepository.hasMoreThan(company.getId(), threshold.longValue() - toCreate
         ))
             throw new CustomException("You need a license to add a new PM schedule. Free Limit reached: " + threshold,
                     HttpStatus.FORBIDDEN);
@@ -126,11 +120,11 @@ public class PreventiveMaintenanceService {
         }
     }
 
-    public List<CalendarEvent<PreventiveMaintenance>> getEvents(Date end, Long companyId) {
+    public List<CalendarEvent<PreventiveMaintenance>> getEvents(Date start, Date end, Long companyId) {
         if (!licenseService.hasEntitlement(LicenseEntitlement.PM_CALENDAR))
             return Collections.emptyList();
         List<PreventiveMaintenance> preventiveMaintenances =
-                preventiveMaintenanceRepository.findByCreatedAtBeforeAndCompany_Id(end, companyId);
+                preventiveMaintenanceRepository.findWithScheduleByCreatedAtBeforeAndCompany(end, companyId);
         List<CalendarEvent<PreventiveMaintenance>> result = new ArrayList<>();
 
         for (PreventiveMaintenance preventiveMaintenance : preventiveMaintenances) {
@@ -139,49 +133,9 @@ public class PreventiveMaintenanceService {
 
             if (schedule.getRecurrenceBasedOn() != RecurrenceBasedOn.SCHEDULED_DATE) continue;
 
-            try {
-                TriggerKey triggerKey = new TriggerKey("wo-trigger-" + schedule.getId(), "wo-group");
-                Trigger trigger = scheduler.getTrigger(triggerKey);
-
-                if (trigger == null) {
-                    log.warn("No trigger found for schedule {}", schedule.getId());
-                    continue;
-                }
-
-                // Get all fire times up to the end date
-                List<Date> fireTimes = new ArrayList<>();
-
-                // Use TriggerUtils to get computed fire times
-                if (trigger instanceof OperableTrigger) {
-                    OperableTrigger operableTrigger = (OperableTrigger) trigger;
-                    Date currentTime = new Date();
-
-                    // Start from now or startsOn, whichever is earlier
-                    Date startTime = schedule.getStartsOn().before(currentTime) ?
-                            schedule.getStartsOn() : currentTime;
-
-                    // Compute fire times
-                    Date fireTime = operableTrigger.getFireTimeAfter(startTime);
-                    while (fireTime != null && (fireTime.before(end) || fireTime.equals(end))) {
-                        fireTimes.add(fireTime);
-                        fireTime = operableTrigger.getFireTimeAfter(fireTime);
-
-                        // Safety limit to prevent infinite loops
-                        if (fireTimes.size() > 1000) {
-                            log.warn("Reached safety limit of 1000 events for schedule {}", schedule.getId());
-                            break;
-                        }
-                    }
-                }
-
-                // Convert fire times to calendar events
-                result.addAll(fireTimes.stream()
-                        .map(date -> new CalendarEvent<>("PREVENTIVE_MAINTENANCE", preventiveMaintenance, date))
-                        .collect(Collectors.toList()));
-
-            } catch (SchedulerException e) {
-                log.error("Error getting trigger fire times for schedule {}", schedule.getId(), e);
-            }
+            result.addAll(scheduleOccurrenceService.getOccurrences(companyId, schedule, start, end).stream()
+                    .map(date -> new CalendarEvent<>("PREVENTIVE_MAINTENANCE", preventiveMaintenance, date))
+                    .collect(Collectors.toList()));
         }
 
         return result;
@@ -191,11 +145,10 @@ public class PreventiveMaintenanceService {
         return preventiveMaintenanceRepository.findByIdAndCompany_Id(id, companyId);
     }
 
-    public void importPreventiveMaintenance(PreventiveMaintenance preventiveMaintenance,
-                                            PreventiveMaintenanceImportDTO pmImportDTO, Company company) {
-        checkUsageBasedLimit(company);
-        Helper.populateWorkOrderBaseFromImportDTO(preventiveMaintenance, pmImportDTO, company, locationService,
-                teamService, userService, assetService, workOrderCategoryService);
+    public PreventiveMaintenance importPreventiveMaintenance(PreventiveMaintenance preventiveMaintenance,
+                                                             PreventiveMaintenanceImportDTO pmImportDTO,
+                                                             ImportLookups lookups, Long sequence) {
+        Helper.populateWorkOrderBaseFromImportDTO(preventiveMaintenance, pmImportDTO, lookups);
 
         preventiveMaintenance.setName(pmImportDTO.getName());
 
@@ -210,11 +163,15 @@ public class PreventiveMaintenanceService {
                 "\\s+", "_").toUpperCase()));
         schedule.setDaysOfWeek(pmImportDTO.getDaysOfWeek().stream().map(this::getDayOfWeekNumber).collect(Collectors.toList()));
 
-        preventiveMaintenance.setCustomId("PM" + String.format("%06d",
-                customSequenceService.getNextPreventiveMaintenanceSequence(company)));
+        preventiveMaintenance.setCustomId("PM" + String.format("%06d", sequence));
 
         PreventiveMaintenance savedPM = preventiveMaintenanceRepository.save(preventiveMaintenance);
         scheduleService.reScheduleWorkOrder(savedPM.getSchedule());
+        return savedPM;
+    }
+
+    public List<PreventiveMaintenance> findByIdInAndCompany(Collection<Long> ids, Long companyId) {
+        return preventiveMaintenanceRepository.findByIdInAndCompany_Id(ids, companyId);
     }
 
     private int getDayOfWeekNumber(String day) {
@@ -0,0 +1,164 @@
+package com.grash.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.grash.dto.ReadingIngestDTO;
+import com.grash.dto.ReadingIngestResponse;
+import com.grash.exception.CustomException;
+import com.grash.model.Meter;
+import com.grash.model.OwnUser;
+import com.grash.utils.Helper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Ingests the readings pushed by the gateways. The samples are validated, deduplicated against the batch and the
+ * last reading of their locked meter, inserted with JDBC batches, and evaluated by the {@link MeterTriggerEngine}.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReadingIngestionService {
+    public static final String NDJSON = "application/x-ndjson";
+    private static final int MAX_READINGS = 50000;
+    private static final int JDBC_BATCH_SIZE = 1000;
+    private static final long MAX_CLOCK_SKEW = TimeUnit.MINUTES.toMillis(5);
+    private static final String INSERT_READING = "INSERT INTO reading (id, created_at, updated_at, created_by, " +
+            "updated_by, value, meter_id) VALUES (nextval('hibernate_sequence'), ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_LAST_READING = "UPDATE meter SET last_reading_at = ?, last_reading_value = ? " +
+            "WHERE id = ? AND (last_reading_at IS NULL OR last_reading_at < ?)";
+
+    private final MeterService meterService;
+    private final ReadingSeriesService readingSeriesService;
+    private final MeterTriggerEngine meterTriggerEngine;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @return the readings of a body with one JSON reading per line
+     */
+    public List<ReadingIngestDTO> parseNdjson(InputStream inputStream) {
+        List<ReadingIngestDTO> readings = new ArrayList<>();
+        try (MappingIterator<ReadingIngestDTO> iterator =
+                     objectMapper.readerFor(ReadingIngestDTO.class).readValues(inputStream)) {
+            while (iterator.hasNext()) {
+                if (readings.size() == MAX_READINGS) throw tooManyReadings();
+                readings.add(iterator.next());
+            }
+        } catch (IOException | RuntimeJsonMappingException e) {
+            throw new CustomException("Invalid reading at line " + (readings.size() + 1), HttpStatus.BAD_REQUEST);
+        }
+        return readings;
+    }
+
+    /**
+     * Saves the readings of the user's company meters. The readings without meter or value, of another company,
+     * sampled in the future or past the retention of their meter are rejected. The readings sampled at the same time
+     * as another one of the batch or not after the last reading of their meter are considered as retries and skipped.
+     */
+    @Transactional
+    public ReadingIngestResponse ingest(List<ReadingIngestDTO> readings, OwnUser user) {
+        if (readings.size() > MAX_READINGS) throw tooManyReadings();
+        long start = System.nanoTime();
+        Date now = new Date();
+        Date latestAccepted = new Date(now.getTime() + MAX_CLOCK_SKEW);
+        int rejected = 0;
+        Map<Long, TreeMap<Date, Double>> samplesByMeter = new HashMap<>();
+        for (ReadingIngestDTO reading : readings) {
+            if (reading == null || reading.getMeterId() == null || reading.getValue() == null
+                    || !Double.isFinite(reading.getValue())
+                    || (reading.getTimestamp() != null && reading.getTimestamp().after(latestAccepted))) {
+                rejected++;
+                continue;
+            }
+            samplesByMeter.computeIfAbsent(reading.getMeterId(), meterId -> new TreeMap<>())
+                    .put(reading.getTimestamp() == null ? now : reading.getTimestamp(), reading.getValue());
+        }
+        //the meters stay locked until the commit, so a concurrent batch of the same meters reads their last reading
+        //once this one is inserted
+        Map<Long, Meter> meters = samplesByMeter.isEmpty() ? Collections.emptyMap() :
+                meterService.findByIdInAndCompanyForUpdate(samplesByMeter.keySet(), user.getCompany().getId())
+                        .stream()
+                        .collect(Collectors.toMap(Meter::getId, Function.identity()));
+
+        Map<Long, SortedMap<Date, Double>> newSamplesByMeter = new HashMap<>();
+        List<Sample> newSamples = new ArrayList<>();
+        List<Sample> lastSamples = new ArrayList<>();
+        for (Map.Entry<Long, TreeMap<Date, Double>> entry : samplesByMeter.entrySet()) {
+            Meter meter = meters.get(entry.getKey());
+            if (meter == null) {
+                rejected += entry.getValue().size();
+                continue;
+            }
+            if (meter.getReadingRetentionDays() != null) {
+                // their hours would be rebuilt from the readings left after the retention
+                SortedMap<Date, Double> expired = entry.getValue()
+                        .headMap(Helper.incrementDays(now, -meter.getReadingRetentionDays()));
+                rejected += expired.size();
+                expired.clear();
+            }
+            SortedMap<Date, Double> samples = meter.getLastReadingAt() == null ? entry.getValue() :
+                    entry.getValue().tailMap(new Date(meter.getLastReadingAt().getTime() + 1));
+            if (samples.isEmpty()) continue;
+            newSamplesByMeter.put(meter.getId(), samples);
+            samples.forEach((date, value) -> newSamples.add(new Sample(meter.getId(), date, value)));
+            Date lastDate = samples.lastKey();
+            lastSamples.add(new Sample(meter.getId(), lastDate, samples.get(lastDate)));
+        }
+
+        Timestamp nowTimestamp = new Timestamp(now.getTime());
+        jdbcTemplate.batchUpdate(INSERT_READING, newSamples, JDBC_BATCH_SIZE, (ps, sample) -> {
+            ps.setTimestamp(1, new Timestamp(sample.date.getTime()));
+            ps.setTimestamp(2, nowTimestamp);
+            ps.setLong(3, user.getId());
+            ps.setLong(4, user.getId());
+            ps.setDouble(5, sample.value);
+            ps.setLong(6, sample.meterId);
+        });
+        readingSeriesService.markDirty(newSamplesByMeter.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, samples -> samples.getValue().keySet())));
+        jdbcTemplate.batchUpdate(UPDATE_LAST_READING, lastSamples, JDBC_BATCH_SIZE, (ps, sample) -> {
+            ps.setTimestamp(1, new Timestamp(sample.date.getTime()));
+            ps.setDouble(2, sample.value);
+            ps.setLong(3, sample.meterId);
+            ps.setTimestamp(4, new Timestamp(sample.date.getTime()));
+        });
+
+        meterTriggerEngine.evaluate(meters, newSamplesByMeter.entrySet().stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, samples -> samples.getValue().values())),
+                user.getCompany(), Helper.getLocale(user));
+        meterRegistry.timer("meter.readings.ingestion").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("meter.readings.ingested").increment(newSamples.size());
+        return ReadingIngestResponse.builder()
+                .accepted(newSamples.size())
+                .duplicates(readings.size() - rejected - newSamples.size())
+                .rejected(rejected)
+                .build();
+    }
+
+    private CustomException tooManyReadings() {
+        return new CustomException("At most " + MAX_READINGS + " readings can be sent at once",
+                HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
+    @AllArgsConstructor
+    private static class Sample {
+        private final Long meterId;
+        private final Date date;
+        private final double value;
+    }
+}
@@ -0,0 +1,191 @@
+package com.grash.service;
+
+import com.grash.dto.DirtyReadingHour;
+import com.grash.dto.ReadingPointDTO;
+import com.grash.dto.ReadingSeriesDTO;
+import com.grash.exception.CustomException;
+import com.grash.model.Meter;
+import com.grash.model.enums.ReadingResolution;
+import com.grash.repository.ReadingRepository;
+import com.grash.repository.ReadingRollupRepository;
+import com.grash.utils.Helper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.util.Pair;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Serves the readings of a meter over a range at a resolution fitting the requested number of points, and maintains
+ * the minute, hour and day rollups, the monthly partitions and the retention of the readings. As for the analytics
+ * rollups, writes only mark the impacted hours as dirty and {@link com.grash.job.ReadingRollupJob} rebuilds them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReadingSeriesService {
+    public static final int MAX_POINTS = 10000;
+    private static final int BATCH_SIZE = 100;
+    private static final int RETENTION_BATCH_SIZE = 10000;
+    private static final int MINUTE_ROLLUP_RETENTION_DAYS = 90;
+    private static final int PARTITIONS_AHEAD = 2;
+    private static final String MARK_DIRTY = "INSERT INTO reading_rollup_dirty (meter_id, hour) VALUES (?, ?) " +
+            "ON CONFLICT (meter_id, hour) DO UPDATE SET version = reading_rollup_dirty.version + 1";
+
+    private final ReadingRepository readingRepository;
+    private final ReadingRollupRepository readingRollupRepository;
+    private final MeterService meterService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * @return the readings between start (inclusive) and end (exclusive) when there are at most maxPoints of them,
+     * else the finest rollup with at most maxPoints buckets
+     */
+    public ReadingSeriesDTO getSeries(Meter meter, Date start, Date end, int maxPoints) {
+        if (start == null || end == null || !start.before(end))
+            throw new CustomException("The start should be before the end", HttpStatus.BAD_REQUEST);
+        if (maxPoints < 1 || maxPoints > MAX_POINTS)
+            throw new CustomException("maxPoints should be between 1 and " + MAX_POINTS, HttpStatus.BAD_REQUEST);
+        ReadingResolution resolution = selectResolution(meter, start, end, maxPoints);
+        List<ReadingPointDTO> points;
+        if (resolution == ReadingResolution.RAW) {
+            points = readingRepository.findByMeter_IdAndCreatedAtGreaterThanEqualAndCreatedAtLessThanOrderByCreatedAt(
+                            meter.getId(), start, end).stream()
+                    .map(reading -> new ReadingPointDTO(reading.getCreatedAt(), reading.getValue(),
+                            reading.getValue(), reading.getValue(), 1))
+                    .collect(Collectors.toList());
+        } else {
+            points = readingRollupRepository
+                    .findByMeterIdAndResolutionAndBucketGreaterThanEqualAndBucketLessThanOrderByBucket(meter.getId(),
+                            resolution, resolution.truncate(start), end).stream()
+                    .map(rollup -> new ReadingPointDTO(rollup.getBucket(), rollup.getMinValue(), rollup.getMaxValue(),
+                            rollup.getSumValue() / rollup.getValueCount(), rollup.getValueCount()))
+                    .collect(Collectors.toList());
+        }
+        return new ReadingSeriesDTO(resolution, points);
+    }
+
+    private ReadingResolution selectResolution(Meter meter, Date start, Date end, int maxPoints) {
+        long now = System.currentTimeMillis();
+        boolean readingsKept = meter.getReadingRetentionDays() == null
+                || start.getTime() >= now - TimeUnit.DAYS.toMillis(meter.getReadingRetentionDays());
+        if (readingsKept && readingRepository.countBetween(meter.getId(), start, end, maxPoints + 1) <= maxPoints)
+            return ReadingResolution.RAW;
+        long range = end.getTime() - start.getTime();
+        boolean minutesKept = start.getTime() >= now - TimeUnit.DAYS.toMillis(MINUTE_ROLLUP_RETENTION_DAYS);
+        if (minutesKept && range / ReadingResolution.MINUTE.getMillis() < maxPoints) return ReadingResolution.MINUTE;
+        if (range / ReadingResolution.HOUR.getMillis() < maxPoints) return ReadingResolution.HOUR;
+        return ReadingResolution.DAY;
+    }
+
+    public void markDirty(Long meterId, Date date) {
+        readingRollupRepository.markDirty(meterId, date);
+    }
+
+    /**
+     * Marks each impacted hour once, used by the ingestion
+     */
+    public void markDirty(Map<Long, ? extends Collection<Date>> datesByMeter) {
+        List<Object[]> hours = new ArrayList<>();
+        datesByMeter.forEach((meterId, dates) -> dates.stream()
+                .map(ReadingResolution.HOUR::truncate)
+                .distinct()
+                .forEach(hour -> hours.add(new Object[]{meterId, new Timestamp(hour.getTime())})));
+        // same order in every transaction so that concurrent ingestions do not deadlock
+        hours.sort(Comparator.comparing((Object[] row) -> (Long) row[0]).thenComparing(row -> (Timestamp) row[1]));
+        jdbcTemplate.batchUpdate(MARK_DIRTY, hours);
+    }
+
+    /**
+     * Rebuilds the minute and hour rollups of a batch of dirty hours from the readings, then their day rollups from
+     * the hour rollups. The hours are claimed with SKIP LOCKED so several instances can share the work.
+     *
+     * @return the number of rebuilt hours
+     */
+    @Transactional
+    public int refreshDirtyHours() {
+        List<DirtyReadingHour> dirtyHours = readingRollupRepository.claimDirty(BATCH_SIZE);
+        Set<Pair<Long, Date>> dirtyDays = new HashSet<>();
+        dirtyHours.forEach(dirtyHour -> {
+            Date start = new Date(dirtyHour.getHour().getTime());
+            Date end = new Date(start.getTime() + ReadingResolution.HOUR.getMillis());
+            rebuildFromReadings(dirtyHour.getMeterId(), ReadingResolution.MINUTE, start, end);
+            rebuildFromReadings(dirtyHour.getMeterId(), ReadingResolution.HOUR, start, end);
+            dirtyDays.add(Pair.of(dirtyHour.getMeterId(), ReadingResolution.DAY.truncate(start)));
+            //a write marking the hour during the rebuild bumped the version and keeps the marker
+            readingRollupRepository.deleteDirty(dirtyHour.getMeterId(), dirtyHour.getHour(), dirtyHour.getVersion());
+        });
+        dirtyDays.forEach(dirtyDay -> {
+            Date start = dirtyDay.getSecond();
+            Date end = Helper.incrementDays(start, 1);
+            readingRollupRepository.deleteBuckets(dirtyDay.getFirst(), ReadingResolution.DAY.ordinal(), start, end);
+            readingRollupRepository.insertDayFromHours(dirtyDay.getFirst(), ReadingResolution.DAY.ordinal(),
+                    ReadingResolution.HOUR.ordinal(), start, end);
+        });
+        return dirtyHours.size();
+    }
+
+    private void rebuildFromReadings(Long meterId, ReadingResolution resolution, Date start, Date end) {
+        readingRollupRepository.deleteBuckets(meterId, resolution.ordinal(), start, end);
+        readingRollupRepository.insertFromReadings(meterId, resolution.ordinal(),
+                resolution.name().toLowerCase(Locale.ROOT), start, end);
+    }
+
+    /**
+     * Creates the partitions of the current and next months so that the new readings do not land in the default one,
+     * and the partitions of the months having readings in the default one, which are moved to them
+     */
+    public void createPartitions() {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        Set<LocalDate> partitionMonths = new TreeSet<>();
+        for (int i = 0; i <= PARTITIONS_AHEAD; i++) {
+            partitionMonths.add(month.plusMonths(i));
+        }
+        jdbcTemplate.queryForList("SELECT DISTINCT CAST(date_trunc('month', created_at) AS DATE) " +
+                        "FROM reading_default", java.sql.Date.class)
+                .forEach(defaultMonth -> partitionMonths.add(defaultMonth.toLocalDate()));
+        for (LocalDate partitionMonth : partitionMonths) {
+            try {
+                jdbcTemplate.queryForObject("SELECT create_reading_partition(?)", String.class,
+                        java.sql.Date.valueOf(partitionMonth));
+            } catch (DataAccessException e) {
+                log.error("Failed to create the readings partition of {}", partitionMonth, e);
+            }
+        }
+    }
+
+    /**
+     * Deletes the readings older than the retention of their meter and the expired minute rollups. The hour and day
+     * rollups are kept.
+     *
+     * @return the number of deleted readings
+     */
+    public int applyRetention() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int deleted = 0;
+        for (Meter meter : meterService.findWithReadingRetention()) {
+            Date before = Helper.incrementDays(new Date(), -meter.getReadingRetentionDays());
+            int batch;
+            do {
+                batch = transactionTemplate.execute(status ->
+                        readingRepository.deleteBefore(meter.getId(), before, RETENTION_BATCH_SIZE));
+                deleted += batch;
+            } while (batch == RETENTION_BATCH_SIZE);
+        }
+        transactionTemplate.execute(status -> readingRollupRepository.deleteBefore(
+                ReadingResolution.MINUTE.ordinal(), Helper.incrementDays(new Date(), -MINUTE_ROLLUP_RETENTION_DAYS)));
+        return deleted;
+    }
+}
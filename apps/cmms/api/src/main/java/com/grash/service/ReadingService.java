@@ -13,6 +13,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
 import java.util.Optional;
@@ -23,6 +24,7 @@ public class ReadingService {
     private final ReadingRepository readingRepository;
     private final ReadingMapper readingMapper;
     private final LicenseService licenseService;
+    private final ReadingSeriesService readingSeriesService;
     private MeterService meterService;
 
     @Autowired
@@ -31,14 +33,27 @@ public class ReadingService {
         this.meterService = meterService;
     }
 
+    @Transactional
     public Reading create(Reading Reading) {
-        return readingRepository.save(Reading);
+        Reading savedReading = readingRepository.saveAndFlush(Reading);
+        meterService.refreshLastReading(savedReading.getMeter().getId());
+        readingSeriesService.markDirty(savedReading.getMeter().getId(), savedReading.getCreatedAt());
+        return savedReading;
     }
 
+    @Transactional
     public Reading update(Long id, ReadingPatchDTO reading) {
         if (readingRepository.existsById(id)) {
             Reading savedReading = readingRepository.findById(id).get();
-            return readingRepository.save(readingMapper.updateReading(savedReading, reading));
+            Long previousMeterId = savedReading.getMeter().getId();
+            Reading updatedReading = readingRepository.saveAndFlush(readingMapper.updateReading(savedReading, reading));
+            meterService.refreshLastReading(previousMeterId);
+            readingSeriesService.markDirty(previousMeterId, updatedReading.getCreatedAt());
+            if (!previousMeterId.equals(updatedReading.getMeter().getId())) {
+                meterService.refreshLastReading(updatedReading.getMeter().getId());
+                readingSeriesService.markDirty(updatedReading.getMeter().getId(), updatedReading.getCreatedAt());
+            }
+            return updatedReading;
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
 
@@ -46,8 +61,14 @@ public class ReadingService {
         return readingRepository.findAll();
     }
 
+    @Transactional
     public void delete(Long id) {
-        readingRepository.deleteById(id);
+        readingRepository.findById(id).ifPresent(reading -> {
+            readingRepository.delete(reading);
+            readingRepository.flush();
+            meterService.refreshLastReading(reading.getMeter().getId());
+            readingSeriesService.markDirty(reading.getMeter().getId(), reading.getCreatedAt());
+        });
     }
 
     public Optional<Reading> findById(Long id) {
@@ -9,6 +9,7 @@ import com.grash.model.Company;
 import com.grash.model.Role;
 import com.grash.model.enums.RoleCode;
 import com.grash.repository.RoleRepository;
+import com.grash.security.CustomUserDetailsService;
 import com.grash.utils.Helper;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.collections4.CollectionUtils;
@@ -25,6 +26,7 @@ public class RoleService {
     private final RoleMapper roleMapper;
     private final CompanySettingsService companySettingsService;
     private final LicenseService licenseService;
+    private final CustomUserDetailsService customUserDetailsService;
 
     public Role create(Role role) {
         if (role.getCode().equals(RoleCode.USER_CREATED) && !licenseService.hasEntitlement(LicenseEntitlement.CUSTOM_ROLES))
@@ -35,6 +37,8 @@ public class RoleService {
     public Role update(Long id, RolePatchDTO role) {
         if (roleRepository.existsById(id)) {
             Role savedRole = roleRepository.findById(id).get();
+            //the permissions are element collections, changing only them may not fire the role update callbacks
+            customUserDetailsService.evictRole(id);
             return roleRepository.save(roleMapper.updateRole(savedRole, role));
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
@@ -66,6 +70,7 @@ public class RoleService {
     }
 
     public List<Role> saveAll(List<Role> roles) {
+        roles.stream().map(Role::getId).filter(Objects::nonNull).forEach(customUserDetailsService::evictRole);
         return roleRepository.saveAll(roles);
     }
 
@@ -0,0 +1,85 @@
+package com.grash.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.grash.model.Schedule;
+import com.grash.utils.Helper;
+import com.grash.utils.ScheduleRecurrence;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Upcoming occurrences of the preventive maintenance schedules, expanded in memory by {@link ScheduleRecurrence} and
+ * cached per company for a window starting when it is computed. A company window is evicted when one of its schedules
+ * is planned again, the expiration bounds the staleness of the changes made by another instance.
+ */
+@Service
+@Slf4j
+public class ScheduleOccurrenceService {
+    private static final int MAX_OCCURRENCES = 1000;
+    private static final int MIN_WINDOW_DAYS = 90;
+
+    private final Cache<Long, Window> windows = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * @return the occurrences of the schedule after from (exclusive, not before now) until to (inclusive)
+     */
+    public List<Date> getOccurrences(Long companyId, Schedule schedule, Date from, Date to) {
+        Date now = new Date();
+        Date start = from == null || from.before(now) ? now : from;
+        Window window = windows.asMap().compute(companyId, (id, cached) ->
+                cached == null || cached.until.before(to) ? new Window(now, maxDate(to,
+                        Helper.incrementDays(now, MIN_WINDOW_DAYS))) : cached);
+        List<Date> occurrences = window.occurrences.computeIfAbsent(schedule.getId(), scheduleId -> {
+            List<Date> expanded = ScheduleRecurrence.between(schedule, window.since, window.until, MAX_OCCURRENCES);
+            if (expanded.size() == MAX_OCCURRENCES)
+                log.warn("Reached safety limit of {} events for schedule {}", MAX_OCCURRENCES, scheduleId);
+            return expanded;
+        });
+        return occurrences.stream()
+                .filter(date -> date.after(start) && !date.after(to))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Evicts the window of the company once the current transaction is committed, so that a concurrent read cannot
+     * cache the schedules as they were before the commit
+     */
+    public void evict(Long companyId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    windows.invalidate(companyId);
+                }
+            });
+        } else windows.invalidate(companyId);
+    }
+
+    private static Date maxDate(Date first, Date second) {
+        return first.after(second) ? first : second;
+    }
+
+    private static class Window {
+        private final Date since;
+        private final Date until;
+        private final Map<Long, List<Date>> occurrences = new ConcurrentHashMap<>();
+
+        private Window(Date since, Date until) {
+            this.since = since;
+            this.until = until;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.grash.service;
+
+import com.grash.model.*;
+import com.grash.model.enums.PermissionEntity;
+import com.grash.repository.ScheduleRepository;
+import com.grash.utils.Helper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.MessageSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates the work orders and sends the notifications of the due preventive maintenance schedules. The schedules are
+ * claimed in batches with SKIP LOCKED so several instances can share the work, and their next due date is advanced
+ * in the same transaction as the generated work orders.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ScheduleSweepService {
+    private static final int BATCH_SIZE = 100;
+
+    private final ScheduleRepository scheduleRepository;
+    private final ScheduleService scheduleService;
+    private final WorkOrderService workOrderService;
+    private final TaskService taskService;
+    private final UserService userService;
+    private final EmailService2 emailService2;
+    private final MessageSource messageSource;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${frontend.url}")
+    private String frontendUrl;
+
+    /**
+     * Generates the work orders of a batch of due schedules. When the batch fails, its schedules are retried one at a
+     * time and the occurrence of a failing schedule is skipped so that it does not block the others.
+     *
+     * @return the number of processed schedules
+     */
+    public int generateDueWorkOrders() {
+        Date now = new Date();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            return transactionTemplate.execute(status -> generate(scheduleRepository.claimDue(now, BATCH_SIZE), now));
+        } catch (RuntimeException e) {
+            log.error("Failed to generate a batch of preventive maintenance work orders, retrying one by one", e);
+        }
+        int processed = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            AtomicReference<Long> claimedId = new AtomicReference<>();
+            try {
+                int generated = transactionTemplate.execute(status -> {
+                    List<Schedule> schedules = scheduleRepository.claimDue(now, 1);
+                    schedules.forEach(schedule -> claimedId.set(schedule.getId()));
+                    return generate(schedules, now);
+                });
+                if (generated == 0) break;
+            } catch (RuntimeException e) {
+                if (claimedId.get() == null) throw e;
+                log.error("Skipping the due occurrence of schedule {}", claimedId.get(), e);
+                transactionTemplate.execute(status -> {
+                    scheduleRepository.findById(claimedId.get()).ifPresent(schedule -> {
+                        skip(schedule, now);
+                        scheduleRepository.save(schedule);
+                    });
+                    return null;
+                });
+            }
+            processed++;
+        }
+        return processed;
+    }
+
+    /**
+     * Moves a failing schedule past its due occurrence. When its next occurrence cannot be computed either, it is left
+     * without next due date so that it does not stay the first due schedule of every sweep, it is planned again at
+     * startup or when it is edited.
+     */
+    private void skip(Schedule schedule, Date now) {
+        try {
+            scheduleService.advance(schedule, now);
+        } catch (RuntimeException e) {
+            log.error("Could not plan the next occurrence of schedule {}, unplanning it", schedule.getId(), e);
+            schedule.setNextDueOn(null);
+            schedule.setNextNotificationOn(null);
+        }
+    }
+
+    /**
+     * Generates the work orders of the schedules company by company with {@link WorkOrderService#createAll}, copies
+     * their tasks in one batch and notifies the assigned users once the batch is committed
+     */
+    private int generate(List<Schedule> schedules, Date now) {
+        if (schedules.isEmpty()) return 0;
+        long start = System.nanoTime();
+        Map<Long, List<Task>> tasksByPM = taskService.findByPreventiveMaintenances(schedules.stream()
+                        .map(schedule -> schedule.getPreventiveMaintenance().getId()).collect(Collectors.toList()))
+                .stream().collect(Collectors.groupingBy(task -> task.getPreventiveMaintenance().getId()));
+        Map<Long, List<Schedule>> schedulesByCompany = schedules.stream()
+                .collect(Collectors.groupingBy(schedule -> schedule.getPreventiveMaintenance().getCompany().getId(),
+                        LinkedHashMap::new, Collectors.toList()));
+        int generated = 0;
+        for (List<Schedule> companySchedules : schedulesByCompany.values()) {
+            Company company = companySchedules.get(0).getPreventiveMaintenance().getCompany();
+            List<WorkOrder> workOrders = companySchedules.stream().map(schedule -> {
+                PreventiveMaintenance preventiveMaintenance = schedule.getPreventiveMaintenance();
+                WorkOrder workOrder = workOrderService.getWorkOrderFromWorkOrderBase(preventiveMaintenance);
+                workOrder.setParentPreventiveMaintenance(preventiveMaintenance);
+                if (schedule.getDueDateDelay() != null) {
+                    workOrder.setDueDate(Helper.incrementDays(schedule.getNextDueOn(), schedule.getDueDateDelay()));
+                }
+                return workOrder;
+            }).collect(Collectors.toList());
+            List<WorkOrder> savedWorkOrders = workOrderService.createAll(workOrders, company);
+
+            List<Task> copiedTasks = new ArrayList<>();
+            savedWorkOrders.forEach(workOrder -> tasksByPM.getOrDefault(workOrder.getParentPreventiveMaintenance()
+                    .getId(), Collections.emptyList()).forEach(task -> {
+                Task copiedTask = new Task(task.getTaskBase(), workOrder, null, task.getValue());
+                copiedTask.setCompany(company);
+                copiedTasks.add(copiedTask);
+            }));
+            taskService.createAll(copiedTasks);
+            workOrderService.notifyAll(savedWorkOrders, Helper.getLocale(company));
+            generated += savedWorkOrders.size();
+        }
+        schedules.forEach(schedule -> scheduleService.advance(schedule, now));
+        scheduleRepository.saveAll(schedules);
+        meterRegistry.timer("pm.work_orders.generation").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("pm.work_orders.generated").increment(generated);
+        return schedules.size();
+    }
+
+    /**
+     * Mails the upcoming work orders of a batch of schedules
+     *
+     * @return the number of processed schedules
+     */
+    public int sendDueNotifications() {
+        Date now = new Date();
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            List<Schedule> schedules = scheduleRepository.claimDueNotifications(now, BATCH_SIZE);
+            schedules.forEach(schedule -> {
+                schedule.setNextNotificationOn(null);
+                try {
+                    notifyComingWorkOrder(schedule.getPreventiveMaintenance());
+                } catch (RuntimeException e) {
+                    log.error("Failed to notify the coming work order of schedule {}", schedule.getId(), e);
+                }
+            });
+            scheduleRepository.saveAll(schedules);
+            return schedules.size();
+        });
+    }
+
+    private void notifyComingWorkOrder(PreventiveMaintenance preventiveMaintenance) {
+        Locale locale = Helper.getLocale(preventiveMaintenance.getCompany());
+        String title = messageSource.getMessage("coming_wo", null, locale);
+
+        Collection<OwnUser> admins = userService.findWorkersByCompany(preventiveMaintenance.getCompany().getId())
+                .stream()
+                .filter(ownUser -> ownUser.getRole().getViewPermissions().contains(PermissionEntity.SETTINGS))
+                .collect(Collectors.toList());
+
+        List<OwnUser> usersToMail = new ArrayList<>(Stream.concat(
+                        preventiveMaintenance.getUsers().stream(),
+                        admins.stream())
+                .filter(user -> user.isEnabled() && user.getUserSettings().shouldEmailUpdatesForWorkOrders())
+                .collect(Collectors.toMap(
+                        OwnUser::getId,
+                        Function.identity(),
+                        (existing, replacement) -> existing))
+                .values());
+
+        Map<String, Object> mailVariables = new HashMap<String, Object>() {{
+            put("pmLink", frontendUrl + "/app/preventive-maintenances/" + preventiveMaintenance.getId());
+            put("featuresLink", frontendUrl + "/#key-features");
+            put("pmTitle", preventiveMaintenance.getTitle());
+        }};
+
+        emailService2.sendMessageUsingThymeleafTemplate(
+                usersToMail.stream().map(OwnUser::getEmail).toArray(String[]::new),
+                title,
+                mailVariables,
+                "coming-work-order.html",
+                locale
+        );
+    }
+}
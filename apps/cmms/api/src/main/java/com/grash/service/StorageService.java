@@ -3,7 +3,16 @@ package com.grash.service;
 import com.grash.model.File;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 public interface StorageService {
+    @FunctionalInterface
+    interface ContentWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
     /**
      * Uploads a file to the storage and returns the public URL.
      *
@@ -13,6 +22,18 @@ public interface StorageService {
      */
     String upload(MultipartFile file, String folder);
 
+    /**
+     * Uploads a file whose content is streamed to the storage while it is written, so that the whole file is never
+     * held in memory.
+     *
+     * @param fileName    The original file name.
+     * @param contentType The content type of the file.
+     * @param folder      The folder where the file should be uploaded.
+     * @param writer      Writes the content of the file to the given stream, the stream is closed afterwards.
+     * @return The file Path of the uploaded file.
+     */
+    String upload(String fileName, String contentType, String folder, ContentWriter writer);
+
     /**
      * Downloads a file from the storage using its file path.
      *
@@ -21,6 +42,14 @@ public interface StorageService {
      */
     byte[] download(String filePath);
 
+    /**
+     * Opens a file of the storage for reading, the content is streamed while it is read.
+     *
+     * @param filePath The path of the file to be read.
+     * @return A stream of the file content, to be closed by the caller.
+     */
+    InputStream openStream(String filePath);
+
     /**
      * Downloads a file from the storage using a File object.
      *
@@ -36,4 +65,8 @@ public interface StorageService {
     default String uploadAndSign(MultipartFile file, String folder) {
         return generateSignedUrl(upload(file, folder), 10);
     }
+
+    default String uploadAndSign(String fileName, String contentType, String folder, ContentWriter writer) {
+        return generateSignedUrl(upload(fileName, contentType, folder, writer), 10);
+    }
 }
@@ -32,6 +32,14 @@ public class TaskService {
         return savedTask;
     }
 
+    /**
+     * Inserts the tasks in JDBC batches, without refreshing them
+     */
+    @Transactional
+    public List<Task> createAll(List<Task> tasks) {
+        return taskRepository.saveAll(tasks);
+    }
+
     @Transactional
     public Task update(Long id, TaskPatchDTO task) {
         if (taskRepository.existsById(id)) {
@@ -61,4 +69,8 @@ public class TaskService {
     public List<Task> findByPreventiveMaintenance(Long id) {
         return taskRepository.findByPreventiveMaintenance_Id(id);
     }
+
+    public List<Task> findByPreventiveMaintenances(Collection<Long> ids) {
+        return taskRepository.findByPreventiveMaintenance_IdIn(ids);
+    }
 }
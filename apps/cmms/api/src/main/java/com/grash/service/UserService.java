@@ -15,6 +15,7 @@ import com.grash.model.*;
 import com.grash.model.enums.RoleCode;
 import com.grash.repository.UserRepository;
 import com.grash.repository.VerificationTokenRepository;
+import com.grash.security.CustomUserDetail;
 import com.grash.security.JwtTokenProvider;
 import com.grash.utils.Helper;
 import com.grash.utils.Utils;
@@ -31,6 +32,7 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -225,6 +227,10 @@ public class UserService {
     }
 
     public OwnUser whoami(HttpServletRequest req) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        //the principal is cached and detached, the user is loaded again by id to be managed
+        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetail)
+            return userRepository.findById(((CustomUserDetail) authentication.getPrincipal()).getUser().getId()).get();
         return userRepository.findByEmailIgnoreCase(jwtTokenProvider.getUsername(jwtTokenProvider.resolveToken(req))).get();
     }
 
@@ -362,7 +368,7 @@ public class UserService {
         return userRepository.findAll(builder.build(), page);
     }
 
-    @Async
+    @Async("emailExecutor")
     void sendRegistrationMailToSuperAdmins(OwnUser user, UserSignupRequest userSignupRequest) {
         if (user.getEmail().equals("superadmin@test.com")) return;
         if (user.getCompany() != null && user.getCompany().isDemo()) return;
@@ -0,0 +1,63 @@
+package com.grash.service;
+
+import com.grash.dto.analytics.workOrders.*;
+import com.grash.model.enums.Status;
+import com.grash.repository.WorkOrderDailyRollupRepository;
+import com.grash.repository.WorkOrderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregate queries used by the work order analytics. Everything is computed by the database so that the dashboards
+ * never hydrate the work orders of a company. Counts which only depend on the creation day of the work orders are read
+ * from the daily rollups maintained by {@link AnalyticsRollupService}.
+ */
+@Service
+@RequiredArgsConstructor
+public class WorkOrderAnalyticsService {
+    private final WorkOrderRepository workOrderRepository;
+    private final WorkOrderDailyRollupRepository workOrderDailyRollupRepository;
+
+    public Collection<WOStatusPriorityCount> countByStatusAndPriority(Long companyId, Date start, Date end) {
+        return workOrderDailyRollupRepository.countByStatusAndPriority(companyId, AnalyticsRollupService.toDay(start),
+                AnalyticsRollupService.toDay(end));
+    }
+
+    public WOOverviewAggregate getOverview(Long companyId, Date start, Date end) {
+        return workOrderRepository.getOverview(companyId, start, end, new Date(), Status.COMPLETE.ordinal());
+    }
+
+    public WOCompletionAggregate getCompletion(Long companyId, Date start, Date end) {
+        return workOrderRepository.getCompletion(companyId, start, end);
+    }
+
+    public Map<Long, Long> countCompleteByCategory(Long companyId, Date start, Date end) {
+        return toMap(workOrderDailyRollupRepository.countCompleteByCategory(companyId,
+                AnalyticsRollupService.toDay(start), AnalyticsRollupService.toDay(end)));
+    }
+
+    public Map<Long, Long> countCompleteByCompletedBy(Long companyId, Date start, Date end) {
+        return toMap(workOrderDailyRollupRepository.countCompleteByCompletedBy(companyId,
+                AnalyticsRollupService.toDay(start), AnalyticsRollupService.toDay(end)));
+    }
+
+    public WOCostsAggregate getCompleteCosts(Long companyId, Date start, Date end) {
+        return workOrderDailyRollupRepository.getCompleteCosts(companyId, AnalyticsRollupService.toDay(start),
+                AnalyticsRollupService.toDay(end));
+    }
+
+    public Map<Long, WOGroupAge> getIncompleteAgeByAsset(Long companyId, Date start, Date end) {
+        return workOrderRepository.getIncompleteAgeByAsset(companyId, start, end, new Date(),
+                        Status.COMPLETE.ordinal()).stream()
+                .collect(Collectors.toMap(WOGroupCount::getId, groupAge -> groupAge));
+    }
+
+    private Map<Long, Long> toMap(Collection<WOGroupCount> groupCounts) {
+        return groupCounts.stream().collect(Collectors.toMap(WOGroupCount::getId, WOGroupCount::getCount));
+    }
+}
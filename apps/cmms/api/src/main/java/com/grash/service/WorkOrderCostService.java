@@ -0,0 +1,110 @@
+package com.grash.service;
+
+import com.grash.dto.analytics.workOrders.WOCostByWorkOrder;
+import com.grash.dto.analytics.workOrders.WOCostTotal;
+import com.grash.dto.analytics.workOrders.WOCosts;
+import com.grash.model.enums.Status;
+import com.grash.repository.AdditionalCostRepository;
+import com.grash.repository.LaborRepository;
+import com.grash.repository.PartQuantityRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Aggregates the labor, part and additional costs of work orders with grouped queries instead of loading the costs of
+ * each work order. The costs of a company or asset over a date range are summed with one query per cost table joined
+ * on the work orders matching the range, without loading their ids.
+ */
+@Service
+@RequiredArgsConstructor
+public class WorkOrderCostService {
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final LaborRepository laborRepository;
+    private final PartQuantityRepository partQuantityRepository;
+    private final AdditionalCostRepository additionalCostRepository;
+
+    /**
+     * @return the costs by work order id, work orders without any cost are absent
+     */
+    public Map<Long, WOCosts> getCostsByWorkOrder(Collection<Long> workOrderIds) {
+        Map<Long, WOCosts> result = new HashMap<>();
+        List<Long> ids = new ArrayList<>(new HashSet<>(workOrderIds));
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+            List<Long> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY, ids.size()));
+            merge(result, laborRepository.getCostByWorkOrder(chunk), (costs, cost) -> {
+                costs.setLaborCost(cost.getCost());
+                costs.setLaborTime(cost.getTime());
+            });
+            merge(result, partQuantityRepository.getCostByWorkOrder(chunk),
+                    (costs, cost) -> costs.setPartCost(cost.getCost()));
+            merge(result, additionalCostRepository.getCostByWorkOrder(chunk),
+                    (costs, cost) -> costs.setAdditionalCost(cost.getCost()));
+        }
+        return result;
+    }
+
+    public WOCosts getCosts(Collection<Long> workOrderIds) {
+        return getCostsByWorkOrder(workOrderIds).values().stream().reduce(new WOCosts(), WOCosts::add);
+    }
+
+    /**
+     * @return the labor time in seconds of the work orders, with only the labor query
+     */
+    public long getLaborTime(Collection<Long> workOrderIds) {
+        long result = 0;
+        List<Long> ids = new ArrayList<>(new HashSet<>(workOrderIds));
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+            result += laborRepository.getCostByWorkOrder(ids.subList(from, Math.min(from + MAX_IDS_PER_QUERY,
+                    ids.size()))).stream().mapToLong(WOCostByWorkOrder::getTime).sum();
+        }
+        return result;
+    }
+
+    /**
+     * @return the labor time in seconds of the work orders of a company created in the date range
+     */
+    public long getCreatedLaborTime(Long companyId, Date start, Date end) {
+        Long time = laborRepository.getCostByCompanyAndCreatedAtBetween(companyId, start, end).getTime();
+        return time == null ? 0 : time;
+    }
+
+    /**
+     * @return the costs of the complete work orders of a company completed in the date range
+     */
+    public WOCosts getCompleteCosts(Long companyId, Date start, Date end) {
+        return toCosts(
+                laborRepository.getCostByCompanyAndStatusAndCompletedOnBetween(companyId, Status.COMPLETE, start, end),
+                partQuantityRepository.getCostByCompanyAndStatusAndCompletedOnBetween(companyId, Status.COMPLETE,
+                        start, end),
+                additionalCostRepository.getCostByCompanyAndStatusAndCompletedOnBetween(companyId, Status.COMPLETE,
+                        start, end));
+    }
+
+    /**
+     * @return the costs of the work orders of an asset created in the date range
+     */
+    public WOCosts getAssetCosts(Long assetId, Date start, Date end) {
+        return toCosts(laborRepository.getCostByAssetAndCreatedAtBetween(assetId, start, end),
+                partQuantityRepository.getCostByAssetAndCreatedAtBetween(assetId, start, end),
+                additionalCostRepository.getCostByAssetAndCreatedAtBetween(assetId, start, end));
+    }
+
+    private WOCosts toCosts(WOCostTotal labor, WOCostTotal part, WOCostTotal additional) {
+        WOCosts costs = new WOCosts();
+        costs.setLaborTime(labor.getTime() == null ? 0 : labor.getTime());
+        costs.setLaborCost(labor.getCost() == null ? 0 : labor.getCost());
+        costs.setPartCost(part.getCost() == null ? 0 : part.getCost());
+        costs.setAdditionalCost(additional.getCost() == null ? 0 : additional.getCost());
+        return costs;
+    }
+
+    private void merge(Map<Long, WOCosts> result, Collection<WOCostByWorkOrder> costsByWorkOrder,
+                       BiConsumer<WOCosts, WOCostByWorkOrder> setter) {
+        costsByWorkOrder.forEach(cost -> setter.accept(result.computeIfAbsent(cost.getId(), id -> new WOCosts()),
+                cost));
+    }
+}
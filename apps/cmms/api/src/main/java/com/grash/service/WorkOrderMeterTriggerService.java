@@ -24,6 +24,7 @@ public class WorkOrderMeterTriggerService {
     private final MeterService meterService;
     private final EntityManager em;
     private final LicenseService licenseService;
+    private final MeterTriggerEngine meterTriggerEngine;
 
     @Transactional
     public WorkOrderMeterTrigger create(WorkOrderMeterTrigger workOrderMeterTrigger) {
@@ -32,6 +33,7 @@ public class WorkOrderMeterTriggerService {
         WorkOrderMeterTrigger savedWorkOrderMeterTrigger =
                 workOrderMeterTriggerRepository.saveAndFlush(workOrderMeterTrigger);
         em.refresh(savedWorkOrderMeterTrigger);
+        meterTriggerEngine.evict(savedWorkOrderMeterTrigger.getMeter().getId());
         return savedWorkOrderMeterTrigger;
     }
 
@@ -41,6 +43,7 @@ public class WorkOrderMeterTriggerService {
             WorkOrderMeterTrigger savedWorkOrderMeterTrigger = workOrderMeterTriggerRepository.findById(id).get();
             WorkOrderMeterTrigger updatedWorkOrderMeterTrigger =
                     workOrderMeterTriggerRepository.save(workOrderMeterTriggerMapper.updateWorkOrderMeterTrigger(savedWorkOrderMeterTrigger, workOrderMeterTrigger));
+            meterTriggerEngine.evict(updatedWorkOrderMeterTrigger.getMeter().getId());
             return updatedWorkOrderMeterTrigger;
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
@@ -50,7 +53,10 @@ public class WorkOrderMeterTriggerService {
     }
 
     public void delete(Long id) {
-        workOrderMeterTriggerRepository.deleteById(id);
+        workOrderMeterTriggerRepository.findById(id).ifPresent(workOrderMeterTrigger -> {
+            workOrderMeterTriggerRepository.delete(workOrderMeterTrigger);
+            meterTriggerEngine.evict(workOrderMeterTrigger.getMeter().getId());
+        });
     }
 
     public Optional<WorkOrderMeterTrigger> findById(Long id) {
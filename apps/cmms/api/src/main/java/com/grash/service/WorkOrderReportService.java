@@ -0,0 +1,326 @@
+package com.grash.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.grash.exception.CustomException;
+import com.grash.factory.StorageServiceFactory;
+import com.grash.model.*;
+import com.grash.model.enums.ReportFormat;
+import com.grash.utils.Helper;
+import com.itextpdf.html2pdf.ConverterProperties;
+import com.itextpdf.html2pdf.HtmlConverter;
+import com.itextpdf.html2pdf.resolver.font.DefaultFontProvider;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.utils.PdfMerger;
+import com.itextpdf.layout.font.FontProvider;
+import com.itextpdf.layout.font.FontSet;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.MessageSource;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders the work order reports and uploads them, used by the report endpoints and by the export jobs. The
+ * stylesheet, the logo and the task images are inlined from a shared cache so that iText does not fetch them again
+ * for every report.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WorkOrderReportService {
+    public static final int MAX_BATCH_SIZE = 200;
+    private static final String STYLESHEET_URL = "https://netdna.bootstrapcdn.com/bootstrap/3.1.0/css/bootstrap.min" +
+            ".css";
+    private static final long MAX_CACHED_RESOURCES_LENGTH = 64 * 1024 * 1024;
+
+    private final UserService userService;
+    private final TaskService taskService;
+    private final PartQuantityService partQuantityService;
+    private final LaborService laborService;
+    private final RelationService relationService;
+    private final AdditionalCostService additionalCostService;
+    private final WorkOrderHistoryService workOrderHistoryService;
+    private final WorkOrderService workOrderService;
+    private final SpringTemplateEngine thymeleafTemplateEngine;
+    private final StorageServiceFactory storageServiceFactory;
+    private final Environment environment;
+    private final MessageSource messageSource;
+    private final BrandingService brandingService;
+    private final ThreadPoolTaskExecutor reportExecutor;
+    private final PlatformTransactionManager transactionManager;
+
+    private final Cache<String, String> resources = Caffeine.newBuilder()
+            .maximumWeight(MAX_CACHED_RESOURCES_LENGTH)
+            .<String, String>weigher((key, value) -> value.length())
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
+    //the fonts are parsed once, each conversion only gets its own provider on top of them
+    private static class Fonts {
+        private static final FontSet FONT_SET = new DefaultFontProvider().getFontSet();
+        private static final String DEFAULT_FONT_FAMILY = "Times";
+    }
+
+    /**
+     * @return the file path of the uploaded report
+     */
+    public String generate(WorkOrder workOrder, OwnUser user) {
+        String reportHtml = renderHtml(workOrder, getCompanyVariables(user));
+        return storageServiceFactory.getStorageService().upload("Work Order Report.pdf", "application/pdf",
+                "reports/" + user.getCompany().getId(),
+                outputStream -> HtmlConverter.convertToPdf(reportHtml, outputStream, getConverterProperties()));
+    }
+
+    public void validateBatch(List<Long> workOrderIds) {
+        if (workOrderIds.isEmpty()) throw new CustomException("No work order to report", HttpStatus.BAD_REQUEST);
+        if (workOrderIds.size() > MAX_BATCH_SIZE)
+            throw new CustomException("Cannot report more than " + MAX_BATCH_SIZE + " work orders at once",
+                    HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Renders the reports in parallel on the report executor and writes each one into the merged pdf or the zip as
+     * soon as the previous ones are written, in the order of the given work orders. Only a window of rendered
+     * reports is held in memory. Runs in the export jobs.
+     *
+     * @param onProgress receives the percentage of the written reports after each one
+     * @return the file path of the uploaded report
+     */
+    public String generateBatch(List<Long> workOrderIds, ReportFormat format, OwnUser user, IntConsumer onProgress) {
+        validateBatch(workOrderIds);
+        Map<String, Object> companyVariables = getCompanyVariables(user);
+        StorageService storageService = storageServiceFactory.getStorageService();
+        String folder = "reports/" + user.getCompany().getId();
+        if (format == ReportFormat.ZIP) {
+            return storageService.upload("Work Order Reports.zip", "application/zip", folder,
+                    outputStream -> zip(workOrderIds, companyVariables, outputStream, onProgress));
+        }
+        return storageService.upload("Work Order Reports.pdf", "application/pdf", folder,
+                outputStream -> merge(workOrderIds, companyVariables, outputStream, onProgress));
+    }
+
+    private void merge(List<Long> workOrderIds, Map<String, Object> companyVariables,
+                       OutputStream outputStream, IntConsumer onProgress) throws IOException {
+        PdfDocument mergedDocument = new PdfDocument(new PdfWriter(outputStream));
+        PdfMerger merger = new PdfMerger(mergedDocument);
+        forEachReport(workOrderIds, companyVariables, onProgress, report -> {
+            PdfDocument document = new PdfDocument(new PdfReader(new ByteArrayInputStream(report.pdf)));
+            merger.merge(document, 1, document.getNumberOfPages());
+            //writes the copied pages out instead of keeping them until the end
+            mergedDocument.flushCopiedObjects(document);
+            document.close();
+        });
+        mergedDocument.close();
+    }
+
+    private void zip(List<Long> workOrderIds, Map<String, Object> companyVariables,
+                     OutputStream outputStream, IntConsumer onProgress) throws IOException {
+        ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+        forEachReport(workOrderIds, companyVariables, onProgress, report -> {
+            zipOutputStream.putNextEntry(new ZipEntry("Work Order " + report.name + ".pdf"));
+            zipOutputStream.write(report.pdf);
+            zipOutputStream.closeEntry();
+        });
+        zipOutputStream.finish();
+    }
+
+    private interface ReportWriter {
+        void write(RenderedReport report) throws IOException;
+    }
+
+    /**
+     * Passes the reports to the writer in order while at most twice as many reports as report threads are rendered
+     * ahead
+     */
+    private void forEachReport(List<Long> workOrderIds, Map<String, Object> companyVariables,
+                               IntConsumer onProgress, ReportWriter writer) throws IOException {
+        int window = Math.max(1, reportExecutor.getMaxPoolSize() * 2);
+        Iterator<Long> remainingIds = workOrderIds.iterator();
+        Deque<CompletableFuture<RenderedReport>> reports = new ArrayDeque<>();
+        int written = 0;
+        try {
+            while (reports.size() < window && remainingIds.hasNext())
+                reports.add(render(remainingIds.next(), companyVariables));
+            while (!reports.isEmpty()) {
+                RenderedReport report = join(reports.poll());
+                if (remainingIds.hasNext()) reports.add(render(remainingIds.next(), companyVariables));
+                writer.write(report);
+                onProgress.accept(Math.min(99, ++written * 100 / workOrderIds.size()));
+            }
+        } finally {
+            reports.forEach(report -> report.cancel(false));
+        }
+    }
+
+    private CompletableFuture<RenderedReport> render(Long workOrderId, Map<String, Object> companyVariables) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return CompletableFuture.supplyAsync(() -> {
+            RenderedReport report = new RenderedReport();
+            String reportHtml = transactionTemplate.execute(status -> {
+                WorkOrder workOrder = workOrderService.findById(workOrderId)
+                        .orElseThrow(() -> new CustomException("Not found", HttpStatus.NOT_FOUND));
+                report.name = workOrder.getCustomId() == null ? workOrder.getId().toString() :
+                        workOrder.getCustomId();
+                return renderHtml(workOrder, companyVariables);
+            });
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            HtmlConverter.convertToPdf(reportHtml, outputStream, getConverterProperties());
+            report.pdf = outputStream.toByteArray();
+            return report;
+        }, reportExecutor);
+    }
+
+    private static class RenderedReport {
+        private String name;
+        private byte[] pdf;
+    }
+
+    private RenderedReport join(CompletableFuture<RenderedReport> report) {
+        try {
+            return report.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    private ConverterProperties getConverterProperties() {
+        return new ConverterProperties().setFontProvider(new FontProvider(Fonts.FONT_SET,
+                Fonts.DEFAULT_FONT_FAMILY));
+    }
+
+    private Map<String, Object> getCompanyVariables(OwnUser user) {
+        String logoPath = environment.getProperty("white-labeling.logo-paths");
+        String logoUrl = environment.getProperty("api.host") + (logoPath == null || logoPath.isEmpty() ?
+                "/images/logo.png" : "/images/custom-logo.png");
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("companyName", user.getCompany().getName());
+        variables.put("companyPhone", user.getCompany().getPhone());
+        variables.put("currency",
+                user.getCompany().getCompanySettings().getGeneralPreferences().getCurrency().getCode());
+        variables.put("environment", environment);
+        variables.put("messageSource", messageSource);
+        variables.put("locale", Helper.getLocale(user));
+        variables.put("backgroundColor", brandingService.getMailBackgroundColor());
+        variables.put("stylesheetUrl", STYLESHEET_URL);
+        variables.put("stylesheet", getRemoteResource(STYLESHEET_URL, content ->
+                //the report does not use the icon font, iText would download it for each report otherwise
+                new String(content, StandardCharsets.UTF_8).replaceAll("@font-face\\s*\\{[^}]*}", "")));
+        variables.put("logoUrl", Optional.ofNullable(getRemoteResource(logoUrl,
+                content -> toDataUri(content, logoUrl))).orElse(logoUrl));
+        return variables;
+    }
+
+    /**
+     * @return the cached resource or null if it cannot be downloaded, in which case iText will try again
+     */
+    private String getRemoteResource(String url, Function<byte[], String> mapper) {
+        try {
+            return resources.get(url, key -> {
+                try (InputStream inputStream = new URL(url).openStream()) {
+                    return mapper.apply(StreamUtils.copyToByteArray(inputStream));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            log.warn("Could not download {}", url, e);
+            return null;
+        }
+    }
+
+    private String getImageSource(File image) {
+        StorageService storageService = storageServiceFactory.getStorageService();
+        try {
+            return resources.get(image.getPath(), key -> toDataUri(storageService.download(image), image.getName()));
+        } catch (RuntimeException e) {
+            log.warn("Could not download {}", image.getPath(), e);
+            return storageService.generateSignedUrl(image, 5);
+        }
+    }
+
+    /**
+     * @param name the file name or url, used for the content type when it cannot be detected from the content
+     */
+    private String toDataUri(byte[] content, String name) {
+        String contentType = null;
+        try {
+            contentType = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(content));
+        } catch (IOException ignored) {
+        }
+        if (contentType == null) contentType = URLConnection.guessContentTypeFromName(name);
+        if (contentType == null || !contentType.startsWith("image/")) contentType = "image/png";
+        return "data:" + contentType + ";base64," + Base64.getEncoder().encodeToString(content);
+    }
+
+    private String renderHtml(WorkOrder workOrder, Map<String, Object> companyVariables) {
+        Long id = workOrder.getId();
+        Context thymeleafContext = new Context();
+        thymeleafContext.setLocale((Locale) companyVariables.get("locale"));
+        Optional<OwnUser> creator = workOrder.getCreatedBy() == null ? Optional.empty() :
+                userService.findById(workOrder.getCreatedBy());
+        List<Task> tasks = taskService.findByWorkOrder(id);
+        Map<Long, String[]> tasksImagesUrls = tasks.stream()
+                .collect(Collectors.toMap(
+                        Task::getId,
+                        task -> task.getImages().stream()
+                                .map(this::getImageSource)
+                                .toArray(String[]::new)
+                ));
+        Collection<PartQuantity> partQuantities = partQuantityService.findByWorkOrder(id);
+        Collection<Labor> labors = laborService.findByWorkOrder(id);
+        Collection<Relation> relations = relationService.findByWorkOrder(id);
+        Collection<AdditionalCost> additionalCosts = additionalCostService.findByWorkOrder(id);
+        Collection<WorkOrderHistory> workOrderHistories = workOrderHistoryService.findByWorkOrder(id);
+        Map<String, Object> variables = new HashMap<String, Object>(companyVariables) {{
+            put("assignedTo",
+                    Helper.enumerate(workOrder.getAssignedTo().stream().map(OwnUser::getFullName).collect(Collectors.toList())));
+            put("customers",
+                    Helper.enumerate(workOrder.getCustomers().stream().map(Customer::getName).collect(Collectors.toList())));
+            put("workOrder", workOrder);
+            put("primaryUserName", workOrder.getPrimaryUser() == null ? null :
+                    workOrder.getPrimaryUser().getFullName());
+            put("createdBy", creator.<Object>map(OwnUser::getFullName).orElse(null));
+            put("tasks", tasks);
+            put("labors", labors);
+            put("relations", relations);
+            put("additionalCosts", additionalCosts);
+            put("workOrderHistories", workOrderHistories);
+            put("partQuantities", partQuantities);
+            put("tasksImagesUrls", tasksImagesUrls);
+        }};
+        thymeleafContext.setVariables(variables);
+
+        return thymeleafTemplateEngine.process("work-order-report.html", thymeleafContext);
+    }
+}
@@ -1,16 +1,17 @@
 package com.grash.service;
 
 import com.grash.advancedsearch.FilterField;
+import com.grash.advancedsearch.KeysetPagination;
 import com.grash.advancedsearch.SearchCriteria;
 import com.grash.advancedsearch.SpecificationBuilder;
 import com.grash.dto.WorkOrderPatchDTO;
+import com.grash.dto.WorkOrderReportRequest;
 import com.grash.dto.imports.WorkOrderImportDTO;
 import com.grash.dto.license.LicenseEntitlement;
 import com.grash.dto.workOrder.WorkOrderPostDTO;
 import com.grash.exception.CustomException;
 import com.grash.mapper.WorkOrderMapper;
 import com.grash.model.*;
-import com.grash.model.abstracts.Cost;
 import com.grash.model.abstracts.WorkOrderBase;
 import com.grash.model.enums.*;
 import com.grash.model.enums.workflow.WFMainCondition;
@@ -24,17 +25,21 @@ import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.data.util.Pair;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityManager;
 import javax.persistence.criteria.JoinType;
 import javax.transaction.Transactional;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.grash.utils.Consts.usageBasedLicenseLimits;
 
@@ -43,23 +48,19 @@ import static com.grash.utils.Consts.usageBasedLicenseLimits;
 public class WorkOrderService {
     private final WorkOrderRepository workOrderRepository;
     private final WorkOrderHistoryRepository workOrderHistoryRepository;
-    private final LocationService locationService;
-    private final CustomerService customerService;
     private final TeamService teamService;
     private final AssetService assetService;
-    private final UserService userService;
     private final CompanyService companyService;
-    private LaborService laborService;
-    private AdditionalCostService additionalCostService;
-    private PartQuantityService partQuantityService;
     private final NotificationService notificationService;
     private final WorkOrderMapper workOrderMapper;
     private final EntityManager em;
     private final EmailService2 emailService2;
-    private final WorkOrderCategoryService workOrderCategoryService;
     private WorkflowService workflowService;
     private final MessageSource messageSource;
     private final CustomSequenceService customSequenceService;
+    private final AnalyticsRollupService analyticsRollupService;
+    private final WorkOrderStatusTimelineService workOrderStatusTimelineService;
+    private final PlatformTransactionManager transactionManager;
 
     @Value("${frontend.url}")
     private String frontendUrl;
@@ -87,6 +88,8 @@ public class WorkOrderService {
 
         WorkOrder savedWorkOrder = workOrderRepository.saveAndFlush(workOrder);
         em.refresh(savedWorkOrder);
+        analyticsRollupService.markWorkOrder(savedWorkOrder);
+        workOrderStatusTimelineService.record(savedWorkOrder);
         notify(savedWorkOrder, Helper.getLocale(company));
         Collection<Workflow> workflows =
                 workflowService.findByMainConditionAndCompany(WFMainCondition.WORK_ORDER_CREATED, company.getId());
@@ -95,24 +98,44 @@ public class WorkOrderService {
         return savedWorkOrder;
     }
 
+    /**
+     * Creates work orders of a company at once: their custom ids are reserved in one block, they are inserted in JDBC
+     * batches and the creation workflows are loaded once. The notifications are left to {@link #notifyAll}.
+     */
+    @Transactional
+    public List<WorkOrder> createAll(List<WorkOrder> workOrders, Company company) {
+        if (workOrders.isEmpty()) return workOrders;
+        checkUsageBasedLimit(company, workOrders.size());
+        long sequence = customSequenceService.reserveWorkOrderSequences(company, workOrders.size());
+        for (WorkOrder workOrder : workOrders) {
+            workOrder.setCustomId(getWorkOrderNumber(sequence++));
+        }
+        List<WorkOrder> savedWorkOrders = workOrderRepository.saveAll(workOrders);
+        analyticsRollupService.markWorkOrders(savedWorkOrders);
+        workOrderStatusTimelineService.recordAll(savedWorkOrders);
+        Collection<Workflow> workflows =
+                workflowService.findByMainConditionAndCompany(WFMainCondition.WORK_ORDER_CREATED, company.getId());
+        savedWorkOrders.forEach(workOrder -> workflows.forEach(workflow -> workflowService.runWorkOrder(workflow,
+                workOrder)));
+        return savedWorkOrders;
+    }
+
     public String getWorkOrderNumber(Company company) {
-        Long nextSequence = customSequenceService.getNextWorkOrderSequence(company);
-        return "WO" + String.format("%06d", nextSequence);
+        return getWorkOrderNumber(customSequenceService.getNextWorkOrderSequence(company));
     }
 
-    @Autowired
-    public void setDeps(@Lazy LaborService laborService,
-                        @Lazy AdditionalCostService additionalCostService,
-                        @Lazy PartQuantityService partQuantityService) {
-        this.laborService = laborService;
-        this.additionalCostService = additionalCostService;
-        this.partQuantityService = partQuantityService;
+    private String getWorkOrderNumber(Long sequence) {
+        return "WO" + String.format("%06d", sequence);
     }
 
     private void checkUsageBasedLimit(Company company) {
+        checkUsageBasedLimit(company, 1);
+    }
+
+    public void checkUsageBasedLimit(Company company, int toCreate) {
         Integer threshold = usageBasedLicenseLimits.get(LicenseEntitlement.UNLIMITED_ACTIVE_WORK_ORDERS);
-        if (!licenseService.hasEntitlement(LicenseEntitlement.UNLIMITED_ACTIVE_WORK_ORDERS)
-                && workOrderRepository.hasMoreActiveThan(company.getId(), threshold.longValue() - 1
+        if (toCreate > 0 && !licenseService.hasEntitlement(LicenseEntitlement.UNLIMITED_ACTIVE_WORK_ORDERS)
+                && workOrderRepository.hasMoreActiveThan(company.getId(), threshold.longValue() - toCreate
         ))
             throw new CustomException("You need a license to add a new work order. Free Limit of " + threshold + " " +
                     "incomplete " +
@@ -128,6 +151,8 @@ public class WorkOrderService {
             WorkOrder updatedWorkOrder =
                     workOrderRepository.saveAndFlush(workOrderMapper.updateWorkOrder(savedWorkOrder, workOrder));
             em.refresh(updatedWorkOrder);
+            analyticsRollupService.markWorkOrder(updatedWorkOrder);
+            workOrderStatusTimelineService.record(updatedWorkOrder);
             return updatedWorkOrder;
         } else throw new CustomException("Not found", HttpStatus.NOT_FOUND);
     }
@@ -137,6 +162,7 @@ public class WorkOrderService {
     }
 
     public void delete(Long id) {
+        workOrderRepository.findById(id).ifPresent(analyticsRollupService::markWorkOrder);
         workOrderRepository.deleteById(id);
     }
 
@@ -148,10 +174,40 @@ public class WorkOrderService {
         return workOrderRepository.findByIdAndCompany_Id(id, companyId);
     }
 
+    public boolean canSeeReport(WorkOrder workOrder, OwnUser user) {
+        return user.getRole().getViewPermissions().contains(PermissionEntity.WORK_ORDERS) &&
+                (user.getRole().getViewOtherPermissions().contains(PermissionEntity.WORK_ORDERS)
+                        || user.getId().equals(workOrder.getCreatedBy()) || workOrder.isAssignedTo(user));
+    }
+
+    /**
+     * @return the work orders of the request the user can see the report of, in the requested order
+     */
+    public List<WorkOrder> findForReport(WorkOrderReportRequest request, OwnUser user) {
+        Long companyId = user.getCompany().getId();
+        List<WorkOrder> workOrders;
+        if (request.getIds() != null && !request.getIds().isEmpty()) {
+            workOrders = workOrderRepository.findByIdInAndCompany_Id(request.getIds(), companyId);
+            workOrders.sort(Comparator.comparing(workOrder -> request.getIds().indexOf(workOrder.getId())));
+        } else if (request.getCompletedStart() != null && request.getCompletedEnd() != null) {
+            workOrders = workOrderRepository.findByCompletedOnBetweenAndCompany_IdOrderByCompletedOn(
+                    request.getCompletedStart(), request.getCompletedEnd(), companyId);
+        } else throw new CustomException("Either the ids or the completion dates are required", HttpStatus.BAD_REQUEST);
+        return workOrders.stream().filter(workOrder -> canSeeReport(workOrder, user)).collect(Collectors.toList());
+    }
+
     public Collection<WorkOrder> findByCompany(Long id) {
         return workOrderRepository.findByCompany_Id(id);
     }
 
+    public Stream<WorkOrder> streamByCompany(Long id) {
+        return workOrderRepository.streamByCompany_Id(id);
+    }
+
+    public long countByCompany(Long id) {
+        return workOrderRepository.countByCompany_Id(id);
+    }
+
     public void notify(WorkOrder workOrder, Locale locale) {
         String title = messageSource.getMessage("new_wo", null, locale);
         String message = messageSource.getMessage("notification_wo_assigned", new Object[]{workOrder.getTitle()},
@@ -159,7 +215,50 @@ public class WorkOrderService {
         Collection<OwnUser> users = workOrder.getUsers();
         notificationService.createMultiple(users.stream().map(user -> new Notification(message, user,
                 NotificationType.WORK_ORDER, workOrder.getId())).collect(Collectors.toList()), true, title);
+        mailCreated(workOrder, users, locale);
+    }
 
+    /**
+     * Notifies the users of newly created work orders, with one batch of notifications for all of them. The
+     * notifications and mails are prepared in the current transaction and only sent once it is committed, so that a
+     * rolled back batch sends nothing.
+     */
+    public void notifyAll(Collection<WorkOrder> workOrders, Locale locale) {
+        String title = messageSource.getMessage("new_wo", null, locale);
+        List<Notification> notifications = new ArrayList<>();
+        List<WorkOrder> mailedWorkOrders = new ArrayList<>();
+        List<Collection<OwnUser>> mailedUsers = new ArrayList<>();
+        workOrders.forEach(workOrder -> {
+            String message = messageSource.getMessage("notification_wo_assigned", new Object[]{workOrder.getTitle()},
+                    locale);
+            Collection<OwnUser> users = workOrder.getUsers();
+            users.forEach(user -> notifications.add(new Notification(message, user, NotificationType.WORK_ORDER,
+                    workOrder.getId())));
+            mailedWorkOrders.add(workOrder);
+            //loads the user settings while the transaction is open
+            mailedUsers.add(users.stream().filter(user -> user.isEnabled()
+                    && user.getUserSettings().shouldEmailUpdatesForWorkOrders()).collect(Collectors.toList()));
+        });
+        Runnable send = () -> {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            transactionTemplate.executeWithoutResult(status ->
+                    notificationService.createMultipleByResource(notifications, true, title));
+            for (int i = 0; i < mailedWorkOrders.size(); i++) {
+                mailCreated(mailedWorkOrders.get(i), mailedUsers.get(i), locale);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send.run();
+                }
+            });
+        } else send.run();
+    }
+
+    private void mailCreated(WorkOrder workOrder, Collection<OwnUser> users, Locale locale) {
         Map<String, Object> mailVariables = new HashMap<String, Object>() {{
             put("workOrderLink", frontendUrl + "/app/work-orders/" + workOrder.getId());
             put("featuresLink", frontendUrl + "/#key-features");
@@ -212,18 +311,20 @@ public class WorkOrderService {
     public Page<WorkOrder> findBySearchCriteria(SearchCriteria searchCriteria) {
         SpecificationBuilder<WorkOrder> builder = new SpecificationBuilder<>();
         searchCriteria.getFilterFields().forEach(builder::with);
-        Pageable page = PageRequest.of(searchCriteria.getPageNum(), searchCriteria.getPageSize(),
-                searchCriteria.getDirection(), searchCriteria.getSortField());
-        return workOrderRepository.findAll(builder.build(), page);
+        return KeysetPagination.findAll(em, WorkOrder.class, workOrderRepository, builder.build(), searchCriteria);
     }
 
     public void save(WorkOrder workOrder) {
-        workOrderRepository.save(workOrder);
+        WorkOrder savedWorkOrder = workOrderRepository.save(workOrder);
+        analyticsRollupService.markWorkOrder(savedWorkOrder);
+        workOrderStatusTimelineService.record(savedWorkOrder);
     }
 
     public WorkOrder saveAndFlush(WorkOrder workOrder) {
         WorkOrder updatedWorkOrder = workOrderRepository.saveAndFlush(workOrder);
         em.refresh(updatedWorkOrder);
+        analyticsRollupService.markWorkOrder(updatedWorkOrder);
+        workOrderStatusTimelineService.record(updatedWorkOrder);
         return updatedWorkOrder;
     }
 
@@ -278,48 +379,6 @@ public class WorkOrderService {
         return workOrderRepository.findByCompletedOnBetweenAndCompany_Id(date1, date2, companyId);
     }
 
-    public Pair<Long, Long> getLaborCostAndTime(Collection<WorkOrder> workOrders) {
-        Collection<Long> laborCostsArray = new ArrayList<>();
-        Collection<Long> laborTimesArray = new ArrayList<>();
-        workOrders.forEach(workOrder -> {
-                    Collection<Labor> labors = laborService.findByWorkOrder(workOrder.getId());
-                    long laborsCosts =
-                            labors.stream().mapToLong(labor -> labor.getHourlyRate() * labor.getDuration() / 3600).sum();
-                    long laborTimes = labors.stream().mapToLong(Labor::getDuration).sum();
-                    laborCostsArray.add(laborsCosts);
-                    laborTimesArray.add(laborTimes);
-                }
-        );
-        long laborCost = laborCostsArray.stream().mapToLong(value -> value).sum();
-        long laborTimes = laborTimesArray.stream().mapToLong(value -> value).sum();
-
-        return Pair.of(laborCost, laborTimes);
-    }
-
-    public double getAdditionalCost(Collection<WorkOrder> workOrders) {
-        Collection<Double> costs = workOrders.stream().map(workOrder -> {
-                    Collection<AdditionalCost> additionalCosts =
-                            additionalCostService.findByWorkOrder(workOrder.getId());
-                    return additionalCosts.stream().mapToDouble(Cost::getCost).sum();
-                }
-        ).collect(Collectors.toList());
-        return costs.stream().mapToDouble(value -> value).sum();
-    }
-
-    public double getPartCost(Collection<WorkOrder> workOrders) {
-        Collection<Double> costs = workOrders.stream().map(workOrder -> {
-                    Collection<PartQuantity> partQuantities = partQuantityService.findByWorkOrder(workOrder.getId());
-                    return partQuantities.stream().mapToDouble(partQuantity -> partQuantity.getPart().getCost() * partQuantity.getQuantity()).sum();
-                }
-        ).collect(Collectors.toList());
-        return costs.stream().mapToDouble(value -> value).sum();
-    }
-
-    public double getAllCost(Collection<WorkOrder> workOrders, boolean includeLaborCost) {
-        return getPartCost(workOrders) + getAdditionalCost(workOrders) + (includeLaborCost ?
-                getLaborCostAndTime(workOrders).getFirst() : 0);
-    }
-
     public Collection<WorkOrder> findByCreatedBy(Long id) {
         return workOrderRepository.findByCreatedBy(id);
     }
@@ -338,29 +397,28 @@ public class WorkOrderService {
         return workOrderRepository.findByDueDateBetweenAndCompany_Id(date1, date2, id);
     }
 
-    public void importWorkOrder(WorkOrder workOrder, WorkOrderImportDTO dto, Company company) {
-        checkUsageBasedLimit(company);
-        Helper.populateWorkOrderBaseFromImportDTO(workOrder, dto, company, locationService, teamService, userService,
-                assetService, workOrderCategoryService);
+    /**
+     * The analytics rollups and the status timeline are not updated, the import updates them once per chunk
+     */
+    public WorkOrder importWorkOrder(WorkOrder workOrder, WorkOrderImportDTO dto, ImportLookups lookups,
+                                     Long sequence) {
+        Helper.populateWorkOrderBaseFromImportDTO(workOrder, dto, lookups);
 
         workOrder.setDueDate(Helper.getDateFromExcelDate(dto.getDueDate()));
-        workOrder.setCustomId(getWorkOrderNumber(company));
+        workOrder.setCustomId(getWorkOrderNumber(sequence));
         workOrder.setRequiredSignature(Helper.getBooleanFromString(dto.getRequiredSignature()));
 
-        Optional<OwnUser> optionalCompletedBy = userService.findByEmailAndCompany(dto.getCompletedByEmail(),
-                company.getId());
-        optionalCompletedBy.ifPresent(workOrder::setCompletedBy);
+        lookups.find(ImportLookups.Lookup.USER, dto.getCompletedByEmail()).ifPresent(workOrder::setCompletedBy);
         workOrder.setCompletedOn(dto.getCompletedOn() == null ? null : Helper.addSeconds(new Date(), 60 * 10));
         workOrder.setArchived(Helper.getBooleanFromString(dto.getArchived()));
         workOrder.setStatus(Status.getStatusFromString(dto.getStatus()));
         workOrder.setFeedback(dto.getFeedback());
-        List<Customer> customers = new ArrayList<>();
-        dto.getCustomersNames().forEach(name -> {
-            Optional<Customer> optionalCustomer = customerService.findByNameIgnoreCaseAndCompany(name, company.getId());
-            optionalCustomer.ifPresent(customers::add);
-        });
-        workOrder.setCustomers(customers);
-        workOrderRepository.save(workOrder);
+        workOrder.setCustomers(lookups.findAll(ImportLookups.Lookup.CUSTOMER, dto.getCustomersNames()));
+        return workOrderRepository.save(workOrder);
+    }
+
+    public List<WorkOrder> findByIdInAndCompany(Collection<Long> ids, Long companyId) {
+        return workOrderRepository.findByIdInAndCompany_Id(ids, companyId);
     }
 
     public Collection<WorkOrder> findByCreatedByAndCreatedAtBetween(Long id, Date date1, Date date2) {
@@ -0,0 +1,77 @@
+package com.grash.service;
+
+import com.grash.dto.analytics.workOrders.WOStatusCountAt;
+import com.grash.model.WorkOrder;
+import com.grash.model.enums.Status;
+import com.grash.repository.WorkOrderStatusPeriodRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Keeps the status timeline of the work orders, one period per status a work order went through, so the status of
+ * every work order at any instant can be counted by one query instead of reading the Envers revisions one by one.
+ */
+@Service
+@RequiredArgsConstructor
+public class WorkOrderStatusTimelineService {
+    private final WorkOrderStatusPeriodRepository workOrderStatusPeriodRepository;
+
+    /**
+     * Closes the current period and opens a new one if the status of the work order changed. Does nothing otherwise, so
+     * it can be called after every write.
+     */
+    public void record(WorkOrder workOrder) {
+        if (workOrder == null || workOrder.getId() == null || workOrder.getStatus() == null
+                || workOrder.getCreatedAt() == null) return;
+        Date now = new Date();
+        int status = workOrder.getStatus().ordinal();
+        workOrderStatusPeriodRepository.closeCurrent(workOrder.getId(), status, now);
+        workOrderStatusPeriodRepository.openCurrent(workOrder.getId(), status, workOrder.getCreatedAt(), now);
+    }
+
+    /**
+     * {@link #record} of several work orders with two statements in all
+     */
+    public void recordAll(Collection<WorkOrder> workOrders) {
+        //the last state of a work order given twice wins
+        Map<Long, WorkOrder> workOrdersById = new LinkedHashMap<>();
+        for (WorkOrder workOrder : workOrders) {
+            if (workOrder == null || workOrder.getId() == null || workOrder.getStatus() == null
+                    || workOrder.getCreatedAt() == null) continue;
+            workOrdersById.put(workOrder.getId(), workOrder);
+        }
+        if (workOrdersById.isEmpty()) return;
+        List<Long> ids = new ArrayList<>(workOrdersById.size());
+        List<Integer> statuses = new ArrayList<>(workOrdersById.size());
+        List<Date> createdAts = new ArrayList<>(workOrdersById.size());
+        workOrdersById.forEach((id, workOrder) -> {
+            ids.add(id);
+            statuses.add(workOrder.getStatus().ordinal());
+            createdAts.add(workOrder.getCreatedAt());
+        });
+        Date now = new Date();
+        workOrderStatusPeriodRepository.closeCurrentAll(ids, statuses, now);
+        workOrderStatusPeriodRepository.openCurrentAll(ids, statuses, createdAts, now);
+    }
+
+    /**
+     * @return for each instant, the number of work orders created between start and the instant by the status they
+     * had at the instant
+     */
+    public Map<Date, Map<Status, Long>> countByStatusAt(Long companyId, Date start, Collection<Date> instants) {
+        Map<Long, Date> instantsByTime = new HashMap<>();
+        instants.forEach(instant -> instantsByTime.put(instant.getTime(), instant));
+        Map<Date, Map<Status, Long>> result = new HashMap<>();
+        instants.forEach(instant -> result.put(instant, new EnumMap<>(Status.class)));
+        if (instants.isEmpty()) return result;
+        for (WOStatusCountAt statusCount : workOrderStatusPeriodRepository.countByStatusAt(companyId, start,
+                instants)) {
+            Date instant = instantsByTime.get(statusCount.getInstant().getTime());
+            if (instant == null || statusCount.getStatus() == null) continue;
+            result.get(instant).put(Status.values()[statusCount.getStatus()], statusCount.getCount());
+        }
+        return result;
+    }
+}
@@ -12,15 +12,7 @@ import com.grash.model.enums.RoleType;
 import com.grash.model.abstracts.WorkOrderBase;
 import com.grash.dto.imports.WorkOrderImportDTO;
 import com.grash.model.enums.Priority;
-import com.grash.model.WorkOrderCategory;
-import com.grash.model.Location;
-import com.grash.model.Team;
-import com.grash.model.Asset;
-import com.grash.service.LocationService;
-import com.grash.service.TeamService;
-import com.grash.service.UserService;
-import com.grash.service.AssetService;
-import com.grash.service.WorkOrderCategoryService;
+import com.grash.service.ImportLookups;
 import com.grash.security.CustomUserDetail;
 import org.springframework.context.MessageSource;
 import org.springframework.data.domain.Page;
@@ -342,45 +334,19 @@ public class Helper {
     public static void populateWorkOrderBaseFromImportDTO(
             WorkOrderBase workOrderBase,
             WorkOrderImportDTO dto,
-            Company company,
-            LocationService locationService,
-            TeamService teamService,
-            UserService userService,
-            AssetService assetService,
-            WorkOrderCategoryService workOrderCategoryService
+            ImportLookups lookups
     ) {
-        Long companyId = company.getId();
-        Long companySettingsId = company.getCompanySettings().getId();
-
         workOrderBase.setTitle(dto.getTitle());
         workOrderBase.setDescription(dto.getDescription());
         workOrderBase.setPriority(Priority.getPriorityFromString(dto.getPriority()));
         workOrderBase.setEstimatedDuration(dto.getEstimatedDuration());
 
-        Optional<WorkOrderCategory> optionalWorkOrderCategory =
-                workOrderCategoryService.findByNameIgnoreCaseAndCompanySettings(dto.getCategory(), companySettingsId);
-        optionalWorkOrderCategory.ifPresent(workOrderBase::setCategory);
-
-        Optional<Location> optionalLocation = locationService.findByNameIgnoreCaseAndCompany(dto.getLocationName(),
-                companyId).stream().findFirst();
-        optionalLocation.ifPresent(workOrderBase::setLocation);
-
-        Optional<Team> optionalTeam = teamService.findByNameIgnoreCaseAndCompany(dto.getTeamName(), companyId);
-        optionalTeam.ifPresent(workOrderBase::setTeam);
-
-        Optional<OwnUser> optionalPrimaryUser = userService.findByEmailAndCompany(dto.getPrimaryUserEmail(), companyId);
-        optionalPrimaryUser.ifPresent(workOrderBase::setPrimaryUser);
-
-        List<OwnUser> assignedTo = new ArrayList<>();
-        dto.getAssignedToEmails().forEach(email -> {
-            Optional<OwnUser> optionalUser1 = userService.findByEmailAndCompany(email, companyId);
-            optionalUser1.ifPresent(assignedTo::add);
-        });
-        workOrderBase.setAssignedTo(assignedTo);
-
-        Optional<Asset> optionalAsset =
-                assetService.findByNameIgnoreCaseAndCompany(dto.getAssetName(), companyId).stream().findFirst();
-        optionalAsset.ifPresent(workOrderBase::setAsset);
+        lookups.find(ImportLookups.Lookup.WORK_ORDER_CATEGORY, dto.getCategory()).ifPresent(workOrderBase::setCategory);
+        lookups.find(ImportLookups.Lookup.LOCATION, dto.getLocationName()).ifPresent(workOrderBase::setLocation);
+        lookups.find(ImportLookups.Lookup.TEAM, dto.getTeamName()).ifPresent(workOrderBase::setTeam);
+        lookups.find(ImportLookups.Lookup.USER, dto.getPrimaryUserEmail()).ifPresent(workOrderBase::setPrimaryUser);
+        workOrderBase.setAssignedTo(lookups.findAll(ImportLookups.Lookup.USER, dto.getAssignedToEmails()));
+        lookups.find(ImportLookups.Lookup.ASSET, dto.getAssetName()).ifPresent(workOrderBase::setAsset);
     }
 
     public static void setCurrentUser(OwnUser user) {
@@ -0,0 +1,95 @@
+package com.grash.utils;
+
+import com.grash.model.Schedule;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Computes the occurrences of a {@link Schedule} based on its scheduled date: every frequency days, months or years
+ * from startsOn, or on the days of week of every frequency weeks at the time of startsOn.
+ */
+public final class ScheduleRecurrence {
+
+    private ScheduleRecurrence() {
+    }
+
+    /**
+     * @return the first occurrence strictly after the date, null if the schedule ends before
+     */
+    public static Date next(Schedule schedule, Date after) {
+        ZoneId zone = ZoneId.systemDefault();
+        ZonedDateTime start = schedule.getStartsOn().toInstant().atZone(zone);
+        ZonedDateTime from = after.toInstant().atZone(zone);
+        ZonedDateTime next;
+        switch (schedule.getRecurrenceType()) {
+            case DAILY:
+                next = nextByInterval(start, from, ChronoUnit.DAYS, schedule.getFrequency());
+                break;
+            case WEEKLY:
+                next = nextWeekly(start, from, schedule.getDaysOfWeek(), schedule.getFrequency());
+                break;
+            case MONTHLY:
+                next = nextByInterval(start, from, ChronoUnit.MONTHS, schedule.getFrequency());
+                break;
+            case YEARLY:
+                next = nextByInterval(start, from, ChronoUnit.YEARS, schedule.getFrequency());
+                break;
+            default:
+                next = null;
+        }
+        if (next == null) return null;
+        Date result = Date.from(next.toInstant());
+        return schedule.getEndsOn() != null && result.after(schedule.getEndsOn()) ? null : result;
+    }
+
+    /**
+     * @return the occurrences after from (exclusive) until to (inclusive), at most limit of them
+     */
+    public static List<Date> between(Schedule schedule, Date from, Date to, int limit) {
+        List<Date> occurrences = new ArrayList<>();
+        Date occurrence = next(schedule, from);
+        while (occurrence != null && !occurrence.after(to) && occurrences.size() < limit) {
+            occurrences.add(occurrence);
+            occurrence = next(schedule, occurrence);
+        }
+        return occurrences;
+    }
+
+    private static ZonedDateTime nextByInterval(ZonedDateTime start, ZonedDateTime after, ChronoUnit unit,
+                                                int frequency) {
+        if (start.isAfter(after)) return start;
+        // computed from start each time so that month ends do not drift
+        long steps = unit.between(start, after) / frequency;
+        ZonedDateTime next = start.plus(steps * frequency, unit);
+        while (!next.isAfter(after)) {
+            steps++;
+            next = start.plus(steps * frequency, unit);
+        }
+        return next;
+    }
+
+    private static ZonedDateTime nextWeekly(ZonedDateTime start, ZonedDateTime after, List<Integer> daysOfWeek,
+                                            int frequency) {
+        if (daysOfWeek == null || daysOfWeek.isEmpty()) return null;
+        LocalDate firstWeek = start.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate day = (start.isAfter(after) ? start : after).toLocalDate();
+        for (int i = 0; i <= 7 * (frequency + 1); i++, day = day.plusDays(1)) {
+            //daysOfWeek are 0 based from monday
+            if (!daysOfWeek.contains(day.getDayOfWeek().getValue() - 1)) continue;
+            long week = ChronoUnit.WEEKS.between(firstWeek,
+                    day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)));
+            if (week % frequency != 0) continue;
+            ZonedDateTime occurrence = ZonedDateTime.of(day, start.toLocalTime(), start.getZone());
+            if (occurrence.isAfter(after) && !occurrence.isBefore(start)) return occurrence;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+package com.grash.advancedsearch;
+
+import com.grash.advancedsearch.pagination.KeysetPage;
+import com.grash.exception.CustomException;
+import com.grash.model.Asset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.http.HttpStatus;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class KeysetPaginationTest {
+    @Mock
+    private EntityManager em;
+    @Mock
+    private JpaSpecificationExecutor<Asset> repository;
+    @Mock
+    private CriteriaBuilder cb;
+    @Mock
+    private CriteriaQuery<Asset> query;
+    @Mock
+    private Root<Asset> root;
+    @Mock
+    private TypedQuery<Asset> typedQuery;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(em.getCriteriaBuilder()).thenReturn(cb);
+        when(cb.createQuery(Asset.class)).thenReturn(query);
+        when(query.from(Asset.class)).thenReturn(root);
+        when(query.select(root)).thenReturn(query);
+        when(em.createQuery(query)).thenReturn(typedQuery);
+        when(typedQuery.setMaxResults(anyInt())).thenReturn(typedQuery);
+        doReturn(Asset.class).when(root).getJavaType();
+        //every attribute can be navigated
+        EntityType<Asset> model = mock(EntityType.class);
+        SingularAttribute<Asset, Asset> attribute = mock(SingularAttribute.class);
+        doReturn(model).when(root).getModel();
+        doReturn(attribute).when(model).getAttribute(anyString());
+        doReturn(model).when(attribute).getType();
+        Path<Object> path = mock(Path.class);
+        doReturn(path).when(root).get(anyString());
+        doReturn(path).when(path).get(anyString());
+        Join<Asset, Asset> join = mock(Join.class);
+        doReturn(join).when(root).join(anyString(), eq(JoinType.LEFT));
+        doReturn(path).when(join).get(anyString());
+        doReturn(Date.class).when(path).getJavaType();
+    }
+
+    @Test
+    void rejectsACursorWithAnInvalidId() {
+        assertBadRequest(search("createdAt", cursor("abc:v1")));
+    }
+
+    @Test
+    void rejectsACursorWithAnInvalidSortValue() {
+        assertBadRequest(search("createdAt", cursor("5:vyesterday")));
+        assertBadRequest(search("createdAt", cursor("5:x1")));
+        assertBadRequest(search("createdAt", "%%%"));
+    }
+
+    @Test
+    void encodesANullSortValueWhenAnIntermediateValueOfTheSortFieldIsNull() {
+        Asset first = asset(1L, null);
+        Asset parent = asset(9L, null);
+        parent.setName("Plant");
+        Asset second = asset(2L, parent);
+        when(typedQuery.getResultList()).thenReturn(Arrays.asList(first, second, asset(3L, null)));
+
+        Page<Asset> page = KeysetPagination.findAll(em, Asset.class, repository, null,
+                search("parentAsset.name", null));
+
+        assertEquals(cursor("2:vPlant"), ((KeysetPage<Asset>) page).getNextCursor());
+
+        SearchCriteria firstPage = search("parentAsset.name", null);
+        firstPage.setPageSize(1);
+        page = KeysetPagination.findAll(em, Asset.class, repository, null, firstPage);
+
+        assertEquals(cursor("1:"), ((KeysetPage<Asset>) page).getNextCursor());
+        //the assets without a parent are kept
+        verify(root, atLeastOnce()).join("parentAsset", JoinType.LEFT);
+    }
+
+    private void assertBadRequest(SearchCriteria searchCriteria) {
+        CustomException exception = assertThrows(CustomException.class,
+                () -> KeysetPagination.findAll(em, Asset.class, repository, null, searchCriteria));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+    }
+
+    private SearchCriteria search(String sortField, String cursor) {
+        SearchCriteria searchCriteria = new SearchCriteria();
+        searchCriteria.setKeyset(true);
+        searchCriteria.setPageSize(2);
+        searchCriteria.setSortField(sortField);
+        searchCriteria.setDirection(Direction.ASC);
+        searchCriteria.setCursor(cursor);
+        return searchCriteria;
+    }
+
+    private Asset asset(Long id, Asset parentAsset) {
+        Asset asset = new Asset();
+        asset.setId(id);
+        asset.setParentAsset(parentAsset);
+        return asset;
+    }
+
+    private String cursor(String decoded) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,67 @@
+package com.grash.advancedsearch;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per request cost of building the specifications of a typical work order search, with the cached filter templates
+ * and with the templates compiled on every request as before. Not run by the tests, run it with
+ * {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath com.grash.advancedsearch.SpecificationBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpecificationBenchmark {
+    private List<FilterField> filterFields;
+
+    @Setup
+    public void setUp() {
+        filterFields = Arrays.asList(
+                FilterField.builder().field("company").operation("eq").value(1L).build(),
+                FilterField.builder().field("status").operation("in")
+                        .values(new ArrayList<>(Arrays.asList("OPEN", "IN_PROGRESS"))).build(),
+                FilterField.builder().field("asset.location.name").operation("cn").value("Plant").build(),
+                FilterField.builder().field("title, description, customId").operation("fts").value("pump leak")
+                        .build(),
+                FilterField.builder().field("primaryUser").operation("eq").value(3L)
+                        .alternatives(Arrays.asList(
+                                FilterField.builder().field("assignedTo").operation("inm")
+                                        .values(new ArrayList<>(Arrays.asList(3L))).build(),
+                                FilterField.builder().field("team.users").operation("inm")
+                                        .values(new ArrayList<>(Arrays.asList(3L))).build()))
+                        .build());
+    }
+
+    @Benchmark
+    public Specification<Object> cachedTemplates() {
+        SpecificationBuilder<Object> builder = new SpecificationBuilder<>();
+        filterFields.forEach(builder::with);
+        return builder.build();
+    }
+
+    @Benchmark
+    public Specification<Object> compiledTemplates() {
+        Specification<Object> result = (root, query, criteriaBuilder) -> null;
+        for (FilterField filterField : filterFields) {
+            result = Specification.where(result).and(new WrapperSpecification<>(FilterTemplate.compile(filterField),
+                    filterField));
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SpecificationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+package com.grash.advancedsearch;
+
+import com.grash.exception.CustomException;
+import com.grash.model.Asset;
+import com.grash.model.AssetClosure;
+import com.grash.model.Location;
+import com.grash.model.LocationClosure;
+import com.grash.model.WorkOrder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.http.HttpStatus;
+
+import javax.persistence.criteria.*;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class WrapperSpecificationTest {
+    @Mock
+    private CriteriaQuery<Object> query;
+    @Mock
+    private CriteriaBuilder cb;
+    @Mock
+    private Subquery<Long> subtree;
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private Root<Object> closure;
+    @Mock
+    private Predicate predicate;
+
+    @Test
+    void keepsTheRowsWhoseAssetIsInTheSubtree() {
+        Root<Object> root = root(WorkOrder.class);
+        Path<Object> asset = path(Asset.class);
+        Path<Object> assetId = path(Long.class);
+        doReturn(asset).when(root).get("asset");
+        doReturn(assetId).when(asset).get("id");
+        doReturn(closure).when(subtree).from(AssetClosure.class);
+        doReturn(predicate).when(assetId).in(subtree);
+
+        Predicate result = subtreeSpecification("asset").toPredicate(root, query, cb);
+
+        assertSame(predicate, result);
+        verify(subtree).from(AssetClosure.class);
+        verify(cb).equal(closure.get("id").get("ancestorId"), 12L);
+    }
+
+    @Test
+    void keepsTheLocationsOfTheSubtreeByTheirId() {
+        Root<Object> root = root(Location.class);
+        Path<Object> id = path(Long.class);
+        doReturn(id).when(root).get("id");
+        doReturn(closure).when(subtree).from(LocationClosure.class);
+        doReturn(predicate).when(id).in(subtree);
+
+        Predicate result = subtreeSpecification("id").toPredicate(root, query, cb);
+
+        assertSame(predicate, result);
+        verify(subtree, never()).from(AssetClosure.class);
+        verify(cb).equal(closure.get("id").get("ancestorId"), 12L);
+    }
+
+    @Test
+    void rejectsASubtreeRootWhichIsNotAnId() {
+        CustomException exception = assertThrows(CustomException.class, () -> new WrapperSpecification<>(
+                FilterField.builder().field("asset").operation("sub").value("plant").build()));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+    }
+
+    @Test
+    void rejectsTheIdOfAnEntityOutsideTheHierarchies() {
+        Root<Object> root = root(WorkOrder.class);
+        doReturn(path(Long.class)).when(root).get("id");
+        WrapperSpecification<Object> specification = subtreeSpecification("id");
+
+        CustomException exception = assertThrows(CustomException.class,
+                () -> specification.toPredicate(root, query, cb));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+        verify(subtree, never()).from(AssetClosure.class);
+    }
+
+    private WrapperSpecification<Object> subtreeSpecification(String field) {
+        doReturn(subtree).when(query).subquery(Long.class);
+        doReturn(subtree).when(subtree).select(any());
+        doReturn(subtree).when(subtree).where(any(Expression.class));
+        return new WrapperSpecification<>(FilterField.builder().field(field).operation("sub").value(12).build());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Root<Object> root(Class<?> type) {
+        Root<Object> root = mock(Root.class);
+        EntityType<Object> model = mock(EntityType.class);
+        doReturn(type).when(root).getJavaType();
+        doReturn(model).when(root).getModel();
+        doReturn(mock(Attribute.class)).when(model).getAttribute(anyString());
+        return root;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Path<Object> path(Class<?> type) {
+        Path<Object> path = mock(Path.class);
+        doReturn(type).when(path).getJavaType();
+        return path;
+    }
+}
@@ -0,0 +1,116 @@
+package com.grash.service;
+
+import com.grash.dto.analytics.DirtyRollupDay;
+import com.grash.model.Company;
+import com.grash.model.WorkOrder;
+import com.grash.model.enums.RollupType;
+import com.grash.repository.AssetDowntimeDailyRollupRepository;
+import com.grash.repository.WorkOrderDailyRollupRepository;
+import com.grash.utils.Helper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsRollupServiceTest {
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 29);
+
+    @Mock
+    private WorkOrderDailyRollupRepository workOrderDailyRollupRepository;
+    @Mock
+    private AssetDowntimeDailyRollupRepository assetDowntimeDailyRollupRepository;
+    @InjectMocks
+    private AnalyticsRollupService analyticsRollupService;
+
+    @Test
+    void rebuildsEachDayOnceThenDeletesTheClaimedMarkers() {
+        when(workOrderDailyRollupRepository.claimDirty(anyInt())).thenReturn(Arrays.asList(
+                dirtyDay(3L, 1L, RollupType.WORK_ORDER), dirtyDay(4L, 1L, RollupType.WORK_ORDER)));
+
+        assertEquals(2, analyticsRollupService.refreshDirtyDays());
+
+        InOrder inOrder = inOrder(workOrderDailyRollupRepository);
+        inOrder.verify(workOrderDailyRollupRepository).lockDay(1L, DAY, RollupType.WORK_ORDER.name());
+        inOrder.verify(workOrderDailyRollupRepository).deleteDay(1L, DAY);
+        inOrder.verify(workOrderDailyRollupRepository).insertDay(1L, DAY, Helper.localDateToDate(DAY),
+                Helper.localDateToDate(DAY.plusDays(1)));
+        inOrder.verify(workOrderDailyRollupRepository).deleteDirty(Arrays.asList(3L, 4L));
+        verify(workOrderDailyRollupRepository, times(1)).insertDay(any(), any(), any(), any());
+        verifyNoInteractions(assetDowntimeDailyRollupRepository);
+    }
+
+    @Test
+    void rebuildsDowntimeDaysFromTheirOwnTable() {
+        when(workOrderDailyRollupRepository.claimDirty(anyInt()))
+                .thenReturn(Collections.singletonList(dirtyDay(5L, 2L, RollupType.ASSET_DOWNTIME)));
+
+        analyticsRollupService.refreshDirtyDays();
+
+        verify(assetDowntimeDailyRollupRepository).deleteDay(2L, DAY);
+        verify(assetDowntimeDailyRollupRepository).insertDay(2L, DAY, Helper.localDateToDate(DAY),
+                Helper.localDateToDate(DAY.plusDays(1)));
+        verify(workOrderDailyRollupRepository).deleteDirty(Collections.singletonList(5L));
+        verify(workOrderDailyRollupRepository, never()).insertDay(any(), any(), any(), any());
+    }
+
+    @Test
+    void marksEachDayOnceInTheSameOrder() {
+        Date morning = Helper.localDateTimeToDate(DAY.atTime(1, 0));
+        Date evening = Helper.localDateTimeToDate(DAY.atTime(23, 0));
+        Date nextDay = Helper.localDateTimeToDate(DAY.plusDays(1).atTime(12, 0));
+
+        analyticsRollupService.markWorkOrders(Arrays.asList(workOrder(2L, morning), workOrder(1L, nextDay),
+                workOrder(1L, evening), workOrder(1L, morning)));
+
+        InOrder inOrder = inOrder(workOrderDailyRollupRepository);
+        inOrder.verify(workOrderDailyRollupRepository).markDirty(1L, DAY, RollupType.WORK_ORDER.name());
+        inOrder.verify(workOrderDailyRollupRepository).markDirty(1L, DAY.plusDays(1), RollupType.WORK_ORDER.name());
+        inOrder.verify(workOrderDailyRollupRepository).markDirty(2L, DAY, RollupType.WORK_ORDER.name());
+        verifyNoMoreInteractions(workOrderDailyRollupRepository);
+    }
+
+    private static WorkOrder workOrder(Long companyId, Date createdAt) {
+        Company company = new Company();
+        company.setId(companyId);
+        WorkOrder workOrder = new WorkOrder();
+        workOrder.setCompany(company);
+        workOrder.setCreatedAt(createdAt);
+        return workOrder;
+    }
+
+    private static DirtyRollupDay dirtyDay(Long id, Long companyId, RollupType type) {
+        return new DirtyRollupDay() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getCompanyId() {
+                return companyId;
+            }
+
+            @Override
+            public Date getDay() {
+                return java.sql.Date.valueOf(DAY);
+            }
+
+            @Override
+            public String getType() {
+                return type.name();
+            }
+        };
+    }
+}
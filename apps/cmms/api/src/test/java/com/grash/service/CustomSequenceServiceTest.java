@@ -0,0 +1,128 @@
+package com.grash.service;
+
+import com.grash.model.Company;
+import com.grash.repository.CustomSequenceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CustomSequenceServiceTest {
+    private static final int BLOCK_SIZE = 50;
+
+    @Mock
+    private CustomSequenceRepository customSequenceRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @InjectMocks
+    private CustomSequenceService customSequenceService;
+
+    //the sequence rows by company and statement, holding the next number
+    private final Map<String, AtomicLong> rows = new ConcurrentHashMap<>();
+    private final AtomicInteger allocations = new AtomicInteger();
+    private final Company company = company(1L);
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), anyInt(), anyLong(), anyInt()))
+                .thenAnswer(invocation -> {
+                    allocations.incrementAndGet();
+                    int count = invocation.getArgument(2);
+                    Long companyId = invocation.getArgument(3);
+                    return rows.computeIfAbsent(companyId + invocation.getArgument(0, String.class),
+                            key -> new AtomicLong(1)).getAndAdd(count);
+                });
+    }
+
+    @Test
+    void servesTheNumbersOfABlockFromMemory() {
+        for (long i = 1; i <= BLOCK_SIZE; i++) {
+            assertEquals(i, customSequenceService.getNextWorkOrderSequence(company));
+        }
+        assertEquals(1, allocations.get());
+        verify(transactionManager).commit(any());
+
+        assertEquals(BLOCK_SIZE + 1, customSequenceService.getNextWorkOrderSequence(company));
+        assertEquals(2, allocations.get());
+    }
+
+    @Test
+    void takesLargeReservationsStraightFromTheRow() {
+        assertEquals(1, customSequenceService.getNextAssetSequence(company));
+
+        assertEquals(BLOCK_SIZE + 1, customSequenceService.reserveAssetSequences(company, 120));
+        //the block is kept
+        assertEquals(2, customSequenceService.getNextAssetSequence(company));
+        for (int i = 2; i < BLOCK_SIZE; i++) customSequenceService.getNextAssetSequence(company);
+        assertEquals(BLOCK_SIZE + 121, customSequenceService.getNextAssetSequence(company));
+    }
+
+    @Test
+    void skipsTheRestOfABlockTooSmallForAReservation() {
+        for (int i = 0; i < BLOCK_SIZE - 5; i++) customSequenceService.getNextLocationSequence(company);
+
+        assertEquals(BLOCK_SIZE + 1, customSequenceService.reserveLocationSequences(company, 10));
+        assertEquals(BLOCK_SIZE + 11, customSequenceService.getNextLocationSequence(company));
+        assertEquals(2, allocations.get());
+    }
+
+    @Test
+    void keepsSeparateBlocksPerCompanyAndType() {
+        assertEquals(1, customSequenceService.getNextWorkOrderSequence(company));
+        assertEquals(1, customSequenceService.getNextRequestSequence(company));
+        assertEquals(1, customSequenceService.getNextWorkOrderSequence(company(2L)));
+        assertEquals(2, customSequenceService.getNextWorkOrderSequence(company));
+        assertEquals(3, allocations.get());
+    }
+
+    @Test
+    void neverHandsOutTheSameNumberToConcurrentCreates() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                List<Long> numbers = new ArrayList<>();
+                for (int j = 0; j < perThread; j++) {
+                    numbers.add(customSequenceService.getNextPreventiveMaintenanceSequence(company));
+                }
+                return numbers;
+            }));
+        }
+        start.countDown();
+        Set<Long> numbers = new HashSet<>();
+        for (Future<List<Long>> future : futures) numbers.addAll(future.get(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(threads * perThread, numbers.size());
+        //a thread losing the race to replace an exhausted block leaves its own block as a gap
+        assertTrue(allocations.get() <= (threads * perThread / BLOCK_SIZE + 1) * threads);
+    }
+
+    private static Company company(Long id) {
+        Company company = new Company();
+        company.setId(id);
+        return company;
+    }
+}
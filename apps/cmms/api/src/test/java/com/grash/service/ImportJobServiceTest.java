@@ -0,0 +1,196 @@
+package com.grash.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grash.dto.ImportJobShowDTO;
+import com.grash.dto.imports.AssetImportDTO;
+import com.grash.factory.StorageServiceFactory;
+import com.grash.mapper.ImportJobMapper;
+import com.grash.model.Company;
+import com.grash.model.ImportJob;
+import com.grash.model.OwnUser;
+import com.grash.model.Role;
+import com.grash.model.enums.ImportEntity;
+import com.grash.model.enums.ImportJobStatus;
+import com.grash.model.enums.RoleType;
+import com.grash.repository.ImportJobRepository;
+import com.grash.repository.ImportRowErrorRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ImportJobServiceTest {
+    private static final Long JOB_ID = 7L;
+    //the children come before their parents
+    private static final String FILE = "Name,Parent Asset Name\r\n" +
+            "Pump,Line\r\n" +
+            "Line,Plant\r\n" +
+            "Plant,\r\n" +
+            "Truck,\r\n";
+
+    @Mock
+    private ImportJobRepository importJobRepository;
+    @Mock
+    private ImportRowErrorRepository importRowErrorRepository;
+    @Mock
+    private ImportJobMapper importJobMapper;
+    @Mock
+    private ImportService importService;
+    @Mock
+    private UserService userService;
+    @Mock
+    private StorageServiceFactory storageServiceFactory;
+    @Mock
+    private StorageService storageService;
+    @Mock
+    private SimpMessageSendingOperations messagingTemplate;
+    @Mock
+    private ThreadPoolTaskExecutor importExecutor;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private EntityManager entityManager;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+    @InjectMocks
+    private ImportJobService importJobService;
+
+    private ImportJob importJob;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(importJobService, "chunkSize", 2);
+        Company company = new Company();
+        company.setId(1L);
+        company.getCompanySettings().setId(1L);
+        Role role = new Role();
+        role.setRoleType(RoleType.ROLE_CLIENT);
+        OwnUser user = new OwnUser();
+        user.setId(3L);
+        user.setCompany(company);
+        user.setRole(role);
+
+        importJob = new ImportJob(ImportEntity.ASSET, "imports/1/assets.csv", null);
+        importJob.setId(JOB_ID);
+        importJob.setCreatedBy(user.getId());
+        importJob.setStatus(ImportJobStatus.RUNNING);
+        when(importJobRepository.claim(eq(JOB_ID), any(), any())).thenReturn(1);
+        when(importJobRepository.findById(JOB_ID)).thenReturn(Optional.of(importJob));
+        when(userService.findById(user.getId())).thenReturn(Optional.of(user));
+        when(storageServiceFactory.getStorageService()).thenReturn(storageService);
+        when(storageService.openStream(importJob.getFilePath()))
+                .thenAnswer(invocation -> new ByteArrayInputStream(FILE.getBytes(StandardCharsets.UTF_8)));
+        when(importJobRepository.findByStatusIn(any())).thenReturn(Collections.singletonList(importJob));
+        ImportJobShowDTO result = new ImportJobShowDTO();
+        result.setCreatedBy(user.getId());
+        when(importJobMapper.toShowDto(importJob)).thenReturn(result);
+        when(importJobRepository.save(importJob)).thenReturn(importJob);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(importExecutor).execute(any(Runnable.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void importsTheParentsBeforeTheirChildrenAcrossChunks() {
+        importJobService.resumeInterruptedJobs();
+
+        assertEquals(Arrays.asList(Arrays.asList("Plant", "Truck"), Arrays.asList("Line", "Pump")), importedNames());
+        assertEquals(ImportJobStatus.COMPLETE, importJob.getStatus());
+    }
+
+    @Test
+    void resumesAfterTheCommittedRowsOfTheImportOrder() {
+        importJob.setProcessedRows(2);
+
+        importJobService.resumeInterruptedJobs();
+
+        assertEquals(Collections.singletonList(Arrays.asList("Line", "Pump")), importedNames());
+        verify(importJobRepository).addProgress(eq(JOB_ID), eq(2), eq(2), eq(0), eq(0), any());
+    }
+
+    @Test
+    void leavesTheJobPendingWhenTheExecutorIsFull() {
+        doThrow(new TaskRejectedException("full")).when(importExecutor).execute(any(Runnable.class));
+
+        importJobService.resumeInterruptedJobs();
+
+        verify(importJobRepository, never()).save(any());
+        verifyNoInteractions(messagingTemplate);
+    }
+
+    @Test
+    void queuesThePendingAndInterruptedJobsTheExecutorCanTake() {
+        ThreadPoolExecutor threadPoolExecutor = mock(ThreadPoolExecutor.class);
+        when(importExecutor.getThreadPoolExecutor()).thenReturn(threadPoolExecutor);
+        when(threadPoolExecutor.getQueue()).thenReturn(new ArrayBlockingQueue<>(3));
+        when(importJobRepository.findIdsToQueue(any(), any(), eq(PageRequest.of(0, 3))))
+                .thenReturn(Collections.singletonList(JOB_ID));
+
+        assertEquals(1, importJobService.requeuePending());
+
+        verify(importJobRepository).claim(eq(JOB_ID), any(), any());
+        assertEquals(ImportJobStatus.COMPLETE, importJob.getStatus());
+    }
+
+    @Test
+    void skipsTheJobsAlreadyQueuedOnThisInstance() {
+        doNothing().when(importExecutor).execute(any(Runnable.class));
+        importJobService.resumeInterruptedJobs();
+        ThreadPoolExecutor threadPoolExecutor = mock(ThreadPoolExecutor.class);
+        when(importExecutor.getThreadPoolExecutor()).thenReturn(threadPoolExecutor);
+        when(threadPoolExecutor.getQueue()).thenReturn(new ArrayBlockingQueue<>(3));
+        when(importJobRepository.findIdsToQueue(any(), any(), any()))
+                .thenReturn(Collections.singletonList(JOB_ID));
+
+        assertEquals(0, importJobService.requeuePending());
+
+        verify(importExecutor, times(1)).execute(any(Runnable.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<String>> importedNames() {
+        ArgumentCaptor<List<?>> chunks = ArgumentCaptor.forClass(List.class);
+        verify(importService, atLeastOnce()).importChunk(eq(ImportEntity.ASSET), chunks.capture(), any(), any());
+        return chunks.getAllValues().stream()
+                .map(chunk -> ((List<AssetImportDTO>) chunk).stream().map(AssetImportDTO::getName)
+                        .collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,182 @@
+package com.grash.service;
+
+import com.grash.dto.MeterTriggerState;
+import com.grash.model.Company;
+import com.grash.model.Meter;
+import com.grash.model.WorkOrder;
+import com.grash.model.WorkOrderMeterTrigger;
+import com.grash.model.enums.WorkOrderMeterTriggerCondition;
+import com.grash.repository.WorkOrderMeterTriggerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.MessageSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MeterTriggerEngineTest {
+    private static final Long METER_ID = 1L;
+    private static final Long TRIGGER_ID = 5L;
+
+    @Mock
+    private WorkOrderMeterTriggerRepository workOrderMeterTriggerRepository;
+    @Mock
+    private NotificationService notificationService;
+    @Mock
+    private WorkOrderService workOrderService;
+    @Mock
+    private MessageSource messageSource;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @InjectMocks
+    private MeterTriggerEngine meterTriggerEngine;
+
+    private final Meter meter = new Meter();
+    private final Company company = new Company();
+    private WorkOrderMeterTrigger trigger;
+
+    @BeforeEach
+    void setUp() {
+        meter.setId(METER_ID);
+        trigger = new WorkOrderMeterTrigger();
+        trigger.setId(TRIGGER_ID);
+        trigger.setMeter(meter);
+        trigger.setTriggerCondition(WorkOrderMeterTriggerCondition.MORE_THAN);
+        trigger.setValue(100);
+        trigger.setHysteresis(10);
+        trigger.setDebounceCount(3);
+        when(workOrderMeterTriggerRepository.findByMeter_IdIn(any())).thenReturn(Collections.singletonList(trigger));
+        when(workOrderMeterTriggerRepository.findById(TRIGGER_ID)).thenReturn(Optional.of(trigger));
+        when(workOrderMeterTriggerRepository.markTriggered(eq(TRIGGER_ID), any(), any())).thenReturn(1);
+        when(workOrderService.getWorkOrderFromWorkOrderBase(trigger)).thenReturn(new WorkOrder());
+        when(workOrderService.createAll(any(), any())).thenAnswer(invocation -> invocation.getArgument(0));
+        persistedState(false, 0);
+    }
+
+    @Test
+    void firesOnceTheDebounceCountIsReached() {
+        evaluate(101, 102);
+
+        verify(workOrderMeterTriggerRepository, never()).markTriggered(any(), any(), any());
+        verify(workOrderMeterTriggerRepository).updateConsecutiveBreaches(TRIGGER_ID, 2);
+
+        persistedState(false, 2);
+        evaluate(103);
+
+        verify(workOrderMeterTriggerRepository).markTriggered(eq(TRIGGER_ID), any(), any());
+        verify(workOrderService).createAll(any(), eq(company));
+        verify(workOrderMeterTriggerRepository, times(1)).updateConsecutiveBreaches(anyLong(), anyInt());
+    }
+
+    @Test
+    void restartsTheCountWhenAReadingIsBackUnderTheThreshold() {
+        persistedState(false, 1);
+
+        evaluate(99, 101, 102);
+
+        verify(workOrderMeterTriggerRepository).updateConsecutiveBreaches(TRIGGER_ID, 2);
+        verify(workOrderService, never()).createAll(any(), any());
+    }
+
+    @Test
+    void keepsTheCountWhenTheCompiledTriggersAreEvicted() {
+        evaluate(101);
+        meterTriggerEngine.evict(METER_ID);
+        persistedState(false, 2);
+
+        evaluate(101);
+
+        verify(workOrderMeterTriggerRepository, times(2)).findByMeter_IdIn(any());
+        verify(workOrderService).createAll(any(), eq(company));
+    }
+
+    @Test
+    void readsTheStateAgainAfterARolledBackEvaluation() {
+        persistedState(false, 2);
+        evaluate(101);
+        verify(workOrderService).createAll(any(), eq(company));
+
+        //the transaction firing the trigger was rolled back, the persisted state is unchanged
+        evaluate(101);
+
+        verify(workOrderService, times(2)).createAll(any(), eq(company));
+    }
+
+    @Test
+    void staysTriggeredUntilTheValueIsPastTheHysteresis() {
+        persistedState(true, 0);
+
+        evaluate(95, 120);
+
+        verify(workOrderMeterTriggerRepository, never()).clearTriggered(any());
+        verify(workOrderService, never()).createAll(any(), any());
+
+        evaluate(90);
+
+        verify(workOrderMeterTriggerRepository).clearTriggered(TRIGGER_ID);
+        verify(workOrderMeterTriggerRepository, never()).updateConsecutiveBreaches(anyLong(), anyInt());
+    }
+
+    @Test
+    void sendsTheNotificationsOnceTheReadingsAreCommitted() {
+        persistedState(false, 2);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            evaluate(101);
+
+            verify(workOrderService).createAll(any(), eq(company));
+            verify(notificationService, never()).createMultiple(any(), anyBoolean(), any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(notificationService).createMultiple(any(), eq(true), any());
+    }
+
+    private void evaluate(double... values) {
+        List<Double> readings = new ArrayList<>();
+        for (double value : values) readings.add(value);
+        meterTriggerEngine.evaluate(meter, readings, company, Locale.ENGLISH);
+    }
+
+    private void persistedState(boolean triggered, int consecutiveBreaches) {
+        MeterTriggerState state = new MeterTriggerState() {
+            @Override
+            public Long getId() {
+                return TRIGGER_ID;
+            }
+
+            @Override
+            public Boolean getTriggered() {
+                return triggered;
+            }
+
+            @Override
+            public Date getLastTriggeredAt() {
+                return null;
+            }
+
+            @Override
+            public Integer getConsecutiveBreaches() {
+                return consecutiveBreaches;
+            }
+        };
+        when(workOrderMeterTriggerRepository.findStatesForUpdate(Collections.singleton(TRIGGER_ID)))
+                .thenReturn(Collections.singletonList(state));
+    }
+}
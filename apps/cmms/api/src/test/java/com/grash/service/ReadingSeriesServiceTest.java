@@ -0,0 +1,86 @@
+package com.grash.service;
+
+import com.grash.dto.DirtyReadingHour;
+import com.grash.model.enums.ReadingResolution;
+import com.grash.repository.ReadingRollupRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReadingSeriesServiceTest {
+    private static final Date HOUR = new Date(1774785600000L);
+
+    @Mock
+    private ReadingRollupRepository readingRollupRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @InjectMocks
+    private ReadingSeriesService readingSeriesService;
+
+    @Test
+    void rebuildsTheHourThenDeletesTheMarkerOnlyAtTheClaimedVersion() {
+        when(readingRollupRepository.claimDirty(anyInt()))
+                .thenReturn(Collections.singletonList(dirtyHour(1L, HOUR, 4)));
+
+        assertEquals(1, readingSeriesService.refreshDirtyHours());
+
+        Date end = new Date(HOUR.getTime() + ReadingResolution.HOUR.getMillis());
+        InOrder inOrder = inOrder(readingRollupRepository);
+        inOrder.verify(readingRollupRepository).insertFromReadings(1L, ReadingResolution.MINUTE.ordinal(), "minute",
+                HOUR, end);
+        inOrder.verify(readingRollupRepository).insertFromReadings(1L, ReadingResolution.HOUR.ordinal(), "hour",
+                HOUR, end);
+        inOrder.verify(readingRollupRepository).deleteDirty(1L, HOUR, 4);
+        inOrder.verify(readingRollupRepository).insertDayFromHours(eq(1L), eq(ReadingResolution.DAY.ordinal()),
+                eq(ReadingResolution.HOUR.ordinal()), any(), any());
+    }
+
+    @Test
+    void createsThePartitionsOfTheMonthsHavingReadingsInTheDefaultOne() {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        java.sql.Date pastMonth = java.sql.Date.valueOf(month.minusYears(1));
+        when(jdbcTemplate.queryForList(contains("reading_default"), eq(java.sql.Date.class)))
+                .thenReturn(Collections.singletonList(pastMonth));
+
+        readingSeriesService.createPartitions();
+
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).queryForObject(anyString(), eq(String.class), eq(pastMonth));
+        for (int i = 0; i <= 2; i++) {
+            inOrder.verify(jdbcTemplate).queryForObject(anyString(), eq(String.class),
+                    eq(java.sql.Date.valueOf(month.plusMonths(i))));
+        }
+    }
+
+    private static DirtyReadingHour dirtyHour(Long meterId, Date hour, long version) {
+        return new DirtyReadingHour() {
+            @Override
+            public Long getMeterId() {
+                return meterId;
+            }
+
+            @Override
+            public Date getHour() {
+                return hour;
+            }
+
+            @Override
+            public long getVersion() {
+                return version;
+            }
+        };
+    }
+}